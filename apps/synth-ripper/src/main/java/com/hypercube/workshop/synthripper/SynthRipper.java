@@ -6,9 +6,12 @@ import com.hypercube.workshop.audioworkshop.api.device.AudioOutputDevice;
 import com.hypercube.workshop.audioworkshop.api.format.PCMBufferFormat;
 import com.hypercube.workshop.audioworkshop.api.insights.dft.fast.FFTCalculator;
 import com.hypercube.workshop.audioworkshop.api.insights.dft.windows.BlackmanHarris;
+import com.hypercube.workshop.audioworkshop.api.insights.signal.SpectralFluxOnsetDetector;
 import com.hypercube.workshop.audioworkshop.api.line.AudioInputLine;
 import com.hypercube.workshop.audioworkshop.api.line.AudioOutputLine;
 import com.hypercube.workshop.audioworkshop.api.pcm.PCMMarker;
+import com.hypercube.workshop.audioworkshop.api.record.BackPressurePolicy;
+import com.hypercube.workshop.audioworkshop.api.record.RingBufferRecordListener;
 import com.hypercube.workshop.midiworkshop.api.MidiNote;
 import com.hypercube.workshop.midiworkshop.api.ports.local.out.MidiOutPort;
 import com.hypercube.workshop.midiworkshop.api.presets.DrumKitNote;
@@ -45,6 +48,10 @@ import java.util.stream.Collectors;
 @Service
 public class SynthRipper {
     public static final int NOISE_FLOOR_CAPTURE_DURATION_IN_SEC = 4;
+    /**
+     * How many buffers can be pending while the FFT and the WAV writing are running, the capture thread only waits when they are all used
+     */
+    public static final int RING_BUFFER_CAPACITY = 32;
     private final ThreadLogger threadLogger;
     private final SynthRipperState state = new SynthRipperState();
     private final List<PresetGenerator> presetGenerators;
@@ -55,6 +62,10 @@ public class SynthRipper {
     private MidiOutPort hardwareMidiOutPort;
     private WavRecorder wavRecorder;
     private LoopDetector loopDetector;
+    /**
+     * Runs on every buffer after the noise floor acquisition, give the start of the notes to the sample
+     */
+    private SpectralFluxOnsetDetector onsetDetector;
     private final MidiDeviceRequester midiDeviceRequester;
 
 
@@ -124,14 +135,23 @@ public class SynthRipper {
         this.hardwareMidiOutPort = midiOutPort;
         this.hardwareMidiOutPort.open();
         activateDeviceMode(midiOutPort);
-        try (FFTCalculator fftCalculator = new FFTCalculator(format, new BlackmanHarris())) {
-            try (FFTCalculator shortTermFFTCalculator = new FFTCalculator(format.withDuration(1), new BlackmanHarris())) {
+        onsetDetector = new SpectralFluxOnsetDetector(format, (position, strength) -> threadLogger.log("Onset at %d, strength %.1f".formatted(position, strength)));
+        onsetDetector.reset();
+        // only the last spectrum is read for each buffer, and preciseLookupSignalStart needs one spectrum per 1 ms block
+        PCMBufferFormat shortTermFormat = format.withDuration(1);
+        int nbShortTermBlocks = Math.max(1, format.getSampleBufferSize() / shortTermFormat.getSampleBufferSize());
+        try (FFTCalculator fftCalculator = new FFTCalculator(format, new BlackmanHarris(), 1)) {
+            try (FFTCalculator shortTermFFTCalculator = new FFTCalculator(shortTermFormat, new BlackmanHarris(), nbShortTermBlocks)) {
                 try (AudioInputLine inputLine = new AudioInputLine(audioInputDevice, format)) {
                     try (AudioOutputLine outputLine = new AudioOutputLine(audioOutputDevice, format)) {
                         midiOutPort.sendAllOff();
                         threadLogger.start();
                         outputLine.start();
-                        inputLine.record((sampleBuffer, pcmBuffer, pcmSize) -> onNewBuffer(fftCalculator, shortTermFFTCalculator, sampleBuffer, pcmBuffer, pcmSize), outputLine);
+                        try (RingBufferRecordListener ringBuffer = new RingBufferRecordListener(format, RING_BUFFER_CAPACITY, BackPressurePolicy.BLOCK,
+                                (sampleBuffer, pcmBuffer, pcmSize) -> onNewBuffer(fftCalculator, shortTermFFTCalculator, sampleBuffer, pcmBuffer, pcmSize))) {
+                            ringBuffer.start();
+                            inputLine.record(ringBuffer, outputLine);
+                        }
                     } finally {
                         threadLogger.stop();
                     }
@@ -379,6 +399,7 @@ public class SynthRipper {
                 }
             } else {
                 updateSignalFrequencies(fftCalculator, buffer);
+                onsetDetector.onBuffer(buffer);
 
                 if (state.endOfIdle()) {
                     sendNoteOn();
@@ -390,9 +411,9 @@ public class SynthRipper {
                     threadLogger.log("NOTE_OFF after " + state.durationInSec + " sec at position " + state.noteOffSampleMarker);
                     state.changeState(SynthRipperStateEnum.NOTE_OFF);
                 } else if (state.soundDetected()) {
-                    startPosInsamples = preciseLookupSignalStart(shortTermFFTCalculator, buffer);
-                    buffer.split(startPosInsamples, shortTermFFTCalculator.getFormat()
-                                    .getSampleBufferSize())
+                    startPosInsamples = lookupSignalStart(shortTermFFTCalculator, buffer);
+                    buffer.split(startPosInsamples, Math.min(buffer.nbSamples() - startPosInsamples, shortTermFFTCalculator.getFormat()
+                                    .getSampleBufferSize()))
                             .fadeIn();
                     threadLogger.log("NOTE_ON_START after " + state.durationInSec + " sec");
                     state.changeState(SynthRipperStateEnum.NOTE_ON_START);
@@ -431,6 +452,31 @@ public class SynthRipper {
         return !finished();
     }
 
+    /**
+     * Use the onset found by {@link SpectralFluxOnsetDetector} if it is in the current buffer. It is not there yet when the
+     * note starts in the last milliseconds of the buffer, then we fall back to the short term FFT.
+     * <p>When the onset is not refined (only the center of the FFT window, up to half a window away), the short term FFT is
+     * tried first and the onset is used only if it finds nothing.</p>
+     */
+    private int lookupSignalStart(FFTCalculator shortTermFFTCalculator, SampleBuffer buffer) {
+        long bufferStart = onsetDetector.getPosition() - buffer.nbSamples();
+        long onset = onsetDetector.getLastOnset();
+        boolean inBuffer = onset >= bufferStart;
+        if (inBuffer && onsetDetector.isLastOnsetRefined()) {
+            return (int) (onset - bufferStart);
+        }
+        int start = preciseLookupSignalStart(shortTermFFTCalculator, buffer);
+        if (start >= 0) {
+            return start;
+        }
+        return inBuffer ? (int) (onset - bufferStart) : 0;
+    }
+
+    /**
+     * Search the first 1 ms block above the noise floor
+     *
+     * @return the offset of the block in the buffer, -1 if there is none
+     */
     private int preciseLookupSignalStart(FFTCalculator shortTermFFTCalculator, SampleBuffer buffer) {
         int sampleBufferSize = shortTermFFTCalculator.getFormat()
                 .getSampleBufferSize();
@@ -454,7 +500,7 @@ public class SynthRipper {
                 }
             }
         }
-        return 0;
+        return -1;
     }
 
     private void updateSignalFrequencies(FFTCalculator fftCalculator, SampleBuffer buffer) {
@@ -40,7 +40,7 @@ public class WavRecorder implements Closeable {
         this.threadLogger = threadLogger;
         this.format = checkFormat(format);
         this.out = new RiffWriter(output);
-        this.dataChunk = new RiffChunk(null, Chunks.DATA, (int) out.getPosition(), 0);
+        this.dataChunk = new RiffChunk(null, Chunks.DATA, out.getPosition(), 0);
         this.maxDurationInSamples = INFINITE_DURATION;
         this.reorderedSampleBuffer = format.allocateSampleBuffer();
         this.pcmBuffer = format.allocatePcmBuffer();
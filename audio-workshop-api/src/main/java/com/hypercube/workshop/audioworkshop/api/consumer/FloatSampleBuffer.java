@@ -0,0 +1,151 @@
+package com.hypercube.workshop.audioworkshop.api.consumer;
+
+import lombok.Getter;
+import lombok.experimental.Accessors;
+
+/**
+ * Single precision version of {@link SampleBuffer}
+ * <p>
+ * Our sources are at most 24 bits, so a float holds them without any loss, with half the memory footprint of a double.
+ * Like {@link SampleBuffer}, this is only a view upon a buffer of samples delimited by {@link #sampleStart} and {@link #sampleEnd}.
+ */
+@Accessors(fluent = true)
+public class FloatSampleBuffer implements SampleView {
+    private final float[][] samples;
+    private final int sampleStart;
+    private final int sampleEnd;
+    @Getter
+    private final int nbSamples;
+    @Getter
+    private final int nbChannels;
+
+    public FloatSampleBuffer(float[][] samples, int sampleStart, int sampleEnd, int nbChannels) {
+        this.samples = samples;
+        this.sampleStart = sampleStart;
+        this.sampleEnd = sampleEnd;
+        this.nbChannels = nbChannels;
+        this.nbSamples = sampleEnd - sampleStart;
+    }
+
+    /**
+     * return the right sample in the sample window
+     *
+     * @param channel Audio channel
+     * @param index   Position in the window
+     * @return the sample value
+     */
+    public float sample(int channel, int index) {
+        return samples[channel][getRawSampleIndex(index)];
+    }
+
+    @Override
+    public double get(int channel, int index) {
+        return sample(channel, index);
+    }
+
+    /**
+     * Return the real position in the sample buffer given {@link #sampleStart}
+     *
+     * @param index input index in the window
+     * @return real index in the buffer {@link #samples}
+     */
+    private int getRawSampleIndex(int index) {
+        return index + sampleStart;
+    }
+
+    /**
+     * Give access to the internal buffer in case we need it
+     *
+     * @param channel Audio channel
+     * @return buffer of samples which is potentially bigger than the sample window defined by {@link #sampleStart} and {@link #sampleEnd}
+     */
+    public float[] getRawBuffer(int channel) {
+        return samples[channel];
+    }
+
+    /**
+     * Give access to the internal buffers in case we need it
+     *
+     * @return buffer of samples which is potentially bigger than the sample window defined by {@link #sampleStart} and {@link #sampleEnd}
+     */
+    public float[][] getRawBuffers() {
+        return samples;
+    }
+
+    /**
+     * Modify the internal sample buffer
+     *
+     * @param channel audio channel
+     * @param index   position the window
+     * @param sample  value to set
+     */
+    public void setSample(int channel, int index, float sample) {
+        samples[channel][getRawSampleIndex(index)] = sample;
+    }
+
+    /**
+     * Create a new sample window from the actual sample window
+     *
+     * @param from      index in the current window
+     * @param nbSamples width of the new window
+     * @return a view sharing the same internal buffer
+     */
+    public FloatSampleBuffer split(int from, int nbSamples) {
+        return new FloatSampleBuffer(samples, getRawSampleIndex(from), getRawSampleIndex(from + nbSamples), nbChannels);
+    }
+
+    /**
+     * Copy the windowed samples at the beginning of a double precision buffer
+     *
+     * @param output where to write, must be at least {@link #nbSamples} wide
+     */
+    public void copyTo(double[][] output) {
+        for (int ch = 0; ch < nbChannels; ch++) {
+            float[] input = samples[ch];
+            double[] out = output[ch];
+            for (int s = 0; s < nbSamples; s++) {
+                out[s] = input[sampleStart + s];
+            }
+        }
+    }
+
+    /**
+     * Copy the windowed samples into a double precision buffer
+     * <p>Usefull to feed a {@link SampleBufferConsumer} which is not available in float mode</p>
+     *
+     * @param output where to write, must be at least {@link #nbSamples} wide
+     * @return a new {@link SampleBuffer} upon the output
+     */
+    public SampleBuffer toSampleBuffer(double[][] output) {
+        copyTo(output);
+        return new SampleBuffer(output, 0, nbSamples, nbChannels);
+    }
+
+    /**
+     * Apply a linear fade in to the windowed samples
+     */
+    public void fadeIn() {
+        float ratio = 1.0f / nbSamples;
+        for (int ch = 0; ch < nbChannels; ch++) {
+            for (int s = 0; s < nbSamples; s++) {
+                float scale = s * ratio;
+                float sample = sample(ch, s) * scale;
+                setSample(ch, s, sample);
+            }
+        }
+    }
+
+    /**
+     * Apply a linear fade out to the windowed samples
+     */
+    public void fadeOut() {
+        float ratio = 1.0f / nbSamples;
+        for (int ch = 0; ch < nbChannels; ch++) {
+            for (int s = 0; s < nbSamples; s++) {
+                float scale = (nbSamples - 1 - s) * ratio;
+                float sample = sample(ch, s) * scale;
+                setSample(ch, s, sample);
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.hypercube.workshop.audioworkshop.api.consumer;
+
+/**
+ * Single precision version of {@link SampleBufferConsumer}
+ * <p>A consumer can implement both interfaces to run in double or float mode.</p>
+ */
+public interface FloatSampleBufferConsumer {
+    default void reset() {
+        // DO NOTHING BY DEFAULT
+    }
+
+    void onBuffer(FloatSampleBuffer buffer);
+
+    /**
+     * Adapter for consumers only available in double precision
+     * <p>Samples are widened into an internal buffer which is reused. The {@link SampleBuffer} view upon it is reused too
+     * as long as the size of the incoming buffers doesn't change, so there is no allocation in the audio path.</p>
+     *
+     * @param consumer     the double precision consumer
+     * @param maxNbSamples max number of samples per buffer
+     * @param nbChannels   number of channels
+     * @return a float consumer forwarding everything to the double precision consumer
+     */
+    static FloatSampleBufferConsumer of(SampleBufferConsumer consumer, int maxNbSamples, int nbChannels) {
+        double[][] samples = new double[nbChannels][maxNbSamples];
+        return new FloatSampleBufferConsumer() {
+            private SampleBuffer view;
+
+            @Override
+            public void reset() {
+                consumer.reset();
+            }
+
+            @Override
+            public void onBuffer(FloatSampleBuffer buffer) {
+                if (view == null || view.nbSamples() != buffer.nbSamples()) {
+                    view = buffer.toSampleBuffer(samples);
+                } else {
+                    buffer.copyTo(samples);
+                }
+                consumer.onBuffer(view);
+            }
+        };
+    }
+}
@@ -0,0 +1,60 @@
+package com.hypercube.workshop.audioworkshop.api.consumer;
+
+/**
+ * Single precision version of {@link WindowedSampleBufferConsumer}
+ * <p>sampleIncrement != windowSizeInSamples can be used to reuse previous samples (very usefull for FFT)</p>
+ */
+public class FloatWindowedSampleBufferConsumer implements FloatSampleBufferConsumer {
+    protected final int windowSizeInSamples;
+    protected final int nbChannels;
+    protected final int sampleIncrement;
+    protected final float[][] samples;
+    /**
+     * The view passed to the consumer never changes, only the samples behind it
+     */
+    protected final FloatSampleBuffer window;
+    protected final FloatSampleBufferConsumer consumer;
+    protected int nbSamplesRead;
+
+    public FloatWindowedSampleBufferConsumer(int windowSizeInSamples, int nbChannels, FloatSampleBufferConsumer consumer) {
+        this(windowSizeInSamples, windowSizeInSamples, nbChannels, consumer);
+    }
+
+    public FloatWindowedSampleBufferConsumer(int windowSizeInSamples, int sampleIncrement, int nbChannels, FloatSampleBufferConsumer consumer) {
+        if (sampleIncrement < 1 || sampleIncrement > windowSizeInSamples) {
+            throw new IllegalArgumentException("Illegal value for sampleIncrement:" + sampleIncrement + ". Should be in [1, " + windowSizeInSamples + "]");
+        }
+        this.windowSizeInSamples = windowSizeInSamples;
+        this.sampleIncrement = sampleIncrement;
+        this.nbChannels = nbChannels;
+        this.samples = new float[nbChannels][windowSizeInSamples];
+        this.window = new FloatSampleBuffer(samples, 0, windowSizeInSamples, nbChannels);
+        this.consumer = consumer;
+        reset();
+    }
+
+    @Override
+    public void reset() {
+        // we slide the overlap to the beginning of the window, see WindowedSampleBufferConsumer
+        int overlap = windowSizeInSamples - sampleIncrement;
+        for (int ch = 0; ch < nbChannels; ch++) {
+            System.arraycopy(samples[ch], sampleIncrement, samples[ch], 0, overlap);
+        }
+        // we put the write head just after the slided samples
+        nbSamplesRead = overlap;
+    }
+
+    @Override
+    public void onBuffer(FloatSampleBuffer buffer) {
+        for (int s = 0; s < buffer.nbSamples(); s++) {
+            for (int ch = 0; ch < nbChannels; ch++) {
+                samples[ch][nbSamplesRead] = buffer.sample(ch, s);
+            }
+            nbSamplesRead++;
+            if (nbSamplesRead == windowSizeInSamples) {
+                consumer.onBuffer(window);
+                reset();
+            }
+        }
+    }
+}
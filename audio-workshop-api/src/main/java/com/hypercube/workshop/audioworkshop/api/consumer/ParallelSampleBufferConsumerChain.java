@@ -0,0 +1,249 @@
+package com.hypercube.workshop.audioworkshop.api.consumer;
+
+import com.hypercube.workshop.audioworkshop.api.errors.AudioError;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Parallel version of {@link SampleBufferConsumerChain}: each consumer runs on its own worker thread
+ * <p>All consumers receive the same buffers in the same order, so they must be independent and must not modify the buffer
+ * (typically RMS, peak, FFT, DC offset and signal detection on the same file).</p>
+ * <ul>
+ *     <li>With {@code maxLag == 0}, {@link #onBuffer(SampleBuffer)} is a barrier: the caller's buffer is given as is to
+ *     all workers and the call returns when all of them are done with it. Nothing is copied.</li>
+ *     <li>With {@code maxLag > 0}, the buffer is copied in a ring of {@code maxLag} snapshots and the call returns immediately.
+ *     A consumer can be up to {@code maxLag} buffers behind the caller, then the caller waits for it.</li>
+ * </ul>
+ * <p>The worker threads are started with the first buffer and stopped by {@link #flush()}, so a chain holds no thread once its
+ * results are read. Since the consumers may still be running when the caller is done, {@link #flush()} or {@link #close()}
+ * must be called before reading their results:</p>
+ * <pre>
+ * try (var chain = new ParallelSampleBufferConsumerChain(List.of(rmsCalculator, peakCalculator), 8)) {
+ *     riffInspector.inspect(chain);
+ * }
+ * </pre>
+ * <p>There is no polling: the caller unparks the workers when it publishes a buffer, each worker unparks the caller when it is
+ * done with one.</p>
+ */
+@Slf4j
+public class ParallelSampleBufferConsumerChain implements SampleBufferConsumer, Closeable {
+    private final List<SampleBufferConsumer> chain;
+    @Getter
+    private final int maxLag;
+    private final int nbSlots;
+    private final double[][][] snapshots;
+    private final SampleBuffer[] views;
+    private final Worker[] workers;
+    /**
+     * Number of buffers given to the workers so far
+     */
+    private final AtomicLong published = new AtomicLong();
+    private volatile Thread caller;
+    private volatile boolean running;
+
+    /**
+     * Barrier mode
+     */
+    public ParallelSampleBufferConsumerChain(List<SampleBufferConsumer> chain) {
+        this(chain, 0);
+    }
+
+    /**
+     * @param chain  independent consumers
+     * @param maxLag 0 for a barrier per buffer, otherwise how many buffers a consumer can be late
+     */
+    public ParallelSampleBufferConsumerChain(List<SampleBufferConsumer> chain, int maxLag) {
+        if (maxLag < 0) {
+            throw new IllegalArgumentException("Illegal value for maxLag: " + maxLag);
+        }
+        this.chain = chain;
+        this.maxLag = maxLag;
+        this.nbSlots = Math.max(1, maxLag);
+        this.snapshots = new double[nbSlots][][];
+        this.views = new SampleBuffer[nbSlots];
+        this.workers = new Worker[chain.size()];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Worker(chain.get(i), i);
+        }
+    }
+
+    /**
+     * Wait for all the workers, then reset the consumers on the caller thread
+     */
+    @Override
+    public void reset() {
+        flush();
+        chain.forEach(SampleBufferConsumer::reset);
+    }
+
+    @Override
+    public void onBuffer(SampleBuffer buffer) {
+        caller = Thread.currentThread();
+        if (!running) {
+            startWorkers();
+        }
+        long sequence = published.get();
+        int slot = (int) (sequence % nbSlots);
+        if (maxLag == 0) {
+            views[slot] = buffer;
+        } else {
+            // the slot can be reused when every consumer is done with the buffer maxLag positions before
+            awaitWorkers(sequence - maxLag + 1);
+            rethrowWorkerErrors();
+            copyToSnapshot(slot, buffer);
+        }
+        published.set(sequence + 1);
+        for (Worker w : workers) {
+            LockSupport.unpark(w.thread);
+        }
+        if (maxLag == 0) {
+            awaitWorkers(sequence + 1);
+            rethrowWorkerErrors();
+        }
+    }
+
+    private void startWorkers() {
+        running = true;
+        for (Worker w : workers) {
+            w.start();
+        }
+    }
+
+    private void stopWorkers() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        for (Worker w : workers) {
+            LockSupport.unpark(w.thread);
+            try {
+                w.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread()
+                        .interrupt();
+                throw new AudioError(e);
+            }
+        }
+    }
+
+    private void copyToSnapshot(int slot, SampleBuffer buffer) {
+        double[][] snapshot = snapshots[slot];
+        int nbSamples = buffer.nbSamples();
+        int nbChannels = buffer.nbChannels();
+        if (snapshot == null || snapshot.length < nbChannels || snapshot[0].length < nbSamples) {
+            snapshot = new double[nbChannels][nbSamples];
+            snapshots[slot] = snapshot;
+            views[slot] = null;
+        }
+        buffer.copyTo(snapshot, 0);
+        SampleBuffer view = views[slot];
+        if (view == null || view.nbSamples() != nbSamples || view.nbChannels() != nbChannels) {
+            views[slot] = new SampleBuffer(snapshot, 0, nbSamples, nbChannels);
+        }
+    }
+
+    /**
+     * Wait until all workers have processed the given number of buffers
+     * <p>Each worker unparks the caller after each buffer, a spurious wake up just loops</p>
+     */
+    private void awaitWorkers(long nbBuffers) {
+        for (Worker w : workers) {
+            while (w.done.get() < nbBuffers) {
+                LockSupport.park(this);
+            }
+        }
+    }
+
+    private void rethrowWorkerErrors() {
+        for (Worker w : workers) {
+            Throwable error = w.error;
+            if (error != null) {
+                // reported once, the consumer stays disabled
+                w.error = null;
+                if (error instanceof RuntimeException e) {
+                    throw e;
+                }
+                throw new AudioError("Consumer failed: " + w.consumer.getClass()
+                        .getSimpleName(), error);
+            }
+        }
+    }
+
+    /**
+     * Wait until every consumer has processed all the buffers received so far, then stop the worker threads
+     * <p>They are started again by the next buffer. Any exception raised by a consumer is rethrown here</p>
+     */
+    public void flush() {
+        caller = Thread.currentThread();
+        awaitWorkers(published.get());
+        stopWorkers();
+        rethrowWorkerErrors();
+    }
+
+    /**
+     * Same as {@link #flush()}
+     */
+    @Override
+    public void close() {
+        flush();
+    }
+
+    private final class Worker implements Runnable {
+        private final SampleBufferConsumer consumer;
+        private final String name;
+        private Thread thread;
+        /**
+         * Number of buffers processed by this worker
+         */
+        private final AtomicLong done = new AtomicLong();
+        private volatile Throwable error;
+        private volatile boolean failed;
+
+        private Worker(SampleBufferConsumer consumer, int index) {
+            this.consumer = consumer;
+            this.name = "ConsumerChain-%d-%s".formatted(index, consumer.getClass()
+                    .getSimpleName());
+        }
+
+        private void start() {
+            thread = new Thread(this, name);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        /**
+         * The caller unparks the worker after publishing a buffer, if it was not parked yet the permit makes the next park return
+         */
+        @Override
+        public void run() {
+            for (; ; ) {
+                long d = done.get();
+                if (d == published.get()) {
+                    if (!running) {
+                        return;
+                    }
+                    LockSupport.park(this);
+                    continue;
+                }
+                // once a consumer failed, it is skipped to not block the caller
+                if (!failed) {
+                    try {
+                        consumer.onBuffer(views[(int) (d % nbSlots)]);
+                    } catch (RuntimeException | Error e) {
+                        log.error("Consumer {} failed", consumer.getClass()
+                                .getSimpleName(), e);
+                        failed = true;
+                        error = e;
+                    }
+                }
+                done.set(d + 1);
+                LockSupport.unpark(caller);
+            }
+        }
+    }
+}
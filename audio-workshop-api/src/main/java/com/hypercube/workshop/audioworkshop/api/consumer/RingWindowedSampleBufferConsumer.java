@@ -0,0 +1,105 @@
+package com.hypercube.workshop.audioworkshop.api.consumer;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+
+/**
+ * Same windows as {@link WindowedSampleBufferConsumer}, without moving the overlap for each window
+ * <p>The samples are stored in a ring buffer of {@code windowSizeInSamples} which is written twice, one time after the other:</p>
+ * <pre>
+ * ring    : 0 1 2 3 4 5 6 7 | 0 1 2 3 4 5 6 7
+ *                 ^ write position
+ * window  :       3 4 5 6 7   0 1 2
+ * </pre>
+ * <p>So the last {@code windowSizeInSamples} samples are always contiguous, starting at the write position. The windows are
+ * passed to the consumer as views on the ring: nothing is copied or allocated per window, and the incoming samples are
+ * written with two arraycopy per channel instead of being moved again for each window.</p>
+ * <ul>
+ *     <li>The consumer must not modify the window or keep it after the call</li>
+ *     <li>Like {@link WindowedSampleBufferConsumer}, the first window starts with {@code windowSizeInSamples - sampleIncrement} zeros</li>
+ *     <li>{@code sampleIncrement} can be greater than the incoming buffers and even greater than the window, in this case some samples are skipped between windows</li>
+ * </ul>
+ */
+public class RingWindowedSampleBufferConsumer implements SampleBufferConsumer {
+    @Getter
+    private final int windowSizeInSamples;
+    @Getter
+    private final int sampleIncrement;
+    private final int nbChannels;
+    private final double[][] ring;
+    private final SampleBuffer[] windows;
+    private final SampleBufferConsumer consumer;
+    private int writePos;
+    private int samplesBeforeNextWindow;
+
+    public RingWindowedSampleBufferConsumer(int windowSizeInSamples, int nbChannels, SampleBufferConsumer consumer) {
+        this(windowSizeInSamples, windowSizeInSamples, nbChannels, consumer);
+    }
+
+    public RingWindowedSampleBufferConsumer(int windowSizeInSamples, int sampleIncrement, int nbChannels, SampleBufferConsumer consumer) {
+        if (sampleIncrement <= 0) {
+            throw new IllegalArgumentException("Illegal value for sampleIncrement:" + sampleIncrement + ". Should be > 0");
+        }
+        this.windowSizeInSamples = windowSizeInSamples;
+        this.sampleIncrement = sampleIncrement;
+        this.nbChannels = nbChannels;
+        this.ring = new double[nbChannels][windowSizeInSamples * 2];
+        this.windows = new SampleBuffer[windowSizeInSamples];
+        this.consumer = consumer;
+        reset();
+    }
+
+    /**
+     * Start a new stream: the previous samples are forgotten
+     */
+    @Override
+    public void reset() {
+        for (int ch = 0; ch < nbChannels; ch++) {
+            Arrays.fill(ring[ch], 0);
+        }
+        writePos = 0;
+        samplesBeforeNextWindow = sampleIncrement;
+    }
+
+    @Override
+    public void onBuffer(SampleBuffer buffer) {
+        int nbSamples = buffer.nbSamples();
+        int from = 0;
+        while (from < nbSamples) {
+            // when the increment is bigger than the window, only the last samples before the next window are needed
+            int toSkip = samplesBeforeNextWindow - windowSizeInSamples;
+            if (toSkip > 0) {
+                int skipped = Math.min(nbSamples - from, toSkip);
+                from += skipped;
+                samplesBeforeNextWindow -= skipped;
+                continue;
+            }
+            int size = Math.min(nbSamples - from, Math.min(samplesBeforeNextWindow, windowSizeInSamples - writePos));
+            buffer.copyTo(from, size, ring, writePos);
+            buffer.copyTo(from, size, ring, writePos + windowSizeInSamples);
+            from += size;
+            writePos += size;
+            if (writePos == windowSizeInSamples) {
+                writePos = 0;
+            }
+            samplesBeforeNextWindow -= size;
+            if (samplesBeforeNextWindow == 0) {
+                consumer.onBuffer(getWindow(writePos));
+                samplesBeforeNextWindow = sampleIncrement;
+            }
+        }
+    }
+
+    /**
+     * The number of distinct windows is windowSizeInSamples / gcd(windowSizeInSamples, sampleIncrement), so they are created once
+     */
+    private SampleBuffer getWindow(int start) {
+        SampleBuffer window = windows[start];
+        if (window == null) {
+            window = new SampleBuffer(ring, start, start + windowSizeInSamples, nbChannels);
+            windows[start] = window;
+        }
+        return window;
+    }
+}
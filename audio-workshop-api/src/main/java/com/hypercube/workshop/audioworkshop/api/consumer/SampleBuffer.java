@@ -14,7 +14,7 @@ import lombok.experimental.Accessors;
  * it can be shared among many SampleBuffers using {@link #split(int, int)} or {@link #getRawSampleIndex(int)}.
  */
 @Accessors(fluent = true)
-public class SampleBuffer {
+public class SampleBuffer implements SampleView {
     private final double[][] samples;
     private final int sampleStart;
     private final int sampleEnd;
@@ -42,6 +42,11 @@ public class SampleBuffer {
         return samples[channel][getRawSampleIndex(index)];
     }
 
+    @Override
+    public double get(int channel, int index) {
+        return sample(channel, index);
+    }
+
     /**
      * Return the real position in the sample buffer given {@link #sampleStart}
      *
@@ -93,6 +98,30 @@ public class SampleBuffer {
         return new SampleBuffer(samples, getRawSampleIndex(from), getRawSampleIndex(from + nbSamples), nbChannels);
     }
 
+    /**
+     * Copy the windowed samples at a given position of another buffer, one arraycopy per channel
+     *
+     * @param output  destination buffer, per channel
+     * @param destPos position in the destination buffer
+     */
+    public void copyTo(double[][] output, int destPos) {
+        copyTo(0, nbSamples, output, destPos);
+    }
+
+    /**
+     * Copy a part of the windowed samples at a given position of another buffer, one arraycopy per channel
+     *
+     * @param from      index in the current window
+     * @param nbSamples how many samples to copy
+     * @param output    destination buffer, per channel
+     * @param destPos   position in the destination buffer
+     */
+    public void copyTo(int from, int nbSamples, double[][] output, int destPos) {
+        for (int ch = 0; ch < nbChannels; ch++) {
+            System.arraycopy(samples[ch], getRawSampleIndex(from), output[ch], destPos, nbSamples);
+        }
+    }
+
     /**
      * Apply a linear fade in to the windowed samples
      */
@@ -0,0 +1,19 @@
+package com.hypercube.workshop.audioworkshop.api.consumer;
+
+/**
+ * Read access to a view of samples, whatever their precision
+ * <p>Implemented by {@link SampleBuffer} and {@link FloatSampleBuffer}, so a consumer can be written once for both,
+ * see {@link SampleViewConsumer}</p>
+ */
+public interface SampleView {
+    int nbSamples();
+
+    int nbChannels();
+
+    /**
+     * @param channel Audio channel
+     * @param index   Position in the view
+     * @return the sample value in double precision
+     */
+    double get(int channel, int index);
+}
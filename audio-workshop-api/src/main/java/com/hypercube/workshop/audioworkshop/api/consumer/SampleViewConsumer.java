@@ -0,0 +1,25 @@
+package com.hypercube.workshop.audioworkshop.api.consumer;
+
+/**
+ * Consumer available in double and float mode with a single implementation of the sample loop
+ * <p>Both {@code onBuffer} methods go to {@link #onSamples(SampleView)}. Use it when the processing is done in double
+ * precision anyway, otherwise implement {@link SampleBufferConsumer} and {@link FloatSampleBufferConsumer} separately.</p>
+ */
+public interface SampleViewConsumer extends SampleBufferConsumer, FloatSampleBufferConsumer {
+    @Override
+    default void reset() {
+        // DO NOTHING BY DEFAULT
+    }
+
+    void onSamples(SampleView samples);
+
+    @Override
+    default void onBuffer(SampleBuffer buffer) {
+        onSamples(buffer);
+    }
+
+    @Override
+    default void onBuffer(FloatSampleBuffer buffer) {
+        onSamples(buffer);
+    }
+}
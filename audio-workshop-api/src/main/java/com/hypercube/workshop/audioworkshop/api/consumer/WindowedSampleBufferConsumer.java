@@ -3,6 +3,7 @@ package com.hypercube.workshop.audioworkshop.api.consumer;
 /**
  * Transform a stream of buffers with given size in another stream with different samples size
  * <p>sampleIncrement != windowSizeInSamples can be used to reuse previous samples (very usefull for FFT)</p>
+ * <p>See {@link RingWindowedSampleBufferConsumer} for a version which does not copy the overlap for each window</p>
  */
 public class WindowedSampleBufferConsumer implements SampleBufferConsumer {
     protected final int windowSizeInSamples;
@@ -39,12 +40,8 @@ public class WindowedSampleBufferConsumer implements SampleBufferConsumer {
         // yyyyyyyyzzzzzzzzzzzzzzzzz : sampleIncrement is samples (y) in the entire window
         // zzzzzzzzzzzzzzzzz         : overlap is the amount of samples we reuse (z) and slide the the begining
         int overlap = windowSizeInSamples - sampleIncrement;
-        for (int s = 0; s < overlap; s++) {
-            {
-                for (int ch = 0; ch < nbChannels; ch++) {
-                    samples[ch][s] = samples[ch][s + sampleIncrement];
-                }
-            }
+        for (int ch = 0; ch < nbChannels; ch++) {
+            System.arraycopy(samples[ch], sampleIncrement, samples[ch], 0, overlap);
         }
         // we put the write head just after the slided samples
         nbSamplesRead = overlap;
@@ -40,4 +40,8 @@ public class PCMBufferFormat extends PCMFormat {
     public double[][] allocateSampleBuffer() {
         return new double[nbChannels][sampleBufferSize];
     }
+
+    public float[][] allocateFloatSampleBuffer() {
+        return new float[nbChannels][sampleBufferSize];
+    }
 }
@@ -0,0 +1,110 @@
+package com.hypercube.workshop.audioworkshop.api.insights;
+
+import com.hypercube.workshop.audioworkshop.api.consumer.SampleView;
+import com.hypercube.workshop.audioworkshop.api.consumer.SampleViewConsumer;
+import com.hypercube.workshop.audioworkshop.api.insights.peak.SlidingMax;
+import com.hypercube.workshop.audioworkshop.api.insights.rms.SlidingRMS;
+import lombok.Getter;
+
+/**
+ * RMS and peak of each channel over a sliding window, reported every {@link #hopSize} samples
+ * <p>Unlike {@link com.hypercube.workshop.audioworkshop.api.consumer.WindowedSampleBufferConsumer}, the window is never
+ * copied nor recomputed: each sample updates a {@link SlidingRMS} and a {@link SlidingMax} in constant time. So the window
+ * length, the hop size and the size of the incoming buffers are independent, a hop of 1 gives a sample accurate envelope
+ * for the same cost.</p>
+ * <p>The first hops are reported before the window is full, see {@link #isFull()}.</p>
+ */
+public class SlidingEnvelope implements SampleViewConsumer {
+    @Getter
+    private final int nbChannels;
+    @Getter
+    private final int windowSize;
+    @Getter
+    private final int hopSize;
+    private final SlidingRMS[] rms;
+    private final SlidingMax[] peaks;
+    private final SlidingEnvelopeListener listener;
+    /**
+     * Samples received since the last reset
+     */
+    @Getter
+    private long position;
+    private int positionInHop;
+
+    public SlidingEnvelope(int nbChannels, int windowSize, int hopSize, SlidingEnvelopeListener listener) {
+        if (hopSize <= 0) {
+            throw new IllegalArgumentException("hopSize must be positive: " + hopSize);
+        }
+        this.nbChannels = nbChannels;
+        this.windowSize = windowSize;
+        this.hopSize = hopSize;
+        this.listener = listener;
+        rms = new SlidingRMS[nbChannels];
+        peaks = new SlidingMax[nbChannels];
+        for (int c = 0; c < nbChannels; c++) {
+            rms[c] = new SlidingRMS(windowSize);
+            peaks[c] = new SlidingMax(windowSize);
+        }
+    }
+
+    @Override
+    public void reset() {
+        for (int c = 0; c < nbChannels; c++) {
+            rms[c].reset();
+            peaks[c].reset();
+        }
+        position = 0;
+        positionInHop = 0;
+    }
+
+    @Override
+    public void onSamples(SampleView buffer) {
+        int s = 0;
+        while (s < buffer.nbSamples()) {
+            int count = Math.min(buffer.nbSamples() - s, hopSize - positionInHop);
+            for (int c = 0; c < nbChannels; c++) {
+                SlidingRMS channelRms = rms[c];
+                SlidingMax channelPeak = peaks[c];
+                for (int i = s; i < s + count; i++) {
+                    double sample = buffer.get(c, i);
+                    channelRms.add(sample);
+                    channelPeak.add(Math.abs(sample));
+                }
+            }
+            s += count;
+            advance(count);
+        }
+    }
+
+    private void advance(int count) {
+        position += count;
+        positionInHop += count;
+        if (positionInHop == hopSize) {
+            positionInHop = 0;
+            listener.onHop(position, this);
+        }
+    }
+
+    public boolean isFull() {
+        return position >= windowSize;
+    }
+
+    public double getRMS(int channel) {
+        return rms[channel].getRMS();
+    }
+
+    public double getPeak(int channel) {
+        return peaks[channel].getMax();
+    }
+
+    /**
+     * @return the highest peak of all channels
+     */
+    public double getPeak() {
+        double peak = 0;
+        for (int c = 0; c < nbChannels; c++) {
+            peak = Math.max(peak, peaks[c].getMax());
+        }
+        return peak;
+    }
+}
@@ -0,0 +1,13 @@
+package com.hypercube.workshop.audioworkshop.api.insights;
+
+/**
+ * Receive the state of a {@link SlidingEnvelope} every hop
+ */
+@FunctionalInterface
+public interface SlidingEnvelopeListener {
+    /**
+     * @param position position of the sample following the window, in samples since the last reset
+     * @param envelope RMS and peak of each channel for the window ending at this position
+     */
+    void onHop(long position, SlidingEnvelope envelope);
+}
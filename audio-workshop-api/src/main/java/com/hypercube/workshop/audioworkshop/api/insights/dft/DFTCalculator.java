@@ -6,5 +6,9 @@ import com.hypercube.workshop.audioworkshop.api.format.PCMBufferFormat;
 public interface DFTCalculator extends SampleBufferConsumer {
     PCMBufferFormat getFormat();
 
+    /**
+     * @return the spectrums of each channel, oldest first. They belong to the calculator, which may reuse their arrays
+     * for the next spectrums: copy the ones you want to keep
+     */
     java.util.List<DFTResult>[] getMagnitudes();
 }
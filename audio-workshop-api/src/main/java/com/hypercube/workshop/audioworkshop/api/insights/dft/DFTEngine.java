@@ -0,0 +1,36 @@
+package com.hypercube.workshop.audioworkshop.api.insights.dft;
+
+import com.hypercube.workshop.audioworkshop.api.format.PCMBufferFormat;
+import com.hypercube.workshop.audioworkshop.api.insights.dft.fast.FFTCalculator;
+import com.hypercube.workshop.audioworkshop.api.insights.dft.fast.JavaFFTCalculator;
+import com.hypercube.workshop.audioworkshop.api.insights.dft.slow.SimpleDFTCalculator;
+import com.hypercube.workshop.audioworkshop.api.insights.dft.windows.DFTWindowGenerator;
+
+/**
+ * Select the implementation of {@link DFTCalculator}
+ * <pre>
+ * DFTCalculator dftCalculator = DFTEngine.JAVA_FFT.create(format, new BlackmanHarris());
+ * </pre>
+ */
+public enum DFTEngine {
+    /**
+     * {@link SimpleDFTCalculator}: naive O(n²) DFT, only usefull as a reference
+     */
+    SIMPLE,
+    /**
+     * {@link FFTCalculator}: FFTW via JNI, don't forget to close it
+     */
+    FFTW,
+    /**
+     * {@link JavaFFTCalculator}: pure Java FFT
+     */
+    JAVA_FFT;
+
+    public DFTCalculator create(PCMBufferFormat format, DFTWindowGenerator dftWindowGenerator) {
+        return switch (this) {
+            case SIMPLE -> new SimpleDFTCalculator(format, dftWindowGenerator);
+            case FFTW -> new FFTCalculator(format, dftWindowGenerator);
+            case JAVA_FFT -> new JavaFFTCalculator(format, dftWindowGenerator);
+        };
+    }
+}
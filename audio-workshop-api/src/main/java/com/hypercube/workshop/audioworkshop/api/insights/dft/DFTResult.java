@@ -12,6 +12,14 @@ public class DFTResult {
         this.magnitudes = new double[nbBin];
     }
 
+    /**
+     * Wrap an existing array of magnitudes, without copy
+     */
+    public DFTResult(double[] magnitudes) {
+        this.nbBin = magnitudes.length;
+        this.magnitudes = magnitudes;
+    }
+
     public void setMagnitude(int bin, double magnitude) {
         magnitudes[bin] = magnitude;
     }
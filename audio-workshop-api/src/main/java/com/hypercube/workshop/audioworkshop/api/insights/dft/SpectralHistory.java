@@ -0,0 +1,170 @@
+package com.hypercube.workshop.audioworkshop.api.insights.dft;
+
+import lombok.Getter;
+
+import java.util.AbstractList;
+
+/**
+ * Last spectrums computed for one channel, stored in a ring buffer
+ * <p>This is a read-only {@link java.util.List}: {@code get(0)} is the oldest spectrum and {@code getLast()} the most recent one.</p>
+ * <ul>
+ *     <li>The magnitudes are stored in linear scale, in arrays which are reused when the ring is full. So a
+ *     {@link DFTResult} read from a full history is only valid until the next spectrum is added, copy it to keep it.
+ *     {@link #clear()} gives the arrays away, the spectrums read before stay untouched.</li>
+ *     <li>When {@link #decibels} is set, the conversion to dB is done when a spectrum is read, and only once per spectrum.</li>
+ *     <li>With {@link #UNBOUNDED} capacity, nothing is forgotten and the ring grows like an {@link java.util.ArrayList}.
+ *     In dB, the conversion is then done in place, so the memory is not doubled: the linear magnitudes of a spectrum are
+ *     lost once it has been read.</li>
+ * </ul>
+ */
+public class SpectralHistory extends AbstractList<DFTResult> {
+    public static final int UNBOUNDED = Integer.MAX_VALUE;
+    private static final int INITIAL_SLOTS = 16;
+
+    @Getter
+    private final int capacity;
+    @Getter
+    private final boolean decibels;
+    /**
+     * Unbounded histories in dB have no linear copy
+     */
+    private final boolean inPlace;
+    private double[][] linear;
+    private DFTResult[] results;
+    private boolean[] converted;
+    /**
+     * Slot of the oldest spectrum
+     */
+    private int first;
+    private int size;
+
+    public SpectralHistory(int capacity, boolean decibels) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Illegal capacity for the spectral history: " + capacity);
+        }
+        this.capacity = capacity;
+        this.decibels = decibels;
+        this.inPlace = decibels && capacity == UNBOUNDED;
+        allocateSlots();
+    }
+
+    private void allocateSlots() {
+        int nbSlots = Math.min(capacity, INITIAL_SLOTS);
+        linear = new double[nbSlots][];
+        results = new DFTResult[nbSlots];
+        converted = new boolean[nbSlots];
+        first = 0;
+        size = 0;
+    }
+
+    /**
+     * One history per channel
+     */
+    public static SpectralHistory[] create(int nbChannels, int capacity, boolean decibels) {
+        SpectralHistory[] history = new SpectralHistory[nbChannels];
+        for (int ch = 0; ch < nbChannels; ch++) {
+            history[ch] = new SpectralHistory(capacity, decibels);
+        }
+        return history;
+    }
+
+    /**
+     * Add a new spectrum, the oldest one is forgotten if the history is full
+     *
+     * @param nbBins number of frequency bins
+     * @return the array to fill with the linear magnitudes of the new spectrum
+     */
+    public double[] add(int nbBins) {
+        if (size == linear.length && size < capacity) {
+            grow();
+        }
+        int slot;
+        if (size == linear.length) {
+            slot = first;
+            first = (first + 1) % linear.length;
+        } else {
+            slot = (first + size) % linear.length;
+            size++;
+        }
+        if (linear[slot] == null || linear[slot].length != nbBins) {
+            linear[slot] = new double[nbBins];
+            results[slot] = decibels && !inPlace ? new DFTResult(nbBins) : new DFTResult(linear[slot]);
+        }
+        converted[slot] = false;
+        return linear[slot];
+    }
+
+    private void grow() {
+        int nbSlots = (int) Math.min(capacity, linear.length * 2L);
+        double[][] newLinear = new double[nbSlots][];
+        DFTResult[] newResults = new DFTResult[nbSlots];
+        boolean[] newConverted = new boolean[nbSlots];
+        for (int i = 0; i < size; i++) {
+            int slot = (first + i) % linear.length;
+            newLinear[i] = linear[slot];
+            newResults[i] = results[slot];
+            newConverted[i] = converted[slot];
+        }
+        linear = newLinear;
+        results = newResults;
+        converted = newConverted;
+        first = 0;
+    }
+
+    private int slot(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index %d out of bounds for spectral history of size %d".formatted(index, size));
+        }
+        return (first + index) % linear.length;
+    }
+
+    /**
+     * @param index 0 for the oldest spectrum
+     * @return the spectrum, in dB if {@link #decibels} is set. It is owned by the history: once the ring is full,
+     * its magnitudes are overwritten by a later spectrum
+     */
+    @Override
+    public DFTResult get(int index) {
+        int slot = slot(index);
+        DFTResult result = results[slot];
+        if (decibels && !converted[slot]) {
+            double[] magnitudes = linear[slot];
+            for (int bin = 0; bin < magnitudes.length; bin++) {
+                result.setMagnitude(bin, toDb(magnitudes[bin]));
+            }
+            converted[slot] = true;
+        }
+        return result;
+    }
+
+    /**
+     * @param index 0 for the oldest spectrum
+     * @return the linear magnitudes of the spectrum
+     * @throws IllegalStateException if the spectrum was already converted in place to dB
+     */
+    public double[] getLinear(int index) {
+        int slot = slot(index);
+        if (inPlace && converted[slot]) {
+            throw new IllegalStateException("Spectrum %d was already converted to dB".formatted(index));
+        }
+        return linear[slot];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Forget all spectrums
+     * <p>New arrays are allocated for the next ones, so a caller still holding a previous spectrum keeps it intact.</p>
+     */
+    @Override
+    public void clear() {
+        allocateSlots();
+    }
+
+    public static double toDb(double magnitude) {
+        return ((double) 20) * Math.log10(magnitude + Double.MIN_VALUE);
+    }
+}
@@ -0,0 +1,13 @@
+package com.hypercube.workshop.audioworkshop.api.insights.dft;
+
+/**
+ * Receive each spectrum as soon as it is computed, instead of reading the history of the {@link DFTCalculator}
+ */
+@FunctionalInterface
+public interface SpectrumListener {
+    /**
+     * @param channel  audio channel
+     * @param spectrum magnitudes of the last window. The instance is reused for the next one so it must not be kept after the call
+     */
+    void onSpectrum(int channel, DFTResult spectrum);
+}
@@ -1,75 +1,98 @@
 package com.hypercube.workshop.audioworkshop.api.insights.dft.fast;
 
+import com.hypercube.workshop.audioworkshop.api.consumer.FloatSampleBuffer;
 import com.hypercube.workshop.audioworkshop.api.consumer.SampleBuffer;
+import com.hypercube.workshop.audioworkshop.api.consumer.SampleView;
+import com.hypercube.workshop.audioworkshop.api.consumer.SampleViewConsumer;
 import com.hypercube.workshop.audioworkshop.api.format.PCMBufferFormat;
 import com.hypercube.workshop.audioworkshop.api.insights.dft.DFTCalculator;
 import com.hypercube.workshop.audioworkshop.api.insights.dft.DFTResult;
+import com.hypercube.workshop.audioworkshop.api.insights.dft.SpectralHistory;
+import com.hypercube.workshop.audioworkshop.api.insights.dft.SpectrumListener;
 import com.hypercube.workshop.audioworkshop.api.insights.dft.windows.DFTWindowGenerator;
 import lombok.Getter;
-import org.bytedeco.fftw.global.fftw3;
-import org.bytedeco.javacpp.DoublePointer;
-import org.bytedeco.javacpp.Loader;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
-import static org.bytedeco.fftw.global.fftw3.*;
-
 /**
  * FFTW3 buffers are interleaved, this mean we have [r,i,r,i,r,i,r,i,r,i,r,i]
  * where r = real part of a sample and i = imaginary part of a sample
- * DoublePointer contains the input samples in this format
+ * <p>The calculator can be fed with {@link SampleBuffer} or {@link FloatSampleBuffer}, FFTW always works in double precision</p>
+ * <p>The plan comes from the {@link FFTWPlanCache} and transforms all channels in one call, so there is only one copy
+ * to native memory and one copy back per buffer. {@link #close()} give the plan back to the cache, {@link #reset()}
+ * takes one again.</p>
+ * <p>The spectrums are kept in a {@link SpectralHistory} per channel, in dB. By default the history is unbounded, for realtime
+ * usage a small capacity or a {@link SpectrumListener} must be used to not retain every spectrum.</p>
  */
-public class FFTCalculator implements DFTCalculator, AutoCloseable {
+public class FFTCalculator implements DFTCalculator, SampleViewConsumer, AutoCloseable {
 
     public static final int COMPLEX_SAMPLE_SIZE = 2;
-    private final double[] window;
-
-    {
-        Loader.load(org.bytedeco.fftw.global.fftw3.class);
-    }
+    private static final int REAL = 0;
+    private static final int IMAG = 1;
 
     @Getter
     private final PCMBufferFormat format;
+    private final int windowSize;
+    private final int nbBins;
+    private final double[] window;
+    /**
+     * Windowed samples of all channels, one after the other
+     */
+    private final double[] doubleInput;
+    /**
+     * Complex spectrums of all channels, one after the other
+     */
+    private final double[] doubleResult;
+    private final SpectralHistory[] magnitudes;
+    private final SpectrumListener listener;
+    private FFTWPlanCache.Plan plan;
 
-    private fftw3.fftw_plan[] plan;
-    private DoublePointer[] signal;
-    private DoublePointer[] fft;
-    private double[][] doubleInput;
-    private double[][] doubleResult;
+    public FFTCalculator(PCMBufferFormat format, DFTWindowGenerator dftWindowGenerator) {
+        this(format, dftWindowGenerator, SpectralHistory.UNBOUNDED);
+    }
 
-    private static final int REAL = 0;
-    private static final int IMAG = 1;
-    private static int windowSize;
-    private List<DFTResult>[] magnitudes;
+    /**
+     * @param historyCapacity how many spectrums are kept per channel
+     */
+    public FFTCalculator(PCMBufferFormat format, DFTWindowGenerator dftWindowGenerator, int historyCapacity) {
+        this(format, dftWindowGenerator, historyCapacity, null);
+    }
 
-    public FFTCalculator(PCMBufferFormat format, DFTWindowGenerator dftWindowGenerator) {
+    /**
+     * Callback mode: only the last spectrum is kept
+     *
+     * @param listener receive each spectrum
+     */
+    public FFTCalculator(PCMBufferFormat format, DFTWindowGenerator dftWindowGenerator, SpectrumListener listener) {
+        this(format, dftWindowGenerator, 1, listener);
+    }
+
+    private FFTCalculator(PCMBufferFormat format, DFTWindowGenerator dftWindowGenerator, int historyCapacity, SpectrumListener listener) {
         this.format = format;
         this.windowSize = format.getSampleBufferSize();
+        this.nbBins = windowSize / 2 + 1;
         this.window = dftWindowGenerator.generate(windowSize);
-        reset();
+        int nbChannels = format.getNbChannels();
+        this.doubleInput = new double[windowSize * nbChannels];
+        this.doubleResult = new double[COMPLEX_SAMPLE_SIZE * nbBins * nbChannels];
+        this.magnitudes = SpectralHistory.create(nbChannels, historyCapacity, true);
+        this.listener = listener;
+        this.plan = FFTWPlanCache.acquire(windowSize, nbChannels);
     }
 
+    /**
+     * Forget the previous spectrums, the FFTW plan is kept
+     * <p>The spectrums already read by the caller are not overwritten, see {@link SpectralHistory#clear()}</p>
+     * <p>After {@link #close()}, a plan is acquired again from the cache, so the calculator can be reused</p>
+     */
     @Override
     public void reset() {
-        close();
-        int nbChannels = format.getNbChannels();
-        signal = new DoublePointer[nbChannels];
-        fft = new DoublePointer[nbChannels];
-        plan = new fftw_plan[nbChannels];
-        doubleResult = new double[nbChannels][];
-        doubleInput = new double[nbChannels][];
-        magnitudes = new List[nbChannels];
-        for (int i = 0; i < nbChannels; i++) {
-            magnitudes[i] = new ArrayList<>();
+        for (SpectralHistory history : magnitudes) {
+            history.clear();
         }
-        for (int ch = 0; ch < nbChannels; ch++) {
-
-            signal[ch] = new DoublePointer(COMPLEX_SAMPLE_SIZE * windowSize);
-            fft[ch] = new DoublePointer(COMPLEX_SAMPLE_SIZE * windowSize);
-            doubleResult[ch] = new double[(int) signal[ch].capacity()];
-            doubleInput[ch] = new double[(int) signal[ch].capacity()];
-            plan[ch] = fftw_plan_dft_r2c_1d(windowSize, signal[ch], fft[ch], FFTW_ESTIMATE);
+        if (plan == null) {
+            plan = FFTWPlanCache.acquire(windowSize, format.getNbChannels());
         }
     }
 
@@ -79,42 +102,47 @@ public class FFTCalculator implements DFTCalculator, AutoCloseable {
     }
 
     @Override
-    public void onBuffer(SampleBuffer buffer) {
+    public void onSamples(SampleView buffer) {
+        int nbSamples = buffer.nbSamples();
         for (int ch = 0; ch < buffer.nbChannels(); ch++) {
-            for (int s = 0; s < buffer.nbSamples(); s++) {
-                double sample = buffer.sample(ch, s) * window[s];
-                doubleInput[ch][s] = sample;
+            int offset = ch * windowSize;
+            for (int s = 0; s < nbSamples; s++) {
+                doubleInput[offset + s] = buffer.get(ch, s) * window[s];
             }
-            signal[ch].put(doubleInput[ch]);
-            fftw_execute(plan[ch]);
-            fft[ch].get(doubleResult[ch]);
+            Arrays.fill(doubleInput, offset + nbSamples, offset + windowSize, 0);
+        }
+        computeMagnitudes(buffer.nbChannels(), nbSamples);
+    }
 
-            DFTResult r = new DFTResult(buffer.nbSamples() / 2);
-            double scale = 1.0;
-            for (int freqBin = 0; freqBin < buffer.nbSamples() / 2; freqBin++) {
-                double realPart = doubleResult[ch][COMPLEX_SAMPLE_SIZE * freqBin + REAL] * scale;
-                double imgPart = doubleResult[ch][COMPLEX_SAMPLE_SIZE * freqBin + IMAG] * scale;
-                double magnitude = Math.sqrt(realPart * realPart + imgPart * imgPart);
-                // toDB
-                magnitude = ((double) 20) * Math.log10(magnitude + Double.MIN_VALUE);
-                double freq = freqBin * (double) format.getSampleRate() / buffer.nbSamples();
-                //if (freq >= 420 && freq <= 450) {
-                //    System.out.println("Bin %d %.03fHz Magnitude: %.03f dB %f, ".formatted(freqBin, freq, magnitude, magnitude));
-                // }
-                r.setMagnitude(freqBin, magnitude);
+    /**
+     * Run the FFT on the windowed samples stored in {@link #doubleInput} for all channels
+     * <p>A partial buffer is padded with zeros</p>
+     */
+    private void computeMagnitudes(int nbChannels, int nbSamples) {
+        if (plan == null) {
+            throw new IllegalStateException("FFTCalculator is closed, call reset() to use it again");
+        }
+        plan.execute(doubleInput, doubleResult);
+        for (int ch = 0; ch < nbChannels; ch++) {
+            int offset = ch * COMPLEX_SAMPLE_SIZE * nbBins;
+            // linear magnitudes, the conversion to dB is done by the history when they are read
+            double[] r = magnitudes[ch].add(nbSamples / 2);
+            for (int freqBin = 0; freqBin < r.length; freqBin++) {
+                double realPart = doubleResult[offset + COMPLEX_SAMPLE_SIZE * freqBin + REAL];
+                double imgPart = doubleResult[offset + COMPLEX_SAMPLE_SIZE * freqBin + IMAG];
+                r[freqBin] = Math.sqrt(realPart * realPart + imgPart * imgPart);
+            }
+            if (listener != null) {
+                listener.onSpectrum(ch, magnitudes[ch].getLast());
             }
-            magnitudes[ch].add(r);
         }
     }
 
     @Override
     public void close() {
         if (plan != null) {
-            for (int ch = 0; ch < format.getNbChannels(); ch++) {
-                if (plan[ch] != null) {
-                    fftw_destroy_plan(plan[ch]);
-                }
-            }
+            FFTWPlanCache.release(plan);
+            plan = null;
         }
     }
 }
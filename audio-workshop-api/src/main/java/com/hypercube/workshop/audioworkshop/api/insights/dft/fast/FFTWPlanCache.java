@@ -0,0 +1,194 @@
+package com.hypercube.workshop.audioworkshop.api.insights.dft.fast;
+
+import com.hypercube.workshop.audioworkshop.api.errors.AudioError;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bytedeco.fftw.global.fftw3;
+import org.bytedeco.javacpp.DoublePointer;
+import org.bytedeco.javacpp.Loader;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.bytedeco.fftw.global.fftw3.*;
+
+/**
+ * Process-wide cache of FFTW plans, keyed by window size, number of channels and {@link FFTWPlanning}
+ * <ul>
+ *     <li>A plan transforms all the channels in one call ({@code fftw_plan_many_dft_r2c}), the channels are contiguous in its input buffer.</li>
+ *     <li>A plan and its native buffers are used by one {@link FFTCalculator} at a time: {@link #acquire} gives a free one
+ *     or create a new one, {@link #release} put it back in the cache. So {@link FFTCalculator#reset()} no longer rebuild anything.</li>
+ *     <li>The FFTW planner is not thread safe, so everything is synchronized here. {@code fftw_execute} can be called without lock.</li>
+ * </ul>
+ * <p>The planning is {@link FFTWPlanning#ESTIMATE} by default. With MEASURE or PATIENT, the wisdom should be stored in a
+ * file so the plans are measured only once per machine:</p>
+ * <pre>
+ * -Daudioworkshop.fftw.planning=MEASURE -Daudioworkshop.fftw.wisdom=fftw.wisdom
+ * </pre>
+ * <p>The wisdom file is imported the first time a plan is created, and exported each time a new plan is measured.</p>
+ */
+@Slf4j
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class FFTWPlanCache {
+    public static final String PLANNING_PROPERTY = "audioworkshop.fftw.planning";
+    public static final String WISDOM_PROPERTY = "audioworkshop.fftw.wisdom";
+
+    private static final Map<Key, List<Plan>> freePlans = new HashMap<>();
+    private static FFTWPlanning defaultPlanning = parsePlanning(System.getProperty(PLANNING_PROPERTY));
+    private static File wisdomFile = System.getProperty(WISDOM_PROPERTY) == null ? null : new File(System.getProperty(WISDOM_PROPERTY));
+    private static boolean wisdomLoaded;
+
+    static {
+        Loader.load(fftw3.class);
+    }
+
+    /**
+     * A typo in the system property must not break the class initialization, so it is only logged
+     */
+    private static FFTWPlanning parsePlanning(String value) {
+        if (value == null || value.isBlank()) {
+            return FFTWPlanning.ESTIMATE;
+        }
+        try {
+            return FFTWPlanning.valueOf(value.trim()
+                    .toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            log.warn("Unknown FFTW planning '{}' in -D{}, expected one of {}, using {}", value, PLANNING_PROPERTY,
+                    Arrays.toString(FFTWPlanning.values()), FFTWPlanning.ESTIMATE);
+            return FFTWPlanning.ESTIMATE;
+        }
+    }
+
+    private record Key(int windowSize, int nbChannels, FFTWPlanning planning) {
+    }
+
+    /**
+     * A FFTW plan with its native buffers
+     */
+    public static final class Plan {
+        private final Key key;
+        private final fftw_plan fftwPlan;
+        private final DoublePointer input;
+        private final DoublePointer output;
+
+        private Plan(Key key) {
+            this.key = key;
+            int nbBins = key.windowSize() / 2 + 1;
+            input = new DoublePointer((long) key.windowSize() * key.nbChannels());
+            output = new DoublePointer((long) FFTCalculator.COMPLEX_SAMPLE_SIZE * nbBins * key.nbChannels());
+            int[] n = {key.windowSize()};
+            fftwPlan = fftw_plan_many_dft_r2c(1, n, key.nbChannels(),
+                    input, null, 1, key.windowSize(),
+                    output, null, 1, nbBins,
+                    key.planning()
+                            .getFlags());
+            if (fftwPlan == null || fftwPlan.isNull()) {
+                throw new AudioError("Unable to create FFTW plan for " + key);
+            }
+        }
+
+        /**
+         * Run the FFT on all channels
+         *
+         * @param samples  real samples, channel after channel: {@code samples[ch * windowSize + s]}
+         * @param spectrum complex output, channel after channel: {@code windowSize / 2 + 1} interleaved [r,i] per channel
+         */
+        public void execute(double[] samples, double[] spectrum) {
+            input.put(samples);
+            fftw_execute(fftwPlan);
+            output.get(spectrum);
+        }
+
+        private void destroy() {
+            fftw_destroy_plan(fftwPlan);
+            input.close();
+            output.close();
+        }
+    }
+
+    /**
+     * Change the planning used by {@link #acquire(int, int)}
+     */
+    public static synchronized void setDefaultPlanning(FFTWPlanning planning) {
+        defaultPlanning = planning;
+    }
+
+    public static synchronized FFTWPlanning getDefaultPlanning() {
+        return defaultPlanning;
+    }
+
+    /**
+     * Change the file used to load and save the wisdom automatically, null to disable
+     */
+    public static synchronized void setWisdomFile(File file) {
+        wisdomFile = file;
+        wisdomLoaded = false;
+    }
+
+    public static Plan acquire(int windowSize, int nbChannels) {
+        return acquire(windowSize, nbChannels, getDefaultPlanning());
+    }
+
+    /**
+     * Get a free plan from the cache, or create it
+     */
+    public static synchronized Plan acquire(int windowSize, int nbChannels, FFTWPlanning planning) {
+        Key key = new Key(windowSize, nbChannels, planning);
+        List<Plan> plans = freePlans.get(key);
+        if (plans != null && !plans.isEmpty()) {
+            return plans.removeLast();
+        }
+        if (wisdomFile != null && !wisdomLoaded) {
+            wisdomLoaded = true;
+            if (wisdomFile.exists()) {
+                importWisdom(wisdomFile);
+            }
+        }
+        long start = System.nanoTime();
+        Plan plan = new Plan(key);
+        if (planning != FFTWPlanning.ESTIMATE) {
+            log.info("FFTW plan {} created in {} ms", key, (System.nanoTime() - start) / 1_000_000);
+            if (wisdomFile != null) {
+                exportWisdom(wisdomFile);
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * Put back a plan in the cache
+     */
+    public static synchronized void release(Plan plan) {
+        freePlans.computeIfAbsent(plan.key, k -> new ArrayList<>())
+                .add(plan);
+    }
+
+    /**
+     * Destroy all the free plans
+     */
+    public static synchronized void clear() {
+        freePlans.values()
+                .forEach(plans -> plans.forEach(Plan::destroy));
+        freePlans.clear();
+    }
+
+    public static synchronized void importWisdom(File file) {
+        if (fftw_import_wisdom_from_filename(file.getAbsolutePath()) == 0) {
+            log.warn("Unable to import FFTW wisdom from {}", file.getAbsolutePath());
+        } else {
+            log.info("FFTW wisdom imported from {}", file.getAbsolutePath());
+        }
+    }
+
+    public static synchronized void exportWisdom(File file) {
+        if (fftw_export_wisdom_to_filename(file.getAbsolutePath()) == 0) {
+            throw new AudioError("Unable to export FFTW wisdom to " + file.getAbsolutePath());
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.hypercube.workshop.audioworkshop.api.insights.dft.fast;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import static org.bytedeco.fftw.global.fftw3.*;
+
+/**
+ * How much time FFTW spends to find the fastest plan
+ * <p>MEASURE and PATIENT run real FFTs during the planning, which can take seconds for big sizes. This is why the
+ * result should be saved in a wisdom file, see {@link FFTWPlanCache}</p>
+ */
+@Getter
+@RequiredArgsConstructor
+public enum FFTWPlanning {
+    ESTIMATE(FFTW_ESTIMATE),
+    MEASURE(FFTW_MEASURE),
+    PATIENT(FFTW_PATIENT);
+
+    private final int flags;
+}
@@ -0,0 +1,106 @@
+package com.hypercube.workshop.audioworkshop.api.insights.dft.fast;
+
+import com.hypercube.workshop.audioworkshop.api.consumer.SampleView;
+import com.hypercube.workshop.audioworkshop.api.consumer.SampleViewConsumer;
+import com.hypercube.workshop.audioworkshop.api.format.PCMBufferFormat;
+import com.hypercube.workshop.audioworkshop.api.insights.dft.DFTCalculator;
+import com.hypercube.workshop.audioworkshop.api.insights.dft.DFTResult;
+import com.hypercube.workshop.audioworkshop.api.insights.dft.SpectralHistory;
+import com.hypercube.workshop.audioworkshop.api.insights.dft.SpectrumListener;
+import com.hypercube.workshop.audioworkshop.api.insights.dft.windows.DFTWindowGenerator;
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Same as {@link FFTCalculator} with {@link RealFFT} instead of FFTW: no native library and no copy to native memory
+ * <p>The results are the same as FFTW, up to the floating point rounding. The spectrums are kept the same way, see {@link SpectralHistory}</p>
+ */
+public class JavaFFTCalculator implements DFTCalculator, SampleViewConsumer {
+    private static final int REAL = 0;
+    private static final int IMAG = 1;
+
+    @Getter
+    private final PCMBufferFormat format;
+    private final int windowSize;
+    private final double[] window;
+    private final RealFFT fft;
+    private final double[] input;
+    private final double[] result;
+    private final SpectralHistory[] magnitudes;
+    private final SpectrumListener listener;
+
+    public JavaFFTCalculator(PCMBufferFormat format, DFTWindowGenerator dftWindowGenerator) {
+        this(format, dftWindowGenerator, SpectralHistory.UNBOUNDED);
+    }
+
+    /**
+     * @param historyCapacity how many spectrums are kept per channel
+     */
+    public JavaFFTCalculator(PCMBufferFormat format, DFTWindowGenerator dftWindowGenerator, int historyCapacity) {
+        this(format, dftWindowGenerator, historyCapacity, null);
+    }
+
+    /**
+     * Callback mode: only the last spectrum is kept
+     *
+     * @param listener receive each spectrum
+     */
+    public JavaFFTCalculator(PCMBufferFormat format, DFTWindowGenerator dftWindowGenerator, SpectrumListener listener) {
+        this(format, dftWindowGenerator, 1, listener);
+    }
+
+    private JavaFFTCalculator(PCMBufferFormat format, DFTWindowGenerator dftWindowGenerator, int historyCapacity, SpectrumListener listener) {
+        this.format = format;
+        this.magnitudes = SpectralHistory.create(format.getNbChannels(), historyCapacity, true);
+        this.listener = listener;
+        this.windowSize = format.getSampleBufferSize();
+        this.window = dftWindowGenerator.generate(windowSize);
+        this.fft = new RealFFT(windowSize);
+        this.input = new double[windowSize];
+        this.result = new double[FFTCalculator.COMPLEX_SAMPLE_SIZE * fft.getNbOutputBins()];
+        reset();
+    }
+
+    @Override
+    public void reset() {
+        for (SpectralHistory history : magnitudes) {
+            history.clear();
+        }
+    }
+
+    @Override
+    public List<DFTResult>[] getMagnitudes() {
+        return magnitudes;
+    }
+
+    @Override
+    public void onSamples(SampleView buffer) {
+        int nbSamples = buffer.nbSamples();
+        for (int ch = 0; ch < buffer.nbChannels(); ch++) {
+            for (int s = 0; s < nbSamples; s++) {
+                input[s] = buffer.get(ch, s) * window[s];
+            }
+            computeMagnitudes(ch, nbSamples);
+        }
+    }
+
+    /**
+     * Run the FFT on the windowed samples stored in {@link #input} for a given channel
+     * <p>A partial buffer is padded with zeros</p>
+     */
+    private void computeMagnitudes(int ch, int nbSamples) {
+        Arrays.fill(input, nbSamples, windowSize, 0);
+        fft.forward(input, result);
+        double[] r = magnitudes[ch].add(nbSamples / 2);
+        for (int freqBin = 0; freqBin < r.length; freqBin++) {
+            double realPart = result[FFTCalculator.COMPLEX_SAMPLE_SIZE * freqBin + REAL];
+            double imgPart = result[FFTCalculator.COMPLEX_SAMPLE_SIZE * freqBin + IMAG];
+            r[freqBin] = Math.sqrt(realPart * realPart + imgPart * imgPart);
+        }
+        if (listener != null) {
+            listener.onSpectrum(ch, magnitudes[ch].getLast());
+        }
+    }
+}
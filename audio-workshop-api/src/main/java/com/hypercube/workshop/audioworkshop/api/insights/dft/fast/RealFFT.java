@@ -0,0 +1,237 @@
+package com.hypercube.workshop.audioworkshop.api.insights.dft.fast;
+
+import lombok.Getter;
+
+/**
+ * Pure Java FFT of real samples, for a given size
+ * <p>The output uses the same layout as FFTW r2c: {@code size / 2 + 1} complex values interleaved [r,i,r,i,r,i...]</p>
+ * <ul>
+ *     <li>When the size is a power of 2, the real signal of size N is packed into a complex signal of size N/2
+ *     (even samples are the real part, odd samples the imaginary part) which goes through an iterative radix-2 FFT,
+ *     then the two interleaved spectrums are separated.</li>
+ *     <li>Otherwise, the Bluestein algorithm turns the DFT of size N into a convolution computed with radix-2 FFTs of size
+ *     {@code >= 2N-1}.</li>
+ * </ul>
+ * <p>Bit reversal, twiddles and chirps are computed once in the constructor, nothing is allocated by {@link #forward(double[], double[])}.
+ * An instance is not thread safe since it uses internal work buffers.</p>
+ */
+public final class RealFFT {
+    @Getter
+    private final int size;
+    /**
+     * Power of 2 case: complex FFT of size/2 and twiddles to split the spectrums
+     */
+    private final ComplexFFT halfFFT;
+    private final double[] splitCos;
+    private final double[] splitSin;
+    /**
+     * Bluestein case: complex FFT of size >= 2N-1, chirp and precomputed spectrum of the conjugated chirp
+     */
+    private final ComplexFFT bluesteinFFT;
+    private final double[] chirpCos;
+    private final double[] chirpSin;
+    private final double[] chirpSpectrumRe;
+    private final double[] chirpSpectrumIm;
+    private final double[] workRe;
+    private final double[] workIm;
+
+    public RealFFT(int size) {
+        if (size < 2) {
+            throw new IllegalArgumentException("Illegal FFT size: " + size);
+        }
+        this.size = size;
+        if (isPowerOfTwo(size)) {
+            int half = size / 2;
+            halfFFT = new ComplexFFT(half);
+            splitCos = new double[half];
+            splitSin = new double[half];
+            for (int k = 0; k < half; k++) {
+                double angle = -2 * Math.PI * k / size;
+                splitCos[k] = Math.cos(angle);
+                splitSin[k] = Math.sin(angle);
+            }
+            workRe = new double[half];
+            workIm = new double[half];
+            bluesteinFFT = null;
+            chirpCos = null;
+            chirpSin = null;
+            chirpSpectrumRe = null;
+            chirpSpectrumIm = null;
+        } else {
+            int m = Integer.highestOneBit(2 * size - 1);
+            if (m < 2 * size - 1) {
+                m <<= 1;
+            }
+            bluesteinFFT = new ComplexFFT(m);
+            chirpCos = new double[size];
+            chirpSin = new double[size];
+            chirpSpectrumRe = new double[m];
+            chirpSpectrumIm = new double[m];
+            for (int k = 0; k < size; k++) {
+                // k*k can overflow, but only k*k mod 2N matters
+                long k2 = ((long) k * k) % (2L * size);
+                double angle = -Math.PI * k2 / size;
+                chirpCos[k] = Math.cos(angle);
+                chirpSin[k] = Math.sin(angle);
+            }
+            // conjugated chirp, symmetric around 0
+            chirpSpectrumRe[0] = chirpCos[0];
+            chirpSpectrumIm[0] = -chirpSin[0];
+            for (int k = 1; k < size; k++) {
+                chirpSpectrumRe[k] = chirpSpectrumRe[m - k] = chirpCos[k];
+                chirpSpectrumIm[k] = chirpSpectrumIm[m - k] = -chirpSin[k];
+            }
+            bluesteinFFT.transform(chirpSpectrumRe, chirpSpectrumIm);
+            workRe = new double[m];
+            workIm = new double[m];
+            halfFFT = null;
+            splitCos = null;
+            splitSin = null;
+        }
+    }
+
+    public static boolean isPowerOfTwo(int n) {
+        return n > 0 && (n & (n - 1)) == 0;
+    }
+
+    /**
+     * @return how many complex values are produced by {@link #forward(double[], double[])}
+     */
+    public int getNbOutputBins() {
+        return size / 2 + 1;
+    }
+
+    /**
+     * Compute the DFT of real samples
+     *
+     * @param input  {@link #size} real samples
+     * @param output {@link #getNbOutputBins()} complex values, interleaved
+     */
+    public void forward(double[] input, double[] output) {
+        if (halfFFT != null) {
+            forwardPowerOfTwo(input, output);
+        } else {
+            forwardBluestein(input, output);
+        }
+    }
+
+    private void forwardPowerOfTwo(double[] input, double[] output) {
+        int half = size / 2;
+        for (int k = 0; k < half; k++) {
+            workRe[k] = input[2 * k];
+            workIm[k] = input[2 * k + 1];
+        }
+        halfFFT.transform(workRe, workIm);
+        // Z = FFT(even + i.odd), X[k] = E[k] + W^k.O[k]
+        // E[k] = (Z[k] + conj(Z[half-k]))/2, O[k] = (Z[k] - conj(Z[half-k]))/2i
+        output[0] = workRe[0] + workIm[0];
+        output[1] = 0;
+        output[2 * half] = workRe[0] - workIm[0];
+        output[2 * half + 1] = 0;
+        for (int k = 1; k < half; k++) {
+            double zr = workRe[k];
+            double zi = workIm[k];
+            double cr = workRe[half - k];
+            double ci = -workIm[half - k];
+            double er = (zr + cr) * 0.5;
+            double ei = (zi + ci) * 0.5;
+            // (z - c) / 2i = (zi - ci)/2 - i (zr - cr)/2
+            double or = (zi - ci) * 0.5;
+            double oi = -(zr - cr) * 0.5;
+            double wr = splitCos[k];
+            double wi = splitSin[k];
+            output[2 * k] = er + wr * or - wi * oi;
+            output[2 * k + 1] = ei + wr * oi + wi * or;
+        }
+    }
+
+    private void forwardBluestein(double[] input, double[] output) {
+        int m = workRe.length;
+        for (int k = 0; k < size; k++) {
+            workRe[k] = input[k] * chirpCos[k];
+            workIm[k] = input[k] * chirpSin[k];
+        }
+        for (int k = size; k < m; k++) {
+            workRe[k] = 0;
+            workIm[k] = 0;
+        }
+        bluesteinFFT.transform(workRe, workIm);
+        for (int k = 0; k < m; k++) {
+            double re = workRe[k] * chirpSpectrumRe[k] - workIm[k] * chirpSpectrumIm[k];
+            double im = workRe[k] * chirpSpectrumIm[k] + workIm[k] * chirpSpectrumRe[k];
+            // inverse FFT computed with the forward one: conj(FFT(conj(x)))
+            workRe[k] = re;
+            workIm[k] = -im;
+        }
+        bluesteinFFT.transform(workRe, workIm);
+        double scale = 1.0 / m;
+        int nbBins = getNbOutputBins();
+        for (int k = 0; k < nbBins; k++) {
+            double re = workRe[k] * scale;
+            double im = -workIm[k] * scale;
+            output[2 * k] = re * chirpCos[k] - im * chirpSin[k];
+            output[2 * k + 1] = re * chirpSin[k] + im * chirpCos[k];
+        }
+    }
+
+    /**
+     * In place iterative radix-2 FFT on separated real and imaginary parts
+     */
+    static final class ComplexFFT {
+        private final int size;
+        private final int[] bitReversal;
+        private final double[] cos;
+        private final double[] sin;
+
+        ComplexFFT(int size) {
+            if (!isPowerOfTwo(size)) {
+                throw new IllegalArgumentException("Radix-2 FFT size must be a power of 2: " + size);
+            }
+            this.size = size;
+            int bits = Integer.numberOfTrailingZeros(size);
+            bitReversal = new int[size];
+            for (int i = 0; i < size; i++) {
+                bitReversal[i] = bits == 0 ? 0 : Integer.reverse(i) >>> (32 - bits);
+            }
+            cos = new double[Math.max(1, size / 2)];
+            sin = new double[Math.max(1, size / 2)];
+            for (int k = 0; k < size / 2; k++) {
+                double angle = -2 * Math.PI * k / size;
+                cos[k] = Math.cos(angle);
+                sin[k] = Math.sin(angle);
+            }
+        }
+
+        void transform(double[] re, double[] im) {
+            for (int i = 0; i < size; i++) {
+                int j = bitReversal[i];
+                if (j > i) {
+                    double t = re[i];
+                    re[i] = re[j];
+                    re[j] = t;
+                    t = im[i];
+                    im[i] = im[j];
+                    im[j] = t;
+                }
+            }
+            for (int len = 2; len <= size; len <<= 1) {
+                int halfLen = len >> 1;
+                int step = size / len;
+                for (int i = 0; i < size; i += len) {
+                    for (int j = 0, t = 0; j < halfLen; j++, t += step) {
+                        int a = i + j;
+                        int b = a + halfLen;
+                        double wr = cos[t];
+                        double wi = sin[t];
+                        double br = re[b] * wr - im[b] * wi;
+                        double bi = re[b] * wi + im[b] * wr;
+                        re[b] = re[a] - br;
+                        im[b] = im[a] - bi;
+                        re[a] += br;
+                        im[a] += bi;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.hypercube.workshop.audioworkshop.api.insights.dft.gradient;
+
+/**
+ * Vertical axis of a spectrogram, see {@link SpectrogramRenderer}
+ */
+public enum FrequencyScale {
+    /**
+     * Each row covers the same number of FFT bins
+     */
+    LINEAR,
+    /**
+     * Each row covers the same musical interval, from the first bin above DC to the Nyquist frequency
+     */
+    LOGARITHMIC
+}
@@ -3,59 +3,24 @@ package com.hypercube.workshop.audioworkshop.api.insights.dft.gradient;
 import com.hypercube.workshop.audioworkshop.api.insights.dft.DFTResult;
 import lombok.RequiredArgsConstructor;
 
-import javax.imageio.ImageIO;
-import java.awt.*;
-import java.awt.image.BufferedImage;
-import java.awt.image.VolatileImage;
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
 
 @RequiredArgsConstructor
 public class SpectrogramGenerator {
-    private final GradientGenerator gradient = GradientGenerator.fftGradient();
-
     public void generate(int bitdepth, List<DFTResult> signal, File pngFile, int outputWidth, int outputHeight) throws IOException {
         // dBFS = 20 * log( [sample level] / [max level] )
-        double minDbFS = 20 * Math.log10(1.0 / (double) ((1 << bitdepth) / 2));
+        double minDbFS = SpectrogramRenderer.minDbFS(bitdepth);
         double maxDbFS = 0;
 
         if (!signal.isEmpty()) {
-            int width = signal.size();
-            int height = signal.get(0)
-                    .getNbBin();
-            BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-            for (int x = 0; x < width; x++) {
-                DFTResult r = signal.get(x);
-                for (int y = 0; y < r.getNbBin(); y++) {
-                    double percent = dbToPercent(minDbFS, maxDbFS, r.getMagnitudes()[y]);
-                    var color = gradient.interpolate(percent);
-                    image.setRGB(x, height - y - 1, color.toRGB24());
-                }
+            SpectrogramRenderer renderer = new SpectrogramRenderer(outputWidth, outputHeight, signal.get(0)
+                    .getNbBin(), signal.size(), minDbFS, maxDbFS, FrequencyScale.LINEAR, SpectrogramPooling.MEAN);
+            for (DFTResult r : signal) {
+                renderer.addFrame(r.getMagnitudes(), r.getNbBin());
             }
-
-            Image scaledInstance = image.getScaledInstance(outputWidth, outputHeight, BufferedImage.SCALE_AREA_AVERAGING);
-            ImageIO.write(toBufferedImage(scaledInstance), "png", pngFile);
+            renderer.save(pngFile);
         }
     }
-
-    public BufferedImage toBufferedImage(final Image image) {
-        if (image instanceof BufferedImage)
-            return (BufferedImage) image;
-        if (image instanceof VolatileImage)
-            return ((VolatileImage) image).getSnapshot();
-        final BufferedImage buffImg = new BufferedImage(image.getWidth(null), image.getHeight(null), BufferedImage.TYPE_INT_RGB);
-        final Graphics2D g2 = buffImg.createGraphics();
-        g2.drawImage(image, null, null);
-        g2.dispose();
-        return buffImg;
-    }
-
-    private double dbToPercent(double minDbFS, double maxDbFS, double magnitudeDbFS) {
-        double result = magnitudeDbFS;
-        result = Math.max(result, minDbFS);
-        result = Math.min(result, maxDbFS);
-        result = (result - minDbFS) / (maxDbFS - minDbFS);
-        return result * 100.0;
-    }
 }
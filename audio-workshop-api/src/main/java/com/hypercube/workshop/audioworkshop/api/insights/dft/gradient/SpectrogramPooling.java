@@ -0,0 +1,16 @@
+package com.hypercube.workshop.audioworkshop.api.insights.dft.gradient;
+
+/**
+ * How the magnitudes falling in the same pixel are merged, see {@link SpectrogramRenderer}
+ */
+public enum SpectrogramPooling {
+    /**
+     * Keep the loudest, short transients stay visible when the spectrogram is zoomed out
+     */
+    MAX,
+    /**
+     * Average of the power, converted back to dB, closer to a downscaled image. A loud frame among many quiet ones
+     * still raises the pixel, which is not the case when the dB values are averaged
+     */
+    MEAN
+}
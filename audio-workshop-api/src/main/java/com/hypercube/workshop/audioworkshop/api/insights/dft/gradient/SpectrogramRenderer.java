@@ -0,0 +1,256 @@
+package com.hypercube.workshop.audioworkshop.api.insights.dft.gradient;
+
+import com.hypercube.workshop.audioworkshop.api.insights.dft.DFTResult;
+import com.hypercube.workshop.audioworkshop.api.insights.dft.SpectrumListener;
+import com.hypercube.workshop.audioworkshop.api.utils.ParallelTiles;
+import lombok.Getter;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Draw a spectrogram while the spectrums are computed, without keeping them
+ * <p>Each spectrum in dB goes directly to the pixels of the output image:</p>
+ * <ul>
+ *     <li>Frame {@code i} of {@link #nbFrames} covers the columns {@code [i*width/nbFrames, (i+1)*width/nbFrames[},
+ *     at least one</li>
+ *     <li>Each row covers a range of FFT bins, precomputed once for the {@link FrequencyScale}. Low frequencies are at the bottom</li>
+ *     <li>Bins and frames falling in the same pixel are merged with the {@link SpectrogramPooling}. For
+ *     {@link SpectrogramPooling#MEAN}, the power is averaged and converted back to dB when rendering</li>
+ * </ul>
+ * <p>So the memory only depends on the size of the image, not on the length of the audio. {@link #render()} converts the
+ * pixels to colors in horizontal tiles of {@link #TILE_HEIGHT} rows, in parallel with {@link ParallelTiles}.</p>
+ * <pre>
+ * var renderer = new SpectrogramRenderer(1000, 512, nbBins, nbFrames, minDbFS, 0, FrequencyScale.LOGARITHMIC, SpectrogramPooling.MAX);
+ * try (var fft = new FFTCalculator(format, new BlackmanHarris(), renderer)) {
+ *     inspector.inspect(new WindowedSampleBufferConsumer(windowSize, hop, nbChannels, fft));
+ * }
+ * renderer.save(pngFile);
+ * </pre>
+ * <p>Spectrums with fewer bins than expected (last partial window) only contribute to the rows they cover.</p>
+ */
+public class SpectrogramRenderer implements SpectrumListener {
+    public static final int TILE_HEIGHT = 64;
+    /**
+     * power = 10^(dB/10) = exp(dB * DB_TO_POWER)
+     */
+    private static final double DB_TO_POWER = Math.log(10) / 10;
+
+    @Getter
+    private final int width;
+    @Getter
+    private final int height;
+    @Getter
+    private final int nbBins;
+    @Getter
+    private final int nbFrames;
+    private final double minDbFS;
+    private final double maxDbFS;
+    @Getter
+    private final FrequencyScale frequencyScale;
+    @Getter
+    private final SpectrogramPooling pooling;
+    private final int channel;
+    private final GradientGenerator gradient = GradientGenerator.fftGradient();
+    /**
+     * First bin of each row, from top to bottom
+     */
+    private final int[] rowBinStart;
+    /**
+     * Last bin of each row, exclusive
+     */
+    private final int[] rowBinEnd;
+    /**
+     * Max of the magnitudes in dB, or sum of the powers, of each pixel, row by row like the raster
+     */
+    private final float[] pixels;
+    /**
+     * How many values were summed in each pixel, {@link SpectrogramPooling#MEAN} only
+     */
+    private final int[] counts;
+    /**
+     * Pooled magnitude of each row for the current frame, in dB or in power like {@link #pixels}
+     */
+    private final float[] rowValues;
+    /**
+     * How many frames were received so far
+     */
+    @Getter
+    private int frame;
+
+    /**
+     * @param nbBins   number of bins of each spectrum
+     * @param nbFrames how many spectrums will be received, usually the number of FFT windows
+     * @param minDbFS  magnitude drawn with the first color of the gradient
+     * @param maxDbFS  magnitude drawn with the last color of the gradient
+     */
+    public SpectrogramRenderer(int width, int height, int nbBins, int nbFrames, double minDbFS, double maxDbFS, FrequencyScale frequencyScale, SpectrogramPooling pooling) {
+        this(width, height, nbBins, nbFrames, minDbFS, maxDbFS, frequencyScale, pooling, 0);
+    }
+
+    /**
+     * @param channel audio channel to draw, the others are ignored
+     */
+    public SpectrogramRenderer(int width, int height, int nbBins, int nbFrames, double minDbFS, double maxDbFS, FrequencyScale frequencyScale, SpectrogramPooling pooling, int channel) {
+        if (width <= 0 || height <= 0 || nbBins < 2 || nbFrames <= 0) {
+            throw new IllegalArgumentException("Invalid spectrogram: %dx%d pixels, %d bins, %d frames".formatted(width, height, nbBins, nbFrames));
+        }
+        this.width = width;
+        this.height = height;
+        this.nbBins = nbBins;
+        this.nbFrames = nbFrames;
+        this.minDbFS = minDbFS;
+        this.maxDbFS = maxDbFS;
+        this.frequencyScale = frequencyScale;
+        this.pooling = pooling;
+        this.channel = channel;
+        rowBinStart = new int[height];
+        rowBinEnd = new int[height];
+        computeBinMap();
+        pixels = new float[width * height];
+        counts = pooling == SpectrogramPooling.MEAN ? new int[width * height] : null;
+        rowValues = new float[height];
+        reset();
+    }
+
+    /**
+     * Lowest magnitude for a given bit depth: dBFS = 20 * log( [sample level] / [max level] )
+     */
+    public static double minDbFS(int bitDepth) {
+        return 20 * Math.log10(1.0 / (double) ((1 << bitDepth) / 2));
+    }
+
+    private void computeBinMap() {
+        for (int row = 0; row < height; row++) {
+            // row 0 is at the bottom of the image
+            int y = height - row - 1;
+            int start;
+            int end;
+            if (frequencyScale == FrequencyScale.LINEAR) {
+                start = (int) ((long) row * nbBins / height);
+                end = (int) ((long) (row + 1) * nbBins / height);
+            } else {
+                // skip DC, which has no place on a log scale
+                start = (int) Math.floor(Math.pow(nbBins, (double) row / height));
+                end = (int) Math.floor(Math.pow(nbBins, (double) (row + 1) / height));
+            }
+            start = Math.min(start, nbBins - 1);
+            rowBinStart[y] = start;
+            rowBinEnd[y] = Math.min(nbBins, Math.max(end, start + 1));
+        }
+    }
+
+    /**
+     * Forget all frames
+     */
+    public void reset() {
+        Arrays.fill(pixels, pooling == SpectrogramPooling.MAX ? Float.NEGATIVE_INFINITY : 0);
+        if (counts != null) {
+            Arrays.fill(counts, 0);
+        }
+        frame = 0;
+    }
+
+    @Override
+    public void onSpectrum(int channel, DFTResult spectrum) {
+        if (channel == this.channel) {
+            addFrame(spectrum.getMagnitudes(), spectrum.getNbBin());
+        }
+    }
+
+    /**
+     * @param magnitudes in dB
+     */
+    public void addFrame(double[] magnitudes, int nbBin) {
+        int bins = Math.min(nbBin, nbBins);
+        for (int y = 0; y < height; y++) {
+            int start = rowBinStart[y];
+            int end = Math.min(rowBinEnd[y], bins);
+            float value = Float.NaN;
+            if (start < end) {
+                if (pooling == SpectrogramPooling.MAX) {
+                    double pooled = magnitudes[start];
+                    for (int bin = start + 1; bin < end; bin++) {
+                        pooled = Math.max(pooled, magnitudes[bin]);
+                    }
+                    value = (float) pooled;
+                } else {
+                    double power = 0;
+                    for (int bin = start; bin < end; bin++) {
+                        power += Math.exp(magnitudes[bin] * DB_TO_POWER);
+                    }
+                    value = (float) (power / (end - start));
+                }
+            }
+            rowValues[y] = value;
+        }
+        // frames beyond the expected count go to the last column
+        int f = Math.min(frame, nbFrames - 1);
+        int x0 = (int) ((long) f * width / nbFrames);
+        int x1 = Math.max(x0 + 1, (int) ((long) (f + 1) * width / nbFrames));
+        for (int y = 0; y < height; y++) {
+            float value = rowValues[y];
+            if (Float.isNaN(value)) {
+                continue;
+            }
+            int offset = y * width;
+            for (int x = x0; x < x1; x++) {
+                if (pooling == SpectrogramPooling.MAX) {
+                    pixels[offset + x] = Math.max(pixels[offset + x], value);
+                } else {
+                    pixels[offset + x] += value;
+                    counts[offset + x]++;
+                }
+            }
+        }
+        frame++;
+    }
+
+    /**
+     * Convert the pooled magnitudes to colors
+     */
+    public BufferedImage render() {
+        return render(Runtime.getRuntime()
+                .availableProcessors());
+    }
+
+    public BufferedImage render(int nbThreads) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        int[] rgb = ((DataBufferInt) image.getRaster()
+                .getDataBuffer()).getData();
+        ParallelTiles.render(height, TILE_HEIGHT, nbThreads, "spectrogram", (start, end) -> renderRows(rgb, start, end));
+        return image;
+    }
+
+    private void renderRows(int[] rgb, int startRow, int endRow) {
+        for (int i = startRow * width; i < endRow * width; i++) {
+            double magnitude;
+            if (pooling == SpectrogramPooling.MAX) {
+                magnitude = pixels[i];
+            } else {
+                magnitude = counts[i] == 0 ? Double.NEGATIVE_INFINITY : 10 * Math.log10(pixels[i] / counts[i]);
+            }
+            rgb[i] = gradient.interpolate(dbToPercent(magnitude))
+                    .toRGB24();
+        }
+    }
+
+    public void save(File pngFile) throws IOException {
+        ImageIO.write(render(), "png", pngFile);
+    }
+
+    private double dbToPercent(double magnitudeDbFS) {
+        if (Double.isNaN(magnitudeDbFS)) {
+            return 0;
+        }
+        double result = magnitudeDbFS;
+        result = Math.max(result, minDbFS);
+        result = Math.min(result, maxDbFS);
+        result = (result - minDbFS) / (maxDbFS - minDbFS);
+        return result * 100.0;
+    }
+}
@@ -0,0 +1,60 @@
+package com.hypercube.workshop.audioworkshop.api.insights.loudness;
+
+/**
+ * K-weighting of ITU-R BS.1770 for one channel: a high shelf modeling the head, followed by the RLB high pass
+ * <p>The standard only gives the coefficients at 48 kHz, they are derived here from the analog prototypes so any sample
+ * rate works. Both stages are biquads in transposed direct form II.</p>
+ */
+public class KWeightingFilter {
+    private static final double SHELF_FREQUENCY = 1681.974450955533;
+    private static final double SHELF_GAIN_DB = 3.999843853973347;
+    private static final double SHELF_Q = 0.7071752369554196;
+    private static final double HIGH_PASS_FREQUENCY = 38.13547087602444;
+    private static final double HIGH_PASS_Q = 0.5003270373238773;
+
+    private final double b0;
+    private final double b1;
+    private final double b2;
+    private final double a1;
+    private final double a2;
+    private final double hpA1;
+    private final double hpA2;
+    private double z1;
+    private double z2;
+    private double hpZ1;
+    private double hpZ2;
+
+    public KWeightingFilter(int sampleRate) {
+        double k = Math.tan(Math.PI * SHELF_FREQUENCY / sampleRate);
+        double vh = Math.pow(10, SHELF_GAIN_DB / 20);
+        double vb = Math.pow(vh, 0.4996667741545416);
+        double a0 = 1 + k / SHELF_Q + k * k;
+        b0 = (vh + vb * k / SHELF_Q + k * k) / a0;
+        b1 = 2 * (k * k - vh) / a0;
+        b2 = (vh - vb * k / SHELF_Q + k * k) / a0;
+        a1 = 2 * (k * k - 1) / a0;
+        a2 = (1 - k / SHELF_Q + k * k) / a0;
+        // the numerator of the high pass is 1, -2, 1
+        k = Math.tan(Math.PI * HIGH_PASS_FREQUENCY / sampleRate);
+        a0 = 1 + k / HIGH_PASS_Q + k * k;
+        hpA1 = 2 * (k * k - 1) / a0;
+        hpA2 = (1 - k / HIGH_PASS_Q + k * k) / a0;
+    }
+
+    public void reset() {
+        z1 = 0;
+        z2 = 0;
+        hpZ1 = 0;
+        hpZ2 = 0;
+    }
+
+    public double process(double sample) {
+        double shelf = b0 * sample + z1;
+        z1 = b1 * sample - a1 * shelf + z2;
+        z2 = b2 * sample - a2 * shelf;
+        double out = shelf + hpZ1;
+        hpZ1 = -2 * shelf - hpA1 * out + hpZ2;
+        hpZ2 = shelf - hpA2 * out;
+        return out;
+    }
+}
@@ -0,0 +1,259 @@
+package com.hypercube.workshop.audioworkshop.api.insights.loudness;
+
+import com.hypercube.workshop.audioworkshop.api.consumer.SampleView;
+import com.hypercube.workshop.audioworkshop.api.consumer.SampleViewConsumer;
+import com.hypercube.workshop.audioworkshop.api.format.PCMFormat;
+import lombok.Getter;
+
+import java.util.Arrays;
+
+/**
+ * EBU R128 loudness meter (ITU-R BS.1770-4, EBU Tech 3341 and 3342)
+ * <ul>
+ *     <li>Each channel goes through a {@link KWeightingFilter}, then its power is accumulated in sub-blocks of 100 ms</li>
+ *     <li>Momentary loudness: last 400 ms, short-term loudness: last 3 s, both updated every 100 ms</li>
+ *     <li>Integrated loudness: 400 ms blocks overlapping by 75%, with an absolute gate at -70 LUFS and a relative gate at -10 LU</li>
+ *     <li>Loudness range: distribution of the short-term loudness, with an absolute gate at -70 LUFS and a relative gate
+ *     at -20 LU, from the 10th to the 95th percentile</li>
+ * </ul>
+ * <p>The gated blocks are not kept: they go in histograms of {@link #HISTOGRAM_STEP} LU from -70 to +30 LUFS. The energy of
+ * each bin is summed, so the integrated loudness is exact except for the blocks in the bin of the relative gate. Nothing is
+ * allocated once the meter is built, it can run on a capture thread, or be {@link #reset()} between files of a batch.</p>
+ * <p>Channels follow the WAV order: with 6 channels (5.1), the LFE is ignored and the surrounds are weighted by 1.41.</p>
+ */
+public class LoudnessMeter implements SampleViewConsumer {
+    public static final double ABSOLUTE_GATE = -70;
+    public static final double HISTOGRAM_STEP = 0.1;
+    private static final double HISTOGRAM_MAX = 30;
+    private static final int NB_BINS = (int) Math.round((HISTOGRAM_MAX - ABSOLUTE_GATE) / HISTOGRAM_STEP);
+    private static final int MOMENTARY_SUB_BLOCKS = 4;
+    private static final int SHORT_TERM_SUB_BLOCKS = 30;
+
+    @Getter
+    private final int sampleRate;
+    @Getter
+    private final int nbChannels;
+    private final int subBlockSize;
+    private final double[] weights;
+    private final KWeightingFilter[] filters;
+    /**
+     * Weighted energy of the last sub-blocks, circular
+     */
+    private final double[] subBlocks = new double[SHORT_TERM_SUB_BLOCKS];
+    private final long[] blockCounts = new long[NB_BINS];
+    private final double[] blockEnergies = new double[NB_BINS];
+    private final long[] shortTermCounts = new long[NB_BINS];
+    private final double[] shortTermEnergies = new double[NB_BINS];
+    private double subBlockEnergy;
+    private int positionInSubBlock;
+    private long nbSubBlocks;
+    @Getter
+    private double momentaryLoudness;
+    @Getter
+    private double shortTermLoudness;
+    @Getter
+    private double maxMomentaryLoudness;
+    @Getter
+    private double maxShortTermLoudness;
+
+    public LoudnessMeter(PCMFormat format) {
+        this(format.getSampleRate(), format.getNbChannels());
+    }
+
+    public LoudnessMeter(int sampleRate, int nbChannels) {
+        this.sampleRate = sampleRate;
+        this.nbChannels = nbChannels;
+        subBlockSize = Math.max(1, Math.round(sampleRate / 10.0f));
+        weights = new double[nbChannels];
+        Arrays.fill(weights, 1.0);
+        if (nbChannels == 6) {
+            weights[3] = 0;
+            weights[4] = 1.41;
+            weights[5] = 1.41;
+        }
+        filters = new KWeightingFilter[nbChannels];
+        for (int c = 0; c < nbChannels; c++) {
+            filters[c] = new KWeightingFilter(sampleRate);
+        }
+        reset();
+    }
+
+    /**
+     * Change the weight of a channel, 0 to ignore it
+     */
+    public void setChannelWeight(int channel, double weight) {
+        weights[channel] = weight;
+    }
+
+    @Override
+    public void reset() {
+        for (KWeightingFilter filter : filters) {
+            filter.reset();
+        }
+        Arrays.fill(subBlocks, 0);
+        Arrays.fill(blockCounts, 0);
+        Arrays.fill(blockEnergies, 0);
+        Arrays.fill(shortTermCounts, 0);
+        Arrays.fill(shortTermEnergies, 0);
+        subBlockEnergy = 0;
+        positionInSubBlock = 0;
+        nbSubBlocks = 0;
+        momentaryLoudness = Double.NEGATIVE_INFINITY;
+        shortTermLoudness = Double.NEGATIVE_INFINITY;
+        maxMomentaryLoudness = Double.NEGATIVE_INFINITY;
+        maxShortTermLoudness = Double.NEGATIVE_INFINITY;
+    }
+
+    @Override
+    public void onSamples(SampleView buffer) {
+        int s = 0;
+        while (s < buffer.nbSamples()) {
+            int count = Math.min(buffer.nbSamples() - s, subBlockSize - positionInSubBlock);
+            for (int c = 0; c < nbChannels; c++) {
+                if (weights[c] == 0) {
+                    continue;
+                }
+                KWeightingFilter filter = filters[c];
+                double power = 0;
+                for (int i = s; i < s + count; i++) {
+                    double filtered = filter.process(buffer.get(c, i));
+                    power += filtered * filtered;
+                }
+                subBlockEnergy += weights[c] * power;
+            }
+            s += count;
+            positionInSubBlock += count;
+            if (positionInSubBlock == subBlockSize) {
+                onSubBlock();
+            }
+        }
+    }
+
+    private void onSubBlock() {
+        subBlocks[(int) (nbSubBlocks % SHORT_TERM_SUB_BLOCKS)] = subBlockEnergy;
+        nbSubBlocks++;
+        subBlockEnergy = 0;
+        positionInSubBlock = 0;
+        if (nbSubBlocks >= MOMENTARY_SUB_BLOCKS) {
+            double energy = lastSubBlocks(MOMENTARY_SUB_BLOCKS);
+            momentaryLoudness = toLoudness(energy);
+            maxMomentaryLoudness = Math.max(maxMomentaryLoudness, momentaryLoudness);
+            addToHistogram(blockCounts, blockEnergies, energy, momentaryLoudness);
+        }
+        if (nbSubBlocks >= SHORT_TERM_SUB_BLOCKS) {
+            double energy = lastSubBlocks(SHORT_TERM_SUB_BLOCKS);
+            shortTermLoudness = toLoudness(energy);
+            maxShortTermLoudness = Math.max(maxShortTermLoudness, shortTermLoudness);
+            addToHistogram(shortTermCounts, shortTermEnergies, energy, shortTermLoudness);
+        }
+    }
+
+    /**
+     * @return mean square of the last sub-blocks, weighted and summed over the channels
+     */
+    private double lastSubBlocks(int count) {
+        double sum = 0;
+        for (int i = 1; i <= count; i++) {
+            sum += subBlocks[(int) ((nbSubBlocks - i) % SHORT_TERM_SUB_BLOCKS)];
+        }
+        return sum / ((double) count * subBlockSize);
+    }
+
+    private static void addToHistogram(long[] counts, double[] energies, double energy, double loudness) {
+        if (loudness < ABSOLUTE_GATE) {
+            return;
+        }
+        int bin = binOf(loudness);
+        counts[bin]++;
+        energies[bin] += energy;
+    }
+
+    private static int binOf(double loudness) {
+        return Math.clamp((long) ((loudness - ABSOLUTE_GATE) / HISTOGRAM_STEP), 0, NB_BINS - 1);
+    }
+
+    private static double binLoudness(int bin) {
+        return ABSOLUTE_GATE + (bin + 0.5) * HISTOGRAM_STEP;
+    }
+
+    public static double toLoudness(double energy) {
+        return -0.691 + 10 * Math.log10(energy);
+    }
+
+    /**
+     * @return first bin above the relative gate, or -1 if no block passed the absolute gate
+     */
+    private static int relativeGateBin(long[] counts, double[] energies, double relativeGate) {
+        long count = 0;
+        double energy = 0;
+        for (int bin = 0; bin < NB_BINS; bin++) {
+            count += counts[bin];
+            energy += energies[bin];
+        }
+        if (count == 0) {
+            return -1;
+        }
+        double threshold = toLoudness(energy / count) + relativeGate;
+        if (threshold < ABSOLUTE_GATE) {
+            return 0;
+        }
+        int bin = binOf(threshold);
+        // the bin of the threshold is kept if most of it is above
+        return binLoudness(bin) >= threshold ? bin : bin + 1;
+    }
+
+    /**
+     * @return integrated loudness in LUFS since the last reset, -infinity for silence
+     */
+    public double getIntegratedLoudness() {
+        int start = relativeGateBin(blockCounts, blockEnergies, -10);
+        if (start < 0) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        long count = 0;
+        double energy = 0;
+        for (int bin = start; bin < NB_BINS; bin++) {
+            count += blockCounts[bin];
+            energy += blockEnergies[bin];
+        }
+        return count == 0 ? Double.NEGATIVE_INFINITY : toLoudness(energy / count);
+    }
+
+    /**
+     * @return loudness range in LU since the last reset, 0 if there is less than 3 seconds of signal
+     */
+    public double getLoudnessRange() {
+        int start = relativeGateBin(shortTermCounts, shortTermEnergies, -20);
+        if (start < 0) {
+            return 0;
+        }
+        long count = 0;
+        for (int bin = start; bin < NB_BINS; bin++) {
+            count += shortTermCounts[bin];
+        }
+        if (count == 0) {
+            return 0;
+        }
+        return percentile(start, count, 0.95) - percentile(start, count, 0.10);
+    }
+
+    private double percentile(int start, long count, double percentile) {
+        long rank = (long) Math.floor((count - 1) * percentile);
+        long seen = 0;
+        for (int bin = start; bin < NB_BINS; bin++) {
+            seen += shortTermCounts[bin];
+            if (seen > rank) {
+                return binLoudness(bin);
+            }
+        }
+        return binLoudness(NB_BINS - 1);
+    }
+
+    /**
+     * @return the gain in dB to reach the target integrated loudness, typically -23 LUFS for EBU R128
+     */
+    public double getNormalizationGain(double targetLoudness) {
+        double integrated = getIntegratedLoudness();
+        return Double.isInfinite(integrated) ? 0 : targetLoudness - integrated;
+    }
+}
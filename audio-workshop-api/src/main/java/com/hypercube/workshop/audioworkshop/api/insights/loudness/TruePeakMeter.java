@@ -0,0 +1,130 @@
+package com.hypercube.workshop.audioworkshop.api.insights.loudness;
+
+import com.hypercube.workshop.audioworkshop.api.consumer.SampleView;
+import com.hypercube.workshop.audioworkshop.api.consumer.SampleViewConsumer;
+import com.hypercube.workshop.audioworkshop.api.format.PCMFormat;
+import lombok.Getter;
+
+import java.util.Arrays;
+
+/**
+ * True-peak meter of ITU-R BS.1770-4 Annex 2: the signal is oversampled 4 times to catch the peaks between samples
+ * <p>The interpolation filter is a windowed sinc of {@link #NB_TAPS} taps, split in {@link #OVERSAMPLING} phases of
+ * {@link #TAPS_PER_PHASE} taps: each input sample produces 4 output samples, computed directly from the history without
+ * inserting zeros. The history of each channel is stored twice in a row, so the convolution never wraps.</p>
+ * <p>A sine at a quarter of the sample rate with a phase of 45 degrees reads -3 dB with {@link com.hypercube.workshop.audioworkshop.api.insights.peak.PeakCalculator}
+ * and 0 dBTP here. The true peak is never below the sample peak.</p>
+ */
+public class TruePeakMeter implements SampleViewConsumer {
+    public static final int OVERSAMPLING = 4;
+    public static final int TAPS_PER_PHASE = 12;
+    public static final int NB_TAPS = OVERSAMPLING * TAPS_PER_PHASE;
+    /**
+     * Coefficients per phase, the first one applies to the newest sample
+     */
+    private static final double[][] PHASES = designFilter();
+
+    @Getter
+    private final int nbChannels;
+    private final double[][] history;
+    private int position;
+    private final double[] truePeaks;
+
+    public TruePeakMeter(PCMFormat format) {
+        this(format.getNbChannels());
+    }
+
+    public TruePeakMeter(int nbChannels) {
+        this.nbChannels = nbChannels;
+        history = new double[nbChannels][TAPS_PER_PHASE * 2];
+        truePeaks = new double[nbChannels];
+    }
+
+    /**
+     * Low pass at the original Nyquist frequency, with a Blackman window. Each phase is normalized to a DC gain of 1.
+     */
+    private static double[][] designFilter() {
+        double[][] phases = new double[OVERSAMPLING][TAPS_PER_PHASE];
+        double center = (NB_TAPS - 1) / 2.0;
+        for (int n = 0; n < NB_TAPS; n++) {
+            double t = (n - center) / OVERSAMPLING;
+            double sinc = t == 0 ? 1 : Math.sin(Math.PI * t) / (Math.PI * t);
+            double window = 0.42 - 0.5 * Math.cos(2 * Math.PI * n / (NB_TAPS - 1)) + 0.08 * Math.cos(4 * Math.PI * n / (NB_TAPS - 1));
+            phases[n % OVERSAMPLING][n / OVERSAMPLING] = sinc * window;
+        }
+        for (double[] phase : phases) {
+            double sum = Arrays.stream(phase)
+                    .sum();
+            for (int k = 0; k < TAPS_PER_PHASE; k++) {
+                phase[k] /= sum;
+            }
+        }
+        return phases;
+    }
+
+    @Override
+    public void reset() {
+        for (int c = 0; c < nbChannels; c++) {
+            Arrays.fill(history[c], 0);
+        }
+        Arrays.fill(truePeaks, 0);
+        position = 0;
+    }
+
+    @Override
+    public void onSamples(SampleView buffer) {
+        int start = position;
+        for (int c = 0; c < nbChannels; c++) {
+            double[] channelHistory = history[c];
+            double peak = truePeaks[c];
+            int pos = start;
+            for (int s = 0; s < buffer.nbSamples(); s++) {
+                pos = pos == 0 ? TAPS_PER_PHASE - 1 : pos - 1;
+                double sample = buffer.get(c, s);
+                channelHistory[pos] = sample;
+                channelHistory[pos + TAPS_PER_PHASE] = sample;
+                peak = Math.max(peak, interpolatedPeak(channelHistory, pos, Math.abs(sample)));
+            }
+            truePeaks[c] = peak;
+            position = pos;
+        }
+    }
+
+    private static double interpolatedPeak(double[] channelHistory, int pos, double peak) {
+        for (int p = 0; p < OVERSAMPLING; p++) {
+            double[] phase = PHASES[p];
+            double value = 0;
+            for (int k = 0; k < TAPS_PER_PHASE; k++) {
+                value += phase[k] * channelHistory[pos + k];
+            }
+            peak = Math.max(peak, Math.abs(value));
+        }
+        return peak;
+    }
+
+    public double getTruePeak(int channel) {
+        return truePeaks[channel];
+    }
+
+    /**
+     * @return the highest true peak of all channels, linear
+     */
+    public double getTruePeak() {
+        double peak = 0;
+        for (double channelPeak : truePeaks) {
+            peak = Math.max(peak, channelPeak);
+        }
+        return peak;
+    }
+
+    /**
+     * @return the highest true peak of all channels in dBTP
+     */
+    public double getTruePeakDb() {
+        return PCMFormat.toDb(getTruePeak());
+    }
+
+    public double getTruePeakDb(int precision) {
+        return withPrecision(getTruePeakDb(), precision);
+    }
+}
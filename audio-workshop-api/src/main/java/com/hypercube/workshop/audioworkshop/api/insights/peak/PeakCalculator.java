@@ -1,12 +1,12 @@
 package com.hypercube.workshop.audioworkshop.api.insights.peak;
 
-import com.hypercube.workshop.audioworkshop.api.consumer.SampleBuffer;
-import com.hypercube.workshop.audioworkshop.api.consumer.SampleBufferConsumer;
+import com.hypercube.workshop.audioworkshop.api.consumer.SampleView;
+import com.hypercube.workshop.audioworkshop.api.consumer.SampleViewConsumer;
 import com.hypercube.workshop.audioworkshop.api.format.PCMFormat;
 import lombok.Getter;
 
 @Getter
-public class PeakCalculator implements SampleBufferConsumer {
+public class PeakCalculator implements SampleViewConsumer {
     private double sampleMin;
     private double sampleMax;
     private double samplePeak;
@@ -23,11 +23,11 @@ public class PeakCalculator implements SampleBufferConsumer {
     }
 
     @Override
-    public void onBuffer(SampleBuffer buffer) {
+    public void onSamples(SampleView buffer) {
         firstZeroCrossingPosInSample = 0;
         for (int s = 0; s < buffer.nbSamples(); s++) {
             for (int c = 0; c < buffer.nbChannels(); c++) {
-                double sample = buffer.sample(c, s);
+                double sample = buffer.get(c, s);
                 samplePeak = Math.max(samplePeak, Math.abs(sample));
                 sampleMin = Math.min(sampleMin, sample);
                 sampleMax = Math.max(sampleMax, sample);
@@ -0,0 +1,69 @@
+package com.hypercube.workshop.audioworkshop.api.insights.peak;
+
+import lombok.Getter;
+
+/**
+ * Maximum of the last {@link #windowSize} values, in amortized constant time per value
+ * <p>Monotonic deque: the values kept are decreasing from head to tail. A new value removes from the tail all the values
+ * lower or equal, they can't be the maximum anymore. The head leaves when it goes out of the window. Each value is added
+ * and removed once at most.</p>
+ * <p>The deque is a ring of {@link #windowSize} slots allocated once. For a peak meter, add {@code Math.abs(sample)}.</p>
+ */
+public class SlidingMax {
+    @Getter
+    private final int windowSize;
+    private final double[] values;
+    private final long[] positions;
+    private int head;
+    private int size;
+    /**
+     * Number of values added since the last reset
+     */
+    @Getter
+    private long count;
+
+    public SlidingMax(int windowSize) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("windowSize must be positive: " + windowSize);
+        }
+        this.windowSize = windowSize;
+        values = new double[windowSize];
+        positions = new long[windowSize];
+    }
+
+    public void reset() {
+        head = 0;
+        size = 0;
+        count = 0;
+    }
+
+    public void add(double value) {
+        // the new window is [count - windowSize + 1, count]
+        if (size > 0 && positions[head] <= count - windowSize) {
+            head = (head + 1) % windowSize;
+            size--;
+        }
+        while (size > 0 && values[(head + size - 1) % windowSize] <= value) {
+            size--;
+        }
+        int tail = (head + size) % windowSize;
+        values[tail] = value;
+        positions[tail] = count;
+        size++;
+        count++;
+    }
+
+    /**
+     * @return the maximum of the window, 0 if nothing was added
+     */
+    public double getMax() {
+        return size == 0 ? 0 : values[head];
+    }
+
+    /**
+     * @return position of the maximum since the last reset, -1 if nothing was added
+     */
+    public long getMaxPosition() {
+        return size == 0 ? -1 : positions[head];
+    }
+}
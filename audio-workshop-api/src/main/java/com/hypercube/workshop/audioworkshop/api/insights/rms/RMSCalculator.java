@@ -1,11 +1,11 @@
 package com.hypercube.workshop.audioworkshop.api.insights.rms;
 
-import com.hypercube.workshop.audioworkshop.api.consumer.SampleBuffer;
-import com.hypercube.workshop.audioworkshop.api.consumer.SampleBufferConsumer;
+import com.hypercube.workshop.audioworkshop.api.consumer.SampleView;
+import com.hypercube.workshop.audioworkshop.api.consumer.SampleViewConsumer;
 import com.hypercube.workshop.audioworkshop.api.format.PCMFormat;
 import lombok.Getter;
 
-public class RMSCalculator implements SampleBufferConsumer {
+public class RMSCalculator implements SampleViewConsumer {
     private final int nbChannels;
     private long totalSamples;
     private double[] power;
@@ -28,11 +28,11 @@ public class RMSCalculator implements SampleBufferConsumer {
     }
 
     @Override
-    public void onBuffer(SampleBuffer buffer) {
+    public void onSamples(SampleView buffer) {
         totalSamples += buffer.nbSamples();
         for (int c = 0; c < nbChannels; c++) {
             for (int s = 0; s < buffer.nbSamples(); s++) {
-                var sample = buffer.sample(c, s);
+                var sample = buffer.get(c, s);
                 power[c] += sample * sample;
             }
             rms[c] = Math.sqrt(power[c] / totalSamples);
@@ -0,0 +1,74 @@
+package com.hypercube.workshop.audioworkshop.api.insights.rms;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+
+/**
+ * RMS of the last {@link #windowSize} samples of one channel, in constant time per sample
+ * <p>A running sum of squares is updated with the new sample and the one leaving the window. Adding and removing
+ * values of very different magnitudes slowly drifts, so the sum is recomputed from the ring each time it wraps:
+ * one pass over the window every {@link #windowSize} samples, still O(1) per sample.</p>
+ */
+public class SlidingRMS {
+    @Getter
+    private final int windowSize;
+    private final double[] squares;
+    private int writeIndex;
+    private double sum;
+    /**
+     * Number of samples in the window, up to {@link #windowSize}
+     */
+    @Getter
+    private int nbSamples;
+
+    public SlidingRMS(int windowSize) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("windowSize must be positive: " + windowSize);
+        }
+        this.windowSize = windowSize;
+        squares = new double[windowSize];
+    }
+
+    public void reset() {
+        Arrays.fill(squares, 0);
+        writeIndex = 0;
+        sum = 0;
+        nbSamples = 0;
+    }
+
+    public void add(double sample) {
+        double square = sample * sample;
+        sum += square - squares[writeIndex];
+        squares[writeIndex] = square;
+        writeIndex++;
+        if (writeIndex == windowSize) {
+            writeIndex = 0;
+            renormalize();
+        }
+        nbSamples = Math.min(nbSamples + 1, windowSize);
+    }
+
+    private void renormalize() {
+        double exact = 0;
+        for (double square : squares) {
+            exact += square;
+        }
+        sum = exact;
+    }
+
+    public boolean isFull() {
+        return nbSamples == windowSize;
+    }
+
+    /**
+     * @return mean square of the samples in the window, which is not complete at the beginning
+     */
+    public double getMeanSquare() {
+        return nbSamples == 0 ? 0 : Math.max(0, sum) / nbSamples;
+    }
+
+    public double getRMS() {
+        return Math.sqrt(getMeanSquare());
+    }
+}
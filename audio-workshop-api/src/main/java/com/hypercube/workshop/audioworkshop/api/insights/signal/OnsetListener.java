@@ -0,0 +1,10 @@
+package com.hypercube.workshop.audioworkshop.api.insights.signal;
+
+@FunctionalInterface
+public interface OnsetListener {
+    /**
+     * @param samplePosition position of the onset since the last reset, refined to the sample
+     * @param strength       spectral flux divided by the adaptive threshold, above 1
+     */
+    void onOnset(long samplePosition, double strength);
+}
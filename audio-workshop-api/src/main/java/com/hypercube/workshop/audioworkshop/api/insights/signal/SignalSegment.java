@@ -22,6 +22,10 @@ public class SignalSegment {
         this.next = next;
     }
 
+    void extendTo(long sampleEnd) {
+        this.sampleEnd = sampleEnd;
+    }
+
     /**
      * Try to merge current segment with the next one
      *
@@ -1,48 +1,71 @@
 package com.hypercube.workshop.audioworkshop.api.insights.signal;
 
 import com.hypercube.workshop.audioworkshop.api.consumer.SampleBuffer;
-import com.hypercube.workshop.audioworkshop.api.consumer.WindowedSampleBufferConsumer;
+import com.hypercube.workshop.audioworkshop.api.consumer.SampleBufferConsumer;
 import com.hypercube.workshop.audioworkshop.api.format.PCMFormat;
-import com.hypercube.workshop.audioworkshop.api.insights.peak.PeakCalculator;
+import com.hypercube.workshop.audioworkshop.api.insights.SlidingEnvelope;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Split the signal in {@link SignalSegmentType#SIGNAL} and {@link SignalSegmentType#SILENT} segments, given the peak of a sliding window
+ * <p>By default the window and the hop are {@link #WINDOW_SIZE_MS}: one segment every 50 ms. With a shorter hop, each
+ * hop is classified by the peak of the window ending with it, down to sample accurate boundaries for a hop of 1.</p>
+ */
 @Getter
 @Slf4j
-public class SignalSegmentsDetector extends WindowedSampleBufferConsumer {
+public class SignalSegmentsDetector implements SampleBufferConsumer {
     public static final int WINDOW_SIZE_MS = 50;
-    private final PeakCalculator peakCalculator;
+    private final SlidingEnvelope envelope;
     private final PCMFormat format;
     private final double noiseFloor;
-    long positionInSamples = 0;
     SignalSegment firstSegment;
     SignalSegment lastSegment;
 
     public SignalSegmentsDetector(PCMFormat format, double noiseFloor) {
-        super(format.millisecondsToSamples(WINDOW_SIZE_MS), format.getNbChannels(), new PeakCalculator());
-        this.peakCalculator = (PeakCalculator) consumer;
+        this(format, noiseFloor, format.millisecondsToSamples(WINDOW_SIZE_MS), format.millisecondsToSamples(WINDOW_SIZE_MS));
+    }
+
+    /**
+     * @param windowSizeInSamples length of the window giving the peak
+     * @param hopSizeInSamples    length of the smallest segment
+     */
+    public SignalSegmentsDetector(PCMFormat format, double noiseFloor, int windowSizeInSamples, int hopSizeInSamples) {
+        this.envelope = new SlidingEnvelope(format.getNbChannels(), windowSizeInSamples, hopSizeInSamples, this::onHop);
         this.format = format;
         this.noiseFloor = noiseFloor;
     }
 
+    @Override
+    public void reset() {
+        envelope.reset();
+        firstSegment = null;
+        lastSegment = null;
+    }
+
     @Override
     public void onBuffer(SampleBuffer buffer) {
-        peakCalculator.reset();
-        peakCalculator.onBuffer(buffer);
-        long cutPoint = positionInSamples + peakCalculator.getFirstZeroCrossingPosInSample();
-        double rmsDb = peakCalculator.getSamplePeakDb(2);
-        SignalSegmentType type = rmsDb > noiseFloor ? SignalSegmentType.SIGNAL : SignalSegmentType.SILENT;
-        SignalSegment signalSegment = new SignalSegment(positionInSamples, positionInSamples + buffer.nbSamples(), type);
-        positionInSamples += buffer.nbSamples();
+        envelope.onBuffer(buffer);
+    }
+
+    private void onHop(long position, SlidingEnvelope envelope) {
+        double peakDb = withPrecision(PCMFormat.toDb(envelope.getPeak()), 2);
+        SignalSegmentType type = peakDb > noiseFloor ? SignalSegmentType.SIGNAL : SignalSegmentType.SILENT;
+        if (lastSegment != null && lastSegment.getType() == type) {
+            // most hops continue the current segment, a new one is only allocated when the type changes
+            lastSegment.extendTo(position);
+            return;
+        }
+        SignalSegment signalSegment = new SignalSegment(position - envelope.getHopSize(), position, type);
         if (lastSegment == null) {
-            firstSegment = lastSegment = signalSegment;
+            firstSegment = signalSegment;
         } else {
             lastSegment.link(signalSegment);
-            lastSegment = lastSegment.tryToMerge();
         }
+        lastSegment = signalSegment;
     }
 
     private String getMsg(long cutPoint, double rmsDb) {
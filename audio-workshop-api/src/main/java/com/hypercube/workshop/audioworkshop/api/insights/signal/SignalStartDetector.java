@@ -1,41 +1,55 @@
 package com.hypercube.workshop.audioworkshop.api.insights.signal;
 
 import com.hypercube.workshop.audioworkshop.api.consumer.SampleBuffer;
-import com.hypercube.workshop.audioworkshop.api.consumer.WindowedSampleBufferConsumer;
+import com.hypercube.workshop.audioworkshop.api.consumer.SampleBufferConsumer;
 import com.hypercube.workshop.audioworkshop.api.format.PCMFormat;
-import com.hypercube.workshop.audioworkshop.api.insights.peak.PeakCalculator;
+import com.hypercube.workshop.audioworkshop.api.insights.SlidingEnvelope;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
+/**
+ * Find the first hop where the peak goes above {@link #THRESHOLD_DB}
+ * <p>The peak of a {@link #WINDOW_SIZE_MS} window is updated every sample. With the default hop of 1 sample, the
+ * start is the first sample above the threshold.</p>
+ */
 @Slf4j
-public class SignalStartDetector extends WindowedSampleBufferConsumer {
+public class SignalStartDetector implements SampleBufferConsumer {
     public static final int WINDOW_SIZE_MS = 1;
-    private final PeakCalculator peakCalculator;
+    public static final double THRESHOLD_DB = -40;
+    private final SlidingEnvelope envelope;
     private final PCMFormat format;
-    long positionInSamples = 0;
+    @Getter
     boolean inSignal;
+    @Getter
     long signalStart = 0;
 
     public SignalStartDetector(PCMFormat format) {
-        super(format.millisecondsToSamples(WINDOW_SIZE_MS), format.getNbChannels(), new PeakCalculator());
-        this.peakCalculator = (PeakCalculator) consumer;
+        this(format, 1);
+    }
+
+    public SignalStartDetector(PCMFormat format, int hopSizeInSamples) {
+        this.envelope = new SlidingEnvelope(format.getNbChannels(), format.millisecondsToSamples(WINDOW_SIZE_MS), hopSizeInSamples, this::onHop);
         this.format = format;
     }
 
+    @Override
+    public void reset() {
+        envelope.reset();
+        inSignal = false;
+        signalStart = 0;
+    }
+
     @Override
     public void onBuffer(SampleBuffer buffer) {
-        peakCalculator.reset();
-        peakCalculator.onBuffer(buffer);
-        long cutPoint = positionInSamples + peakCalculator.getFirstZeroCrossingPosInSample();
-        positionInSamples += buffer.nbSamples();
-        double rmsDb = peakCalculator.getSamplePeakDb(2);
-        boolean cross = (rmsDb > -40);
-        if (!inSignal && cross) {
-            inSignal = true;
-            if (signalStart == 0) {
-                signalStart = cutPoint;
-                log.info("IN  " + getMsg(signalStart, rmsDb));
-            }
+        envelope.onBuffer(buffer);
+    }
 
+    private void onHop(long position, SlidingEnvelope envelope) {
+        double peakDb = withPrecision(PCMFormat.toDb(envelope.getPeak()), 2);
+        if (!inSignal && peakDb > THRESHOLD_DB) {
+            inSignal = true;
+            signalStart = position - envelope.getHopSize();
+            log.info("IN  " + getMsg(signalStart, peakDb));
         }
     }
 
@@ -0,0 +1,266 @@
+package com.hypercube.workshop.audioworkshop.api.insights.signal;
+
+import com.hypercube.workshop.audioworkshop.api.consumer.SampleView;
+import com.hypercube.workshop.audioworkshop.api.consumer.SampleViewConsumer;
+import com.hypercube.workshop.audioworkshop.api.format.PCMFormat;
+import com.hypercube.workshop.audioworkshop.api.insights.dft.fast.RealFFT;
+import com.hypercube.workshop.audioworkshop.api.insights.dft.windows.BlackmanHarris;
+import lombok.Getter;
+
+import java.util.Arrays;
+
+/**
+ * Onset detection with the spectral flux: how much energy appears from one spectrum to the next
+ * <p>One {@link RealFFT} of {@link #windowSize} samples runs every {@link #hopSize} samples on the last samples received,
+ * whatever the size of the incoming buffers. For each bin, the magnitude is log compressed and only its increase is summed,
+ * over all bins and channels. A decay or a steady tone gives a low flux, a new note gives a burst.</p>
+ * <p>The threshold follows the signal: {@link #THRESHOLD_MULTIPLIER} times the mean flux of the last {@link #THRESHOLD_FRAMES}
+ * frames, plus {@link #THRESHOLD_DELTA} to stay quiet on the noise floor. An onset is reported when the flux crosses the
+ * threshold, so a few hops after it happened, and no more than once per {@link #MIN_INTERVAL_MS}. Nothing is reported
+ * during the first window after a reset: there is no previous spectrum to compare with.</p>
+ * <p>The FFT only locates the onset within a window. The sample accurate position comes from the energy of the samples still
+ * in the window: the onset is where the energy of the next {@link #REFINE_SIZE} samples divided by the energy of the previous
+ * ones is the highest. When nothing stands out (a change of pitch at the same level), the center of the window is used and
+ * {@link #isLastOnsetRefined()} is false: the position may be half a window away from the real onset.</p>
+ * <pre>
+ * SpectralFluxOnsetDetector detector = new SpectralFluxOnsetDetector(format, (position, strength) -> log.info("Onset at " + position));
+ * detector.reset();
+ * inputLine.record((buffer, pcmBuffer, pcmSize) -> {
+ *     detector.onBuffer(buffer);
+ *     return true;
+ * });
+ * </pre>
+ */
+public class SpectralFluxOnsetDetector implements SampleViewConsumer {
+    public static final int DEFAULT_WINDOW_SIZE = 1024;
+    public static final int DEFAULT_HOP_SIZE = 128;
+    /**
+     * log(1 + COMPRESSION * magnitude): a -60 dBFS sine is at 0.7, a full scale one at 6.9
+     */
+    public static final double COMPRESSION = 1000;
+    public static final int THRESHOLD_FRAMES = 16;
+    public static final double THRESHOLD_MULTIPLIER = 1.5;
+    public static final double THRESHOLD_DELTA = 1;
+    public static final int MIN_INTERVAL_MS = 50;
+    public static final int REFINE_SIZE = 32;
+    /**
+     * Below this energy ratio, the refinement is not trusted
+     */
+    public static final double MIN_ENERGY_RATIO = 4;
+    /**
+     * Energy of a sample at -100 dBFS, avoid divisions by zero in digital silence
+     */
+    private static final double ENERGY_FLOOR = 1e-10;
+
+    @Getter
+    private final int nbChannels;
+    @Getter
+    private final int windowSize;
+    @Getter
+    private final int hopSize;
+    private final int minInterval;
+    private final OnsetListener listener;
+    private final double[] window;
+    /**
+     * Scale the magnitudes such that a full scale sine reads 1
+     */
+    private final double normalization;
+    private final RealFFT fft;
+    private final double[] input;
+    private final double[] spectrum;
+    private final double[][] previousMagnitudes;
+    /**
+     * Last {@link #windowSize} samples of each channel, and their energy summed over the channels
+     */
+    private final double[][] samples;
+    private final double[] energy;
+    private final double[] energyPrefix;
+    private int writeIndex;
+    /**
+     * Result of the last {@link #refineOnset()}
+     */
+    private boolean refined;
+    private final double[] fluxHistory;
+    private int nbFlux;
+    private double fluxSum;
+    private boolean armed;
+    /**
+     * Number of samples received since the last reset
+     */
+    @Getter
+    private long position;
+    /**
+     * Position of the last onset, -1 if none
+     */
+    @Getter
+    private long lastOnset;
+    /**
+     * False when {@link #lastOnset} is only the center of the FFT window, because the energy did not rise enough to locate it
+     */
+    @Getter
+    private boolean lastOnsetRefined;
+    @Getter
+    private double lastFlux;
+    @Getter
+    private double lastThreshold;
+
+    public SpectralFluxOnsetDetector(PCMFormat format, OnsetListener listener) {
+        this(format, DEFAULT_WINDOW_SIZE, DEFAULT_HOP_SIZE, listener);
+    }
+
+    public SpectralFluxOnsetDetector(PCMFormat format, int windowSize, int hopSize, OnsetListener listener) {
+        if (hopSize <= 0 || hopSize > windowSize) {
+            throw new IllegalArgumentException("hopSize must be in [1, %d]: %d".formatted(windowSize, hopSize));
+        }
+        if (windowSize < REFINE_SIZE * 2) {
+            throw new IllegalArgumentException("windowSize must be at least %d: %d".formatted(REFINE_SIZE * 2, windowSize));
+        }
+        this.nbChannels = format.getNbChannels();
+        this.windowSize = windowSize;
+        this.hopSize = hopSize;
+        this.minInterval = format.millisecondsToSamples(MIN_INTERVAL_MS);
+        this.listener = listener;
+        this.window = new BlackmanHarris().generate(windowSize);
+        this.normalization = 2 / Arrays.stream(window)
+                .sum();
+        this.fft = new RealFFT(windowSize);
+        this.input = new double[windowSize];
+        this.spectrum = new double[2 * fft.getNbOutputBins()];
+        this.previousMagnitudes = new double[nbChannels][fft.getNbOutputBins()];
+        this.samples = new double[nbChannels][windowSize];
+        this.energy = new double[windowSize];
+        this.energyPrefix = new double[windowSize + 1];
+        this.fluxHistory = new double[THRESHOLD_FRAMES];
+        reset();
+    }
+
+    @Override
+    public void reset() {
+        for (int c = 0; c < nbChannels; c++) {
+            Arrays.fill(samples[c], 0);
+            Arrays.fill(previousMagnitudes[c], 0);
+        }
+        Arrays.fill(energy, 0);
+        Arrays.fill(fluxHistory, 0);
+        writeIndex = 0;
+        nbFlux = 0;
+        fluxSum = 0;
+        armed = true;
+        position = 0;
+        lastOnset = -1;
+        lastOnsetRefined = false;
+        lastFlux = 0;
+        lastThreshold = THRESHOLD_DELTA;
+    }
+
+    @Override
+    public void onSamples(SampleView buffer) {
+        for (int s = 0; s < buffer.nbSamples(); s++) {
+            double sampleEnergy = 0;
+            for (int c = 0; c < nbChannels; c++) {
+                double sample = buffer.get(c, s);
+                samples[c][writeIndex] = sample;
+                sampleEnergy += sample * sample;
+            }
+            onSample(sampleEnergy);
+        }
+    }
+
+    private void onSample(double sampleEnergy) {
+        energy[writeIndex] = sampleEnergy;
+        writeIndex = writeIndex + 1 == windowSize ? 0 : writeIndex + 1;
+        position++;
+        if (position % hopSize == 0) {
+            onFrame();
+        }
+    }
+
+    /**
+     * The window ends at {@link #position}, its oldest sample is at {@link #writeIndex} in the rings
+     */
+    private void onFrame() {
+        double flux = 0;
+        for (int c = 0; c < nbChannels; c++) {
+            double[] channel = samples[c];
+            int tail = windowSize - writeIndex;
+            for (int s = 0; s < tail; s++) {
+                input[s] = channel[writeIndex + s] * window[s];
+            }
+            for (int s = tail; s < windowSize; s++) {
+                input[s] = channel[s - tail] * window[s];
+            }
+            fft.forward(input, spectrum);
+            double[] previous = previousMagnitudes[c];
+            // DC is not a note
+            for (int bin = 1; bin < previous.length; bin++) {
+                double re = spectrum[2 * bin];
+                double im = spectrum[2 * bin + 1];
+                double magnitude = Math.log1p(COMPRESSION * normalization * Math.sqrt(re * re + im * im));
+                flux += Math.max(0, magnitude - previous[bin]);
+                previous[bin] = magnitude;
+            }
+        }
+        double threshold = THRESHOLD_MULTIPLIER * (nbFlux == 0 ? 0 : fluxSum / nbFlux) + THRESHOLD_DELTA;
+        if (position <= windowSize) {
+            // the previous spectrum is not complete yet, whatever is already playing is not an onset
+            armed = true;
+        } else if (flux > threshold) {
+            if (armed) {
+                long onset = refineOnset();
+                if (lastOnset < 0 || onset - lastOnset >= minInterval) {
+                    lastOnset = onset;
+                    lastOnsetRefined = refined;
+                    listener.onOnset(onset, flux / threshold);
+                }
+            }
+            armed = false;
+        } else {
+            armed = true;
+        }
+        int slot = (int) ((position / hopSize) % THRESHOLD_FRAMES);
+        fluxSum += flux - fluxHistory[slot];
+        fluxHistory[slot] = flux;
+        nbFlux = Math.min(nbFlux + 1, THRESHOLD_FRAMES);
+        lastFlux = flux;
+        lastThreshold = threshold;
+    }
+
+    /**
+     * Search the highest rise of energy in the window, after the previous onset
+     * <p>{@link #refined} tells if it was found, otherwise the center of the window is returned</p>
+     */
+    private long refineOnset() {
+        long windowStart = position - windowSize;
+        int tail = windowSize - writeIndex;
+        energyPrefix[0] = 0;
+        for (int s = 0; s < windowSize; s++) {
+            double e = s < tail ? energy[writeIndex + s] : energy[s - tail];
+            energyPrefix[s + 1] = energyPrefix[s] + e;
+        }
+        int from = REFINE_SIZE;
+        if (lastOnset >= 0) {
+            from = (int) Math.max(from, Math.min(windowSize, lastOnset + minInterval - windowStart));
+        }
+        double floor = REFINE_SIZE * ENERGY_FLOOR;
+        double bestRatio = 0;
+        int best = -1;
+        for (int s = from; s <= windowSize - REFINE_SIZE; s++) {
+            double before = energyPrefix[s] - energyPrefix[s - REFINE_SIZE];
+            double after = energyPrefix[s + REFINE_SIZE] - energyPrefix[s];
+            double ratio = (after + floor) / (before + floor);
+            if (ratio > bestRatio) {
+                bestRatio = ratio;
+                best = s;
+            }
+        }
+        refined = best >= 0 && bestRatio >= MIN_ENERGY_RATIO;
+        if (!refined) {
+            return windowStart + windowSize / 2;
+        }
+        return windowStart + best;
+    }
+
+    public boolean hasOnset() {
+        return lastOnset >= 0;
+    }
+}
@@ -6,6 +6,7 @@ import com.hypercube.workshop.audioworkshop.api.errors.AudioError;
 import com.hypercube.workshop.audioworkshop.api.format.PCMBufferFormat;
 import com.hypercube.workshop.audioworkshop.api.pcm.PCMConverter;
 import com.hypercube.workshop.audioworkshop.api.record.RecordListener;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
 import javax.sound.sampled.AudioFormat;
@@ -16,18 +17,34 @@ import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.util.concurrent.TimeUnit;
 
 @Slf4j
 public class AudioInputLine extends AudioLine implements Closeable {
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
     private final TargetDataLine line;
     private final AudioInputDevice device;
+    /**
+     * Time spent by the listener on each buffer, updated by {@link #record(RecordListener, AudioOutputLine)}
+     */
+    @Getter
+    private final BufferTimingHistogram timingHistogram = new BufferTimingHistogram();
 
     public AudioInputLine(AudioInputDevice device, PCMBufferFormat format) throws LineUnavailableException {
+        this(device, format, AudioSystem.getTargetDataLine(format.getAudioFormat(), device.getMixerInfo()));
+    }
+
+    /**
+     * Record from a given line instead of the one provided by the device (usefull for tests)
+     *
+     * @param device can be null if the line does not come from a device
+     * @param format format of the recording
+     * @param line   line to open
+     */
+    public AudioInputLine(AudioInputDevice device, PCMBufferFormat format, TargetDataLine line) throws LineUnavailableException {
         super(format);
         this.device = device;
+        this.line = line;
         AudioFormat audioFormat = format.getAudioFormat();
-        line = AudioSystem.getTargetDataLine(audioFormat, device.getMixerInfo());
         line.open(audioFormat, format.getByteBufferSize());
     }
 
@@ -47,6 +64,9 @@ public class AudioInputLine extends AudioLine implements Closeable {
     /**
      * Convert incoming PCM buffers into a {@link SampleBuffer} and pass them to a {@link RecordListener}
      * <p>This method record until {@link RecordListener#onNewBuffer} return false</p>
+     * <p>Nothing is allocated per buffer: PCM and sample buffers are allocated once and the same {@link SampleBuffer} view
+     * is passed to the listener as long as the line deliver full buffers. So the listener must not keep it after the call.</p>
+     * <p>The time spent by the listener is tracked in {@link #getTimingHistogram()} instead of being logged for each buffer.</p>
      *
      * @param listener   will receive samples
      * @param outputLine used to monitor what is recorded
@@ -58,6 +78,8 @@ public class AudioInputLine extends AudioLine implements Closeable {
         byte[] pcmData = format.allocatePcmBuffer();
         double[][] normalizedData = format.allocateSampleBuffer();
         ByteBuffer pcmBuffer = format.wrapPCMBuffer(pcmData);
+        SampleBuffer sampleBuffer = new SampleBuffer(normalizedData, 0, format.getSampleBufferSize(), nbChannels);
+        timingHistogram.reset();
         line.start();
         for (; ; ) {
             int nbRead = line.read(pcmData, 0, pcmData.length);
@@ -67,20 +89,22 @@ public class AudioInputLine extends AudioLine implements Closeable {
                 outputLine.sendBuffer(pcmData, nbRead);
             }
             int nbSampleRead = nbRead / frameSize;
-            double durationInNano = format.samplesToMilliseconds(nbSampleRead) * 1000000L;
             converter.convert(pcmBuffer, normalizedData, nbSampleRead, nbChannels);
             if (listener != null) {
-                long start = System.nanoTime();
-                boolean continueRecord = listener.onNewBuffer(new SampleBuffer(normalizedData, 0, nbSampleRead, nbChannels), pcmData, nbRead);
-                double elapsedTime = System.nanoTime() - start;
-                if (elapsedTime > durationInNano) {
-                    log.error("ERROR: listener take too much time to process the buffer: " + (elapsedTime / 1000000f) + " ms");
-                    //continueRecord = false;
+                // the view is rebuilt only when the line deliver a partial buffer
+                if (sampleBuffer.nbSamples() != nbSampleRead) {
+                    sampleBuffer = new SampleBuffer(normalizedData, 0, nbSampleRead, nbChannels);
                 }
+                long start = System.nanoTime();
+                boolean continueRecord = listener.onNewBuffer(sampleBuffer, pcmData, nbRead);
+                timingHistogram.record(System.nanoTime() - start, nbSampleRead * NANOS_PER_SECOND / format.getSampleRate());
                 if (!continueRecord) {
                     break;
                 }
             }
         }
+        if (timingHistogram.getOverruns() > 0) {
+            log.warn("Listener took too much time to process some buffers: {}", timingHistogram);
+        }
     }
 }
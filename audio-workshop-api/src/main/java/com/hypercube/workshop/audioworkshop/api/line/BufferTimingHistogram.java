@@ -0,0 +1,83 @@
+package com.hypercube.workshop.audioworkshop.api.line;
+
+import lombok.Getter;
+
+/**
+ * Fixed size histogram of the time spent by a listener on each buffer, relative to the buffer duration (the "budget")
+ * <ul>
+ *     <li>Each bucket is {@link #BUCKET_WIDTH_PERCENT}% of the budget wide</li>
+ *     <li>The last bucket collects everything above {@link #NB_BUCKETS} x {@link #BUCKET_WIDTH_PERCENT}%</li>
+ *     <li>An overrun is a buffer which took more time than its budget, meaning the capture is late</li>
+ * </ul>
+ * <p>Nothing is allocated nor logged when a value is recorded, so this can be used in the capture loop.</p>
+ * <p>The histogram is written by the capture thread only. Reading it from another thread gives an approximate snapshot.</p>
+ */
+public class BufferTimingHistogram {
+    public static final int BUCKET_WIDTH_PERCENT = 10;
+    public static final int NB_BUCKETS = 20;
+
+    private final long[] buckets = new long[NB_BUCKETS];
+    @Getter
+    private long nbBuffers;
+    @Getter
+    private long overruns;
+    @Getter
+    private long maxElapsedNanos;
+    @Getter
+    private long totalElapsedNanos;
+
+    public void reset() {
+        for (int i = 0; i < NB_BUCKETS; i++) {
+            buckets[i] = 0;
+        }
+        nbBuffers = 0;
+        overruns = 0;
+        maxElapsedNanos = 0;
+        totalElapsedNanos = 0;
+    }
+
+    /**
+     * @param elapsedNanos time spent to process the buffer
+     * @param budgetNanos  duration of the buffer
+     */
+    public void record(long elapsedNanos, long budgetNanos) {
+        long percent = budgetNanos > 0 ? elapsedNanos * 100 / budgetNanos : 100;
+        int bucket = (int) Math.min(percent / BUCKET_WIDTH_PERCENT, NB_BUCKETS - 1);
+        buckets[bucket]++;
+        nbBuffers++;
+        totalElapsedNanos += elapsedNanos;
+        maxElapsedNanos = Math.max(maxElapsedNanos, elapsedNanos);
+        if (elapsedNanos > budgetNanos) {
+            overruns++;
+        }
+    }
+
+    /**
+     * @param bucket index in [0,{@link #NB_BUCKETS}[
+     * @return how many buffers took between bucket*{@link #BUCKET_WIDTH_PERCENT}% and (bucket+1)*{@link #BUCKET_WIDTH_PERCENT}% of their budget
+     */
+    public long getBucket(int bucket) {
+        return buckets[bucket];
+    }
+
+    /**
+     * @param percentile in [0,100]
+     * @return upper bound of the bucket containing this percentile, in percent of the budget
+     */
+    public int getPercentile(double percentile) {
+        long threshold = (long) Math.ceil(nbBuffers * percentile / 100.0);
+        long count = 0;
+        for (int i = 0; i < NB_BUCKETS; i++) {
+            count += buckets[i];
+            if (count >= threshold) {
+                return (i + 1) * BUCKET_WIDTH_PERCENT;
+            }
+        }
+        return NB_BUCKETS * BUCKET_WIDTH_PERCENT;
+    }
+
+    @Override
+    public String toString() {
+        return "%d buffers, %d overruns, max %.3f ms, p50 <= %d%%, p99 <= %d%% of budget".formatted(nbBuffers, overruns, maxElapsedNanos / 1000000.0, getPercentile(50), getPercentile(99));
+    }
+}
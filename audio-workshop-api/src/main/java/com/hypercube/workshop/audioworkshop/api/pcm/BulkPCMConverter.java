@@ -0,0 +1,383 @@
+package com.hypercube.workshop.audioworkshop.api.pcm;
+
+import com.hypercube.workshop.audioworkshop.api.format.PCMFormat;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * PCM codecs working directly on the array behind a heap {@link ByteBuffer}
+ * <p>{@link ByteBuffer#getShort()} checks the bounds and moves the position for every sample. Here the samples are read
+ * and written with {@link VarHandle} views upon the byte array, one channel at a time, so the inner loop only does
+ * a load, a conversion and a store.</p>
+ * <p>Unsigned encodings are the signed ones with the sign bit flipped, so each bit depth needs a single loop.
+ * Decoders work in two passes per channel: the strided reads gather integer samples, then a contiguous loop scales them.
+ * The JIT vectorizes the second one, it multiplies by the inverse of the full scale instead of dividing by it: this is
+ * a power of two, so the result does not change.</p>
+ * <p>The results are exactly the ones of the {@link PCMConverter} scalar codecs, which stay in use for buffers without
+ * an accessible array (direct, memory mapped or read only buffers).</p>
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+final class BulkPCMConverter {
+    private static final VarHandle SHORT_LE = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle SHORT_BE = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle INT_LE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INT_BE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    /**
+     * Gathered samples of one channel, kept per thread so the capture loops don't allocate
+     */
+    private static final ThreadLocal<int[]> SCRATCH = ThreadLocal.withInitial(() -> new int[0]);
+
+    static PCMtoSampleFunction getPCMtoSampleFunction(PCMFormat format) {
+        int flip = signFlip(format);
+        return switch (format.getBitDepth()) {
+            case BIT_DEPTH_8 -> (pcmBuffer, output, nbSamples, nbChannels) -> decode8(pcmBuffer, output, nbSamples, nbChannels, flip);
+            case BIT_DEPTH_16 -> (pcmBuffer, output, nbSamples, nbChannels) -> decode16(pcmBuffer, output, nbSamples, nbChannels, flip);
+            case BIT_DEPTH_24 -> (pcmBuffer, output, nbSamples, nbChannels) -> decode24(pcmBuffer, output, nbSamples, nbChannels, flip);
+            case BIT_DEPTH_32 -> (pcmBuffer, output, nbSamples, nbChannels) -> decode32(pcmBuffer, output, nbSamples, nbChannels, flip);
+        };
+    }
+
+    static SampleToPCMFunction getSampleToPCMFunction(PCMFormat format) {
+        int flip = signFlip(format);
+        return switch (format.getBitDepth()) {
+            case BIT_DEPTH_8 -> (input, pcmBuffer, nbSamples, nbChannels) -> encode8(input, pcmBuffer, nbSamples, nbChannels, flip);
+            case BIT_DEPTH_16 -> (input, pcmBuffer, nbSamples, nbChannels) -> encode16(input, pcmBuffer, nbSamples, nbChannels, flip);
+            case BIT_DEPTH_24 -> (input, pcmBuffer, nbSamples, nbChannels) -> encode24(input, pcmBuffer, nbSamples, nbChannels, flip);
+            case BIT_DEPTH_32 -> (input, pcmBuffer, nbSamples, nbChannels) -> encode32(input, pcmBuffer, nbSamples, nbChannels, flip);
+        };
+    }
+
+    static PCMtoFloatSampleFunction getPCMtoFloatSampleFunction(PCMFormat format) {
+        int flip = signFlip(format);
+        return switch (format.getBitDepth()) {
+            case BIT_DEPTH_8 -> (pcmBuffer, output, nbSamples, nbChannels) -> decode8(pcmBuffer, output, nbSamples, nbChannels, flip);
+            case BIT_DEPTH_16 -> (pcmBuffer, output, nbSamples, nbChannels) -> decode16(pcmBuffer, output, nbSamples, nbChannels, flip);
+            case BIT_DEPTH_24 -> (pcmBuffer, output, nbSamples, nbChannels) -> decode24(pcmBuffer, output, nbSamples, nbChannels, flip);
+            case BIT_DEPTH_32 -> (pcmBuffer, output, nbSamples, nbChannels) -> decode32(pcmBuffer, output, nbSamples, nbChannels, flip);
+        };
+    }
+
+    static FloatSampleToPCMFunction getFloatSampleToPCMFunction(PCMFormat format) {
+        int flip = signFlip(format);
+        return switch (format.getBitDepth()) {
+            case BIT_DEPTH_8 -> (input, pcmBuffer, nbSamples, nbChannels) -> encode8(input, pcmBuffer, nbSamples, nbChannels, flip);
+            case BIT_DEPTH_16 -> (input, pcmBuffer, nbSamples, nbChannels) -> encode16(input, pcmBuffer, nbSamples, nbChannels, flip);
+            case BIT_DEPTH_24 -> (input, pcmBuffer, nbSamples, nbChannels) -> encode24(input, pcmBuffer, nbSamples, nbChannels, flip);
+            case BIT_DEPTH_32 -> (input, pcmBuffer, nbSamples, nbChannels) -> encode32(input, pcmBuffer, nbSamples, nbChannels, flip);
+        };
+    }
+
+    /**
+     * Unsigned PCM minus its offset is the signed value with the sign bit flipped
+     */
+    private static int signFlip(PCMFormat format) {
+        return format.getEncoding() == PCMEncoding.SIGNED ? 0 : 1 << (format.getBitDepth()
+                .getBits() - 1);
+    }
+
+    private static boolean isBigEndian(ByteBuffer pcmBuffer) {
+        return pcmBuffer.order() == ByteOrder.BIG_ENDIAN;
+    }
+
+    private static short getShort(byte[] pcm, int index, boolean bigEndian) {
+        return bigEndian ? (short) SHORT_BE.get(pcm, index) : (short) SHORT_LE.get(pcm, index);
+    }
+
+    private static void putShort(byte[] pcm, int index, short value, boolean bigEndian) {
+        if (bigEndian) {
+            SHORT_BE.set(pcm, index, value);
+        } else {
+            SHORT_LE.set(pcm, index, value);
+        }
+    }
+
+    private static int getInt(byte[] pcm, int index, boolean bigEndian) {
+        return bigEndian ? (int) INT_BE.get(pcm, index) : (int) INT_LE.get(pcm, index);
+    }
+
+    private static void putInt(byte[] pcm, int index, int value, boolean bigEndian) {
+        if (bigEndian) {
+            INT_BE.set(pcm, index, value);
+        } else {
+            INT_LE.set(pcm, index, value);
+        }
+    }
+
+    /**
+     * @return the 24 bits value, sign extended
+     */
+    private static int getInt24(byte[] pcm, int index, boolean bigEndian) {
+        if (bigEndian) {
+            return pcm[index] << 16 | (pcm[index + 1] & 0xFF) << 8 | (pcm[index + 2] & 0xFF);
+        } else {
+            return (pcm[index] & 0xFF) | (pcm[index + 1] & 0xFF) << 8 | pcm[index + 2] << 16;
+        }
+    }
+
+    private static void putInt24(byte[] pcm, int index, int value, boolean bigEndian) {
+        if (bigEndian) {
+            pcm[index] = (byte) (value >> 16);
+            pcm[index + 1] = (byte) (value >> 8);
+            pcm[index + 2] = (byte) value;
+        } else {
+            pcm[index] = (byte) value;
+            pcm[index + 1] = (byte) (value >> 8);
+            pcm[index + 2] = (byte) (value >> 16);
+        }
+    }
+
+    private static int[] scratch(int nbSamples) {
+        int[] samples = SCRATCH.get();
+        if (samples.length < nbSamples) {
+            samples = new int[nbSamples];
+            SCRATCH.set(samples);
+        }
+        return samples;
+    }
+
+    /**
+     * Second pass of the decoders, once the samples of a channel are gathered: a contiguous loop the JIT can vectorize
+     */
+    private static void scale(int[] samples, double[] output, int nbSamples, double scale) {
+        for (int s = 0; s < nbSamples; s++) {
+            output[s] = samples[s] * scale;
+        }
+    }
+
+    private static void scale(int[] samples, float[] output, int nbSamples, float scale) {
+        for (int s = 0; s < nbSamples; s++) {
+            output[s] = samples[s] * scale;
+        }
+    }
+
+    private static void decode8(ByteBuffer pcmBuffer, double[][] normalizedOutput, int nbSamples, int nbChannels, int flip) {
+        byte[] pcm = pcmBuffer.array();
+        int offset = pcmBuffer.arrayOffset();
+        int[] samples = scratch(nbSamples);
+        for (int c = 0; c < nbChannels; c++) {
+            for (int s = 0, index = offset + c; s < nbSamples; s++, index += nbChannels) {
+                samples[s] = (byte) (pcm[index] ^ flip);
+            }
+            scale(samples, normalizedOutput[c], nbSamples, 1 / (double) 0x80);
+        }
+        pcmBuffer.position(nbSamples * nbChannels);
+    }
+
+    private static void decode16(ByteBuffer pcmBuffer, double[][] normalizedOutput, int nbSamples, int nbChannels, int flip) {
+        byte[] pcm = pcmBuffer.array();
+        int offset = pcmBuffer.arrayOffset();
+        boolean bigEndian = isBigEndian(pcmBuffer);
+        int frameSize = 2 * nbChannels;
+        int[] samples = scratch(nbSamples);
+        for (int c = 0; c < nbChannels; c++) {
+            for (int s = 0, index = offset + 2 * c; s < nbSamples; s++, index += frameSize) {
+                samples[s] = (short) (getShort(pcm, index, bigEndian) ^ flip);
+            }
+            scale(samples, normalizedOutput[c], nbSamples, 1 / (double) 0x8000);
+        }
+        pcmBuffer.position(nbSamples * frameSize);
+    }
+
+    private static void decode24(ByteBuffer pcmBuffer, double[][] normalizedOutput, int nbSamples, int nbChannels, int flip) {
+        byte[] pcm = pcmBuffer.array();
+        int offset = pcmBuffer.arrayOffset();
+        boolean bigEndian = isBigEndian(pcmBuffer);
+        int frameSize = 3 * nbChannels;
+        int[] samples = scratch(nbSamples);
+        for (int c = 0; c < nbChannels; c++) {
+            for (int s = 0, index = offset + 3 * c; s < nbSamples; s++, index += frameSize) {
+                // the flip may clear the sign bit, extend it again
+                samples[s] = (getInt24(pcm, index, bigEndian) ^ flip) << 8 >> 8;
+            }
+            scale(samples, normalizedOutput[c], nbSamples, 1 / (double) 0x800000);
+        }
+        pcmBuffer.position(nbSamples * frameSize);
+    }
+
+    private static void decode32(ByteBuffer pcmBuffer, double[][] normalizedOutput, int nbSamples, int nbChannels, int flip) {
+        byte[] pcm = pcmBuffer.array();
+        int offset = pcmBuffer.arrayOffset();
+        boolean bigEndian = isBigEndian(pcmBuffer);
+        int frameSize = 4 * nbChannels;
+        int[] samples = scratch(nbSamples);
+        for (int c = 0; c < nbChannels; c++) {
+            for (int s = 0, index = offset + 4 * c; s < nbSamples; s++, index += frameSize) {
+                samples[s] = getInt(pcm, index, bigEndian) ^ flip;
+            }
+            scale(samples, normalizedOutput[c], nbSamples, 1 / (double) 0x80000000);
+        }
+        pcmBuffer.position(nbSamples * frameSize);
+    }
+
+    private static void encode8(double[][] normalizedInput, ByteBuffer pcmBuffer, int nbSamples, int nbChannels, int flip) {
+        byte[] pcm = pcmBuffer.array();
+        int offset = pcmBuffer.arrayOffset();
+        for (int c = 0; c < nbChannels; c++) {
+            double[] input = normalizedInput[c];
+            for (int s = 0, index = offset + c; s < nbSamples; s++, index += nbChannels) {
+                pcm[index] = (byte) ((int) (input[s] * (double) 0x80) ^ flip);
+            }
+        }
+        pcmBuffer.position(nbSamples * nbChannels);
+    }
+
+    private static void encode16(double[][] normalizedInput, ByteBuffer pcmBuffer, int nbSamples, int nbChannels, int flip) {
+        byte[] pcm = pcmBuffer.array();
+        int offset = pcmBuffer.arrayOffset();
+        boolean bigEndian = isBigEndian(pcmBuffer);
+        int frameSize = 2 * nbChannels;
+        for (int c = 0; c < nbChannels; c++) {
+            double[] input = normalizedInput[c];
+            for (int s = 0, index = offset + 2 * c; s < nbSamples; s++, index += frameSize) {
+                putShort(pcm, index, (short) ((int) (input[s] * (double) 0x8000) ^ flip), bigEndian);
+            }
+        }
+        pcmBuffer.position(nbSamples * frameSize);
+    }
+
+    private static void encode24(double[][] normalizedInput, ByteBuffer pcmBuffer, int nbSamples, int nbChannels, int flip) {
+        byte[] pcm = pcmBuffer.array();
+        int offset = pcmBuffer.arrayOffset();
+        boolean bigEndian = isBigEndian(pcmBuffer);
+        int frameSize = 3 * nbChannels;
+        for (int c = 0; c < nbChannels; c++) {
+            double[] input = normalizedInput[c];
+            for (int s = 0, index = offset + 3 * c; s < nbSamples; s++, index += frameSize) {
+                putInt24(pcm, index, (int) (input[s] * (double) 0x800000) ^ flip, bigEndian);
+            }
+        }
+        pcmBuffer.position(nbSamples * frameSize);
+    }
+
+    private static void encode32(double[][] normalizedInput, ByteBuffer pcmBuffer, int nbSamples, int nbChannels, int flip) {
+        byte[] pcm = pcmBuffer.array();
+        int offset = pcmBuffer.arrayOffset();
+        boolean bigEndian = isBigEndian(pcmBuffer);
+        int frameSize = 4 * nbChannels;
+        for (int c = 0; c < nbChannels; c++) {
+            double[] input = normalizedInput[c];
+            for (int s = 0, index = offset + 4 * c; s < nbSamples; s++, index += frameSize) {
+                putInt(pcm, index, (int) (input[s] * (double) 0x80000000) ^ flip, bigEndian);
+            }
+        }
+        pcmBuffer.position(nbSamples * frameSize);
+    }
+
+    private static void decode8(ByteBuffer pcmBuffer, float[][] normalizedOutput, int nbSamples, int nbChannels, int flip) {
+        byte[] pcm = pcmBuffer.array();
+        int offset = pcmBuffer.arrayOffset();
+        int[] samples = scratch(nbSamples);
+        for (int c = 0; c < nbChannels; c++) {
+            for (int s = 0, index = offset + c; s < nbSamples; s++, index += nbChannels) {
+                samples[s] = (byte) (pcm[index] ^ flip);
+            }
+            scale(samples, normalizedOutput[c], nbSamples, 1 / (float) 0x80);
+        }
+        pcmBuffer.position(nbSamples * nbChannels);
+    }
+
+    private static void decode16(ByteBuffer pcmBuffer, float[][] normalizedOutput, int nbSamples, int nbChannels, int flip) {
+        byte[] pcm = pcmBuffer.array();
+        int offset = pcmBuffer.arrayOffset();
+        boolean bigEndian = isBigEndian(pcmBuffer);
+        int frameSize = 2 * nbChannels;
+        int[] samples = scratch(nbSamples);
+        for (int c = 0; c < nbChannels; c++) {
+            for (int s = 0, index = offset + 2 * c; s < nbSamples; s++, index += frameSize) {
+                samples[s] = (short) (getShort(pcm, index, bigEndian) ^ flip);
+            }
+            scale(samples, normalizedOutput[c], nbSamples, 1 / (float) 0x8000);
+        }
+        pcmBuffer.position(nbSamples * frameSize);
+    }
+
+    private static void decode24(ByteBuffer pcmBuffer, float[][] normalizedOutput, int nbSamples, int nbChannels, int flip) {
+        byte[] pcm = pcmBuffer.array();
+        int offset = pcmBuffer.arrayOffset();
+        boolean bigEndian = isBigEndian(pcmBuffer);
+        int frameSize = 3 * nbChannels;
+        int[] samples = scratch(nbSamples);
+        for (int c = 0; c < nbChannels; c++) {
+            for (int s = 0, index = offset + 3 * c; s < nbSamples; s++, index += frameSize) {
+                // the flip may clear the sign bit, extend it again
+                samples[s] = (getInt24(pcm, index, bigEndian) ^ flip) << 8 >> 8;
+            }
+            scale(samples, normalizedOutput[c], nbSamples, 1 / (float) 0x800000);
+        }
+        pcmBuffer.position(nbSamples * frameSize);
+    }
+
+    private static void decode32(ByteBuffer pcmBuffer, float[][] normalizedOutput, int nbSamples, int nbChannels, int flip) {
+        byte[] pcm = pcmBuffer.array();
+        int offset = pcmBuffer.arrayOffset();
+        boolean bigEndian = isBigEndian(pcmBuffer);
+        int frameSize = 4 * nbChannels;
+        int[] samples = scratch(nbSamples);
+        for (int c = 0; c < nbChannels; c++) {
+            for (int s = 0, index = offset + 4 * c; s < nbSamples; s++, index += frameSize) {
+                samples[s] = getInt(pcm, index, bigEndian) ^ flip;
+            }
+            scale(samples, normalizedOutput[c], nbSamples, 1 / (float) 0x80000000);
+        }
+        pcmBuffer.position(nbSamples * frameSize);
+    }
+
+    private static void encode8(float[][] normalizedInput, ByteBuffer pcmBuffer, int nbSamples, int nbChannels, int flip) {
+        byte[] pcm = pcmBuffer.array();
+        int offset = pcmBuffer.arrayOffset();
+        for (int c = 0; c < nbChannels; c++) {
+            float[] input = normalizedInput[c];
+            for (int s = 0, index = offset + c; s < nbSamples; s++, index += nbChannels) {
+                pcm[index] = (byte) ((int) (input[s] * (float) 0x80) ^ flip);
+            }
+        }
+        pcmBuffer.position(nbSamples * nbChannels);
+    }
+
+    private static void encode16(float[][] normalizedInput, ByteBuffer pcmBuffer, int nbSamples, int nbChannels, int flip) {
+        byte[] pcm = pcmBuffer.array();
+        int offset = pcmBuffer.arrayOffset();
+        boolean bigEndian = isBigEndian(pcmBuffer);
+        int frameSize = 2 * nbChannels;
+        for (int c = 0; c < nbChannels; c++) {
+            float[] input = normalizedInput[c];
+            for (int s = 0, index = offset + 2 * c; s < nbSamples; s++, index += frameSize) {
+                putShort(pcm, index, (short) ((int) (input[s] * (float) 0x8000) ^ flip), bigEndian);
+            }
+        }
+        pcmBuffer.position(nbSamples * frameSize);
+    }
+
+    private static void encode24(float[][] normalizedInput, ByteBuffer pcmBuffer, int nbSamples, int nbChannels, int flip) {
+        byte[] pcm = pcmBuffer.array();
+        int offset = pcmBuffer.arrayOffset();
+        boolean bigEndian = isBigEndian(pcmBuffer);
+        int frameSize = 3 * nbChannels;
+        for (int c = 0; c < nbChannels; c++) {
+            float[] input = normalizedInput[c];
+            for (int s = 0, index = offset + 3 * c; s < nbSamples; s++, index += frameSize) {
+                putInt24(pcm, index, (int) (input[s] * (float) 0x800000) ^ flip, bigEndian);
+            }
+        }
+        pcmBuffer.position(nbSamples * frameSize);
+    }
+
+    private static void encode32(float[][] normalizedInput, ByteBuffer pcmBuffer, int nbSamples, int nbChannels, int flip) {
+        byte[] pcm = pcmBuffer.array();
+        int offset = pcmBuffer.arrayOffset();
+        boolean bigEndian = isBigEndian(pcmBuffer);
+        int frameSize = 4 * nbChannels;
+        for (int c = 0; c < nbChannels; c++) {
+            float[] input = normalizedInput[c];
+            for (int s = 0, index = offset + 4 * c; s < nbSamples; s++, index += frameSize) {
+                putInt(pcm, index, (int) (input[s] * (float) 0x80000000) ^ flip, bigEndian);
+            }
+        }
+        pcmBuffer.position(nbSamples * frameSize);
+    }
+}
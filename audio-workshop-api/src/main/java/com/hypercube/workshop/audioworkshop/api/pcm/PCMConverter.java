@@ -5,12 +5,16 @@ import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.text.NumberFormat;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
 import java.util.stream.IntStream;
 
+/**
+ * Conversion between PCM bytes and normalized samples
+ */
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 public class PCMConverter {
     private static final NumberFormat formatter = NumberFormat.getNumberInstance(Locale.ENGLISH);
@@ -41,7 +45,17 @@ public class PCMConverter {
                 .toList();
     }
 
+    /**
+     * Heap buffers are converted by {@link BulkPCMConverter} straight from their backing array, other buffers go
+     * through the scalar codecs of this class. Both give the same results.
+     */
     public static PCMtoSampleFunction getPCMtoSampleFunction(PCMFormat format) {
+        PCMtoSampleFunction scalar = getScalarPCMtoSampleFunction(format);
+        PCMtoSampleFunction bulk = BulkPCMConverter.getPCMtoSampleFunction(format);
+        return (pcmBuffer, output, nbSamples, nbChannels) -> (pcmBuffer.hasArray() ? bulk : scalar).convert(pcmBuffer, output, nbSamples, nbChannels);
+    }
+
+    static PCMtoSampleFunction getScalarPCMtoSampleFunction(PCMFormat format) {
         switch (format.getEncoding()) {
             case SIGNED -> {
                 switch (format.getBitDepth()) {
@@ -80,6 +94,12 @@ public class PCMConverter {
     }
 
     public static SampleToPCMFunction getSampleToPCMFunction(PCMFormat format) {
+        SampleToPCMFunction scalar = getScalarSampleToPCMFunction(format);
+        SampleToPCMFunction bulk = BulkPCMConverter.getSampleToPCMFunction(format);
+        return (input, pcmBuffer, nbSamples, nbChannels) -> (pcmBuffer.hasArray() ? bulk : scalar).convert(input, pcmBuffer, nbSamples, nbChannels);
+    }
+
+    static SampleToPCMFunction getScalarSampleToPCMFunction(PCMFormat format) {
         switch (format.getEncoding()) {
             case SIGNED -> {
                 switch (format.getBitDepth()) {
@@ -93,23 +113,23 @@ public class PCMConverter {
                         return PCMConverter::sampleToSigned24Bits;
                     }
                     case BIT_DEPTH_32 -> {
-                        throw new UnsupportedOperationException();
+                        return PCMConverter::sampleToSigned32Bits;
                     }
                 }
             }
             case UNSIGNED -> {
                 switch (format.getBitDepth()) {
                     case BIT_DEPTH_8 -> {
-                        throw new UnsupportedOperationException();
+                        return PCMConverter::sampleToUnsigned8Bits;
                     }
                     case BIT_DEPTH_16 -> {
-                        throw new UnsupportedOperationException();
+                        return PCMConverter::sampleToUnsigned16Bits;
                     }
                     case BIT_DEPTH_24 -> {
-                        throw new UnsupportedOperationException();
+                        return PCMConverter::sampleToUnsigned24Bits;
                     }
                     case BIT_DEPTH_32 -> {
-                        throw new UnsupportedOperationException();
+                        return PCMConverter::sampleToUnsigned32Bits;
                     }
                 }
             }
@@ -117,6 +137,72 @@ public class PCMConverter {
         throw new UnsupportedOperationException();
     }
 
+    public static PCMtoFloatSampleFunction getPCMtoFloatSampleFunction(PCMFormat format) {
+        PCMtoFloatSampleFunction scalar = getScalarPCMtoFloatSampleFunction(format);
+        PCMtoFloatSampleFunction bulk = BulkPCMConverter.getPCMtoFloatSampleFunction(format);
+        return (pcmBuffer, output, nbSamples, nbChannels) -> (pcmBuffer.hasArray() ? bulk : scalar).convert(pcmBuffer, output, nbSamples, nbChannels);
+    }
+
+    static PCMtoFloatSampleFunction getScalarPCMtoFloatSampleFunction(PCMFormat format) {
+        boolean signed = format.getEncoding() == PCMEncoding.SIGNED;
+        return switch (format.getBitDepth()) {
+            case BIT_DEPTH_8 -> signed ? PCMConverter::signed8BitToFloatSample : PCMConverter::unsigned8BitToFloatSample;
+            case BIT_DEPTH_16 ->
+                    signed ? PCMConverter::signed16BitToFloatSample : PCMConverter::unsigned16BitToFloatSample;
+            case BIT_DEPTH_24 ->
+                    signed ? PCMConverter::signed24BitToFloatSample : PCMConverter::unsigned24BitToFloatSample;
+            case BIT_DEPTH_32 ->
+                    signed ? PCMConverter::signed32BitToFloatSample : PCMConverter::unsigned32BitToFloatSample;
+        };
+    }
+
+    public static FloatSampleToPCMFunction getFloatSampleToPCMFunction(PCMFormat format) {
+        FloatSampleToPCMFunction scalar = getScalarFloatSampleToPCMFunction(format);
+        FloatSampleToPCMFunction bulk = BulkPCMConverter.getFloatSampleToPCMFunction(format);
+        return (input, pcmBuffer, nbSamples, nbChannels) -> (pcmBuffer.hasArray() ? bulk : scalar).convert(input, pcmBuffer, nbSamples, nbChannels);
+    }
+
+    static FloatSampleToPCMFunction getScalarFloatSampleToPCMFunction(PCMFormat format) {
+        boolean signed = format.getEncoding() == PCMEncoding.SIGNED;
+        return switch (format.getBitDepth()) {
+            case BIT_DEPTH_8 -> signed ? PCMConverter::floatSampleToSigned8Bits : PCMConverter::floatSampleToUnsigned8Bits;
+            case BIT_DEPTH_16 ->
+                    signed ? PCMConverter::floatSampleToSigned16Bits : PCMConverter::floatSampleToUnsigned16Bits;
+            case BIT_DEPTH_24 ->
+                    signed ? PCMConverter::floatSampleToSigned24Bits : PCMConverter::floatSampleToUnsigned24Bits;
+            case BIT_DEPTH_32 ->
+                    signed ? PCMConverter::floatSampleToSigned32Bits : PCMConverter::floatSampleToUnsigned32Bits;
+        };
+    }
+
+    /**
+     * Read a 24 bits sample in the byte order of the buffer: low, mid, high in little endian
+     *
+     * @return the sample, sign extended
+     */
+    private static int getInt24(ByteBuffer pcmBuffer) {
+        int b0 = pcmBuffer.get();
+        int b1 = pcmBuffer.get();
+        int b2 = pcmBuffer.get();
+        if (pcmBuffer.order() == ByteOrder.BIG_ENDIAN) {
+            return b0 << 16 | (b1 & 0xFF) << 8 | (b2 & 0xFF);
+        } else {
+            return (b0 & 0xFF) | (b1 & 0xFF) << 8 | b2 << 16;
+        }
+    }
+
+    private static void putInt24(ByteBuffer pcmBuffer, int sample) {
+        if (pcmBuffer.order() == ByteOrder.BIG_ENDIAN) {
+            pcmBuffer.put((byte) (sample >> 16));
+            pcmBuffer.put((byte) (sample >> 8));
+            pcmBuffer.put((byte) sample);
+        } else {
+            pcmBuffer.put((byte) sample);
+            pcmBuffer.put((byte) (sample >> 8));
+            pcmBuffer.put((byte) (sample >> 16));
+        }
+    }
+
     public static void sampleToSigned8Bits(double[][] normalizedInput, ByteBuffer pcmBuffer, int nbSamples, int nbChannels) {
         pcmBuffer.rewind();
         for (int s = 0; s < nbSamples; s++) {
@@ -142,8 +228,57 @@ public class PCMConverter {
         for (int s = 0; s < nbSamples; s++) {
             for (int channel = 0; channel < nbChannels; channel++) {
                 int sample = (int) (normalizedInput[channel][s] * (double) 0x800000);
-                pcmBuffer.putShort((short) (sample >> 8));
-                pcmBuffer.put((byte) (sample & 0xff));
+                putInt24(pcmBuffer, sample);
+            }
+        }
+    }
+
+    public static void sampleToSigned32Bits(double[][] normalizedInput, ByteBuffer pcmBuffer, int nbSamples, int nbChannels) {
+        pcmBuffer.rewind();
+        for (int s = 0; s < nbSamples; s++) {
+            for (int channel = 0; channel < nbChannels; channel++) {
+                double sample = normalizedInput[channel][s] * (double) 0x80000000;
+                pcmBuffer.putInt((int) sample);
+            }
+        }
+    }
+
+    public static void sampleToUnsigned8Bits(double[][] normalizedInput, ByteBuffer pcmBuffer, int nbSamples, int nbChannels) {
+        pcmBuffer.rewind();
+        for (int s = 0; s < nbSamples; s++) {
+            for (int channel = 0; channel < nbChannels; channel++) {
+                int sample = (int) (normalizedInput[channel][s] * (double) 0x80) + 0x80;
+                pcmBuffer.put((byte) sample);
+            }
+        }
+    }
+
+    public static void sampleToUnsigned16Bits(double[][] normalizedInput, ByteBuffer pcmBuffer, int nbSamples, int nbChannels) {
+        pcmBuffer.rewind();
+        for (int s = 0; s < nbSamples; s++) {
+            for (int channel = 0; channel < nbChannels; channel++) {
+                int sample = (int) (normalizedInput[channel][s] * (double) 0x8000) + 0x8000;
+                pcmBuffer.putShort((short) sample);
+            }
+        }
+    }
+
+    public static void sampleToUnsigned24Bits(double[][] normalizedInput, ByteBuffer pcmBuffer, int nbSamples, int nbChannels) {
+        pcmBuffer.rewind();
+        for (int s = 0; s < nbSamples; s++) {
+            for (int channel = 0; channel < nbChannels; channel++) {
+                int sample = (int) (normalizedInput[channel][s] * (double) 0x800000) + 0x800000;
+                putInt24(pcmBuffer, sample);
+            }
+        }
+    }
+
+    public static void sampleToUnsigned32Bits(double[][] normalizedInput, ByteBuffer pcmBuffer, int nbSamples, int nbChannels) {
+        pcmBuffer.rewind();
+        for (int s = 0; s < nbSamples; s++) {
+            for (int channel = 0; channel < nbChannels; channel++) {
+                int sample = (int) (normalizedInput[channel][s] * (double) 0x80000000) + 0x80000000;
+                pcmBuffer.putInt(sample);
             }
         }
     }
@@ -172,12 +307,7 @@ public class PCMConverter {
         pcmBuffer.rewind();
         for (int s = 0; s < nbSamples; s++) {
             for (int channel = 0; channel < nbChannels; channel++) {
-                int sample_h = pcmBuffer.get() & 0xFF;
-                int sample_l = pcmBuffer.getShort() & 0xFFFF;
-                int sample = (sample_h << 16 | sample_l);
-                if ((sample & 0x800000) != 0) {
-                    sample = sample | 0xFF000000;
-                }
+                int sample = getInt24(pcmBuffer);
                 normalizedOutput[channel][s] = sample / (double) 0x800000;
             }
         }
@@ -217,9 +347,7 @@ public class PCMConverter {
         pcmBuffer.rewind();
         for (int s = 0; s < nbSamples; s++) {
             for (int channel = 0; channel < nbChannels; channel++) {
-                int sample_h = pcmBuffer.get() & 0xFF;
-                int sample_l = pcmBuffer.getShort() & 0xFFFF;
-                int sample = ((sample_h << 16 | sample_l) & 0xFFFFFF) - 0x800000;
+                int sample = (getInt24(pcmBuffer) & 0xFFFFFF) - 0x800000;
                 normalizedOutput[channel][s] = sample / (double) 0x800000;
             }
         }
@@ -234,4 +362,164 @@ public class PCMConverter {
             }
         }
     }
+
+    public static void floatSampleToSigned8Bits(float[][] normalizedInput, ByteBuffer pcmBuffer, int nbSamples, int nbChannels) {
+        pcmBuffer.rewind();
+        for (int s = 0; s < nbSamples; s++) {
+            for (int channel = 0; channel < nbChannels; channel++) {
+                int sample = (int) (normalizedInput[channel][s] * (float) 0x80);
+                pcmBuffer.put((byte) sample);
+            }
+        }
+    }
+
+    public static void floatSampleToUnsigned8Bits(float[][] normalizedInput, ByteBuffer pcmBuffer, int nbSamples, int nbChannels) {
+        pcmBuffer.rewind();
+        for (int s = 0; s < nbSamples; s++) {
+            for (int channel = 0; channel < nbChannels; channel++) {
+                int sample = (int) (normalizedInput[channel][s] * (float) 0x80) + 0x80;
+                pcmBuffer.put((byte) sample);
+            }
+        }
+    }
+
+    public static void floatSampleToSigned16Bits(float[][] normalizedInput, ByteBuffer pcmBuffer, int nbSamples, int nbChannels) {
+        pcmBuffer.rewind();
+        for (int s = 0; s < nbSamples; s++) {
+            for (int channel = 0; channel < nbChannels; channel++) {
+                int sample = (int) (normalizedInput[channel][s] * (float) 0x8000);
+                pcmBuffer.putShort((short) sample);
+            }
+        }
+    }
+
+    public static void floatSampleToUnsigned16Bits(float[][] normalizedInput, ByteBuffer pcmBuffer, int nbSamples, int nbChannels) {
+        pcmBuffer.rewind();
+        for (int s = 0; s < nbSamples; s++) {
+            for (int channel = 0; channel < nbChannels; channel++) {
+                int sample = (int) (normalizedInput[channel][s] * (float) 0x8000) + 0x8000;
+                pcmBuffer.putShort((short) sample);
+            }
+        }
+    }
+
+    public static void floatSampleToSigned24Bits(float[][] normalizedInput, ByteBuffer pcmBuffer, int nbSamples, int nbChannels) {
+        pcmBuffer.rewind();
+        for (int s = 0; s < nbSamples; s++) {
+            for (int channel = 0; channel < nbChannels; channel++) {
+                int sample = (int) (normalizedInput[channel][s] * (float) 0x800000);
+                putInt24(pcmBuffer, sample);
+            }
+        }
+    }
+
+    public static void floatSampleToUnsigned24Bits(float[][] normalizedInput, ByteBuffer pcmBuffer, int nbSamples, int nbChannels) {
+        pcmBuffer.rewind();
+        for (int s = 0; s < nbSamples; s++) {
+            for (int channel = 0; channel < nbChannels; channel++) {
+                int sample = (int) (normalizedInput[channel][s] * (float) 0x800000) + 0x800000;
+                putInt24(pcmBuffer, sample);
+            }
+        }
+    }
+
+    public static void floatSampleToSigned32Bits(float[][] normalizedInput, ByteBuffer pcmBuffer, int nbSamples, int nbChannels) {
+        pcmBuffer.rewind();
+        for (int s = 0; s < nbSamples; s++) {
+            for (int channel = 0; channel < nbChannels; channel++) {
+                int sample = (int) (normalizedInput[channel][s] * (float) 0x80000000);
+                pcmBuffer.putInt(sample);
+            }
+        }
+    }
+
+    public static void floatSampleToUnsigned32Bits(float[][] normalizedInput, ByteBuffer pcmBuffer, int nbSamples, int nbChannels) {
+        pcmBuffer.rewind();
+        for (int s = 0; s < nbSamples; s++) {
+            for (int channel = 0; channel < nbChannels; channel++) {
+                int sample = (int) (normalizedInput[channel][s] * (float) 0x80000000) + 0x80000000;
+                pcmBuffer.putInt(sample);
+            }
+        }
+    }
+
+    private static void signed8BitToFloatSample(ByteBuffer pcmBuffer, float[][] normalizedOutput, int nbSamples, int nbChannels) {
+        pcmBuffer.rewind();
+        for (int s = 0; s < nbSamples; s++) {
+            for (int channel = 0; channel < nbChannels; channel++) {
+                int sample = pcmBuffer.get();
+                normalizedOutput[channel][s] = sample / (float) 0x80;
+            }
+        }
+    }
+
+    private static void unsigned8BitToFloatSample(ByteBuffer pcmBuffer, float[][] normalizedOutput, int nbSamples, int nbChannels) {
+        pcmBuffer.rewind();
+        for (int s = 0; s < nbSamples; s++) {
+            for (int channel = 0; channel < nbChannels; channel++) {
+                int sample = (pcmBuffer.get() & 0xFF) - 0x80;
+                normalizedOutput[channel][s] = sample / (float) 0x80;
+            }
+        }
+    }
+
+    private static void signed16BitToFloatSample(ByteBuffer pcmBuffer, float[][] normalizedOutput, int nbSamples, int nbChannels) {
+        pcmBuffer.rewind();
+        for (int s = 0; s < nbSamples; s++) {
+            for (int channel = 0; channel < nbChannels; channel++) {
+                int sample = pcmBuffer.getShort();
+                normalizedOutput[channel][s] = sample / (float) 0x8000;
+            }
+        }
+    }
+
+    private static void unsigned16BitToFloatSample(ByteBuffer pcmBuffer, float[][] normalizedOutput, int nbSamples, int nbChannels) {
+        pcmBuffer.rewind();
+        for (int s = 0; s < nbSamples; s++) {
+            for (int channel = 0; channel < nbChannels; channel++) {
+                int sample = (pcmBuffer.getShort() & 0xFFFF) - 0x8000;
+                normalizedOutput[channel][s] = sample / (float) 0x8000;
+            }
+        }
+    }
+
+    private static void signed24BitToFloatSample(ByteBuffer pcmBuffer, float[][] normalizedOutput, int nbSamples, int nbChannels) {
+        pcmBuffer.rewind();
+        for (int s = 0; s < nbSamples; s++) {
+            for (int channel = 0; channel < nbChannels; channel++) {
+                int sample = getInt24(pcmBuffer);
+                normalizedOutput[channel][s] = sample / (float) 0x800000;
+            }
+        }
+    }
+
+    private static void unsigned24BitToFloatSample(ByteBuffer pcmBuffer, float[][] normalizedOutput, int nbSamples, int nbChannels) {
+        pcmBuffer.rewind();
+        for (int s = 0; s < nbSamples; s++) {
+            for (int channel = 0; channel < nbChannels; channel++) {
+                int sample = (getInt24(pcmBuffer) & 0xFFFFFF) - 0x800000;
+                normalizedOutput[channel][s] = sample / (float) 0x800000;
+            }
+        }
+    }
+
+    private static void signed32BitToFloatSample(ByteBuffer pcmBuffer, float[][] normalizedOutput, int nbSamples, int nbChannels) {
+        pcmBuffer.rewind();
+        for (int s = 0; s < nbSamples; s++) {
+            for (int channel = 0; channel < nbChannels; channel++) {
+                int sample = pcmBuffer.getInt();
+                normalizedOutput[channel][s] = sample / (float) 0x80000000;
+            }
+        }
+    }
+
+    private static void unsigned32BitToFloatSample(ByteBuffer pcmBuffer, float[][] normalizedOutput, int nbSamples, int nbChannels) {
+        pcmBuffer.rewind();
+        for (int s = 0; s < nbSamples; s++) {
+            for (int channel = 0; channel < nbChannels; channel++) {
+                int sample = pcmBuffer.getInt() - 0x80000000;
+                normalizedOutput[channel][s] = sample / (float) 0x80000000;
+            }
+        }
+    }
 }
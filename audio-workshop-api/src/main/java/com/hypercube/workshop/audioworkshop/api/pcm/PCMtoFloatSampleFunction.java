@@ -0,0 +1,11 @@
+package com.hypercube.workshop.audioworkshop.api.pcm;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Single precision version of {@link PCMtoSampleFunction}
+ */
+@FunctionalInterface
+public interface PCMtoFloatSampleFunction {
+    void convert(ByteBuffer pcmBuffer, float[][] normalizedOutput, int nbSamples, int nbChannels);
+}
@@ -0,0 +1,19 @@
+package com.hypercube.workshop.audioworkshop.api.record;
+
+/**
+ * What to do when the capture thread produce buffers faster than the consumer can handle them
+ */
+public enum BackPressurePolicy {
+    /**
+     * The oldest pending buffer is lost, the capture thread never waits
+     */
+    DROP_OLDEST,
+    /**
+     * The capture thread waits until the consumer free a slot, nothing is lost but the line may overrun
+     */
+    BLOCK,
+    /**
+     * The recording is stopped with an {@link com.hypercube.workshop.audioworkshop.api.errors.AudioError}
+     */
+    FAIL
+}
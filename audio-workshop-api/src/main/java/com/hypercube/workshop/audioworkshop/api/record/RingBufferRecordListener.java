@@ -0,0 +1,285 @@
+package com.hypercube.workshop.audioworkshop.api.record;
+
+import com.hypercube.workshop.audioworkshop.api.consumer.SampleBuffer;
+import com.hypercube.workshop.audioworkshop.api.errors.AudioError;
+import com.hypercube.workshop.audioworkshop.api.format.PCMBufferFormat;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Single producer/single consumer ring buffer between the capture thread and a slow {@link RecordListener}
+ * <p>{@link #onNewBuffer} is called by the capture thread: it copies the PCM and the samples in a preallocated slot and
+ * return immediately. A dedicated thread pass each slot to the downstream listener, in the same order.</p>
+ * <p>Nothing is allocated per buffer and no lock is taken: the capture thread is the only one to move {@code head},
+ * {@code tail} is moved by the consumer thread when it takes a slot, or by the capture thread when it drops the oldest one.
+ * There is one more slot than the capacity, for the slot currently used by the consumer.</p>
+ * <p>With {@link BackPressurePolicy#DROP_OLDEST}, the capture thread can drop the buffers following the one being read until it
+ * wraps around to its slot. The consumer announces the sequence number it takes in {@code inFlight} before taking it, and the
+ * capture thread leaves a hole instead of writing in this slot: the sequence number is published without data and the consumer
+ * skips it, because the sequence number stored in the slot does not match.</p>
+ * <pre>
+ * try (var ring = new RingBufferRecordListener(format, 16, BackPressurePolicy.BLOCK, slowListener)) {
+ *     ring.start();
+ *     line.record(ring, outputLine);
+ * }
+ * </pre>
+ * <p>The downstream listener receives a {@link SampleBuffer} and a PCM buffer it can modify, but must not keep them after the call.</p>
+ */
+@Slf4j
+public class RingBufferRecordListener implements RecordListener, Closeable {
+    private static final long WAIT_NANOS = 100_000;
+
+    private final RecordListener consumer;
+    private final BackPressurePolicy policy;
+    @Getter
+    private final int capacity;
+    private final int nbSlots;
+    private final int nbChannels;
+    private final byte[][] pcmSlots;
+    private final double[][][] sampleSlots;
+    private final int[] pcmSizes;
+    private final int[] nbSamples;
+    /**
+     * Sequence number of the buffer stored in each slot, a hole leaves the previous one
+     */
+    private final long[] slotSequences;
+    /**
+     * Next sequence number written by the capture thread
+     */
+    private final AtomicLong head = new AtomicLong();
+    /**
+     * Next sequence number read by the consumer thread
+     */
+    private final AtomicLong tail = new AtomicLong();
+    /**
+     * Sequence number the consumer thread is reading, or about to take
+     */
+    private volatile long inFlight = -1;
+    private final AtomicLong overruns = new AtomicLong();
+    private final AtomicLong underruns = new AtomicLong();
+    private final AtomicLong consumed = new AtomicLong();
+    private volatile boolean stopped;
+    private volatile boolean endOfStream;
+    private volatile Throwable consumerError;
+    private volatile Thread producerThread;
+    private Thread consumerThread;
+
+    /**
+     * @param format   format of the incoming buffers, used to preallocate the slots
+     * @param capacity how many buffers can be pending before the back-pressure policy applies
+     * @param policy   what to do when the ring is full
+     * @param consumer listener called on the consumer thread
+     */
+    public RingBufferRecordListener(PCMBufferFormat format, int capacity, BackPressurePolicy policy, RecordListener consumer) {
+        if (capacity < 1) {
+            throw new AudioError("Invalid ring buffer capacity: " + capacity);
+        }
+        this.consumer = consumer;
+        this.policy = policy;
+        this.capacity = capacity;
+        this.nbSlots = capacity + 1;
+        this.nbChannels = format.getNbChannels();
+        pcmSlots = new byte[nbSlots][];
+        sampleSlots = new double[nbSlots][][];
+        pcmSizes = new int[nbSlots];
+        nbSamples = new int[nbSlots];
+        slotSequences = new long[nbSlots];
+        for (int i = 0; i < nbSlots; i++) {
+            pcmSlots[i] = format.allocatePcmBuffer();
+            sampleSlots[i] = format.allocateSampleBuffer();
+        }
+    }
+
+    /**
+     * Start the consumer thread
+     */
+    public void start() {
+        consumerThread = new Thread(this::consume, "RingBuffer-" + consumer.getClass()
+                .getSimpleName());
+        consumerThread.setDaemon(true);
+        consumerThread.start();
+    }
+
+    /**
+     * @return how many buffers were dropped ({@link BackPressurePolicy#DROP_OLDEST}) or waited for a free slot ({@link BackPressurePolicy#BLOCK})
+     */
+    public long getOverruns() {
+        return overruns.get();
+    }
+
+    /**
+     * @return how many times the consumer thread found the ring empty and had to wait for the capture thread
+     */
+    public long getUnderruns() {
+        return underruns.get();
+    }
+
+    /**
+     * @return how many buffers were passed to the downstream listener
+     */
+    public long getConsumed() {
+        return consumed.get();
+    }
+
+    /**
+     * @return how many buffers are waiting for the consumer thread
+     */
+    public int getPending() {
+        return (int) (head.get() - tail.get());
+    }
+
+    /**
+     * Called on the capture thread
+     *
+     * @return false as soon as the downstream listener asked to stop the recording
+     */
+    @Override
+    public boolean onNewBuffer(SampleBuffer buffer, byte[] pcmBuffer, int pcmSize) {
+        if (stopped) {
+            return false;
+        }
+        producerThread = Thread.currentThread();
+        long h = head.get();
+        for (; ; ) {
+            if (!waitForFreeSlot(h)) {
+                return false;
+            }
+            if (!isInFlight(h)) {
+                break;
+            }
+            // the consumer is still reading this slot, publish a hole and use the next one
+            h++;
+            head.lazySet(h);
+        }
+        int slot = (int) (h % nbSlots);
+        System.arraycopy(pcmBuffer, 0, pcmSlots[slot], 0, pcmSize);
+        pcmSizes[slot] = pcmSize;
+        buffer.copyTo(sampleSlots[slot], 0);
+        nbSamples[slot] = buffer.nbSamples();
+        slotSequences[slot] = h;
+        // publish the slot to the consumer
+        head.lazySet(h + 1);
+        LockSupport.unpark(consumerThread);
+        return !stopped;
+    }
+
+    /**
+     * Only possible with {@link BackPressurePolicy#DROP_OLDEST}, otherwise the capture thread never goes that far
+     */
+    private boolean isInFlight(long h) {
+        long reading = inFlight;
+        return reading >= 0 && (h - reading) % nbSlots == 0;
+    }
+
+    private boolean waitForFreeSlot(long h) {
+        boolean counted = false;
+        for (; ; ) {
+            long t = tail.get();
+            if (h - t < capacity) {
+                return true;
+            }
+            switch (policy) {
+                case DROP_OLDEST -> {
+                    // the consumer may take this slot at the same time, in this case we just retry
+                    if (tail.compareAndSet(t, t + 1)) {
+                        overruns.incrementAndGet();
+                        return true;
+                    }
+                }
+                case BLOCK -> {
+                    if (!counted) {
+                        overruns.incrementAndGet();
+                        counted = true;
+                    }
+                    if (stopped) {
+                        return false;
+                    }
+                    LockSupport.parkNanos(this, WAIT_NANOS);
+                }
+                case FAIL -> {
+                    overruns.incrementAndGet();
+                    stopped = true;
+                    throw new AudioError("Ring buffer overrun, the consumer is too slow (capacity %d buffers)".formatted(capacity));
+                }
+            }
+        }
+    }
+
+    private void consume() {
+        SampleBuffer[] views = new SampleBuffer[nbSlots];
+        boolean waiting = false;
+        try {
+            while (!stopped) {
+                long t = tail.get();
+                if (t == head.get()) {
+                    if (endOfStream) {
+                        break;
+                    }
+                    if (!waiting) {
+                        underruns.incrementAndGet();
+                        waiting = true;
+                    }
+                    LockSupport.parkNanos(this, WAIT_NANOS);
+                    continue;
+                }
+                // announce the slot, then take it before reading it, so the capture thread can't drop or overwrite it anymore
+                inFlight = t;
+                if (!tail.compareAndSet(t, t + 1)) {
+                    continue;
+                }
+                waiting = false;
+                int slot = (int) (t % nbSlots);
+                if (slotSequences[slot] != t) {
+                    // hole left by the capture thread
+                    continue;
+                }
+                int n = nbSamples[slot];
+                SampleBuffer view = views[slot];
+                if (view == null || view.nbSamples() != n) {
+                    view = new SampleBuffer(sampleSlots[slot], 0, n, nbChannels);
+                    views[slot] = view;
+                }
+                consumed.incrementAndGet();
+                if (!consumer.onNewBuffer(view, pcmSlots[slot], pcmSizes[slot])) {
+                    stopped = true;
+                }
+                LockSupport.unpark(producerThread);
+            }
+        } catch (RuntimeException | Error e) {
+            log.error("Consumer failed", e);
+            consumerError = e;
+            stopped = true;
+        }
+    }
+
+    /**
+     * Wait for the consumer thread to process all pending buffers, then stop it
+     * <p>Any exception raised by the downstream listener is rethrown here</p>
+     */
+    @Override
+    public void close() {
+        endOfStream = true;
+        if (consumerThread != null) {
+            LockSupport.unpark(consumerThread);
+            try {
+                consumerThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread()
+                        .interrupt();
+                throw new AudioError(e);
+            }
+        }
+        if (overruns.get() > 0) {
+            log.warn("Ring buffer overruns: {}, policy {}, capacity {}", overruns.get(), policy, capacity);
+        }
+        if (consumerError instanceof RuntimeException e) {
+            throw e;
+        } else if (consumerError != null) {
+            throw new AudioError("Ring buffer consumer failed", consumerError);
+        }
+    }
+}
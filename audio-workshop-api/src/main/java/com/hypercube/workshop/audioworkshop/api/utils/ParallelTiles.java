@@ -0,0 +1,65 @@
+package com.hypercube.workshop.audioworkshop.api.utils;
+
+import com.hypercube.workshop.audioworkshop.api.errors.AudioError;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Render an image in tiles, in parallel
+ * <p>The image is split in tiles of rows or columns which never share a pixel, so they can be written directly in the
+ * raster without lock. With one thread or one tile, everything is done on the caller thread.</p>
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class ParallelTiles {
+    @FunctionalInterface
+    public interface TileRenderer {
+        /**
+         * @param start first row or column of the tile
+         * @param end   last row or column of the tile, exclusive
+         */
+        void render(int start, int end);
+    }
+
+    /**
+     * @param size      number of rows or columns to render
+     * @param tileSize  number of rows or columns per tile
+     * @param nbThreads maximum number of threads
+     * @param what      what is rendered, for the error message
+     */
+    public static void render(int size, int tileSize, int nbThreads, String what, TileRenderer renderer) {
+        int nbTiles = (size + tileSize - 1) / tileSize;
+        if (nbThreads <= 1 || nbTiles <= 1) {
+            renderer.render(0, size);
+            return;
+        }
+        try (ExecutorService pool = Executors.newFixedThreadPool(Math.min(nbThreads, nbTiles))) {
+            List<Future<Void>> tiles = new ArrayList<>(nbTiles);
+            for (int tile = 0; tile < nbTiles; tile++) {
+                int start = tile * tileSize;
+                int end = Math.min(size, start + tileSize);
+                Callable<Void> task = () -> {
+                    renderer.render(start, end);
+                    return null;
+                };
+                tiles.add(pool.submit(task));
+            }
+            for (Future<Void> tile : tiles) {
+                tile.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                    .interrupt();
+            throw new AudioError(e);
+        } catch (ExecutionException e) {
+            throw new AudioError("Unable to render the " + what, e.getCause());
+        }
+    }
+}
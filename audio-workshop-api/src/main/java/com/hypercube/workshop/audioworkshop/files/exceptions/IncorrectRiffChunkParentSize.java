@@ -7,7 +7,7 @@ import lombok.Getter;
 @Getter
 public class IncorrectRiffChunkParentSize extends RuntimeException {
     private final String chunkId;
-    private final int contentStart;
+    private final long contentStart;
 
     public IncorrectRiffChunkParentSize(RiffChunk chunk, String msg) {
         super(msg);
@@ -24,5 +24,25 @@ public class FlacAudioInfo {
     byte[] md5 = new byte[0];
 
     List<FlacPicture> pictures = new ArrayList<>();
-}
 
+    /**
+     * Total samples per channel, 0 if unknown
+     */
+    long nbSamples;
+
+    int minBlockSize;
+
+    int maxBlockSize;
+
+    /**
+     * 0 if unknown
+     */
+    int maxFrameSize;
+
+    /**
+     * File position of the first frame, right after the metadata blocks
+     */
+    long firstFrameOffset;
+
+    List<FlacSeekPoint> seekPoints = new ArrayList<>();
+}
@@ -0,0 +1,129 @@
+package com.hypercube.workshop.audioworkshop.files.flac;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Big endian bit reader on a byte array, used to decode FLAC frames
+ * <ul>
+ *     <li>Each read takes 64 bits at once through a {@link VarHandle}, so the array must have {@link #PADDING} extra bytes after the limit</li>
+ *     <li>Reads up to 32 bits at a time, which is enough for FLAC</li>
+ *     <li>There is no bounds check for each read, call {@link #checkLimit()} from time to time</li>
+ * </ul>
+ */
+final class FlacBitReader {
+    static final int PADDING = 8;
+    private static final VarHandle LONG_BE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    private final byte[] data;
+    private long bitPosition;
+    private int limit;
+
+    FlacBitReader(byte[] data) {
+        this.data = data;
+    }
+
+    byte[] getData() {
+        return data;
+    }
+
+    /**
+     * @param bytePosition where to start
+     * @param limit        position of the first byte which can't be read
+     */
+    void reset(int bytePosition, int limit) {
+        if (limit + PADDING > data.length) {
+            throw new IllegalArgumentException("The limit must leave %d bytes of padding".formatted(PADDING));
+        }
+        this.bitPosition = (long) bytePosition << 3;
+        this.limit = limit;
+    }
+
+    int getBytePosition() {
+        return (int) (bitPosition >>> 3);
+    }
+
+    void alignToByte() {
+        bitPosition = (bitPosition + 7) & ~7L;
+    }
+
+    void checkLimit() {
+        if (bitPosition > ((long) limit << 3)) {
+            throw new FlacError("Unexpected end of frame data at byte %d".formatted(limit));
+        }
+    }
+
+    /**
+     * 64 bits starting at the current bit position, at least 57 of them are valid
+     */
+    private long peek() {
+        return (long) LONG_BE.get(data, (int) (bitPosition >>> 3)) << (bitPosition & 7);
+    }
+
+    /**
+     * @param nbBits from 0 to 32
+     */
+    int readUInt(int nbBits) {
+        if (nbBits == 0) {
+            return 0;
+        }
+        long value = peek() >>> (64 - nbBits);
+        bitPosition += nbBits;
+        return (int) value;
+    }
+
+    /**
+     * @param nbBits from 0 to 32, two's complement
+     */
+    int readSInt(int nbBits) {
+        if (nbBits == 0) {
+            return 0;
+        }
+        long value = peek() >> (64 - nbBits);
+        bitPosition += nbBits;
+        return (int) value;
+    }
+
+    /**
+     * @return the number of 0 before the next 1
+     */
+    int readUnary() {
+        int count = 0;
+        for (; ; ) {
+            int shift = (int) (bitPosition & 7);
+            long bits = peek();
+            if (bits != 0) {
+                int zeros = Long.numberOfLeadingZeros(bits);
+                bitPosition += zeros + 1;
+                return count + zeros;
+            }
+            count += 64 - shift;
+            bitPosition += 64 - shift;
+            checkLimit();
+        }
+    }
+
+    /**
+     * Read Rice coded residuals, the hot loop of the decoder
+     *
+     * @param dest      where to store the residuals
+     * @param from      first index in dest
+     * @param to        last index in dest, exclusive
+     * @param parameter Rice parameter
+     */
+    void readRice(int[] dest, int from, int to, int parameter) {
+        for (int i = from; i < to; i++) {
+            long bits = peek();
+            int quotient;
+            if (bits != 0) {
+                quotient = Long.numberOfLeadingZeros(bits);
+                bitPosition += quotient + 1;
+            } else {
+                quotient = readUnary();
+            }
+            int value = (quotient << parameter) | readUInt(parameter);
+            dest[i] = (value >>> 1) ^ -(value & 1);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.hypercube.workshop.audioworkshop.files.flac;
+
+import java.util.Arrays;
+
+/**
+ * Big endian bit writer in a growing byte array, used to encode FLAC frames
+ * <p>Bits are accumulated in a long and flushed 32 bits at a time.</p>
+ */
+final class FlacBitWriter {
+    private byte[] data;
+    private int bytePosition;
+    private long accumulator;
+    /**
+     * Number of pending bits in the {@link #accumulator}, always lower than 32 between two calls
+     */
+    private int nbBits;
+
+    FlacBitWriter(int initialCapacity) {
+        data = new byte[Math.max(16, initialCapacity)];
+    }
+
+    void reset() {
+        bytePosition = 0;
+        accumulator = 0;
+        nbBits = 0;
+    }
+
+    long getBitPosition() {
+        return ((long) bytePosition << 3) + nbBits;
+    }
+
+    /**
+     * Only valid when the writer is aligned on a byte
+     */
+    int getBytePosition() {
+        flush();
+        return bytePosition;
+    }
+
+    byte[] getData() {
+        flush();
+        return data;
+    }
+
+    byte[] toByteArray() {
+        flush();
+        return Arrays.copyOf(data, bytePosition);
+    }
+
+    /**
+     * @param value the lowest bits are written, two's complement is fine for signed values
+     * @param size  from 0 to 32
+     */
+    void write(long value, int size) {
+        if (size == 0) {
+            return;
+        }
+        accumulator = (accumulator << size) | (value & (-1L >>> (64 - size)));
+        nbBits += size;
+        if (nbBits >= 32) {
+            nbBits -= 32;
+            ensureCapacity(4);
+            int word = (int) (accumulator >>> nbBits);
+            data[bytePosition] = (byte) (word >>> 24);
+            data[bytePosition + 1] = (byte) (word >>> 16);
+            data[bytePosition + 2] = (byte) (word >>> 8);
+            data[bytePosition + 3] = (byte) word;
+            bytePosition += 4;
+        }
+    }
+
+    void writeUnary(int zeros) {
+        for (; zeros >= 32; zeros -= 32) {
+            write(0, 32);
+        }
+        write(1, zeros + 1);
+    }
+
+    /**
+     * Rice code signed values, the hot loop of the encoder
+     */
+    void writeRice(int[] values, int from, int to, int parameter) {
+        long mask = (1L << parameter) - 1;
+        for (int i = from; i < to; i++) {
+            int value = (values[i] << 1) ^ (values[i] >> 31);
+            int quotient = value >>> parameter;
+            if (quotient + 1 + parameter <= 32) {
+                // zeros, the stop bit and the remainder in a single write
+                write((1L << parameter) | (value & mask), quotient + 1 + parameter);
+            } else {
+                writeUnary(quotient);
+                write(value, parameter);
+            }
+        }
+    }
+
+    /**
+     * Append all the bits of another writer, aligned or not
+     */
+    void write(FlacBitWriter other) {
+        byte[] otherData = other.data;
+        int i = 0;
+        for (; i + 4 <= other.bytePosition; i += 4) {
+            write((otherData[i] & 0xFF) << 24 | (otherData[i + 1] & 0xFF) << 16 | (otherData[i + 2] & 0xFF) << 8 | (otherData[i + 3] & 0xFF), 32);
+        }
+        for (; i < other.bytePosition; i++) {
+            write(otherData[i], 8);
+        }
+        write(other.accumulator, other.nbBits);
+    }
+
+    void alignToByte() {
+        if ((nbBits & 7) != 0) {
+            write(0, 8 - (nbBits & 7));
+        }
+    }
+
+    /**
+     * Move the complete bytes of the accumulator to the array
+     */
+    private void flush() {
+        ensureCapacity(4);
+        while (nbBits >= 8) {
+            nbBits -= 8;
+            data[bytePosition++] = (byte) (accumulator >>> nbBits);
+        }
+    }
+
+    private void ensureCapacity(int nbBytes) {
+        if (bytePosition + nbBytes > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length * 2, bytePosition + nbBytes));
+        }
+    }
+}
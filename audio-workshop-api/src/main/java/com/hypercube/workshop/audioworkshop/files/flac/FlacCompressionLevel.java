@@ -0,0 +1,31 @@
+package com.hypercube.workshop.audioworkshop.files.flac;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Encoder presets, roughly the levels 0, 5 and 8 of the reference encoder
+ * <ul>
+ *     <li>{@link #FAST}: small blocks, fixed predictors only, stereo mode guessed from the fixed predictors</li>
+ *     <li>{@link #DEFAULT}: LPC up to order 8, the best order is estimated from the prediction error</li>
+ *     <li>{@link #BEST}: LPC up to order 12, every order and every stereo mode is really encoded to keep the smallest</li>
+ * </ul>
+ */
+@Getter
+@RequiredArgsConstructor
+public enum FlacCompressionLevel {
+    FAST(1152, 0, 3, false),
+    DEFAULT(4096, 8, 5, false),
+    BEST(4096, 12, 6, true);
+
+    private final int blockSize;
+    /**
+     * 0 to use only the fixed predictors
+     */
+    private final int maxLpcOrder;
+    private final int maxPartitionOrder;
+    /**
+     * Try all LPC orders and stereo modes instead of guessing the best one
+     */
+    private final boolean exhaustive;
+}
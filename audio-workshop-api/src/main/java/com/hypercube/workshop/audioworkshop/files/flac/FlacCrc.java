@@ -0,0 +1,47 @@
+package com.hypercube.workshop.audioworkshop.files.flac;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+/**
+ * CRC-8 of the frame headers and CRC-16 of the whole frames, both MSB first with a zero initial value
+ * <ul>
+ *     <li>CRC-8 polynomial: x^8 + x^2 + x^1 + x^0</li>
+ *     <li>CRC-16 polynomial: x^16 + x^15 + x^2 + x^0</li>
+ * </ul>
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+final class FlacCrc {
+    private static final int[] CRC8_TABLE = createTable(0x07, 8);
+    private static final int[] CRC16_TABLE = createTable(0x8005, 16);
+
+    private static int[] createTable(int polynomial, int width) {
+        int topBit = 1 << (width - 1);
+        int mask = (1 << width) - 1;
+        int[] table = new int[256];
+        for (int i = 0; i < 256; i++) {
+            int crc = i << (width - 8);
+            for (int b = 0; b < 8; b++) {
+                crc = (crc & topBit) != 0 ? (crc << 1) ^ polynomial : crc << 1;
+            }
+            table[i] = crc & mask;
+        }
+        return table;
+    }
+
+    static int crc8(byte[] data, int from, int to) {
+        int crc = 0;
+        for (int i = from; i < to; i++) {
+            crc = CRC8_TABLE[(crc ^ data[i]) & 0xFF];
+        }
+        return crc;
+    }
+
+    static int crc16(byte[] data, int from, int to) {
+        int crc = 0;
+        for (int i = from; i < to; i++) {
+            crc = ((crc << 8) ^ CRC16_TABLE[((crc >>> 8) ^ data[i]) & 0xFF]) & 0xFFFF;
+        }
+        return crc;
+    }
+}
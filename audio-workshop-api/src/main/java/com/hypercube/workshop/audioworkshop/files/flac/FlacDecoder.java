@@ -0,0 +1,199 @@
+package com.hypercube.workshop.audioworkshop.files.flac;
+
+import com.hypercube.workshop.audioworkshop.api.consumer.SampleBuffer;
+import com.hypercube.workshop.audioworkshop.api.consumer.SampleBufferConsumer;
+import com.hypercube.workshop.audioworkshop.files.exceptions.AudioParserException;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Pure Java FLAC decoder, passing all samples to a {@link SampleBufferConsumer} like {@link com.hypercube.workshop.audioworkshop.files.riff.insights.RiffInspector}
+ * <ul>
+ *     <li>Metadata blocks are read by {@link FlacReader}</li>
+ *     <li>Frames are read in a buffer big enough to hold several of the biggest possible frames, then decoded by {@link FlacFrameDecoder}</li>
+ *     <li>Each frame gives one {@link SampleBuffer}, samples are normalized between -1 and 1 like the WAV files</li>
+ *     <li>{@link #decode(long, long, SampleBufferConsumer)} uses the SEEKTABLE to start from the nearest frame instead of the beginning of the file</li>
+ * </ul>
+ * <p>Frame CRCs are checked but not the MD5 of the STREAMINFO block.</p>
+ */
+@Slf4j
+public class FlacDecoder implements Closeable {
+    private static final int MIN_BUFFER_SIZE = 1024 * 1024;
+    private static final int MAX_BLOCK_SIZE = 65535;
+    /**
+     * Frame header with all the optional fields, CRC-8 included
+     */
+    private static final int MAX_FRAME_HEADER_SIZE = 16;
+
+    @Getter
+    private final FlacAudioInfo info;
+    private final FileChannel channel;
+    private final byte[] buffer;
+    private final FlacBitReader bits;
+    private final FlacFrameDecoder frameDecoder;
+    private final int maxFrameSize;
+    private final double[][] samples;
+    /**
+     * Current position in the {@link #buffer}
+     */
+    private int position;
+    /**
+     * End of the valid data in the {@link #buffer}
+     */
+    private int limit;
+    private boolean endOfFile;
+
+    public FlacDecoder(File file) throws IOException {
+        info = new FlacReader(file).parse();
+        if (info == null) {
+            throw new AudioParserException("Unable to parse FLAC file " + file.getAbsolutePath());
+        }
+        int maxBlockSize = getMaxBlockSize(info);
+        maxFrameSize = getMaxFrameSize(info, maxBlockSize);
+        buffer = new byte[Math.max(MIN_BUFFER_SIZE, 2 * maxFrameSize) + FlacBitReader.PADDING];
+        bits = new FlacBitReader(buffer);
+        frameDecoder = new FlacFrameDecoder(info);
+        samples = new double[info.getNumChannels()][maxBlockSize];
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    }
+
+    static int getMaxBlockSize(FlacAudioInfo info) {
+        return info.getMaxBlockSize() > 0 ? info.getMaxBlockSize() : MAX_BLOCK_SIZE;
+    }
+
+    /**
+     * A verbatim frame is the worst case: all samples stored as is, one more bit for a side channel
+     */
+    private static int getMaxFrameSize(FlacAudioInfo info, int maxBlockSize) {
+        long subframeSize = 1 + (maxBlockSize * (info.getBitDepth() + 1L) + 7) / 8;
+        long verbatimFrameSize = MAX_FRAME_HEADER_SIZE + info.getNumChannels() * subframeSize + 2;
+        return (int) Math.max(info.getMaxFrameSize(), verbatimFrameSize);
+    }
+
+    /**
+     * Decode all samples of the file
+     *
+     * @param sampleConsumer will receive one buffer of samples per frame
+     */
+    public void decode(SampleBufferConsumer sampleConsumer) throws IOException {
+        decode(0, Long.MAX_VALUE, sampleConsumer);
+    }
+
+    /**
+     * Decode a range of samples, using the SEEKTABLE if there is one
+     *
+     * @param from           first sample to decode
+     * @param nbSamples      how many samples to decode, it can go beyond the end of the file
+     * @param sampleConsumer will receive one buffer of samples per frame, the first and the last ones can be partial
+     */
+    public void decode(long from, long nbSamples, SampleBufferConsumer sampleConsumer) throws IOException {
+        long to = nbSamples > Long.MAX_VALUE - from ? Long.MAX_VALUE : from + nbSamples;
+        if (info.getNbSamples() > 0) {
+            to = Math.min(to, info.getNbSamples());
+        }
+        sampleConsumer.reset();
+        if (from >= to) {
+            return;
+        }
+        seek(from);
+        while (nextFrame()) {
+            long frameStart = frameDecoder.getSampleNumber();
+            int frameSize = frameDecoder.getBlockSize();
+            if (frameStart >= to) {
+                break;
+            }
+            if (frameStart + frameSize <= from) {
+                continue;
+            }
+            int start = (int) Math.max(0, from - frameStart);
+            int end = (int) Math.min(frameSize, to - frameStart);
+            convert(start, end);
+            sampleConsumer.onBuffer(new SampleBuffer(samples, start, end, samples.length));
+            if (frameStart + end >= to) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Move to the nearest frame before the sample, using the SEEKTABLE
+     */
+    private void seek(long sample) throws IOException {
+        FlacSeekPoint nearest = null;
+        for (FlacSeekPoint seekPoint : info.getSeekPoints()) {
+            if (!seekPoint.isPlaceholder() && seekPoint.sampleNumber() <= sample && (nearest == null || seekPoint.sampleNumber() > nearest.sampleNumber())) {
+                nearest = seekPoint;
+            }
+        }
+        long offset = nearest == null ? 0 : nearest.offset();
+        log.trace("Seek sample {}, start at frame offset {}", sample, offset);
+        channel.position(info.getFirstFrameOffset() + offset);
+        position = 0;
+        limit = 0;
+        endOfFile = false;
+    }
+
+    /**
+     * Decode the next frame, after making sure it is entirely in the buffer
+     *
+     * @return false at the end of the file
+     */
+    private boolean nextFrame() throws IOException {
+        if (limit - position < maxFrameSize && !endOfFile) {
+            fillBuffer();
+        }
+        if (position >= limit) {
+            return false;
+        }
+        bits.reset(position, limit);
+        try {
+            frameDecoder.decode(bits);
+        } catch (IndexOutOfBoundsException e) {
+            throw new FlacError("Truncated frame at file position %d".formatted(channel.position() - limit + position), e);
+        }
+        position = bits.getBytePosition();
+        return true;
+    }
+
+    /**
+     * Move the remaining bytes at the beginning of the buffer, then read as much as possible
+     */
+    private void fillBuffer() throws IOException {
+        int remaining = limit - position;
+        System.arraycopy(buffer, position, buffer, 0, remaining);
+        position = 0;
+        limit = remaining;
+        ByteBuffer target = ByteBuffer.wrap(buffer, limit, buffer.length - FlacBitReader.PADDING - limit);
+        while (target.hasRemaining()) {
+            if (channel.read(target) == -1) {
+                endOfFile = true;
+                break;
+            }
+        }
+        limit = target.position();
+    }
+
+    private void convert(int start, int end) {
+        int[][] frameSamples = frameDecoder.getSamples();
+        double scale = 1.0 / (1L << (frameDecoder.getBitsPerSample() - 1));
+        for (int c = 0; c < samples.length; c++) {
+            int[] input = frameSamples[c];
+            double[] output = samples[c];
+            for (int s = start; s < end; s++) {
+                output[s] = input[s] * scale;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,370 @@
+package com.hypercube.workshop.audioworkshop.files.flac;
+
+import com.hypercube.workshop.audioworkshop.api.errors.AudioError;
+import com.hypercube.workshop.audioworkshop.api.format.PCMFormat;
+import com.hypercube.workshop.audioworkshop.api.pcm.BitDepth;
+import com.hypercube.workshop.audioworkshop.api.pcm.PCMEncoding;
+import com.hypercube.workshop.audioworkshop.files.riff.RiffAudioInfo;
+import com.hypercube.workshop.audioworkshop.files.riff.RiffReadMode;
+import com.hypercube.workshop.audioworkshop.files.riff.RiffReader;
+import com.hypercube.workshop.audioworkshop.files.riff.WaveCodecs;
+import com.hypercube.workshop.audioworkshop.files.riff.WaveGUIDCodecs;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Multi-threaded FLAC encoder
+ * <p>FLAC frames are independent, so they are compressed in parallel by a pool of workers then written in order:</p>
+ * <pre>
+ * caller  : PCM -> blocks of samples -> MD5 -> submit           write the frames in order
+ * workers :                                      encode a frame
+ * </pre>
+ * <ul>
+ *     <li>The caller waits for the oldest frame when {@code 2 * nbThreads} frames are in progress, so the memory stays bounded</li>
+ *     <li>The output does not depend on the number of threads</li>
+ *     <li>STREAMINFO and SEEKTABLE are written first, then completed by {@link #close()}: number of samples, min/max frame sizes,
+ *     MD5 of the samples and one seek point every {@value #SEEK_POINT_INTERVAL_IN_SECONDS} seconds</li>
+ *     <li>The SEEKTABLE size depends on the expected number of samples given to the constructor, without it there is no SEEKTABLE</li>
+ * </ul>
+ * <p>Other metadata blocks can be written between the constructor and the first samples:</p>
+ * <pre>
+ * try (FlacWriter writer = new FlacWriter(file);
+ *      FlacEncoder encoder = new FlacEncoder(writer, format, FlacCompressionLevel.DEFAULT, nbSamples)) {
+ *     writer.writeVorbisTags(tags);
+ *     encoder.encode(pcm, size);
+ * }
+ * </pre>
+ */
+@Slf4j
+public class FlacEncoder implements Closeable {
+    public static final int SEEK_POINT_INTERVAL_IN_SECONDS = 10;
+    private static final int STREAMINFO_SIZE = 34;
+    private static final int SEEK_POINT_SIZE = 18;
+
+    private final FlacWriter writer;
+    @Getter
+    private final PCMFormat format;
+    @Getter
+    private final FlacCompressionLevel level;
+    private final int bitsPerSample;
+    private final int nbChannels;
+    private final int blockSize;
+    private final ExecutorService workers;
+    private final int maxPendingFrames;
+    private final ThreadLocal<FlacFrameEncoder> frameEncoders;
+    private final Deque<Future<byte[]>> pendingFrames = new ArrayDeque<>();
+    private final MessageDigest md5;
+    private final byte[] md5Buffer;
+    private final long streamInfoPosition;
+    private final long seekTablePosition;
+    private final long[][] seekPoints;
+    private final long seekPointInterval;
+    private int nextSeekPoint;
+
+    private int[][] block;
+    private int blockPosition;
+    private long nbSubmittedFrames;
+    /**
+     * Samples per channel, submitted to the workers
+     */
+    @Getter
+    private long nbSamples;
+    private long nbWrittenSamples;
+    /**
+     * Size of the frames written so far, which is also the offset of the next one
+     */
+    private long framesSize;
+    private int lastFrameSize;
+    private int minFrameSize = Integer.MAX_VALUE;
+    private int maxFrameSize;
+    private boolean closed;
+
+    public FlacEncoder(FlacWriter writer, PCMFormat format, FlacCompressionLevel level, long expectedNbSamples) throws IOException {
+        this(writer, format, level, expectedNbSamples, Runtime.getRuntime()
+                .availableProcessors());
+    }
+
+    /**
+     * @param writer            a new writer, STREAMINFO must be the first block
+     * @param format            format of the samples, also used for the PCM given to {@link #encode(ByteBuffer, int)}
+     * @param level             compression level
+     * @param expectedNbSamples used to reserve the SEEKTABLE, 0 if unknown
+     * @param nbThreads         size of the worker pool
+     */
+    public FlacEncoder(FlacWriter writer, PCMFormat format, FlacCompressionLevel level, long expectedNbSamples, int nbThreads) throws IOException {
+        if (nbThreads < 1) {
+            throw new IllegalArgumentException("Illegal number of threads: " + nbThreads);
+        }
+        this.writer = writer;
+        this.format = format;
+        this.level = level;
+        this.bitsPerSample = format.getBitDepth()
+                .getBits();
+        this.nbChannels = format.getNbChannels();
+        this.blockSize = level.getBlockSize();
+        if (nbChannels < 1 || nbChannels > 8) {
+            throw new FlacError("FLAC supports 1 to 8 channels, not " + nbChannels);
+        }
+        this.block = new int[nbChannels][blockSize];
+        this.workers = Executors.newFixedThreadPool(nbThreads);
+        this.maxPendingFrames = 2 * nbThreads;
+        this.frameEncoders = ThreadLocal.withInitial(() -> new FlacFrameEncoder(format.getSampleRate(), bitsPerSample, nbChannels, level));
+        try {
+            this.md5 = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new AudioError(e);
+        }
+        this.md5Buffer = new byte[blockSize * nbChannels * ((bitsPerSample + 7) / 8)];
+
+        seekPointInterval = (long) format.getSampleRate() * SEEK_POINT_INTERVAL_IN_SECONDS;
+        int nbSeekPoints = (int) ((expectedNbSamples + seekPointInterval - 1) / seekPointInterval);
+        seekPoints = new long[nbSeekPoints][];
+        streamInfoPosition = writer.writeBlock(false, FlacBlockType.STREAMINFO, createStreamInfo());
+        seekTablePosition = nbSeekPoints > 0 ? writer.writeBlock(false, FlacBlockType.SEEKTABLE, createSeekTable()) : -1;
+    }
+
+    /**
+     * Encode PCM data in the {@link #format} given to the constructor
+     *
+     * @param pcm  data from its position
+     * @param size number of bytes, a multiple of the frame size
+     */
+    public void encode(ByteBuffer pcm, int size) throws IOException {
+        int frameSize = format.getFrameSizeInBytes();
+        if (size % frameSize != 0) {
+            throw new IllegalArgumentException("PCM size %d is not a multiple of frame size %d".formatted(size, frameSize));
+        }
+        ByteBuffer data = pcm.duplicate()
+                .order(format.getByteOrder());
+        int bytesPerSample = format.getBytesPerSamples();
+        boolean littleEndian = format.getByteOrder() == ByteOrder.LITTLE_ENDIAN;
+        int unsignedOffset = format.getEncoding() == PCMEncoding.UNSIGNED ? 1 << (bitsPerSample - 1) : 0;
+        int nbFrames = size / frameSize;
+        int position = data.position();
+        for (int f = 0; f < nbFrames; f++) {
+            for (int c = 0; c < nbChannels; c++) {
+                int sample = switch (bytesPerSample) {
+                    case 1 -> unsignedOffset != 0 ? (data.get(position) & 0xFF) : data.get(position);
+                    case 2 -> unsignedOffset != 0 ? (data.getShort(position) & 0xFFFF) : data.getShort(position);
+                    case 3 -> {
+                        int b0 = data.get(position) & 0xFF;
+                        int b1 = data.get(position + 1) & 0xFF;
+                        int b2 = data.get(position + 2) & 0xFF;
+                        int value = littleEndian ? b0 | b1 << 8 | b2 << 16 : b2 | b1 << 8 | b0 << 16;
+                        yield unsignedOffset != 0 ? value : (value << 8) >> 8;
+                    }
+                    default -> data.getInt(position);
+                };
+                block[c][blockPosition] = sample - unsignedOffset;
+                position += bytesPerSample;
+            }
+            if (++blockPosition == blockSize) {
+                submitBlock();
+            }
+        }
+    }
+
+    /**
+     * Encode integer samples
+     *
+     * @param samples   one array per channel, signed values on the bit depth of the {@link #format}
+     * @param nbSamples number of samples per channel
+     */
+    public void encode(int[][] samples, int nbSamples) throws IOException {
+        for (int pos = 0; pos < nbSamples; ) {
+            int size = Math.min(nbSamples - pos, blockSize - blockPosition);
+            for (int c = 0; c < nbChannels; c++) {
+                System.arraycopy(samples[c], pos, block[c], blockPosition, size);
+            }
+            pos += size;
+            blockPosition += size;
+            if (blockPosition == blockSize) {
+                submitBlock();
+            }
+        }
+    }
+
+    private void submitBlock() throws IOException {
+        int size = blockPosition;
+        updateMD5(block, size);
+        int[][] samples = block;
+        long frameNumber = nbSubmittedFrames++;
+        pendingFrames.add(workers.submit(() -> frameEncoders.get()
+                .encode(samples, size, frameNumber)));
+        nbSamples += size;
+        block = new int[nbChannels][blockSize];
+        blockPosition = 0;
+        if (pendingFrames.size() >= maxPendingFrames) {
+            writeNextFrame();
+        }
+    }
+
+    /**
+     * MD5 of the samples interleaved, in little endian signed integers
+     */
+    private void updateMD5(int[][] samples, int size) {
+        int bytesPerSample = (bitsPerSample + 7) / 8;
+        int pos = 0;
+        for (int s = 0; s < size; s++) {
+            for (int c = 0; c < nbChannels; c++) {
+                int sample = samples[c][s];
+                for (int b = 0; b < bytesPerSample; b++) {
+                    md5Buffer[pos++] = (byte) (sample >> (8 * b));
+                }
+            }
+        }
+        md5.update(md5Buffer, 0, pos);
+    }
+
+    private void writeNextFrame() throws IOException {
+        byte[] frame;
+        try {
+            frame = pendingFrames.poll()
+                    .get();
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                    .interrupt();
+            throw new FlacError("Interrupted", e);
+        } catch (ExecutionException e) {
+            throw new FlacError("Unable to encode frame", e.getCause());
+        }
+        if (framesSize == 0) {
+            writer.endMetadata();
+        }
+        // all frames have the same size, except the last one
+        long frameStart = nbWrittenSamples;
+        int frameNbSamples = (int) Math.min(blockSize, nbSamples - nbWrittenSamples);
+        while (nextSeekPoint < seekPoints.length && nextSeekPoint * seekPointInterval < frameStart + frameNbSamples) {
+            seekPoints[nextSeekPoint++] = new long[]{frameStart, framesSize, frameNbSamples};
+        }
+        writer.writeBytes(frame, frame.length);
+        framesSize += frame.length;
+        nbWrittenSamples += frameNbSamples;
+        lastFrameSize = frameNbSamples;
+        minFrameSize = Math.min(minFrameSize, frame.length);
+        maxFrameSize = Math.max(maxFrameSize, frame.length);
+    }
+
+    private byte[] createStreamInfo() {
+        // a stream made of a single short frame has a smaller block size
+        int streamBlockSize = nbWrittenSamples > 0 && nbWrittenSamples == lastFrameSize ? lastFrameSize : blockSize;
+        ByteBuffer streamInfo = ByteBuffer.allocate(STREAMINFO_SIZE)
+                .order(ByteOrder.BIG_ENDIAN);
+        streamInfo.putShort((short) streamBlockSize);
+        streamInfo.putShort((short) streamBlockSize);
+        putInt24(streamInfo, maxFrameSize == 0 ? 0 : minFrameSize);
+        putInt24(streamInfo, maxFrameSize);
+        streamInfo.putLong(((long) format.getSampleRate() << 44)
+                | ((long) (nbChannels - 1) << 41)
+                | ((long) (bitsPerSample - 1) << 36)
+                | (nbWrittenSamples & 0xFFFFFFFFFL));
+        streamInfo.put(closed ? md5.digest() : new byte[16]);
+        return streamInfo.array();
+    }
+
+    private byte[] createSeekTable() {
+        ByteBuffer seekTable = ByteBuffer.allocate(seekPoints.length * SEEK_POINT_SIZE)
+                .order(ByteOrder.BIG_ENDIAN);
+        for (long[] seekPoint : seekPoints) {
+            if (seekPoint == null) {
+                seekTable.putLong(FlacSeekPoint.PLACEHOLDER);
+                seekTable.putLong(0);
+                seekTable.putShort((short) 0);
+            } else {
+                seekTable.putLong(seekPoint[0]);
+                seekTable.putLong(seekPoint[1]);
+                seekTable.putShort((short) seekPoint[2]);
+            }
+        }
+        return seekTable.array();
+    }
+
+    private static void putInt24(ByteBuffer buffer, int value) {
+        buffer.put((byte) (value >> 16));
+        buffer.put((byte) (value >> 8));
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Encode the last samples, wait for all frames, then complete STREAMINFO and SEEKTABLE
+     * <p>The {@link FlacWriter} is not closed.</p>
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            if (blockPosition > 0) {
+                submitBlock();
+            }
+            while (!pendingFrames.isEmpty()) {
+                writeNextFrame();
+            }
+            writer.endMetadata();
+            closed = true;
+            writer.rewriteBlock(streamInfoPosition, createStreamInfo());
+            if (seekTablePosition != -1) {
+                writer.rewriteBlock(seekTablePosition, createSeekTable());
+            }
+            log.debug("{} samples encoded in {} frames, {} bytes", nbWrittenSamples, nbSubmittedFrames, framesSize);
+        } finally {
+            closed = true;
+            pendingFrames.forEach(f -> f.cancel(true));
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Convert a WAV file to FLAC, typically to archive a sample library
+     * <p>Only the audio is kept, not the other chunks. The WAV is read with {@link RiffReadMode#STREAM}, so it is not
+     * locked on Windows once the conversion is done.</p>
+     */
+    public static void encode(File wavFile, File flacFile, FlacCompressionLevel level) throws IOException {
+        encode(wavFile, flacFile, level, RiffReadMode.STREAM);
+    }
+
+    /**
+     * @param readMode {@link RiffReadMode#MAPPED} avoids a copy of the audio, but see its limitations
+     */
+    public static void encode(File wavFile, File flacFile, FlacCompressionLevel level, RiffReadMode readMode) throws IOException {
+        try (RiffReader riffReader = new RiffReader(wavFile, readMode)) {
+            var info = riffReader.parse();
+            RiffAudioInfo audioInfo = info.getAudioInfo();
+            boolean pcm = audioInfo.getCodec() == WaveCodecs.PCM
+                    || (audioInfo.getCodec() == WaveCodecs.WAVE_FORMAT_EXTENSIBLE && WaveGUIDCodecs.WMMEDIASUBTYPE_PCM.equals(audioInfo.getSubCodec()));
+            if (!pcm) {
+                throw new FlacError("Only integer PCM can be encoded in FLAC: " + wavFile.getAbsolutePath());
+            }
+            // 8 bits WAV files are unsigned
+            PCMEncoding encoding = audioInfo.getBitPerSample() == 8 ? PCMEncoding.UNSIGNED : PCMEncoding.SIGNED;
+            PCMFormat format = new PCMFormat(audioInfo.getSampleRate(), BitDepth.valueOf(audioInfo.getBitPerSample()), audioInfo.getNbChannels(), encoding, ByteOrder.LITTLE_ENDIAN);
+            int bufferSize = level.getBlockSize() * format.getFrameSizeInBytes() * 16;
+            try (FlacWriter writer = new FlacWriter(flacFile);
+                 FlacEncoder encoder = new FlacEncoder(writer, format, level, audioInfo.getNbSamples())) {
+                riffReader.streamChunk(info.getDataChunk(), bufferSize, (data, nbRead) -> {
+                    try {
+                        // an incomplete sample frame at the end of the chunk is dropped
+                        encoder.encode(data, nbRead - nbRead % format.getFrameSizeInBytes());
+                    } catch (IOException e) {
+                        throw new AudioError(e);
+                    }
+                });
+            }
+        }
+    }
+}
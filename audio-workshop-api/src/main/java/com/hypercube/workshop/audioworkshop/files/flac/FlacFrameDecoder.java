@@ -0,0 +1,307 @@
+package com.hypercube.workshop.audioworkshop.files.flac;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+
+/**
+ * Decode one FLAC frame into integer samples, see the <a href="https://xiph.org/flac/format.html#frame">format</a>
+ * <pre>
+ * FRAME    : header | one SUBFRAME per channel | zero padding to the byte | CRC-16
+ * SUBFRAME : header | CONSTANT or VERBATIM or FIXED or LPC
+ * FIXED    : warmup samples | RESIDUAL
+ * LPC      : warmup samples | precision | shift | coefficients | RESIDUAL
+ * RESIDUAL : coding method | partition order | Rice coded partitions
+ * </pre>
+ * <ul>
+ *     <li>The residuals are decoded in place, then the prediction is added to them</li>
+ *     <li>Stereo decorrelation (left/side, side/right, mid/side) is undone at the end of the frame</li>
+ *     <li>Samples are kept in 32 bits integers, so 32 bits stereo files with a side channel (33 bits) are not supported</li>
+ * </ul>
+ */
+final class FlacFrameDecoder {
+    private static final int SYNC_CODE = 0x3FFE;
+    private static final int MAX_LPC_ORDER = 32;
+    private static final int CHANNELS_LEFT_SIDE = 8;
+    private static final int CHANNELS_SIDE_RIGHT = 9;
+    private static final int CHANNELS_MID_SIDE = 10;
+
+    private final FlacAudioInfo info;
+    @Getter
+    private final int[][] samples;
+    private final int[] coefficients = new int[MAX_LPC_ORDER];
+    /**
+     * First sample of the last decoded frame
+     */
+    @Getter
+    private long sampleNumber;
+    /**
+     * Size of the last decoded frame, in samples per channel
+     */
+    @Getter
+    private int blockSize;
+    @Getter
+    private int bitsPerSample;
+
+    FlacFrameDecoder(FlacAudioInfo info) {
+        this.info = info;
+        this.samples = new int[info.getNumChannels()][FlacDecoder.getMaxBlockSize(info)];
+    }
+
+    /**
+     * Decode the frame at the current position of the reader, it ends right after the frame
+     */
+    void decode(FlacBitReader bits) {
+        byte[] data = bits.getData();
+        int frameStart = bits.getBytePosition();
+        if (bits.readUInt(14) != SYNC_CODE) {
+            throw new FlacError("Frame sync code not found at byte %d".formatted(frameStart));
+        }
+        if (bits.readUInt(1) != 0) {
+            throw new FlacError("Reserved bit set in frame header");
+        }
+        boolean variableBlockSize = bits.readUInt(1) == 1;
+        int blockSizeCode = bits.readUInt(4);
+        int sampleRateCode = bits.readUInt(4);
+        int channelAssignment = bits.readUInt(4);
+        int sampleSizeCode = bits.readUInt(3);
+        if (bits.readUInt(1) != 0) {
+            throw new FlacError("Reserved bit set in frame header");
+        }
+        long number = readCodedNumber(bits);
+        blockSize = switch (blockSizeCode) {
+            case 0 -> throw new FlacError("Reserved block size");
+            case 1 -> 192;
+            case 2, 3, 4, 5 -> 576 << (blockSizeCode - 2);
+            case 6 -> bits.readUInt(8) + 1;
+            case 7 -> bits.readUInt(16) + 1;
+            default -> 256 << (blockSizeCode - 8);
+        };
+        switch (sampleRateCode) {
+            case 12 -> bits.readUInt(8);
+            case 13, 14 -> bits.readUInt(16);
+            case 15 -> throw new FlacError("Invalid sample rate in frame header");
+            default -> {
+                // the sample rate is not needed to decode
+            }
+        }
+        bitsPerSample = switch (sampleSizeCode) {
+            case 0 -> info.getBitDepth();
+            case 1 -> 8;
+            case 2 -> 12;
+            case 4 -> 16;
+            case 5 -> 20;
+            case 6 -> 24;
+            case 7 -> 32;
+            default -> throw new FlacError("Reserved sample size in frame header");
+        };
+        int crc8 = FlacCrc.crc8(data, frameStart, bits.getBytePosition());
+        if (bits.readUInt(8) != crc8) {
+            throw new FlacError("Bad CRC-8 for the frame header at byte %d".formatted(frameStart));
+        }
+        int nbChannels = channelAssignment < CHANNELS_LEFT_SIDE ? channelAssignment + 1 : 2;
+        if (channelAssignment > CHANNELS_MID_SIDE) {
+            throw new FlacError("Reserved channel assignment " + channelAssignment);
+        }
+        if (nbChannels != samples.length) {
+            throw new FlacError("Frame with %d channels in a stream of %d channels".formatted(nbChannels, samples.length));
+        }
+        if (blockSize > samples[0].length) {
+            throw new FlacError("Frame of %d samples is bigger than the maximum block size %d".formatted(blockSize, samples[0].length));
+        }
+        if (variableBlockSize) {
+            sampleNumber = number;
+        } else {
+            // the last frame can be smaller, STREAMINFO gives the real block size
+            sampleNumber = number * (info.getMinBlockSize() > 0 ? info.getMinBlockSize() : blockSize);
+        }
+
+        for (int channel = 0; channel < nbChannels; channel++) {
+            boolean sideChannel = (channelAssignment == CHANNELS_LEFT_SIDE && channel == 1)
+                    || (channelAssignment == CHANNELS_SIDE_RIGHT && channel == 0)
+                    || (channelAssignment == CHANNELS_MID_SIDE && channel == 1);
+            decodeSubframe(bits, samples[channel], sideChannel ? bitsPerSample + 1 : bitsPerSample);
+        }
+        bits.alignToByte();
+        int crc16 = FlacCrc.crc16(data, frameStart, bits.getBytePosition());
+        if (bits.readUInt(16) != crc16) {
+            throw new FlacError("Bad CRC-16 for the frame at byte %d".formatted(frameStart));
+        }
+        bits.checkLimit();
+        decorrelate(channelAssignment);
+    }
+
+    /**
+     * Frame or sample number, coded like UTF-8 up to 36 bits
+     */
+    private long readCodedNumber(FlacBitReader bits) {
+        int first = bits.readUInt(8);
+        if ((first & 0x80) == 0) {
+            return first;
+        }
+        int nbBytes = Integer.numberOfLeadingZeros(~(first << 24));
+        if (nbBytes < 2 || nbBytes > 7) {
+            throw new FlacError("Invalid coded number in frame header");
+        }
+        long value = first & (0x7F >> nbBytes);
+        for (int i = 1; i < nbBytes; i++) {
+            int next = bits.readUInt(8);
+            if ((next & 0xC0) != 0x80) {
+                throw new FlacError("Invalid coded number in frame header");
+            }
+            value = (value << 6) | (next & 0x3F);
+        }
+        return value;
+    }
+
+    private void decodeSubframe(FlacBitReader bits, int[] output, int bps) {
+        if (bits.readUInt(1) != 0) {
+            throw new FlacError("Invalid subframe padding");
+        }
+        int type = bits.readUInt(6);
+        int wastedBits = 0;
+        if (bits.readUInt(1) == 1) {
+            wastedBits = bits.readUnary() + 1;
+            bps -= wastedBits;
+        }
+        if (bps > 32) {
+            throw new FlacError("Subframes of %d bits are not supported".formatted(bps));
+        }
+        if (type == 0) {
+            Arrays.fill(output, 0, blockSize, bits.readSInt(bps));
+        } else if (type == 1) {
+            for (int i = 0; i < blockSize; i++) {
+                output[i] = bits.readSInt(bps);
+            }
+        } else if (type >= 8 && type <= 12) {
+            decodeFixed(bits, output, bps, type - 8);
+        } else if (type >= 32) {
+            decodeLPC(bits, output, bps, type - 31);
+        } else {
+            throw new FlacError("Reserved subframe type " + type);
+        }
+        bits.checkLimit();
+        if (wastedBits > 0) {
+            for (int i = 0; i < blockSize; i++) {
+                output[i] <<= wastedBits;
+            }
+        }
+    }
+
+    private void decodeFixed(FlacBitReader bits, int[] s, int bps, int order) {
+        for (int i = 0; i < order; i++) {
+            s[i] = bits.readSInt(bps);
+        }
+        decodeResidual(bits, s, order);
+        // int overflows are fine here, the result fits in 32 bits
+        switch (order) {
+            case 1 -> {
+                for (int i = 1; i < blockSize; i++) {
+                    s[i] += s[i - 1];
+                }
+            }
+            case 2 -> {
+                for (int i = 2; i < blockSize; i++) {
+                    s[i] += 2 * s[i - 1] - s[i - 2];
+                }
+            }
+            case 3 -> {
+                for (int i = 3; i < blockSize; i++) {
+                    s[i] += 3 * s[i - 1] - 3 * s[i - 2] + s[i - 3];
+                }
+            }
+            case 4 -> {
+                for (int i = 4; i < blockSize; i++) {
+                    s[i] += 4 * s[i - 1] - 6 * s[i - 2] + 4 * s[i - 3] - s[i - 4];
+                }
+            }
+            default -> {
+                // order 0, the residual is the signal
+            }
+        }
+    }
+
+    private void decodeLPC(FlacBitReader bits, int[] s, int bps, int order) {
+        for (int i = 0; i < order; i++) {
+            s[i] = bits.readSInt(bps);
+        }
+        int precision = bits.readUInt(4) + 1;
+        if (precision == 16) {
+            throw new FlacError("Invalid LPC precision");
+        }
+        int shift = bits.readSInt(5);
+        if (shift < 0) {
+            throw new FlacError("Negative LPC shift");
+        }
+        for (int i = 0; i < order; i++) {
+            coefficients[i] = bits.readSInt(precision);
+        }
+        decodeResidual(bits, s, order);
+        // the sum is done in 64 bits since the shift does not play well with overflows
+        for (int i = order; i < blockSize; i++) {
+            long sum = 0;
+            for (int j = 0; j < order; j++) {
+                sum += (long) coefficients[j] * s[i - 1 - j];
+            }
+            s[i] += (int) (sum >> shift);
+        }
+    }
+
+    private void decodeResidual(FlacBitReader bits, int[] s, int predictorOrder) {
+        int method = bits.readUInt(2);
+        if (method > 1) {
+            throw new FlacError("Reserved residual coding method " + method);
+        }
+        int parameterSize = method == 0 ? 4 : 5;
+        int escapeCode = (1 << parameterSize) - 1;
+        int partitionOrder = bits.readUInt(4);
+        int nbPartitions = 1 << partitionOrder;
+        int partitionSize = blockSize >> partitionOrder;
+        if (partitionSize << partitionOrder != blockSize || partitionSize < predictorOrder) {
+            throw new FlacError("Invalid partition order %d for a block of %d samples".formatted(partitionOrder, blockSize));
+        }
+        int start = predictorOrder;
+        for (int p = 0; p < nbPartitions; p++) {
+            int end = (p + 1) * partitionSize;
+            int parameter = bits.readUInt(parameterSize);
+            if (parameter == escapeCode) {
+                int size = bits.readUInt(5);
+                for (int i = start; i < end; i++) {
+                    s[i] = bits.readSInt(size);
+                }
+            } else {
+                bits.readRice(s, start, end, parameter);
+            }
+            bits.checkLimit();
+            start = end;
+        }
+    }
+
+    private void decorrelate(int channelAssignment) {
+        if (channelAssignment < CHANNELS_LEFT_SIDE) {
+            return;
+        }
+        int[] c0 = samples[0];
+        int[] c1 = samples[1];
+        switch (channelAssignment) {
+            case CHANNELS_LEFT_SIDE -> {
+                for (int i = 0; i < blockSize; i++) {
+                    c1[i] = c0[i] - c1[i];
+                }
+            }
+            case CHANNELS_SIDE_RIGHT -> {
+                for (int i = 0; i < blockSize; i++) {
+                    c0[i] += c1[i];
+                }
+            }
+            default -> {
+                for (int i = 0; i < blockSize; i++) {
+                    int side = c1[i];
+                    int mid = (c0[i] << 1) | (side & 1);
+                    c0[i] = (mid + side) >> 1;
+                    c1[i] = (mid - side) >> 1;
+                }
+            }
+        }
+    }
+}
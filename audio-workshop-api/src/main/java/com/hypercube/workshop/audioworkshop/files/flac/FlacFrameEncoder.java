@@ -0,0 +1,768 @@
+package com.hypercube.workshop.audioworkshop.files.flac;
+
+/**
+ * Encode one FLAC frame from integer samples, it is the counterpart of {@link FlacFrameDecoder}
+ * <p>For each channel, the smallest of these subframes is kept:</p>
+ * <ul>
+ *     <li>CONSTANT when all samples are the same</li>
+ *     <li>VERBATIM when nothing can be predicted (noise)</li>
+ *     <li>FIXED with the polynomial order giving the smallest residual</li>
+ *     <li>LPC: Tukey window, autocorrelation, Levinson-Durbin, then coefficients quantized with error feedback</li>
+ * </ul>
+ * <p>Residuals are Rice coded, the partition order and the Rice parameters are chosen from the sums of the residuals,
+ * without encoding them. A partition which does not compress well is stored as is (escape code). A predictor whose
+ * residual does not fit in 32 bits is skipped, this only happens with 32 bits samples.</p>
+ * <p>One instance per thread: all work buffers are allocated once.</p>
+ */
+final class FlacFrameEncoder {
+    private static final int CHANNELS_LEFT_SIDE = 8;
+    private static final int CHANNELS_SIDE_RIGHT = 9;
+    private static final int CHANNELS_MID_SIDE = 10;
+    private static final int MAX_FIXED_ORDER = 4;
+    private static final int MAX_LPC_SHIFT = 15;
+    private static final int MAX_RICE_PARAMETER = 30;
+    private static final double TUKEY_RATIO = 0.5;
+
+    private final int sampleRate;
+    private final int bitsPerSample;
+    private final int nbChannels;
+    private final int maxLpcOrder;
+    private final int maxPartitionOrder;
+    private final boolean exhaustive;
+
+    private final FlacBitWriter frame;
+    /**
+     * One per channel, or left, right, mid and side in stereo
+     */
+    private final FlacBitWriter[] subframes;
+    private final int[] mid;
+    private final int[] side;
+    private final int[] shifted;
+
+    private final int[] fixedResidual;
+    private final int[] fixedCoding;
+    private int[] lpcResidual;
+    private int[] lpcCoding;
+    private int[] bestLpcResidual;
+    private int[] bestLpcCoding;
+    private final int[] coefficients;
+    private final int[] bestCoefficients;
+    private int bestShift;
+    private int bestPrecision;
+
+    private double[] window = new double[0];
+    private final double[] windowed;
+    private final double[] autocorrelation;
+    private final double[][] lpc;
+    private final double[] lpcErrors;
+    private final double[] levinson;
+    private final long[] partitionSums;
+    private final int[] partitionMagnitudes;
+    private final int[] candidateCoding;
+    private int residualPartitionOrder;
+    private int residualMethod;
+
+    FlacFrameEncoder(int sampleRate, int bitsPerSample, int nbChannels, FlacCompressionLevel level) {
+        this.sampleRate = sampleRate;
+        this.bitsPerSample = bitsPerSample;
+        this.nbChannels = nbChannels;
+        this.maxLpcOrder = level.getMaxLpcOrder();
+        this.maxPartitionOrder = level.getMaxPartitionOrder();
+        this.exhaustive = level.isExhaustive();
+        int blockSize = level.getBlockSize();
+        int maxFrameSize = blockSize * nbChannels * (bitsPerSample + 1) / 8 + 64;
+        frame = new FlacBitWriter(maxFrameSize);
+        subframes = new FlacBitWriter[nbChannels == 2 ? 4 : nbChannels];
+        for (int i = 0; i < subframes.length; i++) {
+            subframes[i] = new FlacBitWriter(maxFrameSize / nbChannels);
+        }
+        mid = new int[blockSize];
+        side = new int[blockSize];
+        shifted = new int[blockSize];
+        fixedResidual = new int[blockSize];
+        lpcResidual = new int[blockSize];
+        bestLpcResidual = new int[blockSize];
+        int nbPartitions = 1 << maxPartitionOrder;
+        fixedCoding = new int[nbPartitions];
+        lpcCoding = new int[nbPartitions];
+        bestLpcCoding = new int[nbPartitions];
+        coefficients = new int[Math.max(1, maxLpcOrder)];
+        bestCoefficients = new int[Math.max(1, maxLpcOrder)];
+        windowed = new double[blockSize];
+        autocorrelation = new double[maxLpcOrder + 1];
+        lpc = new double[maxLpcOrder][maxLpcOrder];
+        lpcErrors = new double[maxLpcOrder];
+        levinson = new double[maxLpcOrder];
+        partitionSums = new long[nbPartitions];
+        partitionMagnitudes = new int[nbPartitions];
+        candidateCoding = new int[nbPartitions];
+    }
+
+    /**
+     * @param samples     one array per channel, signed integers on {@link #bitsPerSample} bits
+     * @param blockSize   number of samples per channel, up to the block size of the compression level
+     * @param frameNumber index of the frame in the stream, all frames have the same size except the last one
+     * @return the whole frame, CRCs included
+     */
+    byte[] encode(int[][] samples, int blockSize, long frameNumber) {
+        int channelAssignment;
+        FlacBitWriter[] chosen = new FlacBitWriter[nbChannels];
+        if (nbChannels == 2 && bitsPerSample < 32) {
+            int[] left = samples[0];
+            int[] right = samples[1];
+            for (int i = 0; i < blockSize; i++) {
+                mid[i] = (left[i] + right[i]) >> 1;
+                side[i] = left[i] - right[i];
+            }
+            channelAssignment = exhaustive ? encodeAllStereoModes(left, right, blockSize) : guessStereoMode(left, right, blockSize);
+            // subframes are left, right, mid and side
+            switch (channelAssignment) {
+                case CHANNELS_LEFT_SIDE -> {
+                    chosen[0] = subframes[0];
+                    chosen[1] = subframes[3];
+                }
+                case CHANNELS_SIDE_RIGHT -> {
+                    chosen[0] = subframes[3];
+                    chosen[1] = subframes[1];
+                }
+                case CHANNELS_MID_SIDE -> {
+                    chosen[0] = subframes[2];
+                    chosen[1] = subframes[3];
+                }
+                default -> {
+                    chosen[0] = subframes[0];
+                    chosen[1] = subframes[1];
+                }
+            }
+        } else {
+            channelAssignment = nbChannels - 1;
+            for (int c = 0; c < nbChannels; c++) {
+                encodeSubframe(subframes[c], samples[c], blockSize, bitsPerSample);
+                chosen[c] = subframes[c];
+            }
+        }
+
+        frame.reset();
+        writeHeader(blockSize, frameNumber, channelAssignment);
+        for (FlacBitWriter subframe : chosen) {
+            frame.write(subframe);
+        }
+        frame.alignToByte();
+        frame.write(FlacCrc.crc16(frame.getData(), 0, frame.getBytePosition()), 16);
+        return frame.toByteArray();
+    }
+
+    /**
+     * Encode left, right, mid and side, then keep the smallest pair
+     */
+    private int encodeAllStereoModes(int[] left, int[] right, int blockSize) {
+        encodeSubframe(subframes[0], left, blockSize, bitsPerSample);
+        encodeSubframe(subframes[1], right, blockSize, bitsPerSample);
+        encodeSubframe(subframes[2], mid, blockSize, bitsPerSample);
+        encodeSubframe(subframes[3], side, blockSize, bitsPerSample + 1);
+        return chooseStereoMode(subframes[0].getBitPosition(), subframes[1].getBitPosition(), subframes[2].getBitPosition(), subframes[3].getBitPosition());
+    }
+
+    /**
+     * Estimate the size of left, right, mid and side with the fixed predictors, then encode only the best pair
+     */
+    private int guessStereoMode(int[] left, int[] right, int blockSize) {
+        int channelAssignment = chooseStereoMode(estimateFixedBits(left, blockSize), estimateFixedBits(right, blockSize),
+                estimateFixedBits(mid, blockSize), estimateFixedBits(side, blockSize));
+        switch (channelAssignment) {
+            case CHANNELS_LEFT_SIDE -> {
+                encodeSubframe(subframes[0], left, blockSize, bitsPerSample);
+                encodeSubframe(subframes[3], side, blockSize, bitsPerSample + 1);
+            }
+            case CHANNELS_SIDE_RIGHT -> {
+                encodeSubframe(subframes[3], side, blockSize, bitsPerSample + 1);
+                encodeSubframe(subframes[1], right, blockSize, bitsPerSample);
+            }
+            case CHANNELS_MID_SIDE -> {
+                encodeSubframe(subframes[2], mid, blockSize, bitsPerSample);
+                encodeSubframe(subframes[3], side, blockSize, bitsPerSample + 1);
+            }
+            default -> {
+                encodeSubframe(subframes[0], left, blockSize, bitsPerSample);
+                encodeSubframe(subframes[1], right, blockSize, bitsPerSample);
+            }
+        }
+        return channelAssignment;
+    }
+
+    private static int chooseStereoMode(long leftBits, long rightBits, long midBits, long sideBits) {
+        int channelAssignment = 1;
+        long best = leftBits + rightBits;
+        if (leftBits + sideBits < best) {
+            channelAssignment = CHANNELS_LEFT_SIDE;
+            best = leftBits + sideBits;
+        }
+        if (sideBits + rightBits < best) {
+            channelAssignment = CHANNELS_SIDE_RIGHT;
+            best = sideBits + rightBits;
+        }
+        if (midBits + sideBits < best) {
+            channelAssignment = CHANNELS_MID_SIDE;
+        }
+        return channelAssignment;
+    }
+
+    private void writeHeader(int blockSize, long frameNumber, int channelAssignment) {
+        frame.write(0x3FFE, 14);
+        frame.write(0, 1);
+        // fixed block size
+        frame.write(0, 1);
+        int blockSizeCode = getBlockSizeCode(blockSize);
+        frame.write(blockSizeCode, 4);
+        frame.write(getSampleRateCode(sampleRate), 4);
+        frame.write(channelAssignment, 4);
+        frame.write(switch (bitsPerSample) {
+            case 8 -> 1;
+            case 12 -> 2;
+            case 16 -> 4;
+            case 20 -> 5;
+            case 24 -> 6;
+            case 32 -> 7;
+            default -> 0;
+        }, 3);
+        frame.write(0, 1);
+        writeCodedNumber(frameNumber);
+        if (blockSizeCode == 6) {
+            frame.write(blockSize - 1, 8);
+        } else if (blockSizeCode == 7) {
+            frame.write(blockSize - 1, 16);
+        }
+        frame.write(FlacCrc.crc8(frame.getData(), 0, frame.getBytePosition()), 8);
+    }
+
+    private static int getBlockSizeCode(int blockSize) {
+        if (blockSize == 192) {
+            return 1;
+        }
+        if (Integer.bitCount(blockSize) == 1 && blockSize >= 256 && blockSize <= 32768) {
+            // 256 << (code - 8)
+            return Integer.numberOfTrailingZeros(blockSize);
+        }
+        if (blockSize % 576 == 0 && Integer.bitCount(blockSize / 576) == 1 && blockSize <= 4608) {
+            return 2 + Integer.numberOfTrailingZeros(blockSize / 576);
+        }
+        return blockSize <= 256 ? 6 : 7;
+    }
+
+    /**
+     * 0 means "see STREAMINFO", uncommon sample rates are not repeated in each frame
+     */
+    private static int getSampleRateCode(int sampleRate) {
+        return switch (sampleRate) {
+            case 88200 -> 1;
+            case 176400 -> 2;
+            case 192000 -> 3;
+            case 8000 -> 4;
+            case 16000 -> 5;
+            case 22050 -> 6;
+            case 24000 -> 7;
+            case 32000 -> 8;
+            case 44100 -> 9;
+            case 48000 -> 10;
+            case 96000 -> 11;
+            default -> 0;
+        };
+    }
+
+    /**
+     * UTF-8 like coding, up to 36 bits
+     */
+    private void writeCodedNumber(long value) {
+        if (value < 0x80) {
+            frame.write(value, 8);
+            return;
+        }
+        int nbBytes = 2;
+        while (value >= 1L << (5 * nbBytes + 1)) {
+            nbBytes++;
+        }
+        frame.write(((0xFF00 >> nbBytes) & 0xFF) | (value >>> (6 * (nbBytes - 1))), 8);
+        for (int i = nbBytes - 2; i >= 0; i--) {
+            frame.write(0x80 | ((value >>> (6 * i)) & 0x3F), 8);
+        }
+    }
+
+    private void encodeSubframe(FlacBitWriter out, int[] input, int blockSize, int bps) {
+        out.reset();
+        int first = input[0];
+        boolean constant = true;
+        int bits = 0;
+        for (int i = 0; i < blockSize; i++) {
+            constant &= input[i] == first;
+            bits |= input[i];
+        }
+        if (constant) {
+            writeSubframeHeader(out, 0, 0);
+            out.write(first, bps);
+            return;
+        }
+        int wastedBits = Integer.numberOfTrailingZeros(bits);
+        int[] s = input;
+        if (wastedBits > 0) {
+            for (int i = 0; i < blockSize; i++) {
+                shifted[i] = input[i] >> wastedBits;
+            }
+            s = shifted;
+            bps -= wastedBits;
+        }
+
+        long verbatimBits = (long) blockSize * bps;
+        int fixedOrder = getBestFixedOrder(s, blockSize);
+        long fixedBits = Long.MAX_VALUE;
+        int fixedPartitionOrder = 0;
+        int fixedMethod = 0;
+        // without a valid residual, this is LPC or VERBATIM
+        if (computeFixedResidual(s, blockSize, fixedOrder, fixedResidual)) {
+            fixedBits = (long) fixedOrder * bps + chooseResidualCoding(fixedResidual, blockSize, fixedOrder, fixedCoding);
+            fixedPartitionOrder = residualPartitionOrder;
+            fixedMethod = residualMethod;
+        }
+
+        int lpcOrder = 0;
+        long lpcBits = Long.MAX_VALUE;
+        int lpcPartitionOrder = 0;
+        int lpcMethod = 0;
+        if (maxLpcOrder > 0 && blockSize > maxLpcOrder && computeLPC(s, blockSize)) {
+            int precision = getLpcPrecision(blockSize, bps);
+            int from = 1;
+            int to = maxLpcOrder;
+            if (!exhaustive) {
+                from = estimateBestLpcOrder(blockSize, bps, precision);
+                to = from;
+            }
+            for (int order = from; order <= to; order++) {
+                int shift = quantize(lpc[order - 1], order, precision);
+                if (shift < 0) {
+                    continue;
+                }
+                if (!computeLpcResidual(s, blockSize, order, shift, lpcResidual)) {
+                    continue;
+                }
+                long bitsForOrder = (long) order * bps + 4 + 5 + (long) order * precision + chooseResidualCoding(lpcResidual, blockSize, order, lpcCoding);
+                if (bitsForOrder < lpcBits) {
+                    lpcBits = bitsForOrder;
+                    lpcOrder = order;
+                    lpcPartitionOrder = residualPartitionOrder;
+                    lpcMethod = residualMethod;
+                    bestShift = shift;
+                    bestPrecision = precision;
+                    System.arraycopy(coefficients, 0, bestCoefficients, 0, order);
+                    int[] swap = bestLpcResidual;
+                    bestLpcResidual = lpcResidual;
+                    lpcResidual = swap;
+                    swap = bestLpcCoding;
+                    bestLpcCoding = lpcCoding;
+                    lpcCoding = swap;
+                }
+            }
+        }
+
+        if (lpcBits < fixedBits && lpcBits < verbatimBits) {
+            writeSubframeHeader(out, 32 + lpcOrder - 1, wastedBits);
+            for (int i = 0; i < lpcOrder; i++) {
+                out.write(s[i], bps);
+            }
+            out.write(bestPrecision - 1, 4);
+            out.write(bestShift, 5);
+            for (int i = 0; i < lpcOrder; i++) {
+                out.write(bestCoefficients[i], bestPrecision);
+            }
+            writeResidual(out, bestLpcResidual, blockSize, lpcOrder, lpcPartitionOrder, lpcMethod, bestLpcCoding);
+        } else if (fixedBits < verbatimBits) {
+            writeSubframeHeader(out, 8 + fixedOrder, wastedBits);
+            for (int i = 0; i < fixedOrder; i++) {
+                out.write(s[i], bps);
+            }
+            writeResidual(out, fixedResidual, blockSize, fixedOrder, fixedPartitionOrder, fixedMethod, fixedCoding);
+        } else {
+            writeSubframeHeader(out, 1, wastedBits);
+            for (int i = 0; i < blockSize; i++) {
+                out.write(s[i], bps);
+            }
+        }
+    }
+
+    private static void writeSubframeHeader(FlacBitWriter out, int type, int wastedBits) {
+        out.write(0, 1);
+        out.write(type, 6);
+        if (wastedBits > 0) {
+            out.write(1, 1);
+            out.writeUnary(wastedBits - 1);
+        } else {
+            out.write(0, 1);
+        }
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Fixed predictors
+    // ------------------------------------------------------------------------------------------------
+
+    /**
+     * Sum of the absolute residuals for each order, in a single pass
+     */
+    private static long[] sumFixedResiduals(int[] s, int blockSize) {
+        long[] sums = new long[MAX_FIXED_ORDER + 1];
+        for (int i = MAX_FIXED_ORDER; i < blockSize; i++) {
+            long e0 = s[i];
+            long e1 = e0 - s[i - 1];
+            long e2 = e1 - ((long) s[i - 1] - s[i - 2]);
+            long e3 = e2 - ((long) s[i - 1] - 2L * s[i - 2] + s[i - 3]);
+            long e4 = e3 - ((long) s[i - 1] - 3L * s[i - 2] + 3L * s[i - 3] - s[i - 4]);
+            sums[0] += Math.abs(e0);
+            sums[1] += Math.abs(e1);
+            sums[2] += Math.abs(e2);
+            sums[3] += Math.abs(e3);
+            sums[4] += Math.abs(e4);
+        }
+        return sums;
+    }
+
+    private static int getBestFixedOrder(int[] s, int blockSize) {
+        if (blockSize <= MAX_FIXED_ORDER) {
+            return 0;
+        }
+        long[] sums = sumFixedResiduals(s, blockSize);
+        int best = 0;
+        for (int order = 1; order <= MAX_FIXED_ORDER; order++) {
+            if (sums[order] < sums[best]) {
+                best = order;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Rough size of a channel with its best fixed predictor, to choose the stereo mode
+     */
+    private static long estimateFixedBits(int[] s, int blockSize) {
+        if (blockSize <= MAX_FIXED_ORDER) {
+            return 0;
+        }
+        long[] sums = sumFixedResiduals(s, blockSize);
+        long best = Long.MAX_VALUE;
+        for (long sum : sums) {
+            best = Math.min(best, sum);
+        }
+        double mean = (double) best / blockSize;
+        return (long) (blockSize * (mean > 1 ? Math.log(mean) / Math.log(2) + 1 : 1));
+    }
+
+    /**
+     * With 32 bits samples, the prediction can be far from the signal and the residual may not fit in 32 bits.
+     * The most negative value is rejected too, so the magnitude of a residual always fits in 31 bits.
+     */
+    static boolean isValidResidual(long residual) {
+        return residual > Integer.MIN_VALUE && residual <= Integer.MAX_VALUE;
+    }
+
+    /**
+     * @return false if a residual does not fit in 32 bits, this order must not be used
+     */
+    static boolean computeFixedResidual(int[] s, int blockSize, int order, int[] residual) {
+        boolean valid = true;
+        switch (order) {
+            case 0 -> {
+                for (int i = 0; i < blockSize; i++) {
+                    valid &= s[i] != Integer.MIN_VALUE;
+                    residual[i] = s[i];
+                }
+            }
+            case 1 -> {
+                for (int i = 1; i < blockSize; i++) {
+                    long r = (long) s[i] - s[i - 1];
+                    valid &= isValidResidual(r);
+                    residual[i] = (int) r;
+                }
+            }
+            case 2 -> {
+                for (int i = 2; i < blockSize; i++) {
+                    long r = (long) s[i] - 2L * s[i - 1] + s[i - 2];
+                    valid &= isValidResidual(r);
+                    residual[i] = (int) r;
+                }
+            }
+            case 3 -> {
+                for (int i = 3; i < blockSize; i++) {
+                    long r = (long) s[i] - 3L * s[i - 1] + 3L * s[i - 2] - s[i - 3];
+                    valid &= isValidResidual(r);
+                    residual[i] = (int) r;
+                }
+            }
+            default -> {
+                for (int i = 4; i < blockSize; i++) {
+                    long r = (long) s[i] - 4L * s[i - 1] + 6L * s[i - 2] - 4L * s[i - 3] + s[i - 4];
+                    valid &= isValidResidual(r);
+                    residual[i] = (int) r;
+                }
+            }
+        }
+        return valid;
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // LPC
+    // ------------------------------------------------------------------------------------------------
+
+    private double[] getWindow(int blockSize) {
+        if (window.length != blockSize) {
+            window = new double[blockSize];
+            int taper = (int) (TUKEY_RATIO / 2 * blockSize);
+            for (int i = 0; i < blockSize; i++) {
+                if (i < taper) {
+                    window[i] = 0.5 - 0.5 * Math.cos(Math.PI * i / taper);
+                } else if (i >= blockSize - taper) {
+                    window[i] = 0.5 - 0.5 * Math.cos(Math.PI * (blockSize - 1 - i) / taper);
+                } else {
+                    window[i] = 1;
+                }
+            }
+        }
+        return window;
+    }
+
+    /**
+     * Compute the LPC coefficients of all orders up to {@link #maxLpcOrder} in {@link #lpc}, with Levinson-Durbin
+     *
+     * @return false if the signal is silent after windowing
+     */
+    private boolean computeLPC(int[] s, int blockSize) {
+        double[] w = getWindow(blockSize);
+        for (int i = 0; i < blockSize; i++) {
+            windowed[i] = s[i] * w[i];
+        }
+        for (int lag = 0; lag <= maxLpcOrder; lag++) {
+            double sum = 0;
+            for (int i = lag; i < blockSize; i++) {
+                sum += windowed[i] * windowed[i - lag];
+            }
+            autocorrelation[lag] = sum;
+        }
+        if (autocorrelation[0] == 0) {
+            return false;
+        }
+        double[] a = levinson;
+        double error = autocorrelation[0];
+        for (int i = 0; i < maxLpcOrder; i++) {
+            double r = -autocorrelation[i + 1];
+            for (int j = 0; j < i; j++) {
+                r -= a[j] * autocorrelation[i - j];
+            }
+            r /= error;
+            a[i] = r;
+            for (int j = 0; j < i / 2; j++) {
+                double tmp = a[j];
+                a[j] += r * a[i - 1 - j];
+                a[i - 1 - j] += r * tmp;
+            }
+            if ((i & 1) != 0) {
+                a[i / 2] += a[i / 2] * r;
+            }
+            error *= 1.0 - r * r;
+            // predictor: s[n] = sum of lpc[j] * s[n - 1 - j]
+            for (int j = 0; j <= i; j++) {
+                lpc[i][j] = -a[j];
+            }
+            lpcErrors[i] = error;
+        }
+        return true;
+    }
+
+    /**
+     * Same rule as the reference encoder: longer blocks deserve more precise coefficients
+     */
+    private static int getLpcPrecision(int blockSize, int bps) {
+        int precision;
+        if (bps <= 16) {
+            precision = blockSize <= 192 ? 7 : blockSize <= 384 ? 8 : blockSize <= 576 ? 9 : blockSize <= 1152 ? 10 : blockSize <= 2304 ? 11 : blockSize <= 4608 ? 12 : 13;
+        } else {
+            precision = blockSize <= 384 ? 13 : blockSize <= 1152 ? 14 : 15;
+        }
+        return precision;
+    }
+
+    /**
+     * Expected size of the residual given the prediction error of each order
+     */
+    private int estimateBestLpcOrder(int blockSize, int bps, int precision) {
+        double errorScale = 0.5 / blockSize;
+        int best = 1;
+        double bestBits = Double.MAX_VALUE;
+        for (int order = 1; order <= maxLpcOrder; order++) {
+            double error = lpcErrors[order - 1];
+            double bitsPerSample = error > 0 ? Math.max(0, 0.5 * Math.log(errorScale * error) / Math.log(2)) : error < 0 ? 1e32 : 0;
+            double bits = bitsPerSample * (blockSize - order) + order * (double) (bps + precision);
+            if (bits < bestBits) {
+                bestBits = bits;
+                best = order;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Quantize the coefficients in {@link #coefficients}, the rounding error is carried to the next coefficient
+     *
+     * @return the shift, -1 if it is not possible
+     */
+    private int quantize(double[] lp, int order, int precision) {
+        double max = 0;
+        for (int i = 0; i < order; i++) {
+            max = Math.max(max, Math.abs(lp[i]));
+        }
+        if (max <= 0) {
+            return -1;
+        }
+        int log2Max = Math.getExponent(max) + 1;
+        int shift = Math.min(MAX_LPC_SHIFT, precision - 1 - log2Max);
+        if (shift < 0) {
+            return -1;
+        }
+        int qMax = (1 << (precision - 1)) - 1;
+        int qMin = -qMax - 1;
+        double error = 0;
+        boolean allZeros = true;
+        for (int i = 0; i < order; i++) {
+            error += lp[i] * (1 << shift);
+            long q = Math.round(error);
+            q = Math.max(qMin, Math.min(qMax, q));
+            error -= q;
+            coefficients[i] = (int) q;
+            allZeros &= q == 0;
+        }
+        return allZeros ? -1 : shift;
+    }
+
+    /**
+     * @return false if a residual does not fit in 32 bits, this order must not be used
+     */
+    private boolean computeLpcResidual(int[] s, int blockSize, int order, int shift, int[] residual) {
+        for (int i = order; i < blockSize; i++) {
+            long sum = 0;
+            for (int j = 0; j < order; j++) {
+                sum += (long) coefficients[j] * s[i - 1 - j];
+            }
+            long r = s[i] - (sum >> shift);
+            if (!isValidResidual(r)) {
+                return false;
+            }
+            residual[i] = (int) r;
+        }
+        return true;
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Residual
+    // ------------------------------------------------------------------------------------------------
+
+    /**
+     * Choose the partition order and the Rice parameter of each partition, from the sums of the residuals
+     * <p>The sums are computed for the smallest partitions, then merged two by two for the lower orders.</p>
+     *
+     * @param coding for each partition: the Rice parameter, or {@code -1 - nbBits} to store the residuals as is
+     * @return the estimated size in bits, {@link #residualPartitionOrder} and {@link #residualMethod} are set
+     */
+    private long chooseResidualCoding(int[] residual, int blockSize, int predictorOrder, int[] coding) {
+        int order = maxPartitionOrder;
+        while (order > 0 && ((blockSize & ((1 << order) - 1)) != 0 || (blockSize >> order) < predictorOrder)) {
+            order--;
+        }
+        int nbPartitions = 1 << order;
+        int partitionSize = blockSize >> order;
+        for (int p = 0; p < nbPartitions; p++) {
+            long sum = 0;
+            int magnitude = 0;
+            for (int i = Math.max(predictorOrder, p * partitionSize); i < (p + 1) * partitionSize; i++) {
+                int r = residual[i];
+                sum += ((long) r << 1) ^ (r >> 31);
+                magnitude |= r ^ (r >> 31);
+            }
+            partitionSums[p] = sum;
+            partitionMagnitudes[p] = magnitude;
+        }
+        long bestBits = Long.MAX_VALUE;
+        int[] candidate = candidateCoding;
+        for (; ; ) {
+            long bits = 2 + 4;
+            boolean needsRice2 = false;
+            for (int p = 0; p < nbPartitions; p++) {
+                int count = partitionSize - (p == 0 ? predictorOrder : 0);
+                long sum = partitionSums[p];
+                int parameter = count > 0 && sum > count ? Math.min(MAX_RICE_PARAMETER, 63 - Long.numberOfLeadingZeros(sum / count)) : 0;
+                long riceBits = estimateRiceBits(count, sum, parameter);
+                if (parameter > 0) {
+                    long lower = estimateRiceBits(count, sum, parameter - 1);
+                    if (lower < riceBits) {
+                        riceBits = lower;
+                        parameter--;
+                    }
+                }
+                int rawBits = sum == 0 ? 0 : 33 - Integer.numberOfLeadingZeros(partitionMagnitudes[p]);
+                long escapeBits = 5 + (long) count * rawBits;
+                if (rawBits <= 31 && escapeBits < riceBits) {
+                    candidate[p] = -1 - rawBits;
+                    bits += escapeBits;
+                } else {
+                    candidate[p] = parameter;
+                    bits += riceBits;
+                    needsRice2 |= parameter >= 15;
+                }
+            }
+            bits += (long) nbPartitions * (needsRice2 ? 5 : 4);
+            if (bits < bestBits) {
+                bestBits = bits;
+                residualPartitionOrder = order;
+                residualMethod = needsRice2 ? 1 : 0;
+                System.arraycopy(candidate, 0, coding, 0, nbPartitions);
+            }
+            if (order == 0) {
+                break;
+            }
+            // merge the partitions two by two
+            nbPartitions >>= 1;
+            partitionSize <<= 1;
+            order--;
+            for (int p = 0; p < nbPartitions; p++) {
+                partitionSums[p] = partitionSums[2 * p] + partitionSums[2 * p + 1];
+                partitionMagnitudes[p] = partitionMagnitudes[2 * p] | partitionMagnitudes[2 * p + 1];
+            }
+        }
+        return bestBits;
+    }
+
+    /**
+     * Each value takes parameter + 1 bits, plus the quotient, which is on average sum / 2^parameter minus one half
+     */
+    private static long estimateRiceBits(int count, long sum, int parameter) {
+        return (long) count * (parameter + 1) + Math.max(0, (sum >> parameter) - count / 2);
+    }
+
+    private static void writeResidual(FlacBitWriter out, int[] residual, int blockSize, int predictorOrder, int partitionOrder, int method, int[] coding) {
+        int parameterSize = method == 0 ? 4 : 5;
+        int escapeCode = (1 << parameterSize) - 1;
+        out.write(method, 2);
+        out.write(partitionOrder, 4);
+        int partitionSize = blockSize >> partitionOrder;
+        int start = predictorOrder;
+        for (int p = 0; p < 1 << partitionOrder; p++) {
+            int end = (p + 1) * partitionSize;
+            int parameter = coding[p];
+            if (parameter >= 0) {
+                out.write(parameter, parameterSize);
+                out.writeRice(residual, start, end, parameter);
+            } else {
+                int rawBits = -1 - parameter;
+                out.write(escapeCode, parameterSize);
+                out.write(rawBits, 5);
+                for (int i = start; i < end; i++) {
+                    out.write(residual[i], rawBits);
+                }
+            }
+            start = end;
+        }
+    }
+}
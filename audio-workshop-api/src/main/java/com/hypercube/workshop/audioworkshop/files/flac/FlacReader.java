@@ -4,6 +4,7 @@ import com.hypercube.workshop.audioworkshop.files.exceptions.AudioParserExceptio
 import com.hypercube.workshop.audioworkshop.files.flac.meta.FlacApplicationMetadata;
 import com.hypercube.workshop.audioworkshop.files.flac.meta.FlacMetadata;
 import com.hypercube.workshop.audioworkshop.files.io.PositionalReadWriteStream;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.File;
@@ -18,6 +19,7 @@ import java.nio.charset.StandardCharsets;
 @SuppressWarnings({"unused", "StatementWithEmptyBody"})
 public class FlacReader {
 
+    @Getter
     private final FlacAudioInfo info;
     private final File inputFile;
 
@@ -57,15 +59,17 @@ public class FlacReader {
                 // do nothing
             }
 
-            int remainBytes = stream.capacity() - stream.positionUInt();
+            info.setFirstFrameOffset(stream.positionLong());
+            if (frameConsumer == null) {
+                // metadata only, no need to read the frames
+                return true;
+            }
             byte[] data = new byte[1024 * 1024 * 50];
             for (; ; ) {
                 int nbRead = stream.read(data);
                 if (nbRead == -1)
                     break;
-                if (frameConsumer != null) {
-                    frameConsumer.onFrameData(data, nbRead);
-                }
+                frameConsumer.onFrameData(data, nbRead);
             }
             return true;
         } catch (Exception e) {
@@ -107,7 +111,7 @@ public class FlacReader {
         if (flacType == FlacBlockType.STREAMINFO) {
             readStreamInfo(block);
         } else if (flacType == FlacBlockType.SEEKTABLE) {
-            // skip
+            readSeekTable(block);
         } else if (flacType == FlacBlockType.APPLICATION) {
             readApplication(flacType, block, lastOne, consumer);
         } else if (flacType == FlacBlockType.PADDING) {
@@ -134,6 +138,19 @@ public class FlacReader {
         }
     }
 
+    // https://xiph.org/flac/format.html#metadata_block_seektable
+    private void readSeekTable(byte[] data) {
+        ByteBuffer block = ByteBuffer.wrap(data);
+        block.order(ByteOrder.BIG_ENDIAN);
+        while (block.remaining() >= 18) {
+            long sampleNumber = block.getLong();
+            long offset = block.getLong();
+            int nbSamples = block.getShort() & 0xFFFF;
+            info.getSeekPoints()
+                    .add(new FlacSeekPoint(sampleNumber, offset, nbSamples));
+        }
+    }
+
     // https://xiph.org/flac/format.html#metadata_block_vorbis_comment
     private void readVorbisComment(byte[] data) {
         ByteBuffer block = ByteBuffer.wrap(data);
@@ -197,8 +214,8 @@ public class FlacReader {
     private void readStreamInfo(byte[] data) {
         ByteBuffer block = ByteBuffer.wrap(data);
         block.order(ByteOrder.BIG_ENDIAN);
-        int minimumBlockSize = block.getShort();
-        int maximumBlockSize = block.getShort();
+        int minimumBlockSize = block.getShort() & 0xFFFF;
+        int maximumBlockSize = block.getShort() & 0xFFFF;
         int minimumFrameSize = get24BitInt(block);
         int maximumFrameSize = get24BitInt(block);
         log.trace("minimumBlockSize: %d".formatted(minimumBlockSize));
@@ -228,6 +245,10 @@ public class FlacReader {
         info.setDurationString(durationString);
         info.setBitDepth((int) bitPerSample);
         info.setMd5(md5);
+        info.setNbSamples(totalSamples);
+        info.setMinBlockSize(minimumBlockSize);
+        info.setMaxBlockSize(maximumBlockSize);
+        info.setMaxFrameSize(maximumFrameSize);
     }
 }
 
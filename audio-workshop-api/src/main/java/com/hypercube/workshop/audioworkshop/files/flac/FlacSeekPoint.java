@@ -0,0 +1,16 @@
+package com.hypercube.workshop.audioworkshop.files.flac;
+
+/**
+ * Entry of the SEEKTABLE metadata block
+ *
+ * @param sampleNumber first sample of the target frame
+ * @param offset       position of the target frame, relative to the first frame
+ * @param nbSamples    number of samples in the target frame
+ */
+public record FlacSeekPoint(long sampleNumber, long offset, int nbSamples) {
+    public static final long PLACEHOLDER = 0xFFFFFFFFFFFFFFFFL;
+
+    public boolean isPlaceholder() {
+        return sampleNumber == PLACEHOLDER;
+    }
+}
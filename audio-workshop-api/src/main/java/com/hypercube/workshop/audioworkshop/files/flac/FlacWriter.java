@@ -12,11 +12,23 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.Map;
 
+/**
+ * Write a FLAC file block by block
+ * <p>The metadata blocks come first, the last one has a flag. Since we don't always know which one is the last,
+ * {@link #endMetadata()} can set the flag afterward. The audio frames are written by a {@link FlacEncoder} or copied from
+ * another file with {@link #writeBytes(byte[], int)}.</p>
+ */
 @Slf4j
 public class FlacWriter implements Closeable {
     @Getter
     private final File file;
     private SeekableBinaryOutputStream out;
+    /**
+     * Position of the header of the last metadata block, -1 if there is none
+     */
+    private long lastBlockPosition = -1;
+    private int lastBlockType;
+    private boolean metadataEnded;
 
     public FlacWriter(File file) throws IOException {
         this.file = file;
@@ -28,21 +40,67 @@ public class FlacWriter implements Closeable {
         out.writeChunkId("fLaC");
     }
 
-    public void writeBlock(boolean lastOne, FlacBlockType type, byte[] block)
+    /**
+     * @return the position of the block content, to rewrite it with {@link #rewriteBlock(long, byte[])}
+     */
+    public long writeBlock(boolean lastOne, FlacBlockType type, byte[] block)
             throws IOException {
+        beginBlock(lastOne, type);
+        out.writeInt24BE(block.length);
+        long contentPosition = out.position();
+        out.writeBytes(block);
+        return contentPosition;
+    }
+
+    private void beginBlock(boolean lastOne, FlacBlockType type) throws IOException {
+        if (metadataEnded) {
+            // the previous block is not the last one anymore
+            long position = out.position();
+            out.seek(lastBlockPosition);
+            out.writeByte(lastBlockType);
+            out.seek(position);
+        }
+        lastBlockPosition = out.position();
+        lastBlockType = type.ordinal();
+        metadataEnded = lastOne;
         if (lastOne)
             out.writeByte(type.ordinal() | 0x80);
         else
             out.writeByte(type.ordinal() & 0x7F);
-        out.writeInt24BE(block.length);
+    }
+
+    /**
+     * Overwrite the content of a block, typically STREAMINFO once all frames are written. The size can't change.
+     */
+    public void rewriteBlock(long contentPosition, byte[] block) throws IOException {
+        long position = out.position();
+        out.seek(contentPosition);
         out.writeBytes(block);
+        out.seek(position);
+    }
+
+    /**
+     * Set the "last block" flag on the last metadata block written, if it is not already done
+     */
+    public void endMetadata() throws IOException {
+        if (metadataEnded) {
+            return;
+        }
+        if (lastBlockPosition < 0) {
+            throw new FlacError("A FLAC file must start with a STREAMINFO block");
+        }
+        long position = out.position();
+        out.seek(lastBlockPosition);
+        out.writeByte(lastBlockType | 0x80);
+        out.seek(position);
+        metadataEnded = true;
     }
 
     /**
      * Write a custom APPLICATION chunk containing the original WAV data surrounding the PCM data
      */
     public void writeORGD(RiffFileInfo origMeta) throws IOException {
-        out.writeByte(FlacBlockType.APPLICATION.ordinal() | 0x80);
+        beginBlock(true, FlacBlockType.APPLICATION);
         long p0 = out.position();
         out.writeInt24BE(0);
         long p1 = out.position();
@@ -71,7 +129,7 @@ public class FlacWriter implements Closeable {
 
     // https://xiph.org/vorbis/doc/v-comment.html
     public void writeVorbisTags(Map<String, String> map) throws IOException {
-        out.writeByte(FlacBlockType.VORBIS_COMMENT.ordinal());
+        beginBlock(false, FlacBlockType.VORBIS_COMMENT);
         long p1 = out.position();
         out.writeInt24BE(0);
         writeVorbisString("media-transcoder");
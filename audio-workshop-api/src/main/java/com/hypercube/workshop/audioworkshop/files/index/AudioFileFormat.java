@@ -0,0 +1,41 @@
+package com.hypercube.workshop.audioworkshop.files.index;
+
+import lombok.Getter;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Audio files indexed by the {@link AudioLibraryScanner}, recognized by their extension
+ */
+@Getter
+public enum AudioFileFormat {
+    WAV("wav", "bwf"),
+    AIFF("aif", "aiff", "aifc"),
+    FLAC("flac");
+
+    private final List<String> extensions;
+
+    AudioFileFormat(String... extensions) {
+        this.extensions = List.of(extensions);
+    }
+
+    public static Optional<AudioFileFormat> fromPath(Path path) {
+        String name = path.getFileName()
+                .toString();
+        int dot = name.lastIndexOf('.');
+        if (dot == -1) {
+            return Optional.empty();
+        }
+        String extension = name.substring(dot + 1)
+                .toLowerCase(Locale.ROOT);
+        for (AudioFileFormat format : values()) {
+            if (format.extensions.contains(extension)) {
+                return Optional.of(format);
+            }
+        }
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,133 @@
+package com.hypercube.workshop.audioworkshop.files.index;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Persistent index of an audio library, built by the {@link AudioLibraryScanner}
+ * <p>The file is a gzipped binary stream, a few tens of bytes per entry:</p>
+ * <pre>
+ * "AWIX" version nbEntries
+ * path size lastModified format sampleRate nbChannels bitDepth nbSamples nbChunks chunk... checksum error
+ * ...
+ * </pre>
+ * <p>An index written by another version is ignored, the library is scanned again.</p>
+ */
+@Slf4j
+public class AudioIndex {
+    private static final int MAGIC = 0x41574958; // "AWIX"
+    private static final int VERSION = 1;
+
+    private final Map<String, AudioIndexEntry> entries = new TreeMap<>();
+
+    public Optional<AudioIndexEntry> get(String path) {
+        return Optional.ofNullable(entries.get(path));
+    }
+
+    public void put(AudioIndexEntry entry) {
+        entries.put(entry.path(), entry);
+    }
+
+    /**
+     * @return entries sorted by path
+     */
+    public Collection<AudioIndexEntry> getEntries() {
+        return Collections.unmodifiableCollection(entries.values());
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return an empty index if the file does not exist or can't be read
+     */
+    public static AudioIndex load(File file) {
+        AudioIndex index = new AudioIndex();
+        if (!file.exists()) {
+            return index;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file), 1 << 16)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                log.warn("Unsupported index version, it will be rebuilt: " + file.getAbsolutePath());
+                return index;
+            }
+            int nbEntries = in.readInt();
+            AudioFileFormat[] formats = AudioFileFormat.values();
+            for (int i = 0; i < nbEntries; i++) {
+                String path = in.readUTF();
+                long size = in.readLong();
+                long lastModified = in.readLong();
+                AudioFileFormat format = formats[in.readUnsignedByte()];
+                int sampleRate = in.readInt();
+                int nbChannels = in.readUnsignedShort();
+                int bitDepth = in.readUnsignedByte();
+                long nbSamples = in.readLong();
+                int nbChunks = in.readUnsignedShort();
+                List<String> chunks = new ArrayList<>(nbChunks);
+                for (int c = 0; c < nbChunks; c++) {
+                    chunks.add(in.readUTF());
+                }
+                String checksum = readOptionalString(in);
+                String error = readOptionalString(in);
+                index.put(new AudioIndexEntry(path, size, lastModified, format, sampleRate, nbChannels, bitDepth, nbSamples, List.copyOf(chunks), checksum, error));
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Unable to read index, it will be rebuilt: " + file.getAbsolutePath(), e);
+            return new AudioIndex();
+        }
+        return index;
+    }
+
+    /**
+     * The index is written in a temporary file first, so an interrupted save does not lose the previous one
+     */
+    public void save(File file) throws IOException {
+        File parent = file.getAbsoluteFile()
+                .getParentFile();
+        parent.mkdirs();
+        File tmp = new File(parent, file.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tmp), 1 << 16)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(entries.size());
+            for (AudioIndexEntry entry : entries.values()) {
+                out.writeUTF(entry.path());
+                out.writeLong(entry.size());
+                out.writeLong(entry.lastModified());
+                out.writeByte(entry.format()
+                        .ordinal());
+                out.writeInt(entry.sampleRate());
+                out.writeShort(entry.nbChannels());
+                out.writeByte(entry.bitDepth());
+                out.writeLong(entry.nbSamples());
+                out.writeShort(entry.chunks()
+                        .size());
+                for (String chunk : entry.chunks()) {
+                    out.writeUTF(chunk);
+                }
+                writeOptionalString(out, entry.checksum());
+                writeOptionalString(out, entry.error());
+            }
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String readOptionalString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeOptionalString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            // writeUTF is limited to 64 KB
+            out.writeUTF(value.length() > 1024 ? value.substring(0, 1024) : value);
+        }
+    }
+}
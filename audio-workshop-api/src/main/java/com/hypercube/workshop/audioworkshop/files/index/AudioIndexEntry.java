@@ -0,0 +1,41 @@
+package com.hypercube.workshop.audioworkshop.files.index;
+
+import java.util.List;
+
+/**
+ * What we know about an audio file without reading it again
+ *
+ * @param path         relative to the scanned folder, with '/' as separator
+ * @param size         file size in bytes
+ * @param lastModified modification time in milliseconds
+ * @param chunks       root chunks for RIFF/AIFF files, metadata blocks for FLAC files
+ * @param checksum     {@link com.hypercube.workshop.audioworkshop.files.riff.ChecksumAlgorithm#XXHASH64} of the audio data for RIFF/AIFF,
+ *                     MD5 of the samples stored in the STREAMINFO for FLAC, null if not available
+ * @param error        null if the file was parsed successfully
+ */
+public record AudioIndexEntry(String path, long size, long lastModified, AudioFileFormat format,
+                              int sampleRate, int nbChannels, int bitDepth, long nbSamples,
+                              List<String> chunks, String checksum, String error) {
+
+    public static AudioIndexEntry ofError(String path, long size, long lastModified, AudioFileFormat format, String error) {
+        return new AudioIndexEntry(path, size, lastModified, format, 0, 0, 0, 0, List.of(), null, error);
+    }
+
+    /**
+     * @return duration in seconds
+     */
+    public double duration() {
+        return sampleRate == 0 ? 0 : nbSamples / (double) sampleRate;
+    }
+
+    public boolean isValid() {
+        return error == null;
+    }
+
+    /**
+     * Files are not read again if their size and modification time did not change
+     */
+    public boolean isUpToDate(long size, long lastModified) {
+        return this.size == size && this.lastModified == lastModified;
+    }
+}
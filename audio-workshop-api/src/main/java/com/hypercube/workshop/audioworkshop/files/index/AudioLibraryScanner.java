@@ -0,0 +1,210 @@
+package com.hypercube.workshop.audioworkshop.files.index;
+
+import com.hypercube.workshop.audioworkshop.files.flac.FlacAudioInfo;
+import com.hypercube.workshop.audioworkshop.files.flac.FlacReader;
+import com.hypercube.workshop.audioworkshop.files.riff.ChecksumAlgorithm;
+import com.hypercube.workshop.audioworkshop.files.riff.RiffAudioInfo;
+import com.hypercube.workshop.audioworkshop.files.riff.RiffFileInfo;
+import com.hypercube.workshop.audioworkshop.files.riff.RiffReadMode;
+import com.hypercube.workshop.audioworkshop.files.riff.RiffReader;
+import com.hypercube.workshop.audioworkshop.files.riff.chunks.RiffChunk;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Scan a library of WAV/AIFF/FLAC files and keep what we found in an {@link AudioIndex}
+ * <ul>
+ *     <li>The directory tree is walked by the caller thread, the files are parsed by a pool of workers</li>
+ *     <li>At most {@code 4 * nbThreads} files are waiting for a worker, so the walk does not fill the memory</li>
+ *     <li>A file whose size and modification time did not change since the previous scan is not read again,
+ *     re-scanning a library costs one directory listing</li>
+ *     <li>Files which can't be parsed are indexed with their error, so they are not parsed again either</li>
+ *     <li>WAV and AIFF files are read with {@link RiffReadMode#STREAM} by default: a mapped file stays locked on Windows
+ *     until the GC releases the mapping, which is not what a library scan should do</li>
+ * </ul>
+ */
+@Slf4j
+public class AudioLibraryScanner {
+    private final int nbThreads;
+    private final RiffReadMode readMode;
+
+    public AudioLibraryScanner() {
+        this(Runtime.getRuntime()
+                .availableProcessors());
+    }
+
+    public AudioLibraryScanner(int nbThreads) {
+        this(nbThreads, RiffReadMode.STREAM);
+    }
+
+    /**
+     * @param readMode how WAV and AIFF files are read, {@link RiffReadMode#MAPPED} avoids a copy to compute the checksums
+     */
+    public AudioLibraryScanner(int nbThreads, RiffReadMode readMode) {
+        if (nbThreads < 1) {
+            throw new IllegalArgumentException("Illegal number of threads: " + nbThreads);
+        }
+        this.nbThreads = nbThreads;
+        this.readMode = readMode;
+    }
+
+    /**
+     * @param nbFiles     audio files found
+     * @param nbParsed    new or modified files
+     * @param nbUnchanged files taken from the previous index
+     * @param nbRemoved   files of the previous index which are gone
+     * @param nbErrors    files which can't be parsed
+     * @param elapsedMs   duration of the scan
+     */
+    public record ScanReport(int nbFiles, int nbParsed, int nbUnchanged, int nbRemoved, int nbErrors, long elapsedMs) {
+    }
+
+    /**
+     * Scan a folder and update its index file
+     */
+    public ScanReport scan(File folder, File indexFile) throws IOException {
+        long start = System.currentTimeMillis();
+        AudioIndex previous = AudioIndex.load(indexFile);
+        AudioIndex index = new AudioIndex();
+        Path root = folder.toPath()
+                .toAbsolutePath()
+                .normalize();
+        AtomicInteger nbParsed = new AtomicInteger();
+        AtomicInteger nbErrors = new AtomicInteger();
+        int[] nbUnchanged = {0};
+        ConcurrentLinkedQueue<AudioIndexEntry> parsed = new ConcurrentLinkedQueue<>();
+        Semaphore slots = new Semaphore(4 * nbThreads);
+        ExecutorService workers = Executors.newFixedThreadPool(nbThreads);
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    Optional<AudioFileFormat> format = AudioFileFormat.fromPath(file);
+                    if (format.isEmpty() || !attrs.isRegularFile()) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                    String path = root.relativize(file)
+                            .toString()
+                            .replace(File.separatorChar, '/');
+                    long size = attrs.size();
+                    long lastModified = attrs.lastModifiedTime()
+                            .toMillis();
+                    Optional<AudioIndexEntry> entry = previous.get(path)
+                            .filter(e -> e.isUpToDate(size, lastModified));
+                    if (entry.isPresent()) {
+                        index.put(entry.get());
+                        nbUnchanged[0]++;
+                        return FileVisitResult.CONTINUE;
+                    }
+                    try {
+                        slots.acquire();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread()
+                                .interrupt();
+                        return FileVisitResult.TERMINATE;
+                    }
+                    workers.execute(() -> {
+                        try {
+                            AudioIndexEntry newEntry = parse(file, path, size, lastModified, format.get());
+                            if (!newEntry.isValid()) {
+                                nbErrors.incrementAndGet();
+                            }
+                            parsed.add(newEntry);
+                            nbParsed.incrementAndGet();
+                        } finally {
+                            slots.release();
+                        }
+                    });
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    log.warn("Unable to read " + file + ": " + exc.getMessage());
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+            workers.shutdown();
+            if (!workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS)) {
+                throw new IOException("Scan interrupted");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                    .interrupt();
+            throw new IOException("Scan interrupted", e);
+        } finally {
+            workers.shutdownNow();
+        }
+        parsed.forEach(index::put);
+        int nbRemoved = (int) previous.getEntries()
+                .stream()
+                .filter(e -> index.get(e.path())
+                        .isEmpty())
+                .count();
+        index.save(indexFile);
+        ScanReport report = new ScanReport(index.size(), nbParsed.get(), nbUnchanged[0], nbRemoved, nbErrors.get(), System.currentTimeMillis() - start);
+        log.info("{} files in {}: {} parsed, {} unchanged, {} removed, {} errors in {} ms", report.nbFiles(), root, report.nbParsed(), report.nbUnchanged(),
+                report.nbRemoved(), report.nbErrors(), report.elapsedMs());
+        return report;
+    }
+
+    /**
+     * Parse a single file, never throws
+     */
+    AudioIndexEntry parse(Path file, String path, long size, long lastModified, AudioFileFormat format) {
+        try {
+            return switch (format) {
+                case WAV, AIFF -> parseRiff(file, path, size, lastModified, format);
+                case FLAC -> parseFlac(file, path, size, lastModified);
+            };
+        } catch (Exception e) {
+            log.warn("Unable to parse " + file + ": " + e.getMessage());
+            return AudioIndexEntry.ofError(path, size, lastModified, format, String.valueOf(e.getMessage()));
+        }
+    }
+
+    private AudioIndexEntry parseRiff(Path file, String path, long size, long lastModified, AudioFileFormat format) throws IOException {
+        try (RiffReader riffReader = new RiffReader(file.toFile(), readMode)) {
+            RiffFileInfo info = riffReader.parse();
+            if (info == null) {
+                return AudioIndexEntry.ofError(path, size, lastModified, format, "Unable to parse file");
+            }
+            List<String> chunks = info.collectChunks()
+                    .stream()
+                    .map(RiffChunk::getId)
+                    .toList();
+            RiffAudioInfo audioInfo = info.getAudioInfo();
+            String checksum = info.getDataChunk() != null ? riffReader.computeChecksum(info.getDataChunk(), ChecksumAlgorithm.XXHASH64) : null;
+            return new AudioIndexEntry(path, size, lastModified, format, audioInfo.getSampleRate(), audioInfo.getNbChannels(),
+                    audioInfo.getBitPerSample(), audioInfo.getNbSamples(), chunks, checksum, null);
+        }
+    }
+
+    private AudioIndexEntry parseFlac(Path file, String path, long size, long lastModified) {
+        FlacReader flacReader = new FlacReader(file.toFile());
+        List<String> blocks = new ArrayList<>();
+        if (!flacReader.parse(metadata -> blocks.add(metadata.getType()
+                .name()), null)) {
+            return AudioIndexEntry.ofError(path, size, lastModified, AudioFileFormat.FLAC, "Unable to parse file");
+        }
+        FlacAudioInfo info = flacReader.getInfo();
+        // the MD5 is optional in FLAC, all zeros means unknown
+        byte[] md5 = info.getMd5();
+        String checksum = md5.length == 16 && !Arrays.equals(md5, new byte[16]) ? HexFormat.of()
+                .withUpperCase()
+                .formatHex(md5) : null;
+        return new AudioIndexEntry(path, size, lastModified, AudioFileFormat.FLAC, info.getSampleRate(), info.getNumChannels(),
+                info.getBitDepth(), info.getNbSamples(), List.copyOf(blocks), checksum, null);
+    }
+}
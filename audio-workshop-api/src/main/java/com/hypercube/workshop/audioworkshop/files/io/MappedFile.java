@@ -0,0 +1,99 @@
+package com.hypercube.workshop.audioworkshop.files.io;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Read only access to a file through memory mapped segments
+ * <p>A {@link MappedByteBuffer} can't be bigger than 2 GB, so the file is mapped on demand in segments of
+ * {@link #SEGMENT_SIZE} bytes. Each segment also maps the first {@link #SEGMENT_OVERLAP} bytes of the next one:</p>
+ * <pre>
+ * segment 0 : [0 .......... 1G + 16M]
+ * segment 1 :            [1G .......... 2G + 16M]
+ * </pre>
+ * <ul>
+ *     <li>A slice up to {@link #SEGMENT_OVERLAP} bytes always fits in a single segment, so it is a view on the mapping: nothing is copied</li>
+ *     <li>A bigger slice crossing the end of a segment gets its own mapping, still without copy</li>
+ *     <li>Slices are read only and little endian by default since most of our formats are RIFF based</li>
+ *     <li>Slices can be taken from many threads: a segment is published atomically, if two threads map it at the same
+ *     time, only one mapping is kept</li>
+ * </ul>
+ * <p>The JVM can't unmap a file (see <a href="https://bugs.openjdk.org/browse/JDK-4715154">JDK-4715154</a>): the mappings are
+ * released by the GC only. {@link #close()} forgets them but on Windows the file stays locked until then.</p>
+ */
+public class MappedFile implements Closeable {
+    public static final long SEGMENT_SIZE = 1L << 30;
+    public static final long SEGMENT_OVERLAP = 16L * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final long size;
+    private final AtomicReferenceArray<MappedByteBuffer> segments;
+
+    public MappedFile(File file) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        size = channel.size();
+        segments = new AtomicReferenceArray<>((int) ((size + SEGMENT_SIZE - 1) / SEGMENT_SIZE));
+    }
+
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @param position file position
+     * @param length   size of the slice
+     * @return a read only little endian view on the file, starting at index 0
+     */
+    public ByteBuffer slice(long position, int length) throws IOException {
+        if (position < 0 || length < 0) {
+            throw new IllegalArgumentException("Illegal slice: " + length + " bytes at " + position);
+        }
+        if (position + length > size) {
+            throw new EOFException("Slice of %d bytes at %d is beyond the end of file (%d bytes)".formatted(length, position, size));
+        }
+        int index = (int) (position / SEGMENT_SIZE);
+        long segmentStart = index * SEGMENT_SIZE;
+        ByteBuffer buffer;
+        if (length == 0) {
+            buffer = ByteBuffer.allocate(0);
+        } else if (position + length <= segmentStart + getSegmentLength(index)) {
+            buffer = getSegment(index).slice((int) (position - segmentStart), length);
+        } else {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        }
+        return buffer.asReadOnlyBuffer()
+                .order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private long getSegmentLength(int index) {
+        return Math.min(SEGMENT_SIZE + SEGMENT_OVERLAP, size - index * SEGMENT_SIZE);
+    }
+
+    private MappedByteBuffer getSegment(int index) throws IOException {
+        MappedByteBuffer segment = segments.get(index);
+        if (segment == null) {
+            segment = channel.map(FileChannel.MapMode.READ_ONLY, index * SEGMENT_SIZE, getSegmentLength(index));
+            if (!segments.compareAndSet(index, null, segment)) {
+                // another thread was faster, the extra mapping is released by the GC
+                segment = segments.get(index);
+            }
+        }
+        return segment;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (int i = 0; i < segments.length(); i++) {
+            segments.set(i, null);
+        }
+        channel.close();
+    }
+}
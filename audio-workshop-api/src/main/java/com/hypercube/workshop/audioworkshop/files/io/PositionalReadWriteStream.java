@@ -3,6 +3,7 @@ package com.hypercube.workshop.audioworkshop.files.io;
 import com.hypercube.workshop.audioworkshop.files.utils.CachedRegExp;
 
 import java.io.Closeable;
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
@@ -21,23 +22,68 @@ import java.util.regex.Matcher;
  * - We provide the ability to read and write "Unsigned int" because it is often useful
  * despite the fact Java does not support this kind of type.
  * - We also support endianness using ByteBuffer
+ * <p>
+ * All reads and writes go through a page of {@link #DEFAULT_PAGE_SIZE} bytes, so parsing thousands of small fields
+ * (chunk headers, cue points, DLS pool tables...) does not hit the file for each of them:
+ * <ul>
+ *     <li>The page is a window on the file starting at {@code pageStart}, the current position is {@code pageStart + pagePos}</li>
+ *     <li>Primitives are read and written in place with two reusable views on the page, one per endianness. Nothing is allocated.</li>
+ *     <li>Written bytes stay in the page until it moves somewhere else, {@link #flush()} or {@link #close()} is called,
+ *     so reading them back always returns what was written</li>
+ *     <li>Large reads bypass the page</li>
+ * </ul>
  */
 @SuppressWarnings("java:S117")
 public class PositionalReadWriteStream implements Closeable {
+    public static final int DEFAULT_PAGE_SIZE = 16 * 1024;
 
     private final RandomAccessFile stream;
 
     private final FileChannel channel;
 
+    private final boolean canWrite;
+
+    private final byte[] page;
+    private final ByteBuffer pageBuffer;
+    private final ByteBuffer littleEndian;
+    private final ByteBuffer bigEndian;
+    /**
+     * File position of page[0]
+     */
+    private long pageStart;
+    /**
+     * Number of valid bytes in the page
+     */
+    private int pageLength;
+    /**
+     * Current position in the page, always {@code <= pageLength}
+     */
+    private int pagePos;
+    /**
+     * Modified area of the page, empty when dirtyStart == dirtyEnd
+     */
+    private int dirtyStart;
+    private int dirtyEnd;
+
     public long positionLong() throws IOException {
-        return channel.position();
+        return pageStart + pagePos;
     }
 
     public int positionUInt() throws IOException {
-        return (int) channel.position();
+        return (int) positionLong();
     }
 
     public PositionalReadWriteStream(File file, boolean canWrite) throws IOException {
+        this(file, canWrite, DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * @param pageSize must hold the biggest primitive (a long)
+     */
+    public PositionalReadWriteStream(File file, boolean canWrite, int pageSize) throws IOException {
+        if (pageSize < Long.BYTES) {
+            throw new IllegalArgumentException("Page size too small: " + pageSize);
+        }
         if (canWrite) {
             if (file.exists()) {
                 if (!file.setWritable(true)) {
@@ -49,6 +95,13 @@ public class PositionalReadWriteStream implements Closeable {
             stream = new RandomAccessFile(file, "r");
         }
         channel = stream.getChannel();
+        this.canWrite = canWrite;
+        page = new byte[pageSize];
+        pageBuffer = ByteBuffer.wrap(page);
+        littleEndian = ByteBuffer.wrap(page)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        bigEndian = ByteBuffer.wrap(page)
+                .order(ByteOrder.BIG_ENDIAN);
     }
 
     public UUID getUUID() throws IOException {
@@ -58,8 +111,7 @@ public class PositionalReadWriteStream implements Closeable {
         int time_hi_and_version = getShortLE();
         int clock_seq_hi_and_reserved = getByte();
         int cloc_seq_low = getByte();
-        byte[] node = new byte[6];
-        stream.readFully(node);
+        byte[] node = readNBytes(6);
         String UUIDStr = String.format("%08X-%04X-%04X-%02X%02X-%02X%02X%02X%02X%02X%02X",
                 time_low, time_mid, time_hi_and_version, clock_seq_hi_and_reserved, cloc_seq_low
                 , node[0], node[1], node[2], node[3], node[4], node[5]);
@@ -97,19 +149,13 @@ public class PositionalReadWriteStream implements Closeable {
     }
 
     public int getIntBE() throws IOException {
-        byte[] data = readNBytes(4);
-        ByteBuffer bb = ByteBuffer.wrap(data);
-        bb.order(ByteOrder.BIG_ENDIAN);
-        return bb.getInt();
-
+        int offset = require(4);
+        return bigEndian.getInt(offset);
     }
 
     public int getIntLE() throws IOException {
-        byte[] data = readNBytes(4);
-        ByteBuffer bb = ByteBuffer.wrap(data);
-        bb.order(ByteOrder.LITTLE_ENDIAN);
-        return bb.getInt();
-
+        int offset = require(4);
+        return littleEndian.getInt(offset);
     }
 
     public long getUIntLE() throws IOException {
@@ -121,72 +167,89 @@ public class PositionalReadWriteStream implements Closeable {
     }
 
     public long getLongBE() throws IOException {
-        byte[] data = readNBytes(8);
-        ByteBuffer bb = ByteBuffer.wrap(data);
-        bb.order(ByteOrder.BIG_ENDIAN);
-        return bb.getLong();
+        int offset = require(8);
+        return bigEndian.getLong(offset);
     }
 
     public long getLongLE() throws IOException {
-        byte[] data = readNBytes(8);
-        ByteBuffer bb = ByteBuffer.wrap(data);
-        bb.order(ByteOrder.LITTLE_ENDIAN);
-        return bb.getLong();
-
+        int offset = require(8);
+        return littleEndian.getLong(offset);
     }
 
+    /**
+     * Read a 32 bits IEEE-754 float (the "fTempo" of an ACID chunk for instance)
+     */
     public double getdoubleBE() throws IOException {
-        byte[] data = readNBytes(4);
-        ByteBuffer bb = ByteBuffer.wrap(data);
-        bb.order(ByteOrder.BIG_ENDIAN);
-        return bb.getDouble();
+        int offset = require(4);
+        return bigEndian.getFloat(offset);
     }
 
+    /**
+     * Read a 32 bits IEEE-754 float (the "fTempo" of an ACID chunk for instance)
+     */
     public double getdoubleLE() throws IOException {
-        byte[] data = readNBytes(4);
-        ByteBuffer bb = ByteBuffer.wrap(data);
-        bb.order(ByteOrder.LITTLE_ENDIAN);
-        return bb.getDouble();
+        int offset = require(4);
+        return littleEndian.getFloat(offset);
     }
 
     public short getShortBE() throws IOException {
-        byte[] data = readNBytes(2);
-        ByteBuffer bb = ByteBuffer.wrap(data);
-        bb.order(ByteOrder.BIG_ENDIAN);
-        return bb.getShort();
+        int offset = require(2);
+        return bigEndian.getShort(offset);
     }
 
     public short getShortLE() throws IOException {
-        byte[] data = readNBytes(2);
-        ByteBuffer bb = ByteBuffer.wrap(data);
-        bb.order(ByteOrder.LITTLE_ENDIAN);
-        return bb.getShort();
+        int offset = require(2);
+        return littleEndian.getShort(offset);
     }
 
+    /**
+     * @return the unsigned byte or -1 at the end of the file
+     */
     public int getByte() throws IOException {
-        return stream.read();
+        return read();
     }
 
     public int read() throws IOException {
-        return stream.read();
+        if (pagePos == pageLength && fillPage() == 0) {
+            return -1;
+        }
+        return page[pagePos++] & 0xFF;
     }
 
     public int read(byte[] b) throws IOException {
-        return stream.read(b);
+        return read(b, 0, b.length);
     }
 
+    /**
+     * Read up to {@code len} bytes
+     *
+     * @return the number of bytes read, less than {@code len} only at the end of the file, -1 if nothing can be read
+     */
     public int read(byte[] b, int off, int len) throws IOException {
-        return stream.read(b, off, len);
+        if (len == 0) {
+            return 0;
+        }
+        int nbRead = readAvailable(b, off, len);
+        return nbRead == 0 ? -1 : nbRead;
     }
 
     public byte[] readNBytes(int len) throws IOException {
         byte[] result = new byte[len];
-        stream.readFully(result);
+        readNBytes(result, 0, len);
         return result;
     }
 
+    /**
+     * Skip up to n bytes, like {@link RandomAccessFile#skipBytes(int)} it never goes beyond the end of the file
+     */
     public long skip(int n) throws IOException {
-        return stream.skipBytes(n);
+        if (n <= 0) {
+            return 0;
+        }
+        long pos = positionLong();
+        long skipped = Math.min(n, Math.max(0, size() - pos));
+        seekLong(pos + skipped);
+        return skipped;
     }
 
     /**
@@ -194,20 +257,49 @@ public class PositionalReadWriteStream implements Closeable {
      */
     public void seekUInt(int n) throws IOException {
         long longPosition = n & 0xFFFFFFFFL;
-        channel.position(longPosition);
+        seekLong(longPosition);
     }
 
+    /**
+     * Stay in the current page if possible, otherwise the page is flushed and will be loaded at the new position on the next read
+     */
     public void seekLong(long n) throws IOException {
-        channel.position(n);
+        if (n >= pageStart && n <= pageStart + pageLength) {
+            pagePos = (int) (n - pageStart);
+        } else {
+            movePage(n);
+        }
     }
 
     public void readNBytes(byte[] b, int off, int len) throws IOException {
-        stream.readFully(b, off, len);
+        int nbRead = readAvailable(b, off, len);
+        if (nbRead < len) {
+            throw new EOFException("Unexpected end of file at 0x%X, %d bytes missing".formatted(positionLong(), len - nbRead));
+        }
+    }
+
+    /**
+     * Write the modified bytes of the page to the file
+     */
+    public void flush() throws IOException {
+        if (dirtyEnd > dirtyStart) {
+            ByteBuffer src = pageBuffer.slice(dirtyStart, dirtyEnd - dirtyStart);
+            long pos = pageStart + dirtyStart;
+            while (src.hasRemaining()) {
+                pos += channel.write(src, pos);
+            }
+            dirtyStart = 0;
+            dirtyEnd = 0;
+        }
     }
 
     @Override
     public void close() throws IOException {
-        stream.close();
+        try {
+            flush();
+        } finally {
+            stream.close();
+        }
     }
 
     public LocalDateTime getDateTime() throws IOException {
@@ -216,43 +308,152 @@ public class PositionalReadWriteStream implements Closeable {
     }
 
     public int capacity() throws IOException {
-        return (int) channel.size();
+        return (int) size();
+    }
+
+    public long capacityLong() throws IOException {
+        return size();
+    }
+
+    /**
+     * Size of the file, including the bytes written in the page but not flushed yet
+     */
+    private long size() throws IOException {
+        return Math.max(channel.size(), pageStart + pageLength);
     }
 
     public void putIntBE(int i) throws IOException {
-        byte[] data = new byte[4];
-        ByteBuffer bb = ByteBuffer.wrap(data);
-        bb.order(ByteOrder.BIG_ENDIAN);
-        bb.putInt(i);
-        stream.write(data);
+        int offset = prepareWrite(4);
+        bigEndian.putInt(offset, i);
     }
 
     public void putIntLE(int i) throws IOException {
-        byte[] data = new byte[4];
-        ByteBuffer bb = ByteBuffer.wrap(data);
-        bb.order(ByteOrder.LITTLE_ENDIAN);
-        bb.putInt(i);
-        stream.write(data);
+        int offset = prepareWrite(4);
+        littleEndian.putInt(offset, i);
+    }
+
+    public void putLongLE(long l) throws IOException {
+        int offset = prepareWrite(8);
+        littleEndian.putLong(offset, l);
     }
 
     public void putByte(int v) throws IOException {
-        stream.write(v);
+        int offset = prepareWrite(1);
+        page[offset] = (byte) v;
     }
 
     public void putShortLE(short i) throws IOException {
-        byte[] data = new byte[2];
-        ByteBuffer bb = ByteBuffer.wrap(data);
-        bb.order(ByteOrder.LITTLE_ENDIAN);
-        bb.putShort(i);
-        stream.write(data);
+        int offset = prepareWrite(2);
+        littleEndian.putShort(offset, i);
     }
 
     public void putShortBE(short i) throws IOException {
-        byte[] data = new byte[2];
-        ByteBuffer bb = ByteBuffer.wrap(data);
-        bb.order(ByteOrder.BIG_ENDIAN);
-        bb.putShort(i);
-        stream.write(data);
+        int offset = prepareWrite(2);
+        bigEndian.putShort(offset, i);
+    }
+
+    /**
+     * Make sure {@code size} bytes are available in the page at the current position, then move after them
+     *
+     * @return offset of the bytes in the page
+     * @throws EOFException if the file is too short
+     */
+    private int require(int size) throws IOException {
+        if (pageLength - pagePos < size && fillPage() < size) {
+            throw new EOFException("Unexpected end of file at 0x%X, %d bytes missing".formatted(positionLong(), size - (pageLength - pagePos)));
+        }
+        int offset = pagePos;
+        pagePos += size;
+        return offset;
+    }
+
+    /**
+     * Copy as many bytes as possible, the page is used only for small reads
+     *
+     * @return the number of bytes read, less than {@code len} at the end of the file
+     */
+    private int readAvailable(byte[] b, int off, int len) throws IOException {
+        int total = 0;
+        while (total < len) {
+            int available = pageLength - pagePos;
+            if (available > 0) {
+                int size = Math.min(available, len - total);
+                System.arraycopy(page, pagePos, b, off + total, size);
+                pagePos += size;
+                total += size;
+            } else if (len - total >= page.length) {
+                long pos = positionLong();
+                movePage(pos);
+                int nbRead = channel.read(ByteBuffer.wrap(b, off + total, len - total), pos);
+                if (nbRead <= 0) {
+                    break;
+                }
+                total += nbRead;
+                pageStart = pos + nbRead;
+            } else if (fillPage() == 0) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Keep the unread bytes of the page and read the following ones from the file
+     *
+     * @return the number of bytes available from the current position
+     */
+    private int fillPage() throws IOException {
+        flush();
+        int remaining = pageLength - pagePos;
+        if (pagePos > 0) {
+            System.arraycopy(page, pagePos, page, 0, remaining);
+            pageStart += pagePos;
+            pagePos = 0;
+            pageLength = remaining;
+        }
+        while (pageLength < page.length) {
+            int nbRead = channel.read(pageBuffer.slice(pageLength, page.length - pageLength), pageStart + pageLength);
+            if (nbRead <= 0) {
+                break;
+            }
+            pageLength += nbRead;
+        }
+        return pageLength;
+    }
+
+    /**
+     * Forget the content of the page, it will start at the given position
+     */
+    private void movePage(long position) throws IOException {
+        flush();
+        pageStart = position;
+        pageLength = 0;
+        pagePos = 0;
+    }
+
+    /**
+     * Written bytes are always contiguous to the valid part of the page since {@code pagePos <= pageLength}
+     *
+     * @return offset in the page where {@code size} bytes can be written
+     */
+    private int prepareWrite(int size) throws IOException {
+        if (!canWrite) {
+            throw new IOException("Stream is read only");
+        }
+        if (pagePos + size > page.length) {
+            movePage(positionLong());
+        }
+        int offset = pagePos;
+        if (dirtyEnd == dirtyStart) {
+            dirtyStart = offset;
+            dirtyEnd = offset + size;
+        } else {
+            dirtyStart = Math.min(dirtyStart, offset);
+            dirtyEnd = Math.max(dirtyEnd, offset + size);
+        }
+        pagePos += size;
+        pageLength = Math.max(pageLength, pagePos);
+        return offset;
     }
     //
 
@@ -1,5 +1,6 @@
 package com.hypercube.workshop.audioworkshop.files.io;
 
+import java.io.EOFException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
@@ -125,6 +126,30 @@ public class SeekableBinaryOutputStream implements AutoCloseable {
         ch.write(ByteBuffer.wrap(value, offset, size));
     }
 
+    /**
+     * Write the buffer from its position to its limit
+     */
+    public void writeBytes(ByteBuffer value) throws IOException {
+        while (value.hasRemaining()) {
+            ch.write(value);
+        }
+    }
+
+    /**
+     * Copy a part of another file at the current position, with {@link FileChannel#transferTo} the OS can do it
+     * without going through the Java heap
+     */
+    public void transferFrom(FileChannel source, long position, long count) throws IOException {
+        long end = position + count;
+        while (position < end) {
+            long transferred = source.transferTo(position, end - position, ch);
+            if (transferred <= 0) {
+                throw new EOFException("Unable to transfer %d bytes at %d".formatted(end - position, position));
+            }
+            position += transferred;
+        }
+    }
+
     public void seek(long position) throws IOException {
         ch.position(position);
     }
@@ -133,6 +158,20 @@ public class SeekableBinaryOutputStream implements AutoCloseable {
         return ch.position();
     }
 
+    /**
+     * Flush the content of the file to the storage device, the metadata are not forced
+     */
+    public void force() throws IOException {
+        ch.force(false);
+    }
+
+    /**
+     * Cut the file, the position is not modified unless it is beyond the new size
+     */
+    public void truncate(long size) throws IOException {
+        ch.truncate(size);
+    }
+
     @Override
     public void close() throws IOException {
         ch.close();
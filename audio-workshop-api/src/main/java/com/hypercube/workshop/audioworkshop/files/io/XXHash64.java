@@ -0,0 +1,175 @@
+package com.hypercube.workshop.audioworkshop.files.io;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.Checksum;
+
+/**
+ * Streaming xxHash64, see the <a href="https://github.com/Cyan4973/xxHash/blob/dev/doc/xxhash_spec.md">specification</a>
+ * <p>Unlike CRC32, the hash is 64 bits wide: collisions are unlikely even across a whole sample library.</p>
+ * <ul>
+ *     <li>The input is consumed by stripes of 32 bytes, the incomplete stripe is kept until the next update</li>
+ *     <li>Direct buffers (like memory mapped slices) are read in place, without copy</li>
+ *     <li>{@link #getValue()} does not modify the state, more bytes can be added after</li>
+ * </ul>
+ */
+public final class XXHash64 implements Checksum {
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME5 = 0x27D4EB2F165667C5L;
+    private static final int STRIPE_SIZE = 32;
+    private static final VarHandle LONG_LE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INT_LE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final long seed;
+    private final byte[] pending = new byte[STRIPE_SIZE];
+    private int pendingSize;
+    private long totalLength;
+    private long acc1;
+    private long acc2;
+    private long acc3;
+    private long acc4;
+
+    public XXHash64() {
+        this(0);
+    }
+
+    public XXHash64(long seed) {
+        this.seed = seed;
+        reset();
+    }
+
+    @Override
+    public void reset() {
+        acc1 = seed + PRIME1 + PRIME2;
+        acc2 = seed + PRIME2;
+        acc3 = seed;
+        acc4 = seed - PRIME1;
+        totalLength = 0;
+        pendingSize = 0;
+    }
+
+    @Override
+    public void update(int b) {
+        totalLength++;
+        pending[pendingSize++] = (byte) b;
+        if (pendingSize == STRIPE_SIZE) {
+            stripe(pending, 0);
+            pendingSize = 0;
+        }
+    }
+
+    @Override
+    public void update(byte[] b, int off, int len) {
+        totalLength += len;
+        if (pendingSize > 0) {
+            int n = Math.min(STRIPE_SIZE - pendingSize, len);
+            System.arraycopy(b, off, pending, pendingSize, n);
+            pendingSize += n;
+            off += n;
+            len -= n;
+            if (pendingSize < STRIPE_SIZE) {
+                return;
+            }
+            stripe(pending, 0);
+            pendingSize = 0;
+        }
+        for (; len >= STRIPE_SIZE; off += STRIPE_SIZE, len -= STRIPE_SIZE) {
+            stripe(b, off);
+        }
+        System.arraycopy(b, off, pending, 0, len);
+        pendingSize = len;
+    }
+
+    @Override
+    public void update(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            update(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            buffer.position(buffer.limit());
+            return;
+        }
+        ByteBuffer input = buffer.slice()
+                .order(ByteOrder.LITTLE_ENDIAN);
+        int len = input.remaining();
+        int pos = 0;
+        totalLength += len;
+        if (pendingSize > 0) {
+            int n = Math.min(STRIPE_SIZE - pendingSize, len);
+            input.get(0, pending, pendingSize, n);
+            pendingSize += n;
+            pos = n;
+            if (pendingSize < STRIPE_SIZE) {
+                buffer.position(buffer.limit());
+                return;
+            }
+            stripe(pending, 0);
+            pendingSize = 0;
+        }
+        for (; len - pos >= STRIPE_SIZE; pos += STRIPE_SIZE) {
+            acc1 = round(acc1, input.getLong(pos));
+            acc2 = round(acc2, input.getLong(pos + 8));
+            acc3 = round(acc3, input.getLong(pos + 16));
+            acc4 = round(acc4, input.getLong(pos + 24));
+        }
+        pendingSize = len - pos;
+        input.get(pos, pending, 0, pendingSize);
+        buffer.position(buffer.limit());
+    }
+
+    @Override
+    public long getValue() {
+        long h;
+        if (totalLength >= STRIPE_SIZE) {
+            h = Long.rotateLeft(acc1, 1) + Long.rotateLeft(acc2, 7) + Long.rotateLeft(acc3, 12) + Long.rotateLeft(acc4, 18);
+            h = mergeRound(h, acc1);
+            h = mergeRound(h, acc2);
+            h = mergeRound(h, acc3);
+            h = mergeRound(h, acc4);
+        } else {
+            h = seed + PRIME5;
+        }
+        h += totalLength;
+        int i = 0;
+        for (; i + 8 <= pendingSize; i += 8) {
+            h ^= round(0, (long) LONG_LE.get(pending, i));
+            h = Long.rotateLeft(h, 27) * PRIME1 + PRIME4;
+        }
+        if (i + 4 <= pendingSize) {
+            h ^= ((int) INT_LE.get(pending, i) & 0xFFFFFFFFL) * PRIME1;
+            h = Long.rotateLeft(h, 23) * PRIME2 + PRIME3;
+            i += 4;
+        }
+        for (; i < pendingSize; i++) {
+            h ^= (pending[i] & 0xFFL) * PRIME5;
+            h = Long.rotateLeft(h, 11) * PRIME1;
+        }
+        h ^= h >>> 33;
+        h *= PRIME2;
+        h ^= h >>> 29;
+        h *= PRIME3;
+        h ^= h >>> 32;
+        return h;
+    }
+
+    private void stripe(byte[] b, int off) {
+        acc1 = round(acc1, (long) LONG_LE.get(b, off));
+        acc2 = round(acc2, (long) LONG_LE.get(b, off + 8));
+        acc3 = round(acc3, (long) LONG_LE.get(b, off + 16));
+        acc4 = round(acc4, (long) LONG_LE.get(b, off + 24));
+    }
+
+    private static long round(long acc, long input) {
+        acc += input * PRIME2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * PRIME1;
+    }
+
+    private static long mergeRound(long acc, long value) {
+        acc ^= round(0, value);
+        return acc * PRIME1 + PRIME4;
+    }
+}
@@ -0,0 +1,331 @@
+package com.hypercube.workshop.audioworkshop.files.record;
+
+import com.hypercube.workshop.audioworkshop.api.consumer.SampleBuffer;
+import com.hypercube.workshop.audioworkshop.api.errors.AudioError;
+import com.hypercube.workshop.audioworkshop.api.format.PCMFormat;
+import com.hypercube.workshop.audioworkshop.api.record.BackPressurePolicy;
+import com.hypercube.workshop.audioworkshop.api.record.RecordListener;
+import com.hypercube.workshop.audioworkshop.files.riff.RiffWriter;
+import com.hypercube.workshop.audioworkshop.files.riff.chunks.Chunks;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Record in a WAV file without touching the file system on the capture thread
+ * <p>{@link WavRecordListener} writes each buffer in the audio callback: a slow disk, a file system allocating new blocks
+ * or a virus scanner, and the line overruns. Here the capture thread only copies the PCM in a pool of big preallocated
+ * buffers. Full buffers are written by a dedicated I/O thread, then returned to the pool:</p>
+ * <pre>
+ * capture thread : onNewBuffer -> copy in the current buffer -> filled queue
+ * I/O thread     : filled queue -> RiffWriter.write -> free queue
+ * </pre>
+ * <ul>
+ *     <li>Small audio buffers are coalesced, the disk receives few big writes. A buffer waiting longer than the header
+ *     update period is sent anyway, so the file never lags too much behind the capture</li>
+ *     <li>The file can be preallocated: the disk space is reserved with zeros before the recording,
+ *     then truncated to the real size on {@link #close()}</li>
+ *     <li>The I/O thread periodically writes the sizes of the RIFF and data chunks and flushes the file: if the application
+ *     crashes, the WAV is still readable up to the last update</li>
+ *     <li>When the pool is empty, the {@link BackPressurePolicy} applies. With {@link BackPressurePolicy#DROP_OLDEST} the
+ *     oldest buffer not yet written is lost, the file has a gap but stays aligned on frames</li>
+ * </ul>
+ * <pre>
+ * try (var out = new AsyncWavRecordListener(file, format)) {
+ *     line.record(out);
+ * }
+ * </pre>
+ * <p>Nothing is allocated per buffer. The queues take a short lock, the capture thread waits for the I/O thread only
+ * with {@link BackPressurePolicy#BLOCK}.</p>
+ */
+@Slf4j
+public class AsyncWavRecordListener implements RecordListener, Closeable {
+    public static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+    public static final int DEFAULT_NB_BUFFERS = 16;
+    public static final long DEFAULT_HEADER_UPDATE_MS = 1000;
+    private static final long WAIT_NANOS = 100_000;
+
+    private static final class PoolBuffer {
+        private final byte[] data;
+        private int size;
+        private long creationNanos;
+
+        private PoolBuffer(int capacity) {
+            data = new byte[capacity];
+        }
+    }
+
+    /**
+     * Tell the I/O thread there is nothing more to write
+     */
+    private static final PoolBuffer END_OF_STREAM = new PoolBuffer(0);
+
+    @Getter
+    private final File file;
+    private final RiffWriter out;
+    private final BackPressurePolicy policy;
+    private final long headerUpdateNanos;
+    private final ArrayBlockingQueue<PoolBuffer> freeBuffers;
+    private final ArrayBlockingQueue<PoolBuffer> filledBuffers;
+    private final Thread ioThread;
+    /**
+     * Buffer currently filled by the capture thread
+     */
+    private PoolBuffer current;
+
+    private final AtomicLong overruns = new AtomicLong();
+    private final AtomicLong droppedBytes = new AtomicLong();
+    @Getter
+    private volatile int maxQueueDepth;
+    @Getter
+    private volatile long bytesWritten;
+    @Getter
+    private volatile long nbWrites;
+    @Getter
+    private volatile long maxWriteLatencyNanos;
+    private volatile long totalWriteLatencyNanos;
+    @Getter
+    private volatile long headerUpdates;
+    private volatile boolean stopped;
+    private volatile Throwable ioError;
+
+    public AsyncWavRecordListener(File output, PCMFormat format) throws IOException {
+        this(output, format, BackPressurePolicy.BLOCK, DEFAULT_BUFFER_SIZE, DEFAULT_NB_BUFFERS, 0, DEFAULT_HEADER_UPDATE_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param policy             what to do when all buffers are waiting for the disk
+     * @param bufferSize         size of each buffer of the pool, rounded down to a multiple of the frame size
+     * @param nbBuffers          size of the pool, at least 2
+     * @param preallocatedBytes  disk space reserved for the audio before the recording start, 0 for none
+     * @param headerUpdatePeriod how often the chunk sizes are written and the file flushed to the disk
+     */
+    public AsyncWavRecordListener(File output, PCMFormat format, BackPressurePolicy policy, int bufferSize, int nbBuffers, long preallocatedBytes, long headerUpdatePeriod, TimeUnit headerUpdateUnit) throws IOException {
+        if (format.isBigEndian()) {
+            throw new AudioError("BigEndian is not supported by WAV format");
+        }
+        int frameSize = format.getFrameSizeInBytes();
+        int alignedBufferSize = bufferSize - bufferSize % frameSize;
+        if (alignedBufferSize == 0 || nbBuffers < 2) {
+            throw new AudioError("Invalid buffer pool: %d buffers of %d bytes for frames of %d bytes".formatted(nbBuffers, bufferSize, frameSize));
+        }
+        if (headerUpdatePeriod <= 0) {
+            throw new AudioError("Invalid header update period: " + headerUpdatePeriod);
+        }
+        this.file = output;
+        this.policy = policy;
+        this.headerUpdateNanos = headerUpdateUnit.toNanos(headerUpdatePeriod);
+        freeBuffers = new ArrayBlockingQueue<>(nbBuffers);
+        filledBuffers = new ArrayBlockingQueue<>(nbBuffers + 1);
+        for (int i = 0; i < nbBuffers; i++) {
+            freeBuffers.add(new PoolBuffer(alignedBufferSize));
+        }
+        out = new RiffWriter(output);
+        out.writeFmtChunk(format);
+        out.beginChunk(Chunks.DATA);
+        if (preallocatedBytes > 0) {
+            out.preallocate(preallocatedBytes);
+        }
+        out.updateChunkSizes();
+        ioThread = new Thread(this::writeBuffers, "AsyncWav-" + output.getName());
+        ioThread.setDaemon(true);
+        ioThread.start();
+    }
+
+    /**
+     * @return how many times the pool was empty: a buffer was dropped ({@link BackPressurePolicy#DROP_OLDEST}) or the capture waited ({@link BackPressurePolicy#BLOCK})
+     */
+    public long getOverruns() {
+        return overruns.get();
+    }
+
+    /**
+     * @return how many bytes of audio are missing in the file, because of {@link BackPressurePolicy#DROP_OLDEST}
+     */
+    public long getDroppedBytes() {
+        return droppedBytes.get();
+    }
+
+    /**
+     * @return how many buffers are waiting for the I/O thread
+     */
+    public int getQueueDepth() {
+        return filledBuffers.size();
+    }
+
+    public long getAverageWriteLatencyNanos() {
+        long n = nbWrites;
+        return n == 0 ? 0 : totalWriteLatencyNanos / n;
+    }
+
+    /**
+     * Called on the capture thread
+     *
+     * @return false if the I/O thread failed or the listener is closed
+     */
+    @Override
+    public boolean onNewBuffer(SampleBuffer buffer, byte[] pcmBuffer, int pcmSize) {
+        int offset = 0;
+        while (offset < pcmSize) {
+            if (stopped) {
+                return false;
+            }
+            if (current == null) {
+                current = acquireBuffer();
+                if (current == null) {
+                    return false;
+                }
+                current.creationNanos = System.nanoTime();
+            }
+            int size = Math.min(pcmSize - offset, current.data.length - current.size);
+            System.arraycopy(pcmBuffer, offset, current.data, current.size, size);
+            current.size += size;
+            offset += size;
+            if (current.size == current.data.length) {
+                submit();
+            }
+        }
+        if (current != null && System.nanoTime() - current.creationNanos >= headerUpdateNanos) {
+            submit();
+        }
+        return !stopped;
+    }
+
+    private void submit() {
+        filledBuffers.add(current);
+        current = null;
+        maxQueueDepth = Math.max(maxQueueDepth, filledBuffers.size());
+    }
+
+    /**
+     * @return null if the recording must stop
+     */
+    private PoolBuffer acquireBuffer() {
+        boolean counted = false;
+        for (; ; ) {
+            PoolBuffer free = freeBuffers.poll();
+            if (free != null) {
+                return free;
+            }
+            if (stopped) {
+                return null;
+            }
+            switch (policy) {
+                case DROP_OLDEST -> {
+                    PoolBuffer oldest = filledBuffers.poll();
+                    if (oldest != null) {
+                        overruns.incrementAndGet();
+                        droppedBytes.addAndGet(oldest.size);
+                        oldest.size = 0;
+                        return oldest;
+                    }
+                    // the I/O thread is about to give a buffer back
+                    Thread.onSpinWait();
+                }
+                case BLOCK -> {
+                    if (!counted) {
+                        overruns.incrementAndGet();
+                        counted = true;
+                    }
+                    try {
+                        free = freeBuffers.poll(WAIT_NANOS, TimeUnit.NANOSECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread()
+                                .interrupt();
+                        throw new AudioError(e);
+                    }
+                    if (free != null) {
+                        return free;
+                    }
+                }
+                case FAIL -> {
+                    overruns.incrementAndGet();
+                    stopped = true;
+                    throw new AudioError("WAV writer overrun, the disk is too slow (%d buffers pending)".formatted(filledBuffers.size()));
+                }
+            }
+        }
+    }
+
+    private void writeBuffers() {
+        long lastHeaderUpdate = System.nanoTime();
+        long lastHeaderBytes = 0;
+        try {
+            for (; ; ) {
+                PoolBuffer buffer = filledBuffers.poll(headerUpdateNanos, TimeUnit.NANOSECONDS);
+                if (buffer == END_OF_STREAM) {
+                    break;
+                }
+                if (buffer != null) {
+                    long start = System.nanoTime();
+                    out.write(buffer.data, buffer.size);
+                    long latency = System.nanoTime() - start;
+                    bytesWritten += buffer.size;
+                    nbWrites++;
+                    totalWriteLatencyNanos += latency;
+                    maxWriteLatencyNanos = Math.max(maxWriteLatencyNanos, latency);
+                    buffer.size = 0;
+                    freeBuffers.add(buffer);
+                }
+                long now = System.nanoTime();
+                if (now - lastHeaderUpdate >= headerUpdateNanos && bytesWritten != lastHeaderBytes) {
+                    out.updateChunkSizes();
+                    out.force();
+                    headerUpdates++;
+                    lastHeaderUpdate = now;
+                    lastHeaderBytes = bytesWritten;
+                }
+            }
+        } catch (IOException | RuntimeException | Error e) {
+            log.error("Unable to write " + file.getAbsolutePath(), e);
+            ioError = e;
+            stopped = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                    .interrupt();
+            ioError = e;
+            stopped = true;
+        }
+    }
+
+    /**
+     * Write the pending buffers, then finalize the file
+     * <p>Must be called once the capture is over. Any exception raised by the I/O thread is rethrown here</p>
+     */
+    @Override
+    public void close() throws IOException {
+        if (current != null && current.size > 0 && !stopped) {
+            submit();
+        }
+        current = null;
+        try {
+            filledBuffers.put(END_OF_STREAM);
+            ioThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                    .interrupt();
+            throw new AudioError(e);
+        }
+        stopped = true;
+        out.endChunk(); // end DATA chunk
+        out.close();
+        log.info("{}: {} bytes in {} writes, max write latency {} ms, avg {} ms, max queue depth {}, {} overruns",
+                file.getName(), bytesWritten, nbWrites, maxWriteLatencyNanos / 1_000_000.0, getAverageWriteLatencyNanos() / 1_000_000.0, maxQueueDepth, overruns.get());
+        if (droppedBytes.get() > 0) {
+            log.warn("{}: {} bytes were dropped", file.getName(), droppedBytes.get());
+        }
+        if (ioError instanceof IOException e) {
+            throw e;
+        } else if (ioError instanceof RuntimeException e) {
+            throw e;
+        } else if (ioError != null) {
+            throw new AudioError("WAV writer failed", ioError);
+        }
+    }
+}
@@ -14,6 +14,9 @@ import java.io.File;
 import java.io.IOException;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * Record in a WAV file, there is no size limit: long recordings become RF64 files when they cross 4 GB, see {@link RiffWriter}
+ */
 @RequiredArgsConstructor
 public class WavRecordListener implements RecordListener, Closeable {
     public static final int INFINITE_DURATION = -1;
@@ -26,7 +29,7 @@ public class WavRecordListener implements RecordListener, Closeable {
     public WavRecordListener(File output, PCMFormat format) throws IOException {
         this.format = checkFormat(format);
         this.out = new RiffWriter(output);
-        this.dataChunk = new RiffChunk(null, Chunks.DATA, (int) out.getPosition(), 0);
+        this.dataChunk = new RiffChunk(null, Chunks.DATA, out.getPosition(), 0);
         this.maxDurationInSamples = INFINITE_DURATION;
         createChunks(format);
     }
@@ -41,7 +44,7 @@ public class WavRecordListener implements RecordListener, Closeable {
     public WavRecordListener(File output, PCMFormat format, int maxDuration, TimeUnit maxDurationUnit) throws IOException {
         this.format = checkFormat(format);
         this.out = new RiffWriter(output);
-        this.dataChunk = new RiffChunk(null, Chunks.DATA, (int) out.getPosition(), 0);
+        this.dataChunk = new RiffChunk(null, Chunks.DATA, out.getPosition(), 0);
         this.maxDurationInSamples = computeMaxDurationInSamples(format, maxDuration, maxDurationUnit);
         createChunks(format);
     }
@@ -0,0 +1,43 @@
+package com.hypercube.workshop.audioworkshop.files.riff;
+
+import com.hypercube.workshop.audioworkshop.files.io.XXHash64;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Locale;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
+import java.util.zip.Checksum;
+
+/**
+ * Checksums available in {@link RiffReader#computeAudioChecksum(RiffAudioInfo, ChecksumAlgorithm)}
+ * <p>All of them are computed incrementally, the checksum is an uppercase hexadecimal string</p>
+ */
+@Getter
+@RequiredArgsConstructor
+public enum ChecksumAlgorithm {
+    /**
+     * Historical checksum of this project
+     */
+    CRC32(CRC32::new, 8),
+    /**
+     * Castagnoli polynomial, computed with the CRC32 instructions of the CPU when available
+     */
+    CRC32C(CRC32C::new, 8),
+    /**
+     * 64 bits non cryptographic hash
+     */
+    XXHASH64(XXHash64::new, 16);
+
+    private final Supplier<Checksum> factory;
+    private final int nbHexDigits;
+
+    public Checksum create() {
+        return factory.get();
+    }
+
+    public String format(Checksum checksum) {
+        return String.format(Locale.US, "%0" + nbHexDigits + "X", checksum.getValue());
+    }
+}
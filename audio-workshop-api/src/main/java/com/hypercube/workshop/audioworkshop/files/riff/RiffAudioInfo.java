@@ -29,11 +29,11 @@ public class RiffAudioInfo {
     /**
      * number of multichannel samples in the file
      */
-    private int nbSamples;
+    private long nbSamples;
     /**
      * number of audio bytes
      */
-    private int nbAudioBytes;
+    private long nbAudioBytes;
     /**
      * number of multichannel samples per seconds
      */
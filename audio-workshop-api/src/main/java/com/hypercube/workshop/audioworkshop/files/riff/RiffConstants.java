@@ -6,6 +6,8 @@ public class RiffConstants {
     public static final String AIFF_TYPE_DLS = "DLS "; // include Gigastudio
     public static final String RIFF = "RIFF";
     public static final String FORM = "FORM";
+    public static final String RF64 = "RF64"; // WAV above 4 GB, EBU Tech 3306
+    public static final String BW64 = "BW64"; // same as RF64, ITU-R BS.2088
     public static final String NUND = "NUND"; // steinberg nuendo project
 }
 
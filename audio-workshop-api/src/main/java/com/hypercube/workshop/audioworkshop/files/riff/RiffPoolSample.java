@@ -0,0 +1,17 @@
+package com.hypercube.workshop.audioworkshop.files.riff;
+
+import com.hypercube.workshop.audioworkshop.api.format.PCMFormat;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A wave of the DLS/GIG wave pool, see {@link RiffSamplePool}
+ *
+ * @param index     position in the pool table, the one used by the wave links of the regions
+ * @param name      INAM of the wave, null if there is none
+ * @param format    8 bits samples are unsigned
+ * @param nbSamples number of multichannel samples
+ * @param data      read only slice of the "data" chunk in the memory mapped file, nothing is copied
+ */
+public record RiffPoolSample(int index, String name, PCMFormat format, long nbSamples, ByteBuffer data) {
+}
@@ -0,0 +1,16 @@
+package com.hypercube.workshop.audioworkshop.files.riff;
+
+/**
+ * How {@link RiffReader} accesses the chunk payloads, the headers are always parsed with a paged stream
+ */
+public enum RiffReadMode {
+    /**
+     * Payloads are copied in heap buffers. The source can be fixed if requested.
+     */
+    STREAM,
+    /**
+     * Read only, payloads are zero copy slices of memory mapped segments of the file.
+     * <p>The mappings are released by the GC only, on Windows the file stays locked until then.</p>
+     */
+    MAPPED
+}
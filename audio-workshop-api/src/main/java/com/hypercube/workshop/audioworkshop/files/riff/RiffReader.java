@@ -8,6 +8,7 @@ import com.hypercube.workshop.audioworkshop.files.exceptions.IncorrectRiffChunkP
 import com.hypercube.workshop.audioworkshop.files.exceptions.SampleCountException;
 import com.hypercube.workshop.audioworkshop.files.exceptions.UnexpectedNullChunk;
 import com.hypercube.workshop.audioworkshop.files.id3.ID3Parser;
+import com.hypercube.workshop.audioworkshop.files.io.MappedFile;
 import com.hypercube.workshop.audioworkshop.files.io.PositionalReadWriteStream;
 import com.hypercube.workshop.audioworkshop.files.meta.MetadataField;
 import com.hypercube.workshop.audioworkshop.files.meta.Version;
@@ -28,6 +29,7 @@ import java.io.*;
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -35,14 +37,17 @@ import java.nio.file.StandardOpenOption;
 import java.text.DecimalFormat;
 import java.util.*;
 import java.util.regex.Matcher;
-import java.util.zip.CRC32;
+import java.util.zip.Checksum;
 import java.util.zip.GZIPOutputStream;
 
 /**
  * This class is able to parse various RIFF-based formats like WAV, AIFF, DSL2 or Gigastudio
  * <br><br>
- * This parser load the entire WAV/GIG in memory because a memory mapped FileChannel does not work properly on windows.
+ * By default this parser does not use memory mapping because a memory mapped FileChannel does not work properly on windows:
+ * the file stays locked until the GC releases the mapping.
  * This bug in the JVM is UNFIXABLE, see <a href="https://bugs.openjdk.org/browse/JDK-4715154">this ticket</a>
+ * <p>{@link RiffReadMode#MAPPED} is an opt-in read only mode for large scans: chunk payloads, including the audio data, are
+ * zero copy slices of a {@link MappedFile} instead of heap copies. See {@link #getChunkBuffer(RiffChunk)} and {@link #streamChunk}.
  * <br><br>
  * Parsing a RIFF is easy but you have to be very careful about word alignment of every Chunks.
  * <p>- if a chunk ID is at position 3, there is a padding byte before the next one
@@ -74,7 +79,8 @@ import java.util.zip.GZIPOutputStream;
  * </pre>
  * Others:
  * <pre>
- * JUNK: list of something
+ * JUNK: list of something, or placeholder for a ds64
+ * ds64: 64 bits sizes of a RF64/BW64 file, the 32 bits sizes of the RIFF and data chunks are 0xFFFFFFFF
  * </pre>
  * <br><br>
  *
@@ -86,6 +92,10 @@ public class RiffReader implements AutoCloseable {
     public static final List<String> KNOWN_TYPES = List.of(Chunks.WAVE, Chunks.AIFF, Chunks.AIFC, Chunks.DLS, Chunks.NUND);
     public static final int LOWEST_TEMPO = 40;
     public static final int HIGHEST_TEMPO = 300;
+    /**
+     * Used to checksum the audio data, which can be bigger than 4 GB in RF64/BW64 files
+     */
+    private static final int CHECKSUM_BUFFER_SIZE = 1024 * 1024;
     private final File srcAudio;
     private final RiffFileInfo fileInfo = new RiffFileInfo();
 
@@ -93,6 +103,8 @@ public class RiffReader implements AutoCloseable {
 
     private final XMLInputFactory inputFactory = XMLInputFactory.newInstance();
     private final boolean canFixSource;
+    private final RiffReadMode readMode;
+    private MappedFile mappedFile = null;
     private int misalignedChunksCount = 0;
 
     private PositionalReadWriteStream stream = null;
@@ -105,19 +117,42 @@ public class RiffReader implements AutoCloseable {
 
     private boolean isSteinbergProject;
 
+    /**
+     * RF64/BW64 only
+     */
+    private RiffDS64Chunk ds64;
+
     /**
      * @param srcAudio     the WAV file to parse
      * @param canFixSource true will allow modifying the size of the chunk if wrong in checkSampleCount
      */
     public RiffReader(File srcAudio, boolean canFixSource) throws IOException {
+        this(srcAudio, canFixSource, RiffReadMode.STREAM);
+    }
+
+    /**
+     * Read only parser
+     *
+     * @param srcAudio the file to parse
+     * @param readMode how the chunk payloads are accessed
+     */
+    public RiffReader(File srcAudio, RiffReadMode readMode) throws IOException {
+        this(srcAudio, false, readMode);
+    }
+
+    private RiffReader(File srcAudio, boolean canFixSource, RiffReadMode readMode) throws IOException {
         super();
         this.srcAudio = srcAudio;
         this.canFixSource = canFixSource;
+        this.readMode = readMode;
         if (!srcAudio.exists())
             throw new AudioParserException("File does not exists: " + srcAudio.getAbsolutePath());
         if (srcAudio.length() == 0)
             throw new AudioParserException("File is empty: " + srcAudio.getAbsolutePath());
         stream = new PositionalReadWriteStream(srcAudio, canFixSource);
+        if (readMode == RiffReadMode.MAPPED) {
+            mappedFile = new MappedFile(srcAudio);
+        }
     }
 
     /**
@@ -131,7 +166,7 @@ public class RiffReader implements AutoCloseable {
     private boolean checkChunkID(byte[] data) throws IOException {
         int nbIllegalChars = 0;
         if (data[0] == 0 && data[1] == 0 && data[2] == 0 && data[3] == 0) {
-            throw new UnexpectedNullChunk(srcAudio.getAbsolutePath(), stream.positionUInt() - 4L);
+            throw new UnexpectedNullChunk(srcAudio.getAbsolutePath(), stream.positionLong() - 4L);
         }
         for (int ch : data) {
             if (!(ch == ' ' || ch == '_' || ch == '-' || (ch >= '0' && ch <= '9') || (ch >= 'A' && ch <= 'Z') || (ch >= 'a' && ch <= 'z'))) {
@@ -140,7 +175,7 @@ public class RiffReader implements AutoCloseable {
         }
         boolean valid = (nbIllegalChars == 0);
         if (!valid) {
-            log.warn("Invalid chunk at 0x%X, give up parsing of %s".formatted(stream.positionUInt() - 4, srcAudio.getAbsolutePath()));
+            log.warn("Invalid chunk at 0x%X, give up parsing of %s".formatted(stream.positionLong() - 4, srcAudio.getAbsolutePath()));
         }
         return valid;
     }
@@ -175,10 +210,22 @@ public class RiffReader implements AutoCloseable {
         log.trace("Parse " + srcAudio.getAbsolutePath());
         try {
             String riff = readChunkID();
-            if (!RiffConstants.RIFF.equals(riff) && !RiffConstants.FORM.equals(riff)) {
+            boolean isRiff64 = RiffConstants.RF64.equals(riff) || RiffConstants.BW64.equals(riff);
+            if (!RiffConstants.RIFF.equals(riff) && !RiffConstants.FORM.equals(riff) && !isRiff64) {
                 throw new AudioParserException("not a RIFF file");
             }
             long size = RiffConstants.FORM.equals(riff) ? stream.getUIntBE() : stream.getUIntLE();
+            String type = readChunkID();
+
+            if (!KNOWN_TYPES.contains(type)) {
+                throw new AudioParserException("Riff type not supported: " + type);
+            }
+            if (isRiff64) {
+                ds64 = readDS64();
+                if (size == RiffDS64Chunk.SIZE_IN_DS64) {
+                    size = ds64.getRiffSize();
+                }
+            }
             long expectedTotalSize = size + 8;
             if (srcAudio.length() != expectedTotalSize) {
                 long delta = srcAudio.length() - expectedTotalSize;
@@ -188,11 +235,6 @@ public class RiffReader implements AutoCloseable {
                         delta,
                         srcAudio.getAbsolutePath()));
             }
-            String type = readChunkID();
-
-            if (!KNOWN_TYPES.contains(type)) {
-                throw new AudioParserException("Riff type not supported: " + type);
-            }
             isAFIC = RiffConstants.AIFF_TYPE_AIFC.equals(type);
             isAIFF = RiffConstants.RIFF_TYPE_AIFF.equals(type) || isAFIC;
             isDLS2 = RiffConstants.AIFF_TYPE_DLS.equals(type);
@@ -282,26 +324,26 @@ public class RiffReader implements AutoCloseable {
      */
     private void storeNonAudioData(File srcAudio) throws IOException {
         var data = fileInfo.getDataChunk();
-        // if file ends at byte 10 (so stream.capacity() = 11),
+        // if file ends at byte 10 (so stream.capacityLong() = 11),
         // the data content starts at byte 3
         // the data content ends   at byte 5
         // then the prolog size is         3
         // then the epilog size is         10-5
         //
         // so the prolog size is data.getContentStart()
-        // so the epilog size must be stream.capacity() - 1 - data.getContentEnd()
-        //                   equiv to stream.capacity() - data.getChunkEnd()
-        int prologSize = data.getContentStart();
-        int epilogSize = (stream.capacity() - 1 - data.getContentEnd());
+        // so the epilog size must be stream.capacityLong() - 1 - data.getContentEnd()
+        //                   equiv to stream.capacityLong() - data.getChunkEnd()
+        int prologSize = (int) data.getContentStart();
+        int epilogSize = (int) (stream.capacityLong() - 1 - data.getContentEnd());
         if (epilogSize < 0) {
             log.warn("no epilog...");
             epilogSize = 0;
         }
-        stream.seekUInt(0);
+        stream.seekLong(0);
         byte[] prolog = stream.readNBytes(prologSize);
         byte[] epilog = new byte[0];
         if (epilogSize > 0) {
-            stream.seekUInt(data.getChunkEnd());
+            stream.seekLong(data.getChunkEnd());
             epilog = stream.readNBytes(epilogSize);
         }
 
@@ -310,15 +352,42 @@ public class RiffReader implements AutoCloseable {
         fileInfo.setEpilog(compress(epilog));
     }
 
+    /**
+     * RF64/BW64: the ds64 chunk must be the first one, it gives the sizes which don't fit in 32 bits
+     */
+    private RiffDS64Chunk readDS64() throws IOException {
+        String chunkId = readChunkID();
+        if (!Chunks.DS64.equals(chunkId)) {
+            throw new AudioParserException("ds64 chunk expected, found " + chunkId);
+        }
+        final long contentSize = stream.getUIntLE();
+        final long contentStart = stream.positionLong();
+        long riffSize = stream.getLongLE();
+        long dataSize = stream.getLongLE();
+        long sampleCount = stream.getLongLE();
+        int tableLength = contentSize < RiffDS64Chunk.CONTENT_SIZE ? 0 : stream.getIntLE();
+        Map<String, Long> table = new HashMap<>();
+        for (int i = 0; i < tableLength; i++) {
+            String tableChunkId = new String(stream.readNBytes(4), StandardCharsets.US_ASCII);
+            table.putIfAbsent(tableChunkId, stream.getLongLE());
+        }
+        log.trace(String.format("DS64 riff size 0x%X data size 0x%X sample count %d", riffSize, dataSize, sampleCount));
+        RiffDS64Chunk chunk = new RiffDS64Chunk(null, chunkId, contentStart, contentSize, riffSize, dataSize, sampleCount, table);
+        fileInfo.addChunk(chunk);
+        moveAfterChunk(chunk);
+        return chunk;
+    }
+
     /**
      * Read a chunk and jump at its end
      */
     private RiffChunk readChunk(RiffChunk parent) throws IOException {
         String chunkId = readChunkID();
         if (chunkId == null) return null;
-        final int contentSize = isAIFF || isSteinbergProject ? stream.getIntBE() : stream.getIntLE();
-        final int contentStart = stream.positionUInt();
-        final int end = contentStart + contentSize;
+        long size32bit = isAIFF || isSteinbergProject ? stream.getUIntBE() : stream.getUIntLE();
+        final long contentSize = ds64 != null ? ds64.getChunkSize(chunkId, size32bit) : size32bit;
+        final long contentStart = stream.positionLong();
+        final long end = contentStart + contentSize;
         log.trace(String.format("CHUNK %s : %d/0x%X bytes at 0x%X end 0x%X", chunkId, contentSize, contentSize, contentStart - 8, end));
         final RiffChunk riffChunk = readChunk(parent, chunkId, contentStart, contentSize);
         // get ready to read the next one
@@ -326,7 +395,7 @@ public class RiffReader implements AutoCloseable {
         return riffChunk;
     }
 
-    private RiffChunk readChunk(RiffChunk parent, String chunkId, int contentStart, int contentSize) throws IOException {
+    private RiffChunk readChunk(RiffChunk parent, String chunkId, long contentStart, long contentSize) throws IOException {
         RiffChunk riffChunk;
         switch (chunkId) {
             case Chunks.LIST -> riffChunk = readLIST(parent, chunkId, contentStart, contentSize);
@@ -384,7 +453,7 @@ public class RiffReader implements AutoCloseable {
      * Can be found in Steinberg project (.npr, .cpr), this is work in progress
      */
     private void readARCH(RiffChunk riffChunk) throws IOException {
-        byte data[] = stream.readNBytes(riffChunk.getContentSize());
+        byte data[] = stream.readNBytes((int) riffChunk.getContentSize());
         String dump = "./target/ARCH-%02d".formatted(count);
         log.info(dump);
         File dumpFile = new File(dump);
@@ -426,8 +495,8 @@ public class RiffReader implements AutoCloseable {
 
     private void readGenericModelTable(RiffChunk riffChunk) throws IOException {
         int entry = 1;
-        while (stream.positionUInt() != riffChunk.getChunkEnd()) {
-            int pos = stream.positionUInt();
+        while (stream.positionLong() != riffChunk.getChunkEnd()) {
+            long pos = stream.positionLong();
             int magic = stream.getIntBE();
             String field = stream.getBEString();
             short f0 = stream.getShortBE();
@@ -504,7 +573,7 @@ public class RiffReader implements AutoCloseable {
     }
 
     private void readROOT(RiffChunk parent) throws IOException {
-        while (stream.positionUInt() != parent.getChunkEnd()) {
+        while (stream.positionLong() != parent.getChunkEnd()) {
             int strSize = stream.getIntBE();
             String s = stream.getASCIIString(strSize);
             log.info(s);
@@ -522,7 +591,7 @@ public class RiffReader implements AutoCloseable {
     /**
      * Inspired by <a href="https://www.linuxsampler.org/libgig/">liggig</a>
      */
-    private RiffChunk readGigDimensions(RiffChunk parent, String chunkId, int contentStart, int contentSize) throws IOException {
+    private RiffChunk readGigDimensions(RiffChunk parent, String chunkId, long contentStart, long contentSize) throws IOException {
         int nbDimensions = stream.getIntLE();
         List<G3Dimension> dimensions = new ArrayList<>();
         if (fileInfo.getVersion()
@@ -541,7 +610,7 @@ public class RiffReader implements AutoCloseable {
         return new RiffG3DimensionChunk(parent, chunkId, contentStart, contentSize, dimensions);
     }
 
-    private RiffChunk readRegionHeader(RiffChunk parent, String chunkId, int contentStart, int contentSize) throws IOException {
+    private RiffChunk readRegionHeader(RiffChunk parent, String chunkId, long contentStart, long contentSize) throws IOException {
         short keyRangeLow = stream.getShortLE();
         short keyRangeHigh = stream.getShortLE();
         short velocityRangeLow = stream.getShortLE();
@@ -555,7 +624,7 @@ public class RiffReader implements AutoCloseable {
                 fusOptions, usKeyGroup, usLayer);
     }
 
-    private RiffPoolTableChunk readPoolTable(RiffChunk parent, String chunkId, int contentStart, int contentSize) throws IOException {
+    private RiffPoolTableChunk readPoolTable(RiffChunk parent, String chunkId, long contentStart, long contentSize) throws IOException {
         int cbSize = stream.getIntLE();
         int nbCues = stream.getIntLE();
         if (cbSize != 8) {
@@ -584,7 +653,7 @@ public class RiffReader implements AutoCloseable {
         return offsets;
     }
 
-    private RiffWaveLinkChunk readWaveLink(RiffChunk parent, String id, int contentStart, int contentSize) throws IOException {
+    private RiffWaveLinkChunk readWaveLink(RiffChunk parent, String id, long contentStart, long contentSize) throws IOException {
         short fusOptions = stream.getShortLE();
         short usPhaseGroup = stream.getShortLE();
         int ulChannel = stream.getIntLE();
@@ -593,7 +662,7 @@ public class RiffReader implements AutoCloseable {
     }
 
     private void readTEXT(RiffChunk c, MetadataField metadataField) throws IOException {
-        byte[] data = new byte[c.getContentSize()];
+        byte[] data = new byte[(int) c.getContentSize()];
         stream.read(data);
         if (data.length > 4 && data[0] == 'A' && data[1] == 'F' && data[2] == 's' && data[3] == 'p') {
             // Looks like binary plist format, this is not clear to me
@@ -627,8 +696,9 @@ public class RiffReader implements AutoCloseable {
     private void readSSND(RiffChunk c) throws IOException {
         int offset = stream.getIntBE();
         int blockSize = stream.getIntBE();
+        // the content starts with offset and blockSize, then the samples after offset bytes
         fileInfo.getAudioInfo()
-                .setNbAudioBytes(c.getContentSize() - offset);
+                .setNbAudioBytes(c.getContentSize() - 8 - offset);
     }
 
     private void readCOMM(RiffChunk riffChunk) throws IOException {
@@ -669,17 +739,17 @@ public class RiffReader implements AutoCloseable {
     }
 
     private void moveAfterChunk(RiffChunk c) throws IOException {
-        long end = (c.getChunkEnd()) & 0xFFFFFFFFL;
-        long cap = (stream.capacity()) & 0xFFFFFFFFL;
+        long end = c.getChunkEnd();
+        long cap = stream.capacityLong();
         if (end < cap) {
-            stream.seekUInt(c.getChunkEnd());
+            stream.seekLong(c.getChunkEnd());
         } else {
-            stream.seekUInt(stream.capacity());
+            stream.seekLong(stream.capacityLong());
         }
     }
 
     private boolean isEndOfStream() throws IOException {
-        return stream.positionUInt() == stream.capacity();
+        return stream.positionLong() == stream.capacityLong();
     }
 
     private byte[] getChunkContent(String chunkId, int contentSize) throws IOException {
@@ -691,7 +761,7 @@ public class RiffReader implements AutoCloseable {
         }
     }
 
-    private RiffCueChunk readCUE(RiffChunk parent, String chunkId, int contentStart, int contentSize) throws IOException {
+    private RiffCueChunk readCUE(RiffChunk parent, String chunkId, long contentStart, long contentSize) throws IOException {
         RiffCueChunk cueChunk = new RiffCueChunk(parent, chunkId, contentStart, contentSize);
         int nbCuePoints = stream.getIntLE();
         log.trace(String.format("CUE Points: %d entries", nbCuePoints));
@@ -708,7 +778,7 @@ public class RiffReader implements AutoCloseable {
         return cueChunk;
     }
 
-    private RiffPlaylistChunk readPlaylist(RiffChunk parent, String chunkId, int contentStart, int contentSize) throws IOException {
+    private RiffPlaylistChunk readPlaylist(RiffChunk parent, String chunkId, long contentStart, long contentSize) throws IOException {
         RiffPlaylistChunk plstChunk = new RiffPlaylistChunk(parent, chunkId, contentStart, contentSize);
         int nbSegments = stream.getIntLE();
         log.trace(String.format("Playlist segments: %d entries", nbSegments));
@@ -745,8 +815,8 @@ public class RiffReader implements AutoCloseable {
             return; // the data size depend on the compression, so we can't check anything
         }
 
-        long dataChunkSize = (fileInfo.getAudioInfo()
-                .getNbAudioBytes()) & 0xFFFFFFFFL;
+        long dataChunkSize = fileInfo.getAudioInfo()
+                .getNbAudioBytes();
         long partialSample = dataChunkSize % fileInfo.getAudioInfo()
                 .getFrameSizeInBytes();
         if (partialSample != 0) {
@@ -756,7 +826,7 @@ public class RiffReader implements AutoCloseable {
             if (canFixSource) {
                 log.warn(errorMsg);
                 try {
-                    fixDataChunkSize((int) expectedSize);
+                    fixDataChunkSize(expectedSize);
                 } catch (IOException e) {
                     throw new SampleCountException(errorMsg);
                 }
@@ -769,23 +839,33 @@ public class RiffReader implements AutoCloseable {
     /**
      * Modify the RIFF size.
      * The position is reset to 0 after this method
+     * <p>For RF64/BW64 files, the size is in the ds64 chunk</p>
      *
      * @param expectedSize size to be injected in RIFF header
      * @throws IOException is srcAudio cannot be written
      */
-    private void fixDataChunkSize(int expectedSize) throws IOException {
+    private void fixDataChunkSize(long expectedSize) throws IOException {
         log.warn("Fixing chunk size...");
         var data = fileInfo.getDataChunk();
-        stream.seekUInt(data.getContentStart() - 4);
-        stream.putIntLE(expectedSize);
-        stream.seekUInt(0);
+        if (ds64 != null) {
+            // riffSize then dataSize
+            stream.seekLong(ds64.getContentStart() + 8);
+            stream.putLongLE(expectedSize);
+            stream.seekLong(data.getContentStart() - 4);
+            stream.putIntLE((int) RiffDS64Chunk.SIZE_IN_DS64);
+        } else {
+            stream.seekLong(data.getContentStart() - 4);
+            stream.putIntLE((int) expectedSize);
+        }
+        stream.flush();
+        stream.seekLong(0);
         fileInfo.getDataChunk()
                 .setContentSize(expectedSize);
     }
 
     // https://mutagen-specs.readthedocs.io/en/latest/id3/id3v2.2.html#id3v2-overview
     private void readID3(RiffChunk c) throws IOException {
-        byte[] data = new byte[c.getContentSize()];
+        byte[] data = new byte[(int) c.getContentSize()];
         stream.read(data);
         ID3Parser id3 = new ID3Parser(data);
         var id3Info = id3.parse();
@@ -800,7 +880,7 @@ public class RiffReader implements AutoCloseable {
 
     // http://www.gallery.co.uk/ixml/
     private void readIXML(RiffChunk c) throws IOException {
-        String xml = readFixedASCIIStringAndClean(c.getContentSize(), true);
+        String xml = readFixedASCIIStringAndClean((int) c.getContentSize(), true);
         extractIXMLAttributes(cleanupXML(xml));
     }
 
@@ -927,11 +1007,11 @@ public class RiffReader implements AutoCloseable {
         String originationTime = readFixedASCIIString(8);
         int timeReferenceLow = stream.getIntLE();
         int timeReferenceHigh = stream.getIntLE();
-        if (stream.positionUInt() == c.getChunkEnd())
+        if (stream.positionLong() == c.getChunkEnd())
             return; // version 0
         int version = stream.getShortLE();
         byte[] smpte = stream.readNBytes(64);
-        if (stream.positionUInt() == c.getChunkEnd())
+        if (stream.positionLong() == c.getChunkEnd())
             return; // version 1
         int loudnessValue = stream.getShortLE();
         int loudnessRange = stream.getShortLE();
@@ -939,7 +1019,7 @@ public class RiffReader implements AutoCloseable {
         int maxMomentaryLoudness = stream.getShortLE();
         int maxShortTermLoudness = stream.getShortLE();
         byte[] reserved = stream.readNBytes(180);
-        int stringSize = c.getChunkEnd() - stream.positionUInt();
+        int stringSize = (int) (c.getChunkEnd() - stream.positionLong());
         String history = readFixedASCIIString(stringSize);
         log.trace(String.format("Broadcast WAV Description         : %s", description));
         log.trace(String.format("Broadcast WAV originator          : %s", originator));
@@ -997,7 +1077,7 @@ public class RiffReader implements AutoCloseable {
         return new String(data, 0, l, StandardCharsets.US_ASCII).trim();
     }
 
-    private RiffListChunk readLIST(RiffChunk parent, String id, int contentStart, int contentSize) throws IOException {
+    private RiffListChunk readLIST(RiffChunk parent, String id, long contentStart, long contentSize) throws IOException {
         String listType = readChunkID();
         assert (listType != null);
         RiffListChunk list = new RiffListChunk(parent, id, listType, contentStart, contentSize);
@@ -1037,7 +1117,7 @@ public class RiffReader implements AutoCloseable {
     }
 
     private boolean isAtEndOfChunk(RiffChunk c) throws IOException {
-        return stream.positionUInt() == c.getChunkEnd();
+        return stream.positionLong() == c.getChunkEnd();
     }
 
     // Associated data list chunk
@@ -1054,7 +1134,7 @@ public class RiffReader implements AutoCloseable {
             String fieldID = readChunkID();
             if (Chunks.ADTL_LABEL.equals(fieldID) || Chunks.ADTL_NOTE.equals(fieldID)) {
                 int contentSize = stream.getIntLE();
-                int contentStart = stream.positionUInt();
+                long contentStart = stream.positionLong();
                 int cuePointID = stream.getIntLE();
                 String value = readFixedASCIIString(contentSize - 4); // value can be "Tempo: 160.0"
                 CuePointLabel cuePointLabel = new CuePointLabel(cuePointID, value);
@@ -1063,7 +1143,7 @@ public class RiffReader implements AutoCloseable {
                 labels.add(subChunk);
             } else if (Chunks.ADTL_LONG_TEXT.equals(fieldID)) {
                 int contentSize = stream.getIntLE()/* - 4 - 4 - 4 - 2 - 2 - 2 - 2*/;
-                int contentStart = stream.positionUInt();
+                long contentStart = stream.positionLong();
                 int cuePointID = stream.getIntLE();
                 int sampleLength = stream.getIntLE();
                 String purposeId = readChunkID();
@@ -1071,7 +1151,7 @@ public class RiffReader implements AutoCloseable {
                 int language = stream.getShortLE();
                 int dialect = stream.getShortLE();
                 int codePage = stream.getShortLE();
-                int strSize = contentSize - (stream.positionUInt() - contentStart);
+                int strSize = (int) (contentSize - (stream.positionLong() - contentStart));
                 String label = readFixedASCIIString(strSize);
                 log.trace("adtl " + fieldID + ":" + label);
                 CuePointLabeledText cuePointLabeledText = new CuePointLabeledText(cuePointID, label, sampleLength, purposeId, countryId, language, dialect, codePage);
@@ -1104,7 +1184,7 @@ public class RiffReader implements AutoCloseable {
                 break;
             }
             int contentSize = stream.getIntLE();
-            int contentStart = stream.positionUInt();
+            long contentStart = stream.positionLong();
             String value = readFixedASCIIString(contentSize);
             RiffChunk nfo = new RiffInfoChunk(c, fieldID, contentStart, contentSize, value);
             log.trace("LIST INFO " + fieldID + ":" + value);
@@ -1144,13 +1224,13 @@ public class RiffReader implements AutoCloseable {
      * All Chunks ID must be word aligned, unfortunately some WAV don't do that.
      */
     private void wordAlign() throws IOException {
-        boolean aligned = stream.positionUInt() % 2 == 0;
+        boolean aligned = stream.positionLong() % 2 == 0;
         if (!aligned) {
             int pad = stream.getByte();
-            log.trace(String.format("Misaligned, now at 0x%X", stream.positionUInt()));
+            log.trace(String.format("Misaligned, now at 0x%X", stream.positionLong()));
             if (pad >= 32 && pad < 127) {
                 // the pad is a valid character, this is certainly an unpadded file
-                stream.seekUInt(stream.positionUInt() - 1);
+                stream.seekLong(stream.positionLong() - 1);
                 misalignedChunksCount++;
             }
         }
@@ -1164,7 +1244,7 @@ public class RiffReader implements AutoCloseable {
         }
     }
 
-    private RiffFmtChunk readFMT(RiffChunk parent, String chunkId, int contentStart, int contentSize) throws IOException {
+    private RiffFmtChunk readFMT(RiffChunk parent, String chunkId, long contentStart, long contentSize) throws IOException {
         RiffFmtChunk fmt = new RiffFmtChunk(parent, chunkId, contentStart, contentSize);
         int wFormatTag = (stream.getShortLE() & 0xffff);
         WaveCodecs codec = WaveCodecs.valueOf(wFormatTag);
@@ -1281,43 +1361,78 @@ public class RiffReader implements AutoCloseable {
         }
     }
 
-    public String computeAudioChecksum(RiffAudioInfo entry) throws IOException {
-        try (RandomAccessFile in = new RandomAccessFile(srcAudio, "r")) {
-            in.seek(entry.getDataChunk()
-                    .getContentStart());
-            var pcm = new byte[entry.getDataChunk()
-                    .getContentSize()];
-            in.readFully(pcm);
-            CRC32 fileCRC32 = new CRC32();
-            fileCRC32.update(pcm);
-            return String.format(Locale.US, "%08X", fileCRC32.getValue());
+    /**
+     * Content of a chunk, without the final padding
+     * <p>In {@link RiffReadMode#MAPPED} this is a zero copy view on the file, otherwise the content is read in a heap buffer.
+     * In both cases the buffer is little endian and starts at index 0.</p>
+     * <p>A buffer can't hold more than 2 GB, use {@link #streamChunk} for bigger chunks.</p>
+     */
+    public ByteBuffer getChunkBuffer(RiffChunk chunk) throws IOException {
+        if (chunk.getContentSize() > Integer.MAX_VALUE) {
+            throw new AudioParserException("Chunk %s is too big for a single buffer: %d bytes".formatted(chunk.getId(), chunk.getContentSize()));
+        }
+        int contentSize = (int) chunk.getContentSize();
+        if (mappedFile != null) {
+            return mappedFile.slice(chunk.getContentStart(), contentSize);
+        }
+        long position = stream.positionLong();
+        try {
+            stream.seekLong(chunk.getContentStart());
+            return ByteBuffer.wrap(stream.readNBytes(contentSize))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+        } finally {
+            stream.seekLong(position);
         }
     }
 
+    public String computeAudioChecksum(RiffAudioInfo entry) throws IOException {
+        return computeAudioChecksum(entry, ChecksumAlgorithm.CRC32);
+    }
+
+    public String computeAudioChecksum(RiffAudioInfo entry, ChecksumAlgorithm algorithm) throws IOException {
+        return computeChecksum(entry.getDataChunk(), algorithm);
+    }
+
+    /**
+     * The content goes through the checksum by buffers of {@link #CHECKSUM_BUFFER_SIZE}, so the memory used does not
+     * depend on the chunk size. In {@link RiffReadMode#MAPPED} the buffers are slices of the mapping.
+     */
+    public String computeChecksum(RiffChunk chunk, ChecksumAlgorithm algorithm) throws IOException {
+        Checksum checksum = algorithm.create();
+        streamChunk(chunk, CHECKSUM_BUFFER_SIZE, (data, nbRead) -> checksum.update(data.slice(0, nbRead)));
+        return algorithm.format(checksum);
+    }
+
+    /**
+     * Copy the audio of the entry in a new WAV file, which will be a RF64 if the data is bigger than 4 GB
+     * <p>The audio data is copied with {@link FileChannel#transferTo}, it does not go through the heap.</p>
+     */
     public void extract(RiffAudioInfo entry, File target) throws IOException {
-        try (RandomAccessFile in = new RandomAccessFile(srcAudio, "r")) {
-            try (RiffWriter rw = new RiffWriter(target)) {
-
-                in.seek(entry.getFmtChunk()
-                        .getContentStart());
-                var data = new byte[entry.getFmtChunk()
-                        .getContentSize()];
-                in.readFully(data);
-                rw.writeFmtChunk(entry.getFmtChunk());
-
-                in.seek(entry.getDataChunk()
-                        .getContentStart());
-                var pcm = new byte[entry.getDataChunk()
-                        .getContentSize()];
-                in.readFully(pcm);
-                rw.beginChunk(Chunks.DATA);
-                rw.write(pcm);
-                rw.endChunk();
-            }
+        try (RiffWriter rw = new RiffWriter(target);
+             FileChannel source = FileChannel.open(srcAudio.toPath(), StandardOpenOption.READ)) {
+            RiffChunk dataChunk = entry.getDataChunk();
+            rw.writeFmtChunk(entry.getFmtChunk());
+            rw.beginChunk(Chunks.DATA);
+            rw.transferFrom(source, dataChunk.getContentStart(), Math.min(dataChunk.getContentSize(), source.size() - dataChunk.getContentStart()));
+            rw.endChunk();
         }
     }
 
+    /**
+     * Send the content of a chunk to the consumer, by buffers of {@code bufferSize} bytes
+     * <p>In {@link RiffReadMode#MAPPED} each buffer is a read only slice of the mapping, starting at index 0, so
+     * {@link com.hypercube.workshop.audioworkshop.api.pcm.PCMConverter} functions can consume it directly.
+     * Otherwise, the same heap buffer is reused for each call.</p>
+     */
     public void streamChunk(RiffChunk dataChunk, int bufferSize, ChunkDataConsumer consumer) throws IOException {
+        if (mappedFile != null) {
+            long contentSize = Math.min(dataChunk.getContentSize(), mappedFile.size() - dataChunk.getContentStart());
+            for (long pos = 0; pos < contentSize; pos += bufferSize) {
+                int readSize = (int) Math.min(bufferSize, contentSize - pos);
+                consumer.onNewBuffer(mappedFile.slice(dataChunk.getContentStart() + pos, readSize), readSize);
+            }
+            return;
+        }
         byte[] buffer = new byte[bufferSize];
         ByteBuffer byteBuffer = ByteBuffer.wrap(buffer)
                 .order(ByteOrder.LITTLE_ENDIAN);
@@ -1342,6 +1457,9 @@ public class RiffReader implements AutoCloseable {
         if (stream != null) {
             stream.close();
         }
+        if (mappedFile != null) {
+            mappedFile.close();
+        }
     }
 }
 
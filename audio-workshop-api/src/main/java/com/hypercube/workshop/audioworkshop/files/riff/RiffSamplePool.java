@@ -0,0 +1,271 @@
+package com.hypercube.workshop.audioworkshop.files.riff;
+
+import com.hypercube.workshop.audioworkshop.api.consumer.SampleBuffer;
+import com.hypercube.workshop.audioworkshop.api.format.PCMFormat;
+import com.hypercube.workshop.audioworkshop.api.pcm.BitDepth;
+import com.hypercube.workshop.audioworkshop.api.pcm.PCMConverter;
+import com.hypercube.workshop.audioworkshop.api.pcm.PCMEncoding;
+import com.hypercube.workshop.audioworkshop.files.exceptions.AudioParserException;
+import com.hypercube.workshop.audioworkshop.files.io.MappedFile;
+import com.hypercube.workshop.audioworkshop.files.riff.chunks.Chunks;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Random access to the wave pool of a DLS or Gigastudio file, without parsing the instruments
+ * <p>{@link RiffReader} builds the whole structure of the file. Here, only the root chunks are visited on open,
+ * to find the pool table and the wave pool:</p>
+ * <pre>
+ * RIFF DLS
+ *    colh, vers...
+ *    ptbl          : offsets of the waves, read on open
+ *    LIST lins     : instruments, skipped
+ *    LIST wvpl     : wave pool, skipped
+ *       LIST wave  : fmt, data, LIST INFO... parsed on demand by {@link #getSample(int)}
+ * </pre>
+ * <ul>
+ *     <li>The file is memory mapped, the data of a {@link RiffPoolSample} is a view on the mapping</li>
+ *     <li>{@link #decode(int)} converts a wave to normalized samples, the most recent ones are kept in a LRU cache
+ *     limited by its size in bytes</li>
+ *     <li>The pool table offsets are relative to the wave pool content, right after the "wvpl" list type</li>
+ *     <li>Gigastudio 3 stores 8 bytes per entry: the offset then the number of the extension file (.gx01...).
+ *     Only the waves of the main file can be read</li>
+ *     <li>Gigastudio compressed waves are not supported. Their format tag is still PCM, they are recognized by their
+ *     "ewav" chunk</li>
+ * </ul>
+ * <p>This class is thread safe.</p>
+ */
+@Slf4j
+public class RiffSamplePool implements Closeable {
+    public static final long DEFAULT_CACHE_SIZE = 64L * 1024 * 1024;
+    private static final int CHUNK_HEADER_SIZE = 8;
+
+    @Getter
+    private final File file;
+    private final MappedFile mappedFile;
+    private final long[] offsets;
+    private final int[] fileNumbers;
+    private final long wavePoolStart;
+    private final long maxCacheSize;
+    private final Map<Integer, SampleBuffer> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private long cacheSize;
+
+    public RiffSamplePool(File file) throws IOException {
+        this(file, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param maxCacheSize size of the decoded samples kept in memory, in bytes
+     */
+    public RiffSamplePool(File file, long maxCacheSize) throws IOException {
+        this.file = file;
+        this.maxCacheSize = maxCacheSize;
+        this.mappedFile = new MappedFile(file);
+        try {
+            ByteBuffer header = mappedFile.slice(0, 12);
+            String riff = readId(header, 0);
+            String type = readId(header, 8);
+            if (!RiffConstants.RIFF.equals(riff) || !Chunks.DLS.equals(type)) {
+                throw new AudioParserException("Not a DLS or GIG file: " + file.getAbsolutePath());
+            }
+            long end = Math.min(mappedFile.size(), CHUNK_HEADER_SIZE + Integer.toUnsignedLong(header.getInt(4)));
+            ByteBuffer poolTable = null;
+            long wvpl = -1;
+            for (long pos = 12; pos + CHUNK_HEADER_SIZE <= end; ) {
+                ByteBuffer chunkHeader = mappedFile.slice(pos, CHUNK_HEADER_SIZE);
+                String id = readId(chunkHeader, 0);
+                long contentSize = Integer.toUnsignedLong(chunkHeader.getInt(4));
+                long contentStart = pos + CHUNK_HEADER_SIZE;
+                if (Chunks.PTBL.equals(id)) {
+                    poolTable = mappedFile.slice(contentStart, (int) contentSize);
+                } else if (Chunks.LIST.equals(id) && Chunks.LIST_TYPE_WVPL.equals(readId(mappedFile.slice(contentStart, 4), 0))) {
+                    wvpl = contentStart + 4;
+                }
+                pos = contentStart + contentSize + (contentSize & 1);
+            }
+            if (poolTable == null || wvpl == -1) {
+                throw new AudioParserException("No wave pool in " + file.getAbsolutePath());
+            }
+            wavePoolStart = wvpl;
+            int cbSize = poolTable.getInt(0);
+            int nbCues = poolTable.getInt(4);
+            boolean offset64bits = nbCues > 0 && (poolTable.capacity() - cbSize) / nbCues == 8;
+            offsets = new long[nbCues];
+            fileNumbers = new int[nbCues];
+            for (int i = 0; i < nbCues; i++) {
+                int entry = cbSize + i * (offset64bits ? 8 : 4);
+                offsets[i] = Integer.toUnsignedLong(poolTable.getInt(entry));
+                fileNumbers[i] = offset64bits ? poolTable.getInt(entry + 4) : 0;
+            }
+            log.debug("{} waves in {}", nbCues, file.getName());
+        } catch (IOException | RuntimeException e) {
+            mappedFile.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return number of waves in the pool
+     */
+    public int size() {
+        return offsets.length;
+    }
+
+    /**
+     * Parse the "wave" list of a sample
+     */
+    public RiffPoolSample getSample(int index) throws IOException {
+        if (fileNumbers[index] != 0) {
+            throw new AudioParserException("Wave %d is in the extension file %d of %s".formatted(index, fileNumbers[index], file.getName()));
+        }
+        long position = wavePoolStart + offsets[index];
+        ByteBuffer listHeader = mappedFile.slice(position, 12);
+        if (!Chunks.LIST.equals(readId(listHeader, 0)) || !Chunks.LIST_TYPE_WAVE.equals(readId(listHeader, 8))) {
+            throw new AudioParserException("No wave %d at 0x%X in %s".formatted(index, position, file.getName()));
+        }
+        long end = Math.min(mappedFile.size(), position + CHUNK_HEADER_SIZE + Integer.toUnsignedLong(listHeader.getInt(4)));
+        ByteBuffer fmt = null;
+        ByteBuffer data = null;
+        String name = null;
+        boolean compressed = false;
+        for (long pos = position + 12; pos + CHUNK_HEADER_SIZE <= end; ) {
+            ByteBuffer chunkHeader = mappedFile.slice(pos, CHUNK_HEADER_SIZE);
+            String id = readId(chunkHeader, 0);
+            long contentSize = Integer.toUnsignedLong(chunkHeader.getInt(4));
+            long contentStart = pos + CHUNK_HEADER_SIZE;
+            int size = (int) Math.min(contentSize, end - contentStart);
+            switch (id) {
+                case Chunks.FORMAT -> fmt = mappedFile.slice(contentStart, size);
+                case Chunks.DATA -> data = mappedFile.slice(contentStart, size);
+                case Chunks.G3_COMPRESSED_WAVE -> compressed = true;
+                case Chunks.LIST -> {
+                    if (Chunks.LIST_TYPE_INFO.equals(readId(mappedFile.slice(contentStart, 4), 0))) {
+                        name = readName(contentStart + 4, contentStart + size);
+                    }
+                }
+                default -> {
+                    // not needed
+                }
+            }
+            pos = contentStart + contentSize + (contentSize & 1);
+        }
+        if (compressed) {
+            throw new AudioParserException("Wave %d in %s is a Gigastudio compressed wave, it is not supported".formatted(index, file.getName()));
+        }
+        if (fmt == null || data == null) {
+            throw new AudioParserException("Incomplete wave %d in %s".formatted(index, file.getName()));
+        }
+        PCMFormat format = readFormat(index, fmt);
+        return new RiffPoolSample(index, name, format, data.capacity() / format.getFrameSizeInBytes(), data);
+    }
+
+    /**
+     * Decode a wave in normalized samples, or get it from the cache
+     * <p>The conversion is done outside the lock, so many threads can decode different waves at the same time.
+     * The buffer is shared with the next callers: don't modify it.</p>
+     */
+    public SampleBuffer decode(int index) throws IOException {
+        synchronized (cache) {
+            SampleBuffer sampleBuffer = cache.get(index);
+            if (sampleBuffer != null) {
+                return sampleBuffer;
+            }
+        }
+        RiffPoolSample sample = getSample(index);
+        int nbChannels = sample.format()
+                .getNbChannels();
+        int nbSamples = (int) sample.nbSamples();
+        double[][] samples = new double[nbChannels][nbSamples];
+        PCMConverter.getPCMtoSampleFunction(sample.format())
+                .convert(sample.data(), samples, nbSamples, nbChannels);
+        SampleBuffer sampleBuffer = new SampleBuffer(samples, 0, nbSamples, nbChannels);
+        long size = getSizeInBytes(sampleBuffer);
+        synchronized (cache) {
+            if (size <= maxCacheSize && !cache.containsKey(index)) {
+                cache.put(index, sampleBuffer);
+                cacheSize += size;
+                evict();
+            }
+        }
+        return sampleBuffer;
+    }
+
+    public int getNbCachedSamples() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    private void evict() {
+        Iterator<SampleBuffer> leastRecentlyUsed = cache.values()
+                .iterator();
+        while (cacheSize > maxCacheSize && leastRecentlyUsed.hasNext()) {
+            cacheSize -= getSizeInBytes(leastRecentlyUsed.next());
+            leastRecentlyUsed.remove();
+        }
+    }
+
+    private static long getSizeInBytes(SampleBuffer sampleBuffer) {
+        return (long) sampleBuffer.nbChannels() * sampleBuffer.nbSamples() * Double.BYTES;
+    }
+
+    private PCMFormat readFormat(int index, ByteBuffer fmt) {
+        int formatTag = fmt.getShort(0) & 0xFFFF;
+        int nbChannels = fmt.getShort(2) & 0xFFFF;
+        int sampleRate = fmt.getInt(4);
+        int bitsPerSample = fmt.getShort(14) & 0xFFFF;
+        if (formatTag == WaveCodecs.WAVE_FORMAT_EXTENSIBLE.getValue() && fmt.capacity() >= 26) {
+            // the sub format GUID starts with the format tag
+            formatTag = fmt.getShort(24) & 0xFFFF;
+        }
+        if (formatTag != WaveCodecs.PCM.getValue()) {
+            throw new AudioParserException("Unsupported codec 0x%X for wave %d in %s".formatted(formatTag, index, file.getName()));
+        }
+        PCMEncoding encoding = bitsPerSample == 8 ? PCMEncoding.UNSIGNED : PCMEncoding.SIGNED;
+        return new PCMFormat(sampleRate, BitDepth.valueOf(bitsPerSample), nbChannels, encoding, ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private String readName(long start, long end) throws IOException {
+        for (long pos = start; pos + CHUNK_HEADER_SIZE <= end; ) {
+            ByteBuffer chunkHeader = mappedFile.slice(pos, CHUNK_HEADER_SIZE);
+            long contentSize = Integer.toUnsignedLong(chunkHeader.getInt(4));
+            if (Chunks.INAM.equals(readId(chunkHeader, 0))) {
+                ByteBuffer value = mappedFile.slice(pos + CHUNK_HEADER_SIZE, (int) Math.min(contentSize, end - pos - CHUNK_HEADER_SIZE));
+                byte[] bytes = new byte[value.capacity()];
+                value.get(bytes);
+                int length = 0;
+                while (length < bytes.length && bytes[length] != 0) {
+                    length++;
+                }
+                return new String(bytes, 0, length, StandardCharsets.US_ASCII).trim();
+            }
+            pos += CHUNK_HEADER_SIZE + contentSize + (contentSize & 1);
+        }
+        return null;
+    }
+
+    private static String readId(ByteBuffer buffer, int offset) {
+        byte[] id = new byte[4];
+        buffer.get(offset, id);
+        return new String(id, StandardCharsets.US_ASCII);
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (cache) {
+            cache.clear();
+            cacheSize = 0;
+        }
+        mappedFile.close();
+    }
+}
@@ -1,9 +1,11 @@
 package com.hypercube.workshop.audioworkshop.files.riff;
 
+import com.hypercube.workshop.audioworkshop.api.errors.AudioError;
 import com.hypercube.workshop.audioworkshop.api.format.PCMFormat;
 import com.hypercube.workshop.audioworkshop.api.pcm.PCMMarker;
 import com.hypercube.workshop.audioworkshop.files.io.SeekableBinaryOutputStream;
 import com.hypercube.workshop.audioworkshop.files.riff.chunks.Chunks;
+import com.hypercube.workshop.audioworkshop.files.riff.chunks.RiffDS64Chunk;
 import com.hypercube.workshop.audioworkshop.files.riff.chunks.RiffFmtChunk;
 import com.hypercube.workshop.audioworkshop.files.riff.chunks.markers.adtl.CuePointLabel;
 import com.hypercube.workshop.audioworkshop.files.riff.chunks.markers.cue.CuePoint;
@@ -14,23 +16,77 @@ import java.io.Closeable;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Stack;
 import java.util.stream.IntStream;
 
+/**
+ * Write WAV files of any size
+ * <p>A JUNK chunk is written right after the RIFF header, as a placeholder for a ds64 chunk (EBU Tech 3306).
+ * If the file ends up bigger than 4 GB, it is upgraded when the RIFF chunk is closed:</p>
+ * <ul>
+ *     <li>RIFF becomes RF64 (or BW64), its size is 0xFFFFFFFF</li>
+ *     <li>JUNK becomes ds64, with the 64 bits sizes of the RIFF and the data chunk</li>
+ *     <li>The size of the data chunk is 0xFFFFFFFF</li>
+ * </ul>
+ * <p>Only the data chunk can be bigger than 4 GB, the placeholder has no room for the ds64 table.</p>
+ */
 @Slf4j
 public class RiffWriter implements Closeable {
+    private static final long MAX_CHUNK_SIZE = RiffDS64Chunk.SIZE_IN_DS64 - 1;
+    private static final int PREALLOCATION_BLOCK_SIZE = 1024 * 1024;
 
     @Getter
     private final File file;
 
+    /**
+     * RF64 or BW64, used when the file is bigger than 4 GB
+     */
+    private final String riff64Id;
+
+    private final long maxChunkSize;
+
     private SeekableBinaryOutputStream out;
 
-    private Stack<Long> chunkSizeStack = new Stack<>();
+    private Stack<OpenChunk> chunkSizeStack = new Stack<>();
+
+    private long ds64ContentPosition;
+
+    private long dataSizePosition = -1;
+
+    private long dataSize;
+
+    private int blockAlign;
+
+    private boolean preallocated;
+
+    private record OpenChunk(String id, long sizePosition) {
+    }
 
     public RiffWriter(File file) throws IOException {
+        this(file, RiffConstants.RF64);
+    }
+
+    /**
+     * @param riff64Id {@link RiffConstants#RF64} or {@link RiffConstants#BW64}, used only if the file is bigger than 4 GB
+     */
+    public RiffWriter(File file, String riff64Id) throws IOException {
+        this(file, riff64Id, MAX_CHUNK_SIZE);
+    }
+
+    /**
+     * @param maxChunkSize lower limit to test the upgrade to RF64 without writing 4 GB
+     */
+    RiffWriter(File file, String riff64Id, long maxChunkSize) throws IOException {
+        if (!RiffConstants.RF64.equals(riff64Id) && !RiffConstants.BW64.equals(riff64Id)) {
+            throw new IllegalArgumentException("Unexpected 64 bits RIFF id: " + riff64Id);
+        }
         this.file = file;
+        this.riff64Id = riff64Id;
+        this.maxChunkSize = maxChunkSize;
         file.getParentFile()
                 .mkdirs();
         openWAVE();
@@ -40,24 +96,59 @@ public class RiffWriter implements Closeable {
         out = new SeekableBinaryOutputStream(new FileOutputStream(file));
         beginChunk(RiffConstants.RIFF);
         out.writeChunkId(Chunks.WAVE);
+        beginChunk(Chunks.JUNK);
+        ds64ContentPosition = out.position();
+        out.writeZeros(RiffDS64Chunk.CONTENT_SIZE);
+        endChunk();
     }
 
     public void beginChunk(String chunkId) throws IOException {
         align();
         out.writeChunkId(chunkId);
-        chunkSizeStack.push(out.position());
+        chunkSizeStack.push(new OpenChunk(chunkId, out.position()));
         out.writeIntLE(0);
     }
 
     public void endChunk() throws IOException {
         long end = out.position();
-        long pos = chunkSizeStack.pop();
-        long size = end - pos - 4;
-        out.seek(pos);
-        out.writeIntLE((int) size);
+        OpenChunk chunk = chunkSizeStack.pop();
+        long size = end - chunk.sizePosition() - 4;
+        boolean tooBig = size > maxChunkSize;
+        if (chunk.id()
+                .equals(Chunks.DATA) && dataSizePosition == -1) {
+            dataSizePosition = chunk.sizePosition();
+            dataSize = size;
+        } else if (tooBig && !chunkSizeStack.isEmpty()) {
+            throw new AudioError("Chunk %s is too big for a WAV file: %d bytes".formatted(chunk.id(), size));
+        }
+        out.seek(chunk.sizePosition());
+        out.writeIntLE(tooBig ? (int) RiffDS64Chunk.SIZE_IN_DS64 : (int) size);
+        if (chunkSizeStack.isEmpty() && tooBig) {
+            upgradeToRiff64(size);
+        }
         out.seek(end);
     }
 
+    /**
+     * Turn RIFF into RF64 and JUNK into ds64, the size of the RIFF is already 0xFFFFFFFF
+     */
+    private void upgradeToRiff64(long riffSize) throws IOException {
+        log.info("Upgrade {} to {}, {} bytes", file.getName(), riff64Id, riffSize + 8);
+        out.seek(0);
+        out.writeChunkId(riff64Id);
+        out.seek(ds64ContentPosition - 8);
+        out.writeChunkId(Chunks.DS64);
+        out.seek(ds64ContentPosition);
+        out.writeLongLE(riffSize);
+        out.writeLongLE(dataSizePosition == -1 ? 0 : dataSize);
+        out.writeLongLE(blockAlign == 0 ? 0 : dataSize / blockAlign);
+        out.writeIntLE(0); // table length
+        if (dataSizePosition != -1) {
+            out.seek(dataSizePosition);
+            out.writeIntLE((int) RiffDS64Chunk.SIZE_IN_DS64);
+        }
+    }
+
     public void writeFmtChunk(PCMFormat format) throws IOException {
         RiffFmtChunk fmt = new RiffFmtChunk(format.getNbChannels(), format.getSampleRate(), format.getBitDepth(), WaveGUIDCodecs.WMMEDIASUBTYPE_PCM);
         writeFmtChunk(fmt);
@@ -67,6 +158,7 @@ public class RiffWriter implements Closeable {
         final int WAVEFORMATEXTENSIBLE_SIZE = 40;
         final int WAVEFORMATEX_SIZE = 18;
 
+        blockAlign = fmt.getNBlockAlign();
         beginChunk(fmt.getId());
         // WAVEFORMATEX https://learn.microsoft.com/en-us/previous-versions/dd757713(v=vs.85)
         out.writeShortLE(fmt.getFormatTag());
@@ -85,9 +177,52 @@ public class RiffWriter implements Closeable {
         endChunk();
     }
 
+    /**
+     * Reserve disk space by writing zeros after the current position, which does not move
+     * <p>The next writes overwrite the zeros, so the file system does not have to allocate new blocks while recording.
+     * The file is truncated to its real size by {@link #close()}.</p>
+     */
+    public void preallocate(long nbBytes) throws IOException {
+        long start = out.position();
+        long remaining = nbBytes;
+        while (remaining > 0) {
+            int size = (int) Math.min(remaining, PREALLOCATION_BLOCK_SIZE);
+            out.writeZeros(size);
+            remaining -= size;
+        }
+        out.seek(start);
+        preallocated = true;
+    }
+
+    /**
+     * Write the current size of all open chunks, without closing them
+     * <p>Used to keep the file readable during a long recording: if the application crashes, the header already
+     * describes almost all the audio written so far. A chunk beyond 4 GB gets the size 0xFFFFFFFF, the ds64 chunk
+     * is only written by {@link #endChunk()}.</p>
+     */
+    public void updateChunkSizes() throws IOException {
+        long end = out.position();
+        for (OpenChunk chunk : chunkSizeStack) {
+            long size = end - chunk.sizePosition() - 4;
+            out.seek(chunk.sizePosition());
+            out.writeIntLE(size > maxChunkSize ? (int) RiffDS64Chunk.SIZE_IN_DS64 : (int) size);
+        }
+        out.seek(end);
+    }
+
+    /**
+     * Flush what was written so far to the storage device
+     */
+    public void force() throws IOException {
+        out.force();
+    }
+
     @Override
     public void close() throws IOException {
         endChunk();
+        if (preallocated) {
+            out.truncate(out.position());
+        }
         out.close();
     }
 
@@ -199,6 +334,20 @@ public class RiffWriter implements Closeable {
         out.writeBytes(pcmData);
     }
 
+    /**
+     * Write PCM data, from the position of the buffer to its limit
+     */
+    public void write(ByteBuffer pcmData) throws IOException {
+        out.writeBytes(pcmData);
+    }
+
+    /**
+     * Copy PCM data from another file, without going through the heap
+     */
+    public void transferFrom(FileChannel source, long position, long count) throws IOException {
+        out.transferFrom(source, position, count);
+    }
+
     public long getPosition() throws IOException {
         return out.position();
     }
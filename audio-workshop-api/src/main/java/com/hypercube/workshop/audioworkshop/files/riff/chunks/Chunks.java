@@ -14,6 +14,8 @@ public class Chunks {
     public static final String LIST = "LIST";
     public static final String LIST_TYPE_INFO = "INFO";
     public static final String LIST_TYPE_ADTL = "adtl";
+    public static final String LIST_TYPE_WVPL = "wvpl"; // DLS wave pool
+    public static final String LIST_TYPE_WAVE = "wave"; // DLS wave in the pool
 
     public static final String INAM = "INAM";
     public static final String RGN = "rgn ";
@@ -28,7 +30,10 @@ public class Chunks {
     // http://www.swamiproject.org/api/libinstpatch/libinstpatch-IpatchGigEffects.html#IpatchGigEffects
     public static final String G3_EFFECT_WAVE = "3ewa"; // GigaSampler effects chunk
     public static final String G3_DIMENSIONS = "3lnk"; // GigaSampler dimensions chunk
+    public static final String G3_COMPRESSED_WAVE = "ewav"; // GigaStudio compressed wave, the format tag stays PCM
     public static final String VERS = "vers"; // version
+    public static final String DS64 = "ds64"; // 64 bits sizes of RF64/BW64 files
+    public static final String JUNK = "JUNK"; // padding, placeholder for ds64
     public static final String DATA = "data"; // audio samples
     public static final String ACID = "acid"; // ACID metadata  like tempo or key signature
     public static final String FORMAT = "fmt "; // Format of audio samples
@@ -14,13 +14,13 @@ public class RiffChunk {
     private final String id;
     private final List<RiffChunk> children = new ArrayList<>();
     @Setter
-    private int contentStart;
+    private long contentStart;
     @Setter
-    private int contentSize; // does not include final padding
+    private long contentSize; // does not include final padding, can be above 4 GB for RF64/BW64 files
     @Setter
     private RiffChunk parent;
 
-    public RiffChunk(RiffChunk parent, String id, int contentStart, int contentSize) {
+    public RiffChunk(RiffChunk parent, String id, long contentStart, long contentSize) {
         this.parent = parent;
         this.contentStart = contentStart;
         this.contentSize = contentSize;
@@ -36,7 +36,7 @@ public class RiffChunk {
      *
      * @return offset in the RIFF file
      */
-    public int getContentEnd() {
+    public long getContentEnd() {
         return contentStart + contentSize - 1;
     }
 
@@ -45,7 +45,7 @@ public class RiffChunk {
      *
      * @return offset in the RIFF file
      */
-    public int getChunkEnd() {
+    public long getChunkEnd() {
         return contentStart + contentSize;
     }
 
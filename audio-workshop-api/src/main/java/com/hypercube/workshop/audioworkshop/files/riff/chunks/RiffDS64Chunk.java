@@ -0,0 +1,53 @@
+package com.hypercube.workshop.audioworkshop.files.riff.chunks;
+
+import lombok.Getter;
+
+import java.util.Map;
+
+/**
+ * First chunk of a RF64 or BW64 file, it gives the real size of the chunks bigger than 4 GB
+ * <pre>
+ * riffSize    : 8 bytes, size of the RF64 chunk
+ * dataSize    : 8 bytes, size of the data chunk
+ * sampleCount : 8 bytes, number of frames
+ * tableLength : 4 bytes
+ * table       : tableLength x (chunkId 4 bytes, chunkSize 8 bytes) for the other big chunks
+ * </pre>
+ * <p>The 32 bits size of those chunks is 0xFFFFFFFF. See EBU Tech 3306 and ITU-R BS.2088.</p>
+ */
+@Getter
+public class RiffDS64Chunk extends RiffChunk {
+    public static final long SIZE_IN_DS64 = 0xFFFFFFFFL;
+    /**
+     * Content size without table, this is also the size of the JUNK placeholder written by {@link com.hypercube.workshop.audioworkshop.files.riff.RiffWriter}
+     */
+    public static final int CONTENT_SIZE = 28;
+
+    private final long riffSize;
+    private final long dataSize;
+    private final long sampleCount;
+    private final Map<String, Long> table;
+
+    public RiffDS64Chunk(RiffChunk parent, String id, long contentStart, long contentSize, long riffSize, long dataSize, long sampleCount, Map<String, Long> table) {
+        super(parent, id, contentStart, contentSize);
+        this.riffSize = riffSize;
+        this.dataSize = dataSize;
+        this.sampleCount = sampleCount;
+        this.table = table;
+    }
+
+    /**
+     * @param chunkId   the chunk
+     * @param size32bit its 32 bits size
+     * @return the real size of the chunk
+     */
+    public long getChunkSize(String chunkId, long size32bit) {
+        if (size32bit != SIZE_IN_DS64) {
+            return size32bit;
+        }
+        if (Chunks.DATA.equals(chunkId)) {
+            return dataSize;
+        }
+        return table.getOrDefault(chunkId, size32bit);
+    }
+}
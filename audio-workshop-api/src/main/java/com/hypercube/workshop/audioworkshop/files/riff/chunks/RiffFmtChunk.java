@@ -23,7 +23,7 @@ public class RiffFmtChunk extends RiffChunk {
     private int channelMask;
     private UUID codec;
 
-    public RiffFmtChunk(RiffChunk parent, String id, int contentStart, int contentSize) {
+    public RiffFmtChunk(RiffChunk parent, String id, long contentStart, long contentSize) {
         super(parent, id, contentStart, contentSize);
     }
 
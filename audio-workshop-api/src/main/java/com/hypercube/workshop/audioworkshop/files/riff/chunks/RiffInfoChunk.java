@@ -6,7 +6,7 @@ import lombok.Getter;
 public class RiffInfoChunk extends RiffChunk {
     private final String value;
 
-    public RiffInfoChunk(RiffChunk parent, String id, int contentStart, int contentSize, String value) {
+    public RiffInfoChunk(RiffChunk parent, String id, long contentStart, long contentSize, String value) {
         super(parent, id, contentStart, contentSize);
         this.value = value;
     }
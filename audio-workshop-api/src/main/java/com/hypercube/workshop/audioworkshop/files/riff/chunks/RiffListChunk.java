@@ -10,7 +10,7 @@ public class RiffListChunk extends RiffChunk {
     @Setter
     private Adtl adtl;
 
-    public RiffListChunk(RiffChunk parent, String id, String listType, int contentStart, int contentSize) {
+    public RiffListChunk(RiffChunk parent, String id, String listType, long contentStart, long contentSize) {
         super(parent, id, contentStart, contentSize);
         this.listType = listType;
     }
@@ -9,7 +9,7 @@ import java.util.List;
 public class RiffPoolTableChunk extends RiffChunk {
     final List<Long> sampleOffsets;
 
-    public RiffPoolTableChunk(RiffChunk parent, String id, int contentStart, int contentSize, List<Long> sampleOffsets) {
+    public RiffPoolTableChunk(RiffChunk parent, String id, long contentStart, long contentSize, List<Long> sampleOffsets) {
         super(parent, id, contentStart, contentSize);
         this.sampleOffsets = sampleOffsets;
     }
@@ -26,7 +26,7 @@ public class RiffRegionHeaderChunk extends RiffChunk {
         }
     }
 
-    public RiffRegionHeaderChunk(RiffChunk parent, String id, int contentStart, int contentSize, Range keyRange, Range velovityRange, int fusOptions, int usKeyGroups, int usLayer) {
+    public RiffRegionHeaderChunk(RiffChunk parent, String id, long contentStart, long contentSize, Range keyRange, Range velovityRange, int fusOptions, int usKeyGroups, int usLayer) {
         super(parent, id, contentStart, contentSize);
         this.keyRange = keyRange;
         this.velovityRange = velovityRange;
@@ -10,7 +10,7 @@ public class RiffWaveLinkChunk extends RiffChunk {
     final int ulChannel;
     final int sampleIndex;
 
-    public RiffWaveLinkChunk(RiffChunk parent, String id, int contentStart, int contentSize, short fusOptions, short usPhaseGroup, int ulChannel, int sampleIndex) {
+    public RiffWaveLinkChunk(RiffChunk parent, String id, long contentStart, long contentSize, short fusOptions, short usPhaseGroup, int ulChannel, int sampleIndex) {
         super(parent, id, contentStart, contentSize);
         this.fusOptions = fusOptions;
         this.usPhaseGroup = usPhaseGroup;
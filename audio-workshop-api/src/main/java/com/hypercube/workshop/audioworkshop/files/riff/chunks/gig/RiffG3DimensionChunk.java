@@ -9,7 +9,7 @@ import java.util.List;
 public class RiffG3DimensionChunk extends RiffChunk {
     final List<G3Dimension> dimensions;
 
-    public RiffG3DimensionChunk(RiffChunk parent, String id, int contentStart, int contentSize, List<G3Dimension> dimensions) {
+    public RiffG3DimensionChunk(RiffChunk parent, String id, long contentStart, long contentSize, List<G3Dimension> dimensions) {
         super(parent, id, contentStart, contentSize);
         this.dimensions = dimensions;
     }
@@ -7,7 +7,7 @@ import lombok.Getter;
 public class RiffAdtlLabelChunk extends RiffChunk {
     private final CuePointLabel cuePointLabel;
 
-    public RiffAdtlLabelChunk(RiffChunk parent, String fieldId, int contentStart, int contentSize, CuePointLabel cuePointLabel) {
+    public RiffAdtlLabelChunk(RiffChunk parent, String fieldId, long contentStart, long contentSize, CuePointLabel cuePointLabel) {
         super(parent, fieldId, contentStart, contentSize);
         this.cuePointLabel = cuePointLabel;
     }
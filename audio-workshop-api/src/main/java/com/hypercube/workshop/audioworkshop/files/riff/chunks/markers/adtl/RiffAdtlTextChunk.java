@@ -7,7 +7,7 @@ import lombok.Getter;
 public class RiffAdtlTextChunk extends RiffChunk {
     private final CuePointLabeledText cuePointLabeledText;
 
-    public RiffAdtlTextChunk(RiffChunk parent, String id, int contentStart, int contentSize, CuePointLabeledText cuePointLabeledText) {
+    public RiffAdtlTextChunk(RiffChunk parent, String id, long contentStart, long contentSize, CuePointLabeledText cuePointLabeledText) {
         super(parent, id, contentStart, contentSize);
         this.cuePointLabeledText = cuePointLabeledText;
     }
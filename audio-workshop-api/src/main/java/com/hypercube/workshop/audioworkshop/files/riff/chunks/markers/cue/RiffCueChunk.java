@@ -10,7 +10,7 @@ import java.util.List;
 public class RiffCueChunk extends RiffChunk {
     private List<CuePoint> cuePoints = new ArrayList<>();
 
-    public RiffCueChunk(RiffChunk parent, String id, int contentStart, int contentSize) {
+    public RiffCueChunk(RiffChunk parent, String id, long contentStart, long contentSize) {
         super(parent, id, contentStart, contentSize);
     }
 
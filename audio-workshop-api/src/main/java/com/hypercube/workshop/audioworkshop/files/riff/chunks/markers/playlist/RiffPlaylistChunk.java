@@ -10,7 +10,7 @@ import java.util.List;
 public class RiffPlaylistChunk extends RiffChunk {
     private List<PlaylistSegment> segments = new ArrayList<>();
 
-    public RiffPlaylistChunk(RiffChunk parent, String id, int contentStart, int contentSize) {
+    public RiffPlaylistChunk(RiffChunk parent, String id, long contentStart, long contentSize) {
         super(parent, id, contentStart, contentSize);
     }
 
@@ -0,0 +1,163 @@
+package com.hypercube.workshop.audioworkshop.files.riff.insights;
+
+import com.hypercube.workshop.audioworkshop.api.consumer.SampleBuffer;
+import com.hypercube.workshop.audioworkshop.api.consumer.SampleBufferConsumer;
+import com.hypercube.workshop.audioworkshop.api.errors.AudioError;
+import com.hypercube.workshop.audioworkshop.files.riff.WaveChannels;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Dump samples in a CSV file, one line per sample, one column per channel
+ * <p>The values are written like {@code String.format(Locale.ENGLISH, "%f", sample)} but without creating a String per
+ * value: the digits are written in a char buffer sent to the file when it is full.</p>
+ * <ul>
+ *     <li>The value is scaled to millionths and rounded half up, like {@link java.util.Formatter}</li>
+ *     <li>When the value is too close to a rounding tie, the result may depend on the decimal representation of the double.
+ *     In this rare case, and for huge values, NaN or infinity, {@link String#format} is used</li>
+ * </ul>
+ */
+public class CsvSampleWriter implements SampleBufferConsumer, Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int NB_DECIMALS = 6;
+    private static final long DECIMAL_SCALE = 1_000_000;
+    /**
+     * Above this value, the scaled double is not accurate enough to be rounded safely
+     */
+    private static final double MAX_FAST_VALUE = 1e6;
+    private static final double TIE_TOLERANCE = 1e-3;
+    /**
+     * Sign, integer part, dot and decimals
+     */
+    private static final int MAX_FAST_LENGTH = 1 + 7 + 1 + NB_DECIMALS;
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private final Writer out;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+
+    public CsvSampleWriter(File csvFile, int nbChannels) throws IOException {
+        csvFile.getParentFile()
+                .mkdirs();
+        out = new OutputStreamWriter(new FileOutputStream(csvFile), StandardCharsets.US_ASCII);
+        StringBuilder header = new StringBuilder("Sep=,").append(LINE_SEPARATOR);
+        for (int c = 0; c < nbChannels; c++) {
+            if (c > 0) {
+                header.append(',');
+            }
+            header.append(WaveChannels.valueOfOrdinal(c)
+                    .getShortTitle());
+        }
+        header.append(LINE_SEPARATOR);
+        out.write(header.toString());
+    }
+
+    @Override
+    public void onBuffer(SampleBuffer sampleBuffer) {
+        try {
+            int nbChannels = sampleBuffer.nbChannels();
+            for (int s = 0; s < sampleBuffer.nbSamples(); s++) {
+                for (int c = 0; c < nbChannels; c++) {
+                    if (c > 0) {
+                        append(',');
+                    }
+                    appendDecimal(sampleBuffer.sample(c, s));
+                }
+                for (int i = 0; i < LINE_SEPARATOR.length(); i++) {
+                    append(LINE_SEPARATOR.charAt(i));
+                }
+            }
+        } catch (IOException e) {
+            throw new AudioError(e);
+        }
+    }
+
+    private void append(char value) throws IOException {
+        if (position == buffer.length) {
+            flushBuffer();
+        }
+        buffer[position++] = value;
+    }
+
+    private void appendDecimal(double value) throws IOException {
+        double abs = Math.abs(value);
+        if (!(abs < MAX_FAST_VALUE)) {
+            appendSlow(value);
+            return;
+        }
+        double scaled = abs * DECIMAL_SCALE;
+        long units = (long) scaled;
+        double fraction = scaled - units;
+        if (Math.abs(fraction - 0.5) < TIE_TOLERANCE) {
+            appendSlow(value);
+            return;
+        }
+        if (fraction > 0.5) {
+            units++;
+        }
+        if (buffer.length - position < MAX_FAST_LENGTH) {
+            flushBuffer();
+        }
+        // Formatter prints the sign of -0.0 and of tiny negative values
+        if (Double.compare(value, 0.0) < 0) {
+            buffer[position++] = '-';
+        }
+        long integerPart = units / DECIMAL_SCALE;
+        long decimals = units % DECIMAL_SCALE;
+        position = appendDigits(integerPart, 1);
+        buffer[position++] = '.';
+        position = appendDigits(decimals, NB_DECIMALS);
+    }
+
+    /**
+     * @param minDigits left padding with zeros
+     * @return new position in the buffer
+     */
+    private int appendDigits(long value, int minDigits) {
+        int nbDigits = 1;
+        for (long v = value / 10; v > 0; v /= 10) {
+            nbDigits++;
+        }
+        nbDigits = Math.max(nbDigits, minDigits);
+        int end = position + nbDigits;
+        for (int i = end - 1; i >= position; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return end;
+    }
+
+    private void appendSlow(double value) throws IOException {
+        String formatted = String.format(Locale.ENGLISH, "%f", value);
+        if (buffer.length - position < formatted.length()) {
+            flushBuffer();
+        }
+        if (formatted.length() > buffer.length) {
+            out.write(formatted);
+        } else {
+            formatted.getChars(0, formatted.length(), buffer, position);
+            position += formatted.length();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        out.write(buffer, 0, position);
+        position = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBuffer();
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.hypercube.workshop.audioworkshop.files.riff.insights;
+
+import lombok.Getter;
+
+/**
+ * Result of a {@link WaveformPeakCache} query: min, max and RMS per channel and column
+ */
+public class PeakColumns {
+    @Getter
+    private final int nbChannels;
+    @Getter
+    private final int nbColumns;
+    @Getter
+    private final long samplesPerPixel;
+    /**
+     * Filled by {@link WaveformPeakCache#query}, per channel and column
+     */
+    final float[][] min;
+    final float[][] max;
+    final float[][] rms;
+
+    PeakColumns(int nbChannels, int nbColumns, long samplesPerPixel) {
+        this.nbChannels = nbChannels;
+        this.nbColumns = nbColumns;
+        this.samplesPerPixel = samplesPerPixel;
+        min = new float[nbChannels][nbColumns];
+        max = new float[nbChannels][nbColumns];
+        rms = new float[nbChannels][nbColumns];
+    }
+
+    public float getMin(int channel, int column) {
+        return min[channel][column];
+    }
+
+    public float getMax(int channel, int column) {
+        return max[channel][column];
+    }
+
+    public float getRms(int channel, int column) {
+        return rms[channel][column];
+    }
+
+    /**
+     * @return the absolute peaks drawn by {@link WaveformRenderer}
+     */
+    public WaveformPeaks toWaveformPeaks() {
+        WaveformPeaks peaks = new WaveformPeaks(nbChannels, nbColumns, (int) Math.min(Integer.MAX_VALUE, samplesPerPixel));
+        for (int c = 0; c < nbChannels; c++) {
+            for (int x = 0; x < nbColumns; x++) {
+                peaks.setPeak(c, x, Math.max(Math.abs(min[c][x]), Math.abs(max[c][x])));
+            }
+        }
+        return peaks;
+    }
+}
@@ -1,5 +1,7 @@
 package com.hypercube.workshop.audioworkshop.files.riff.insights;
 
+import com.hypercube.workshop.audioworkshop.api.consumer.FloatSampleBuffer;
+import com.hypercube.workshop.audioworkshop.api.consumer.FloatSampleBufferConsumer;
 import com.hypercube.workshop.audioworkshop.api.consumer.SampleBuffer;
 import com.hypercube.workshop.audioworkshop.api.consumer.SampleBufferConsumer;
 import com.hypercube.workshop.audioworkshop.api.errors.AudioError;
@@ -8,17 +10,13 @@ import com.hypercube.workshop.audioworkshop.api.format.PCMFormat;
 import com.hypercube.workshop.audioworkshop.api.pcm.PCMConverter;
 import com.hypercube.workshop.audioworkshop.files.riff.RiffFileInfo;
 import com.hypercube.workshop.audioworkshop.files.riff.RiffReader;
-import com.hypercube.workshop.audioworkshop.files.riff.WaveChannels;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.util.Locale;
+import java.util.zip.Checksum;
 
 /**
  * Pass all samples from a Riff/WAV File to a {@link SampleBufferConsumer}
@@ -36,6 +34,17 @@ public class RiffInspector {
      * @param sampleConsumer will receive buffers of samples for each channels
      */
     public void inspect(SampleBufferConsumer sampleConsumer) {
+        inspect(sampleConsumer, null);
+    }
+
+    /**
+     * Same as {@link #inspect(SampleBufferConsumer)}, the raw PCM of each buffer also goes through the checksum, so the
+     * data chunk is read only once
+     *
+     * @param checksum typically created by {@link com.hypercube.workshop.audioworkshop.files.riff.ChecksumAlgorithm#create()},
+     *                 gives the same result than {@link RiffReader#computeChecksum}
+     */
+    public void inspect(SampleBufferConsumer sampleConsumer, Checksum checksum) {
         PCMBufferFormat format = new PCMBufferFormat(50, info.getAudioInfo()
                 .toPCMFormat());
         int nbChannels = format.getNbChannels();
@@ -46,6 +55,9 @@ public class RiffInspector {
         sampleConsumer.reset();
         try {
             riffReader.streamChunk(info.getDataChunk(), bufferSizeInBytes, (pcmBuffer, size) -> {
+                if (checksum != null) {
+                    checksum.update(pcmBuffer.slice(0, size));
+                }
                 int nbSamples = size / format.getFrameSizeInBytes();
                 checkBufferSize(size, format);
                 pcmConverter.convert(pcmBuffer, samples, nbSamples, nbChannels);
@@ -57,36 +69,40 @@ public class RiffInspector {
     }
 
     /**
-     * Example using {@link  #inspect(SampleBufferConsumer)} to dump all samples into a CSV file
+     * Same as {@link #inspect(SampleBufferConsumer)} in single precision
+     *
+     * @param sampleConsumer will receive buffers of float samples for each channels
+     */
+    public void inspectFloat(FloatSampleBufferConsumer sampleConsumer) {
+        PCMBufferFormat format = new PCMBufferFormat(50, info.getAudioInfo()
+                .toPCMFormat());
+        int nbChannels = format.getNbChannels();
+        var pcmConverter = PCMConverter.getPCMtoFloatSampleFunction(format);
+        int bufferSizeInBytes = format.getByteBufferSize();
+        float[][] samples = format.allocateFloatSampleBuffer();
+        sampleConsumer.reset();
+        try {
+            riffReader.streamChunk(info.getDataChunk(), bufferSizeInBytes, (pcmBuffer, size) -> {
+                int nbSamples = size / format.getFrameSizeInBytes();
+                checkBufferSize(size, format);
+                pcmConverter.convert(pcmBuffer, samples, nbSamples, nbChannels);
+                sampleConsumer.onBuffer(new FloatSampleBuffer(samples, 0, nbSamples, nbChannels));
+            });
+        } catch (IOException e) {
+            throw new AudioError(e);
+        }
+    }
+
+    /**
+     * Example using {@link  #inspect(SampleBufferConsumer)} to dump all samples into a CSV file, see {@link CsvSampleWriter}
      *
      * @param csvFile the output CSV File to create
      */
     public void saveCsv(File csvFile) {
         log.info("Generate {}", csvFile.getAbsolutePath());
-        csvFile.getParentFile()
-                .mkdirs();
-        try (PrintWriter out = new PrintWriter(new FileOutputStream(csvFile))) {
-            out.println("Sep=,");
-            for (int c = 0; c < info.getAudioInfo()
-                    .getNbChannels(); c++) {
-                if (c > 0) {
-                    out.print(",");
-                }
-                out.print(WaveChannels.valueOfOrdinal(c)
-                        .getShortTitle());
-            }
-            out.println();
-            inspect((buffer) -> {
-                for (int s = 0; s < buffer.nbSamples(); s++) {
-                    for (int c = 0; c < buffer.nbChannels(); c++) {
-                        if (c > 0) {
-                            out.print(",");
-                        }
-                        out.print(String.format(Locale.ENGLISH, "%f", buffer.sample(c, s)));
-                    }
-                    out.println();
-                }
-            });
+        try (CsvSampleWriter out = new CsvSampleWriter(csvFile, info.getAudioInfo()
+                .getNbChannels())) {
+            inspect(out);
         } catch (IOException e) {
             throw new AudioError(e);
         }
@@ -105,6 +121,8 @@ public class RiffInspector {
 
     /**
      * Example using {@link  #inspect(SampleBufferConsumer)} to display the overall waveform in PNG
+     * <p>The peaks are computed in one pass by {@link WaveformPeaks}, then drawn in parallel by {@link WaveformRenderer}</p>
+     * <p>To draw the same file many times, see {@link WaveformPeakCache}</p>
      *
      * @param pngFile     The PNG file to create
      * @param imageWidth  Width in pixels
@@ -114,16 +132,15 @@ public class RiffInspector {
         log.info("Generate {}", pngFile.getAbsolutePath());
         pngFile.getParentFile()
                 .mkdirs();
-        PCMFormat format = info.getAudioInfo()
-                .toPCMFormat();
-        BufferedImage image = new BufferedImage(imageWidth, imageHeight, BufferedImage.TYPE_INT_RGB);
-        int samplesPerPixel = Math.max(1, info.getAudioInfo()
+        int nbChannels = info.getAudioInfo()
+                .getNbChannels();
+        int samplesPerPixel = (int) Math.max(1, info.getAudioInfo()
                 .getNbSamples() / imageWidth);
-        RiffInspectorState state = new RiffInspectorState(image, samplesPerPixel, format);
-
+        WaveformRenderer renderer = new WaveformRenderer(imageWidth, imageHeight, nbChannels);
+        WaveformPeaks peaks = new WaveformPeaks(nbChannels, imageWidth, samplesPerPixel);
         try {
-            inspect(state);
-            ImageIO.write(state.getImage(), "png", pngFile);
+            inspect(peaks);
+            ImageIO.write(renderer.render(peaks), "png", pngFile);
         } catch (IOException e) {
             throw new AudioError(e);
         }
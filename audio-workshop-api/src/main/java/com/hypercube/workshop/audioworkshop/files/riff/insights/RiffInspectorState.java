@@ -57,21 +57,29 @@ public class RiffInspectorState implements SampleBufferConsumer {
             }
             samplePositionInWindow++;
             if (samplePositionInWindow == samplesPerPixel && x < image.getWidth()) {
-                String logMsg = "%d".formatted(x);
+                if (log.isDebugEnabled()) {
+                    logPeaks(buffer.nbChannels());
+                }
                 for (int c = 0; c < buffer.nbChannels(); c++) {
-                    logMsg += " | %6.6f".formatted(max[c]);
                     double amplitude = max[c] * scale;
                     int middleY = waveHeightInPixel / 2 + waveHeightInPixel * c;
                     graphics.setColor(waveformColor);
                     graphics.drawLine(x, (int) (middleY - amplitude), x, (int) (middleY + amplitude));
                     max[c] = 0;
                 }
-                log.info(logMsg);
                 x++;
                 samplePositionInWindow = 0;
             }
         }
 
     }
+
+    private void logPeaks(int nbChannels) {
+        StringBuilder logMsg = new StringBuilder("%d".formatted(x));
+        for (int c = 0; c < nbChannels; c++) {
+            logMsg.append(" | %6.6f".formatted(max[c]));
+        }
+        log.debug(logMsg.toString());
+    }
 }
 
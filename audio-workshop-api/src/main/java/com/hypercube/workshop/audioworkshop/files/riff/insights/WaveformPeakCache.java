@@ -0,0 +1,491 @@
+package com.hypercube.workshop.audioworkshop.files.riff.insights;
+
+import com.hypercube.workshop.audioworkshop.api.consumer.SampleBuffer;
+import com.hypercube.workshop.audioworkshop.api.consumer.SampleBufferConsumer;
+import com.hypercube.workshop.audioworkshop.api.errors.AudioError;
+import com.hypercube.workshop.audioworkshop.files.riff.ChecksumAlgorithm;
+import com.hypercube.workshop.audioworkshop.files.riff.RiffAudioInfo;
+import com.hypercube.workshop.audioworkshop.files.riff.RiffFileInfo;
+import com.hypercube.workshop.audioworkshop.files.riff.RiffReader;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.imageio.ImageIO;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Checksum;
+
+/**
+ * Peak pyramid of a WAV file, saved in a sidecar file next to it, so the waveform can be drawn without decoding the samples again
+ * <p>Level 0 keeps the min, max and RMS of each channel every {@link #baseDecimation} samples, each next level merges two
+ * entries of the previous one. The whole pyramid is twice the size of level 0: with the default decimation, 24 bytes per
+ * channel every 256 samples, less than 5% of a 16 bits file.</p>
+ * <pre>
+ * "AWPK" version checksum sourceSize sourceLastModified sampleRate nbChannels nbSamples baseDecimation nbLevels
+ * nbEntries min[nbEntries*nbChannels] max[nbEntries*nbChannels] rms[nbEntries*nbChannels]
+ * ... one line per level
+ * </pre>
+ * <ul>
+ *     <li>The pyramid and the checksum are built in one pass with {@link RiffInspector#inspect(SampleBufferConsumer, Checksum)}</li>
+ *     <li>The key is the XXHASH64 of the data chunk, the same checksum than the
+ *     {@link com.hypercube.workshop.audioworkshop.files.index.AudioIndex}. The size and date of the source are also kept,
+ *     so {@link #getOrCreate(File)} knows the cache is up to date without reading the audio</li>
+ *     <li>{@link #query} picks the coarsest level finer than a pixel, so a column merges at most 3 entries:
+ *     O(pixels) whatever the length of the file</li>
+ * </ul>
+ * <p>A column which is not aligned on the entries of its level also includes the samples of the partially covered
+ * entries: peaks are never under estimated. Below {@link #baseDecimation} samples per pixel, the columns show the
+ * enclosing level 0 entry, such a short range should be read with {@link RiffInspector} instead.</p>
+ */
+@Slf4j
+public class WaveformPeakCache {
+    public static final String SIDECAR_EXTENSION = ".peaks";
+    public static final int DEFAULT_BASE_DECIMATION = 256;
+    private static final int MAGIC = 0x4157504B; // "AWPK"
+    private static final int VERSION = 1;
+    private static final int IO_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * XXHASH64 of the data chunk
+     */
+    @Getter
+    private final String checksum;
+    @Getter
+    private final long sourceSize;
+    @Getter
+    private final long sourceLastModified;
+    @Getter
+    private final int sampleRate;
+    @Getter
+    private final int nbChannels;
+    @Getter
+    private final long nbSamples;
+    @Getter
+    private final int baseDecimation;
+    /**
+     * Per level, entry by entry, channels interleaved
+     */
+    private final float[][] min;
+    private final float[][] max;
+    private final float[][] rms;
+
+    private WaveformPeakCache(String checksum, long sourceSize, long sourceLastModified, int sampleRate, int nbChannels, long nbSamples, int baseDecimation, float[][] min, float[][] max, float[][] rms) {
+        this.checksum = checksum;
+        this.sourceSize = sourceSize;
+        this.sourceLastModified = sourceLastModified;
+        this.sampleRate = sampleRate;
+        this.nbChannels = nbChannels;
+        this.nbSamples = nbSamples;
+        this.baseDecimation = baseDecimation;
+        this.min = min;
+        this.max = max;
+        this.rms = rms;
+    }
+
+    public static File sidecarOf(File audioFile) {
+        return new File(audioFile.getAbsoluteFile()
+                .getParentFile(), audioFile.getName() + SIDECAR_EXTENSION);
+    }
+
+    public int getNbLevels() {
+        return min.length;
+    }
+
+    /**
+     * @return how many samples are summarized by one entry of the level
+     */
+    public long getDecimation(int level) {
+        return (long) baseDecimation << level;
+    }
+
+    public int getNbEntries(int level) {
+        return min[level].length / nbChannels;
+    }
+
+    public boolean isUpToDate(File audioFile) {
+        return audioFile.length() == sourceSize && audioFile.lastModified() == sourceLastModified;
+    }
+
+    /**
+     * Load the sidecar of the file, or build and save it if it is missing or out of date
+     */
+    public static WaveformPeakCache getOrCreate(File audioFile) {
+        return getOrCreate(audioFile, null);
+    }
+
+    /**
+     * @param checksum XXHASH64 of the data chunk if already known, typically from the library index. When it matches,
+     *                 the sidecar is used even if the metadata of the file changed.
+     */
+    public static WaveformPeakCache getOrCreate(File audioFile, String checksum) {
+        File sidecar = sidecarOf(audioFile);
+        WaveformPeakCache cache = load(sidecar);
+        if (cache != null && (checksum != null ? checksum.equals(cache.checksum) : cache.isUpToDate(audioFile))) {
+            return cache;
+        }
+        log.info("Generate {}", sidecar.getAbsolutePath());
+        cache = build(audioFile, DEFAULT_BASE_DECIMATION);
+        try {
+            cache.save(sidecar);
+        } catch (IOException | SecurityException e) {
+            log.warn("Unable to save the peak cache " + sidecar.getAbsolutePath(), e);
+        }
+        return cache;
+    }
+
+    /**
+     * Decode the whole file once to build the pyramid
+     *
+     * @param baseDecimation number of samples per entry of the level 0, a power of two
+     */
+    public static WaveformPeakCache build(File audioFile, int baseDecimation) {
+        if (baseDecimation <= 0 || Integer.bitCount(baseDecimation) != 1) {
+            throw new IllegalArgumentException("baseDecimation must be a power of two: " + baseDecimation);
+        }
+        long sourceSize = audioFile.length();
+        long sourceLastModified = audioFile.lastModified();
+        try (RiffReader riffReader = new RiffReader(audioFile, false)) {
+            RiffFileInfo info = riffReader.parse();
+            if (info == null || info.getDataChunk() == null) {
+                throw new AudioError("No audio data in " + audioFile.getAbsolutePath());
+            }
+            RiffAudioInfo audioInfo = info.getAudioInfo();
+            Checksum checksum = ChecksumAlgorithm.XXHASH64.create();
+            LevelBuilder builder = new LevelBuilder(audioInfo.getNbChannels(), baseDecimation, audioInfo.getNbSamples());
+            new RiffInspector(riffReader, info).inspect(builder, checksum);
+            builder.flush();
+            return builder.toCache(ChecksumAlgorithm.XXHASH64.format(checksum), sourceSize, sourceLastModified, audioInfo.getSampleRate());
+        } catch (IOException e) {
+            throw new AudioError(e);
+        }
+    }
+
+    /**
+     * Summarize a range of samples in columns
+     *
+     * @param startSample first sample of the range
+     * @param endSample   last sample of the range, exclusive
+     * @param width       maximum number of columns, there are less if the range is shorter than the width
+     */
+    public PeakColumns query(long startSample, long endSample, int width) {
+        if (width <= 0 || startSample < 0 || endSample < startSample) {
+            throw new IllegalArgumentException("Invalid query: samples [%d,%d[ in %d columns".formatted(startSample, endSample, width));
+        }
+        // the zoom comes from the requested range, the columns after the end of the file are not returned
+        long samplesPerPixel = Math.max(1, (endSample - startSample) / width);
+        long end = Math.min(endSample, nbSamples);
+        long length = Math.max(0, end - startSample);
+        int nbColumns = (int) Math.min(width, (length + samplesPerPixel - 1) / samplesPerPixel);
+        PeakColumns columns = new PeakColumns(nbChannels, nbColumns, samplesPerPixel);
+        int level = 0;
+        while (level + 1 < getNbLevels() && getDecimation(level + 1) <= samplesPerPixel) {
+            level++;
+        }
+        long decimation = getDecimation(level);
+        int nbEntries = getNbEntries(level);
+        float[] levelMin = min[level];
+        float[] levelMax = max[level];
+        float[] levelRms = rms[level];
+        for (int x = 0; x < nbColumns; x++) {
+            long s0 = startSample + x * samplesPerPixel;
+            long s1 = Math.min(end, s0 + samplesPerPixel);
+            int e0 = (int) (s0 / decimation);
+            int e1 = (int) Math.min(nbEntries, (s1 + decimation - 1) / decimation);
+            for (int c = 0; c < nbChannels; c++) {
+                float columnMin = Float.POSITIVE_INFINITY;
+                float columnMax = Float.NEGATIVE_INFINITY;
+                double sumSquares = 0;
+                long count = 0;
+                for (int e = e0; e < e1; e++) {
+                    int i = e * nbChannels + c;
+                    long entryCount = entryCount(e, decimation, nbSamples);
+                    columnMin = Math.min(columnMin, levelMin[i]);
+                    columnMax = Math.max(columnMax, levelMax[i]);
+                    sumSquares += (double) levelRms[i] * levelRms[i] * entryCount;
+                    count += entryCount;
+                }
+                columns.min[c][x] = columnMin;
+                columns.max[c][x] = columnMax;
+                columns.rms[c][x] = (float) Math.sqrt(sumSquares / count);
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Same image as {@link RiffInspector#savePng}, without reading the audio
+     */
+    public void savePng(File pngFile, int imageWidth, int imageHeight) {
+        log.info("Generate {}", pngFile.getAbsolutePath());
+        pngFile.getAbsoluteFile()
+                .getParentFile()
+                .mkdirs();
+        WaveformRenderer renderer = new WaveformRenderer(imageWidth, imageHeight, nbChannels);
+        try {
+            ImageIO.write(renderer.render(query(0, nbSamples, imageWidth).toWaveformPeaks()), "png", pngFile);
+        } catch (IOException e) {
+            throw new AudioError(e);
+        }
+    }
+
+    /**
+     * @return null if the file does not exist, can't be read or was written by another version
+     */
+    public static WaveformPeakCache load(File file) {
+        if (!file.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), IO_BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                log.warn("Unsupported peak cache version, it will be rebuilt: " + file.getAbsolutePath());
+                return null;
+            }
+            String checksum = in.readUTF();
+            long sourceSize = in.readLong();
+            long sourceLastModified = in.readLong();
+            int sampleRate = in.readInt();
+            int nbChannels = in.readUnsignedShort();
+            long nbSamples = in.readLong();
+            int baseDecimation = in.readInt();
+            int nbLevels = in.readInt();
+            if (nbChannels == 0 || baseDecimation <= 0 || nbLevels <= 0 || nbLevels > 64) {
+                throw new IOException("Corrupted header");
+            }
+            float[][] min = new float[nbLevels][];
+            float[][] max = new float[nbLevels][];
+            float[][] rms = new float[nbLevels][];
+            for (int level = 0; level < nbLevels; level++) {
+                int size = Math.multiplyExact(in.readInt(), nbChannels);
+                min[level] = readFloats(in, size);
+                max[level] = readFloats(in, size);
+                rms[level] = readFloats(in, size);
+            }
+            return new WaveformPeakCache(checksum, sourceSize, sourceLastModified, sampleRate, nbChannels, nbSamples, baseDecimation, min, max, rms);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Unable to read peak cache, it will be rebuilt: " + file.getAbsolutePath(), e);
+            return null;
+        }
+    }
+
+    /**
+     * The cache is written in a temporary file first, so an interrupted save does not leave a truncated sidecar
+     * <p>On failure, the temporary file is removed.</p>
+     */
+    public void save(File file) throws IOException {
+        File parent = file.getAbsoluteFile()
+                .getParentFile();
+        parent.mkdirs();
+        File tmp = new File(parent, file.getName() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), IO_BUFFER_SIZE))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(checksum);
+                out.writeLong(sourceSize);
+                out.writeLong(sourceLastModified);
+                out.writeInt(sampleRate);
+                out.writeShort(nbChannels);
+                out.writeLong(nbSamples);
+                out.writeInt(baseDecimation);
+                out.writeInt(getNbLevels());
+                for (int level = 0; level < getNbLevels(); level++) {
+                    out.writeInt(getNbEntries(level));
+                    writeFloats(out, min[level]);
+                    writeFloats(out, max[level]);
+                    writeFloats(out, rms[level]);
+                }
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            // don't leave anything next to the audio file
+            tmp.delete();
+            throw e;
+        }
+    }
+
+    /**
+     * Floats are converted by blocks through a {@link ByteBuffer} view instead of one {@code readFloat} each
+     */
+    private static float[] readFloats(DataInputStream in, int size) throws IOException {
+        float[] values = new float[size];
+        byte[] bytes = new byte[Math.min(IO_BUFFER_SIZE, size * Float.BYTES)];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        for (int offset = 0; offset < size; ) {
+            int count = Math.min(size - offset, bytes.length / Float.BYTES);
+            in.readFully(bytes, 0, count * Float.BYTES);
+            buffer.asFloatBuffer()
+                    .get(values, offset, count);
+            offset += count;
+        }
+        return values;
+    }
+
+    private static void writeFloats(DataOutputStream out, float[] values) throws IOException {
+        byte[] bytes = new byte[Math.min(IO_BUFFER_SIZE, values.length * Float.BYTES)];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        for (int offset = 0; offset < values.length; ) {
+            int count = Math.min(values.length - offset, bytes.length / Float.BYTES);
+            buffer.asFloatBuffer()
+                    .put(values, offset, count);
+            out.write(bytes, 0, count * Float.BYTES);
+            offset += count;
+        }
+    }
+
+    /**
+     * @return how many samples are in the entry, only the last one of a level can be incomplete
+     */
+    private static long entryCount(int entry, long decimation, long nbSamples) {
+        return Math.min(decimation, nbSamples - entry * decimation);
+    }
+
+    /**
+     * Accumulate the level 0 while the samples are streamed, the next levels are derived from it at the end
+     */
+    private static class LevelBuilder implements SampleBufferConsumer {
+        private final int nbChannels;
+        private final int decimation;
+        private final float[] currentMin;
+        private final float[] currentMax;
+        private final double[] currentSumSquares;
+        private float[] min;
+        private float[] max;
+        private float[] rms;
+        private int nbEntries;
+        private int positionInEntry;
+        private long nbSamples;
+
+        LevelBuilder(int nbChannels, int decimation, long expectedNbSamples) {
+            this.nbChannels = nbChannels;
+            this.decimation = decimation;
+            currentMin = new float[nbChannels];
+            currentMax = new float[nbChannels];
+            currentSumSquares = new double[nbChannels];
+            int capacity = (int) Math.min(Integer.MAX_VALUE / nbChannels, Math.max(1, (expectedNbSamples + decimation - 1) / decimation)) * nbChannels;
+            min = new float[capacity];
+            max = new float[capacity];
+            rms = new float[capacity];
+        }
+
+        @Override
+        public void reset() {
+            nbEntries = 0;
+            nbSamples = 0;
+            positionInEntry = 0;
+            Arrays.fill(currentMin, Float.POSITIVE_INFINITY);
+            Arrays.fill(currentMax, Float.NEGATIVE_INFINITY);
+            Arrays.fill(currentSumSquares, 0);
+        }
+
+        @Override
+        public void onBuffer(SampleBuffer buffer) {
+            int s = 0;
+            while (s < buffer.nbSamples()) {
+                int count = Math.min(buffer.nbSamples() - s, decimation - positionInEntry);
+                for (int c = 0; c < nbChannels; c++) {
+                    float channelMin = currentMin[c];
+                    float channelMax = currentMax[c];
+                    double sumSquares = currentSumSquares[c];
+                    for (int i = s; i < s + count; i++) {
+                        double sample = buffer.sample(c, i);
+                        channelMin = Math.min(channelMin, (float) sample);
+                        channelMax = Math.max(channelMax, (float) sample);
+                        sumSquares += sample * sample;
+                    }
+                    currentMin[c] = channelMin;
+                    currentMax[c] = channelMax;
+                    currentSumSquares[c] = sumSquares;
+                }
+                s += count;
+                positionInEntry += count;
+                nbSamples += count;
+                if (positionInEntry == decimation) {
+                    flush();
+                }
+            }
+        }
+
+        /**
+         * Close the current entry, even if incomplete
+         */
+        void flush() {
+            if (positionInEntry == 0) {
+                return;
+            }
+            int offset = nbEntries * nbChannels;
+            if (offset + nbChannels > min.length) {
+                int capacity = Math.max(min.length * 2, offset + nbChannels);
+                min = Arrays.copyOf(min, capacity);
+                max = Arrays.copyOf(max, capacity);
+                rms = Arrays.copyOf(rms, capacity);
+            }
+            for (int c = 0; c < nbChannels; c++) {
+                min[offset + c] = currentMin[c];
+                max[offset + c] = currentMax[c];
+                rms[offset + c] = (float) Math.sqrt(currentSumSquares[c] / positionInEntry);
+                currentMin[c] = Float.POSITIVE_INFINITY;
+                currentMax[c] = Float.NEGATIVE_INFINITY;
+                currentSumSquares[c] = 0;
+            }
+            nbEntries++;
+            positionInEntry = 0;
+        }
+
+        WaveformPeakCache toCache(String checksum, long sourceSize, long sourceLastModified, int sampleRate) {
+            if (nbEntries == 0) {
+                throw new AudioError("No samples to build the peak cache");
+            }
+            List<float[]> levelsMin = new ArrayList<>();
+            List<float[]> levelsMax = new ArrayList<>();
+            List<float[]> levelsRms = new ArrayList<>();
+            int size = nbEntries * nbChannels;
+            levelsMin.add(Arrays.copyOf(min, size));
+            levelsMax.add(Arrays.copyOf(max, size));
+            levelsRms.add(Arrays.copyOf(rms, size));
+            int childEntries = nbEntries;
+            long childDecimation = decimation;
+            while (childEntries > 1) {
+                float[] childMin = levelsMin.getLast();
+                float[] childMax = levelsMax.getLast();
+                float[] childRms = levelsRms.getLast();
+                int entries = (childEntries + 1) / 2;
+                float[] levelMin = new float[entries * nbChannels];
+                float[] levelMax = new float[entries * nbChannels];
+                float[] levelRms = new float[entries * nbChannels];
+                for (int e = 0; e < entries; e++) {
+                    int a = 2 * e;
+                    int b = a + 1;
+                    long countA = entryCount(a, childDecimation, nbSamples);
+                    long countB = b < childEntries ? entryCount(b, childDecimation, nbSamples) : 0;
+                    for (int c = 0; c < nbChannels; c++) {
+                        int ia = a * nbChannels + c;
+                        int ib = b * nbChannels + c;
+                        int i = e * nbChannels + c;
+                        if (countB == 0) {
+                            levelMin[i] = childMin[ia];
+                            levelMax[i] = childMax[ia];
+                            levelRms[i] = childRms[ia];
+                        } else {
+                            levelMin[i] = Math.min(childMin[ia], childMin[ib]);
+                            levelMax[i] = Math.max(childMax[ia], childMax[ib]);
+                            double sumSquares = (double) childRms[ia] * childRms[ia] * countA + (double) childRms[ib] * childRms[ib] * countB;
+                            levelRms[i] = (float) Math.sqrt(sumSquares / (countA + countB));
+                        }
+                    }
+                }
+                levelsMin.add(levelMin);
+                levelsMax.add(levelMax);
+                levelsRms.add(levelRms);
+                childEntries = entries;
+                childDecimation *= 2;
+            }
+            return new WaveformPeakCache(checksum, sourceSize, sourceLastModified, sampleRate, nbChannels, nbSamples, decimation,
+                    levelsMin.toArray(float[][]::new), levelsMax.toArray(float[][]::new), levelsRms.toArray(float[][]::new));
+        }
+    }
+}
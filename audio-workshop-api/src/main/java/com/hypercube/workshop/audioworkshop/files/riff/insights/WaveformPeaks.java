@@ -0,0 +1,84 @@
+package com.hypercube.workshop.audioworkshop.files.riff.insights;
+
+import com.hypercube.workshop.audioworkshop.api.consumer.SampleBuffer;
+import com.hypercube.workshop.audioworkshop.api.consumer.SampleBufferConsumer;
+import lombok.Getter;
+
+/**
+ * Decimate a whole file in one pass: the peak of each channel every {@link #samplesPerPixel} samples
+ * <p>This is what {@link WaveformRenderer} draws, one column per peak. Like {@link RiffInspectorState}, the last
+ * incomplete window is ignored and nothing is kept after {@link #width} columns.</p>
+ */
+@Getter
+public class WaveformPeaks implements SampleBufferConsumer {
+    private final int nbChannels;
+    private final int width;
+    private final int samplesPerPixel;
+    /**
+     * Absolute peak per channel and column
+     */
+    private final double[][] peaks;
+    private final double[] max;
+    /**
+     * How many columns are complete
+     */
+    private int nbColumns;
+    private int samplePositionInWindow;
+
+    public WaveformPeaks(int nbChannels, int width, int samplesPerPixel) {
+        if (samplesPerPixel <= 0)
+            throw new IllegalArgumentException("samplesPerPixel must be positive: " + samplesPerPixel);
+        this.nbChannels = nbChannels;
+        this.width = width;
+        this.samplesPerPixel = samplesPerPixel;
+        peaks = new double[nbChannels][width];
+        max = new double[nbChannels];
+    }
+
+    @Override
+    public void reset() {
+        for (int c = 0; c < nbChannels; c++) {
+            max[c] = 0;
+        }
+        nbColumns = 0;
+        samplePositionInWindow = 0;
+    }
+
+    public double getPeak(int channel, int column) {
+        return peaks[channel][column];
+    }
+
+    /**
+     * Used by {@link WaveformPeakCache} to fill the columns without reading the samples
+     */
+    void setPeak(int channel, int column, double peak) {
+        peaks[channel][column] = peak;
+        nbColumns = Math.max(nbColumns, column + 1);
+    }
+
+    @Override
+    public void onBuffer(SampleBuffer buffer) {
+        int nbSamples = buffer.nbSamples();
+        int s = 0;
+        while (s < nbSamples && nbColumns < width) {
+            int count = Math.min(nbSamples - s, samplesPerPixel - samplePositionInWindow);
+            for (int c = 0; c < nbChannels; c++) {
+                double channelMax = max[c];
+                for (int i = s; i < s + count; i++) {
+                    channelMax = Math.max(channelMax, Math.abs(buffer.sample(c, i)));
+                }
+                max[c] = channelMax;
+            }
+            s += count;
+            samplePositionInWindow += count;
+            if (samplePositionInWindow == samplesPerPixel) {
+                for (int c = 0; c < nbChannels; c++) {
+                    peaks[c][nbColumns] = max[c];
+                    max[c] = 0;
+                }
+                nbColumns++;
+                samplePositionInWindow = 0;
+            }
+        }
+    }
+}
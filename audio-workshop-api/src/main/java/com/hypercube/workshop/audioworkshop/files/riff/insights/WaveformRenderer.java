@@ -0,0 +1,72 @@
+package com.hypercube.workshop.audioworkshop.files.riff.insights;
+
+import com.hypercube.workshop.audioworkshop.api.errors.AudioError;
+import com.hypercube.workshop.audioworkshop.api.utils.ParallelTiles;
+import lombok.Getter;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+/**
+ * Draw the {@link WaveformPeaks} of a file, the image is the same as the one drawn by {@link RiffInspectorState}
+ * <ul>
+ *     <li>Each channel has its own horizontal band, each peak is a vertical line centered in the band</li>
+ *     <li>The pixels are written directly in the raster instead of calling {@code Graphics.drawLine}</li>
+ *     <li>The image is split in tiles of {@link #TILE_WIDTH} columns, rendered in parallel by {@link ParallelTiles}</li>
+ * </ul>
+ */
+@Getter
+public class WaveformRenderer {
+    public static final int TILE_WIDTH = 256;
+    private static final int WAVEFORM_COLOR = 0x06A885;
+
+    private final int width;
+    private final int height;
+    private final int nbChannels;
+    private final int waveHeightInPixel;
+    private final double scale;
+    private final int nbThreads;
+
+    public WaveformRenderer(int width, int height, int nbChannels) {
+        this(width, height, nbChannels, Runtime.getRuntime()
+                .availableProcessors());
+    }
+
+    public WaveformRenderer(int width, int height, int nbChannels, int nbThreads) {
+        this.width = width;
+        this.height = height;
+        this.nbChannels = nbChannels;
+        this.nbThreads = Math.max(1, nbThreads);
+        waveHeightInPixel = height / nbChannels;
+        if (waveHeightInPixel < 10) {
+            throw new AudioError("Image height %d is too small for %d channels".formatted(height, nbChannels));
+        }
+        // same computation than RiffInspectorState, to get the same pixels
+        double maxAmplitudeInPixel = waveHeightInPixel / 2.0f;
+        scale = maxAmplitudeInPixel / 0.9f;
+    }
+
+    public BufferedImage render(WaveformPeaks peaks) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        int[] pixels = ((DataBufferInt) image.getRaster()
+                .getDataBuffer()).getData();
+        int nbColumns = Math.min(width, peaks.getNbColumns());
+        ParallelTiles.render(nbColumns, TILE_WIDTH, nbThreads, "waveform", (start, end) -> renderColumns(peaks, pixels, start, end));
+        return image;
+    }
+
+    private void renderColumns(WaveformPeaks peaks, int[] pixels, int start, int end) {
+        for (int c = 0; c < nbChannels; c++) {
+            int middleY = waveHeightInPixel / 2 + waveHeightInPixel * c;
+            for (int x = start; x < end; x++) {
+                double amplitude = peaks.getPeak(c, x) * scale;
+                // drawLine includes both ends
+                int top = Math.max(0, (int) (middleY - amplitude));
+                int bottom = Math.min(height - 1, (int) (middleY + amplitude));
+                for (int y = top; y <= bottom; y++) {
+                    pixels[y * width + x] = WAVEFORM_COLOR;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.hypercube.workshop.audioworkshop.api.consumer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FloatWindowedSampleBufferConsumerTest {
+    private static final int NB_CHANNELS = 2;
+    private static final int WINDOW_SIZE = 8;
+
+    /**
+     * Each sample is unique: position + 1 for the first channel, -(position + 1) for the second one
+     */
+    private static void stream(FloatSampleBufferConsumer consumer, int bufferSize, int nbSamples) {
+        float[][] samples = new float[NB_CHANNELS][bufferSize];
+        for (int pos = 0; pos < nbSamples; pos += bufferSize) {
+            int size = Math.min(bufferSize, nbSamples - pos);
+            for (int s = 0; s < size; s++) {
+                samples[0][s] = pos + s + 1;
+                samples[1][s] = -(pos + s + 1);
+            }
+            consumer.onBuffer(new FloatSampleBuffer(samples, 0, size, NB_CHANNELS));
+        }
+    }
+
+    @Test
+    void slidingWindows() {
+        List<float[]> firstChannel = new ArrayList<>();
+        List<FloatSampleBuffer> views = new ArrayList<>();
+        FloatWindowedSampleBufferConsumer consumer = new FloatWindowedSampleBufferConsumer(WINDOW_SIZE, 4, NB_CHANNELS, window -> {
+            float[] copy = new float[window.nbSamples()];
+            for (int s = 0; s < copy.length; s++) {
+                copy[s] = window.sample(0, s);
+            }
+            firstChannel.add(copy);
+            views.add(window);
+        });
+        stream(consumer, 3, 16);
+        // the first window starts with the overlap, which is silent
+        assertEquals(4, firstChannel.size());
+        assertArrayEquals(new float[]{0, 0, 0, 0, 1, 2, 3, 4}, firstChannel.get(0));
+        assertArrayEquals(new float[]{1, 2, 3, 4, 5, 6, 7, 8}, firstChannel.get(1));
+        assertArrayEquals(new float[]{9, 10, 11, 12, 13, 14, 15, 16}, firstChannel.get(3));
+        // the same view is handed over for each window
+        views.forEach(view -> assertSame(views.get(0), view));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {-1, 0, WINDOW_SIZE + 1})
+    void illegalSampleIncrement(int sampleIncrement) {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> new FloatWindowedSampleBufferConsumer(WINDOW_SIZE, sampleIncrement, NB_CHANNELS, window -> {
+        }));
+        assertEquals("Illegal value for sampleIncrement:" + sampleIncrement + ". Should be in [1, 8]", e.getMessage());
+    }
+}
@@ -0,0 +1,127 @@
+package com.hypercube.workshop.audioworkshop.api.consumer;
+
+import com.hypercube.workshop.audioworkshop.api.insights.dc.DCOffsetCalculator;
+import com.hypercube.workshop.audioworkshop.api.insights.peak.PeakCalculator;
+import com.hypercube.workshop.audioworkshop.api.insights.rms.RMSCalculator;
+import com.hypercube.workshop.audioworkshop.api.insights.rms.RMSReference;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelSampleBufferConsumerChainTest {
+    private static final int NB_CHANNELS = 2;
+    private static final int BUFFER_SIZE = 1024;
+    private static final int NB_BUFFERS = 500;
+
+    /**
+     * Stream a random signal the same way RiffInspector does: the caller always reuse the same buffer
+     */
+    private static void stream(SampleBufferConsumer consumer) {
+        Random random = new Random(1234);
+        double[][] samples = new double[NB_CHANNELS][BUFFER_SIZE];
+        consumer.reset();
+        for (int b = 0; b < NB_BUFFERS; b++) {
+            // the last buffer is partial
+            int nbSamples = b == NB_BUFFERS - 1 ? BUFFER_SIZE / 3 : BUFFER_SIZE;
+            for (int c = 0; c < NB_CHANNELS; c++) {
+                for (int s = 0; s < nbSamples; s++) {
+                    samples[c][s] = random.nextDouble() * 1.6 - 0.75;
+                }
+            }
+            samples[0][0] = b;
+            consumer.onBuffer(new SampleBuffer(samples, 0, nbSamples, NB_CHANNELS));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1, 4, 32})
+    void sameResultsAsSerialChain(int maxLag) {
+        RMSCalculator serialRms = new RMSCalculator(NB_CHANNELS);
+        PeakCalculator serialPeak = new PeakCalculator();
+        DCOffsetCalculator serialDc = new DCOffsetCalculator(NB_CHANNELS);
+        stream(new SampleBufferConsumerChain(List.of(serialRms, serialPeak, serialDc)));
+
+        RMSCalculator rms = new RMSCalculator(NB_CHANNELS);
+        PeakCalculator peak = new PeakCalculator();
+        DCOffsetCalculator dc = new DCOffsetCalculator(NB_CHANNELS);
+        List<Double> sequence = new ArrayList<>();
+        SampleBufferConsumer sequenceRecorder = b -> {
+            // slow consumer
+            busyWait(b.nbSamples());
+            sequence.add(b.sample(0, 0));
+        };
+        try (var chain = new ParallelSampleBufferConsumerChain(List.of(rms, peak, dc, sequenceRecorder), maxLag)) {
+            stream(chain);
+        }
+        assertArrayEquals(serialRms.getRms(), rms.getRms());
+        assertEquals(serialRms.getRMSDb(RMSReference.SINE_WAVE_AES_17), rms.getRMSDb(RMSReference.SINE_WAVE_AES_17));
+        assertEquals(serialPeak.getSamplePeak(), peak.getSamplePeak());
+        assertEquals(serialPeak.getSampleMin(), peak.getSampleMin());
+        assertEquals(serialPeak.getSampleMax(), peak.getSampleMax());
+        assertEquals(serialDc.getDCOffsetPercent(6), dc.getDCOffsetPercent(6));
+        assertEquals(NB_BUFFERS, sequence.size());
+        for (int b = 0; b < NB_BUFFERS; b++) {
+            assertEquals(b, sequence.get(b), 0);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 4})
+    void consumerErrorIsRethrown(int maxLag) {
+        Consumer<SampleBuffer> failing = b -> {
+            if (b.sample(0, 0) == 10) {
+                throw new IllegalStateException("boom");
+            }
+        };
+        RMSCalculator rms = new RMSCalculator(NB_CHANNELS);
+        var chain = new ParallelSampleBufferConsumerChain(List.of(rms, failing::accept), maxLag);
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> {
+            stream(chain);
+            chain.flush();
+        });
+        assertEquals("boom", e.getMessage());
+        // the other consumers are not affected
+        chain.close();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 4})
+    void workersOnlyRunBetweenTheFirstBufferAndFlush(int maxLag) {
+        RMSCalculator rms = new RMSCalculator(NB_CHANNELS);
+        var chain = new ParallelSampleBufferConsumerChain(List.of(rms), maxLag);
+        assertEquals(0, countWorkers());
+        stream(chain);
+        assertEquals(1, countWorkers());
+        chain.flush();
+        assertEquals(0, countWorkers());
+        double[] rmsAfterFirstStream = rms.getRms()
+                .clone();
+        // started again
+        stream(chain);
+        chain.close();
+        assertEquals(0, countWorkers());
+        assertArrayEquals(rmsAfterFirstStream, rms.getRms());
+    }
+
+    private static long countWorkers() {
+        return Thread.getAllStackTraces()
+                .keySet()
+                .stream()
+                .filter(t -> t.getName()
+                        .startsWith("ConsumerChain-"))
+                .count();
+    }
+
+    private static void busyWait(long nanos) {
+        long end = System.nanoTime() + nanos;
+        while (System.nanoTime() < end) {
+            Thread.onSpinWait();
+        }
+    }
+}
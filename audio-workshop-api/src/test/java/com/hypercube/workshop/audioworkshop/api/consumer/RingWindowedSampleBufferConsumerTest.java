@@ -0,0 +1,74 @@
+package com.hypercube.workshop.audioworkshop.api.consumer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RingWindowedSampleBufferConsumerTest {
+    private static final int NB_CHANNELS = 2;
+
+    /**
+     * Each sample is unique: position + 1 for the first channel, -(position + 1) for the second one
+     */
+    private static void stream(SampleBufferConsumer consumer, int bufferSize, int nbSamples) {
+        double[][] samples = new double[NB_CHANNELS][bufferSize];
+        consumer.reset();
+        for (int pos = 0; pos < nbSamples; pos += bufferSize) {
+            int size = Math.min(bufferSize, nbSamples - pos);
+            for (int s = 0; s < size; s++) {
+                samples[0][s] = pos + s + 1;
+                samples[1][s] = -(pos + s + 1);
+            }
+            consumer.onBuffer(new SampleBuffer(samples, 0, size, NB_CHANNELS));
+        }
+    }
+
+    private static SampleBufferConsumer collectTo(List<double[][]> windows) {
+        return window -> {
+            double[][] copy = new double[NB_CHANNELS][window.nbSamples()];
+            window.copyTo(copy, 0);
+            windows.add(copy);
+        };
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "1024,1024,512",
+            "1024,256,512",
+            "1024,256,100",
+            "1024,768,4096",
+            "1024,1,333",
+            "512,384,50",
+            "8,3,5"
+    })
+    void sameWindowsAsWindowedSampleBufferConsumer(int windowSize, int sampleIncrement, int bufferSize) {
+        List<double[][]> expected = new ArrayList<>();
+        List<double[][]> actual = new ArrayList<>();
+        int nbSamples = windowSize * 10 + 17;
+        stream(new WindowedSampleBufferConsumer(windowSize, sampleIncrement, NB_CHANNELS, collectTo(expected)), bufferSize, nbSamples);
+        stream(new RingWindowedSampleBufferConsumer(windowSize, sampleIncrement, NB_CHANNELS, collectTo(actual)), bufferSize, nbSamples);
+        assertEquals(expected.size(), actual.size());
+        for (int w = 0; w < expected.size(); w++) {
+            for (int ch = 0; ch < NB_CHANNELS; ch++) {
+                assertArrayEquals(expected.get(w)[ch], actual.get(w)[ch], "window %d channel %d".formatted(w, ch));
+            }
+        }
+    }
+
+    @Test
+    void incrementGreaterThanWindow() {
+        List<double[][]> windows = new ArrayList<>();
+        // window of 4 samples every 10 samples, buffers of 3 samples
+        stream(new RingWindowedSampleBufferConsumer(4, 10, NB_CHANNELS, collectTo(windows)), 3, 35);
+        assertEquals(3, windows.size());
+        assertArrayEquals(new double[]{7, 8, 9, 10}, windows.get(0)[0]);
+        assertArrayEquals(new double[]{17, 18, 19, 20}, windows.get(1)[0]);
+        assertArrayEquals(new double[]{-27, -28, -29, -30}, windows.get(2)[1]);
+    }
+}
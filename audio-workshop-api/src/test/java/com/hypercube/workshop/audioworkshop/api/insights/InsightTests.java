@@ -1,5 +1,8 @@
 package com.hypercube.workshop.audioworkshop.api.insights;
 
+import com.hypercube.workshop.audioworkshop.api.consumer.FloatSampleBuffer;
+import com.hypercube.workshop.audioworkshop.api.consumer.FloatSampleBufferConsumer;
+import com.hypercube.workshop.audioworkshop.api.consumer.FloatWindowedSampleBufferConsumer;
 import com.hypercube.workshop.audioworkshop.api.consumer.SampleBuffer;
 import com.hypercube.workshop.audioworkshop.api.consumer.SampleBufferConsumer;
 import com.hypercube.workshop.audioworkshop.api.consumer.SampleBufferConsumerChain;
@@ -116,6 +119,34 @@ public class InsightTests {
         }
     }
 
+    @Test
+    void floatInsightsMatchDoubleInsights() throws IOException {
+        try (RiffReader r = new RiffReader(FILE_440HZ, false)) {
+            var info = r.parse();
+            int nbChannels = info.getAudioInfo()
+                    .getNbChannels();
+            RiffInspector waveformConverter = new RiffInspector(r, info);
+            RMSCalculator rmsCalculator = new RMSCalculator(nbChannels);
+            PeakCalculator peakCalculator = new PeakCalculator();
+            waveformConverter.inspect(new SampleBufferConsumerChain(List.of(rmsCalculator, peakCalculator)));
+
+            RMSCalculator floatRmsCalculator = new RMSCalculator(nbChannels);
+            PeakCalculator floatPeakCalculator = new PeakCalculator();
+            // 16 bits samples are exactly represented in float, and 1050 samples windows cover exactly the 44100 samples of the file
+            waveformConverter.inspectFloat(new FloatWindowedSampleBufferConsumer(1050, nbChannels, new FloatSampleBufferConsumer() {
+                @Override
+                public void onBuffer(FloatSampleBuffer buffer) {
+                    floatRmsCalculator.onBuffer(buffer);
+                    floatPeakCalculator.onBuffer(buffer);
+                }
+            }));
+            assertEquals(peakCalculator.getSamplePeak(), floatPeakCalculator.getSamplePeak());
+            assertEquals(peakCalculator.getSampleMin(), floatPeakCalculator.getSampleMin());
+            assertEquals(peakCalculator.getSampleMax(), floatPeakCalculator.getSampleMax());
+            assertEquals(rmsCalculator.getRMSDb(RMSReference.SINE_WAVE_AES_17), floatRmsCalculator.getRMSDb(RMSReference.SINE_WAVE_AES_17));
+        }
+    }
+
     @Test
     @Disabled
     void windowedInsight() throws IOException {
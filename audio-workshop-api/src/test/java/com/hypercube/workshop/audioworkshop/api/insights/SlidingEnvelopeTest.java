@@ -0,0 +1,144 @@
+package com.hypercube.workshop.audioworkshop.api.insights;
+
+import com.hypercube.workshop.audioworkshop.api.consumer.SampleBuffer;
+import com.hypercube.workshop.audioworkshop.api.format.PCMFormat;
+import com.hypercube.workshop.audioworkshop.api.insights.peak.SlidingMax;
+import com.hypercube.workshop.audioworkshop.api.insights.rms.SlidingRMS;
+import com.hypercube.workshop.audioworkshop.api.insights.signal.SignalSegment;
+import com.hypercube.workshop.audioworkshop.api.insights.signal.SignalSegmentType;
+import com.hypercube.workshop.audioworkshop.api.insights.signal.SignalSegmentsDetector;
+import com.hypercube.workshop.audioworkshop.api.insights.signal.SignalStartDetector;
+import com.hypercube.workshop.audioworkshop.api.pcm.BitDepth;
+import com.hypercube.workshop.audioworkshop.api.pcm.PCMEncoding;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SlidingEnvelopeTest {
+    private static final PCMFormat FORMAT = new PCMFormat(48000, BitDepth.BIT_DEPTH_16, 2, PCMEncoding.SIGNED, ByteOrder.LITTLE_ENDIAN);
+
+    @Test
+    void matchesBruteForce() {
+        Random random = new Random(1);
+        double[] signal = new double[20_000];
+        for (int i = 0; i < signal.length; i++) {
+            signal[i] = random.nextGaussian() * (i % 5000 < 2500 ? 0.5 : 0.01);
+        }
+        for (int windowSize : new int[]{1, 7, 480, 4096}) {
+            SlidingRMS rms = new SlidingRMS(windowSize);
+            SlidingMax max = new SlidingMax(windowSize);
+            rms.reset();
+            max.reset();
+            for (int i = 0; i < signal.length; i++) {
+                rms.add(signal[i]);
+                max.add(Math.abs(signal[i]));
+                int start = Math.max(0, i - windowSize + 1);
+                double sum = 0;
+                double peak = 0;
+                long peakPosition = -1;
+                for (int j = start; j <= i; j++) {
+                    sum += signal[j] * signal[j];
+                    if (Math.abs(signal[j]) >= peak) {
+                        peak = Math.abs(signal[j]);
+                        peakPosition = j;
+                    }
+                }
+                assertEquals(Math.sqrt(sum / (i - start + 1)), rms.getRMS(), 1e-9, "window %d sample %d".formatted(windowSize, i));
+                assertEquals(peak, max.getMax(), "window %d sample %d".formatted(windowSize, i));
+                assertEquals(peakPosition, max.getMaxPosition());
+            }
+        }
+    }
+
+    @Test
+    void noDriftAfterLoudParts() {
+        SlidingRMS rms = new SlidingRMS(1000);
+        rms.reset();
+        Random random = new Random(2);
+        // a very loud burst, then a long quiet tail: without renormalization the residue of the burst stays in the sum
+        for (int i = 0; i < 10_000_000; i++) {
+            rms.add(i < 100_000 ? random.nextGaussian() * 1e4 : random.nextGaussian() * 1e-6);
+        }
+        assertEquals(1e-6, rms.getRMS(), 1e-7);
+    }
+
+    @Test
+    void hopsAreIndependentOfBufferSize() {
+        double[][] samples = new double[2][10_000];
+        Random random = new Random(3);
+        for (int s = 0; s < samples[0].length; s++) {
+            samples[0][s] = random.nextDouble() - 0.5;
+            samples[1][s] = (random.nextDouble() - 0.5) * 2;
+        }
+        List<String> reference = null;
+        for (int bufferSize : new int[]{10_000, 1, 333, 1024}) {
+            List<String> hops = new ArrayList<>();
+            SlidingEnvelope envelope = new SlidingEnvelope(2, 500, 37, (position, e) ->
+                    hops.add("%d %f %f %f".formatted(position, e.getRMS(0), e.getRMS(1), e.getPeak())));
+            envelope.reset();
+            for (int s = 0; s < samples[0].length; s += bufferSize) {
+                envelope.onBuffer(new SampleBuffer(samples, s, Math.min(samples[0].length, s + bufferSize), 2));
+            }
+            assertEquals(10_000 / 37, hops.size());
+            if (reference == null) {
+                reference = hops;
+            } else {
+                assertEquals(reference, hops, "buffer size " + bufferSize);
+            }
+        }
+    }
+
+    @Test
+    void detectorsAreSampleAccurate() {
+        // silence, then a tone from 12345 to 30000, then silence
+        int nbSamples = 48000;
+        double[][] samples = new double[2][nbSamples];
+        for (int s = 12345; s < 30000; s++) {
+            samples[1][s] = 0.5 * Math.sin(s * 0.05);
+        }
+        // the sine starts at 0, the first sample above -40 dB is a bit later
+        int firstAbove = 12345;
+        while (PCMFormat.toDb(Math.abs(samples[1][firstAbove])) <= -40) {
+            firstAbove++;
+        }
+        SignalStartDetector startDetector = new SignalStartDetector(FORMAT);
+        startDetector.reset();
+        startDetector.onBuffer(new SampleBuffer(samples, 0, nbSamples, 2));
+        assertTrue(startDetector.isInSignal());
+        assertEquals(firstAbove, startDetector.getSignalStart());
+
+        SignalSegmentsDetector segmentsDetector = new SignalSegmentsDetector(FORMAT, -60, 64, 1);
+        segmentsDetector.reset();
+        for (int s = 0; s < nbSamples; s += 4800) {
+            segmentsDetector.onBuffer(new SampleBuffer(samples, s, s + 4800, 2));
+        }
+        List<SignalSegment> segments = segmentsDetector.getSegments();
+        assertEquals(3, segments.size());
+        assertEquals(SignalSegmentType.SILENT, segments.get(0)
+                .getType());
+        assertEquals(SignalSegmentType.SIGNAL, segments.get(1)
+                .getType());
+        // the signal lasts until the last loud sample leaves the window
+        assertTrue(Math.abs(segments.get(1)
+                .getSampleStart() - 12345) < 5);
+        assertTrue(Math.abs(segments.get(1)
+                .getSampleEnd() - (30000 + 64)) < 5);
+        assertEquals(nbSamples, segments.get(2)
+                .getSampleEnd());
+
+        // default settings: one segment boundary every 50 ms
+        SignalSegmentsDetector defaultDetector = new SignalSegmentsDetector(FORMAT, -60);
+        defaultDetector.reset();
+        defaultDetector.onBuffer(new SampleBuffer(samples, 0, nbSamples, 2));
+        for (SignalSegment segment : defaultDetector.getSegments()) {
+            assertEquals(0, segment.getSampleStart() % 2400);
+            assertEquals(0, segment.getSampleEnd() % 2400);
+        }
+    }
+}
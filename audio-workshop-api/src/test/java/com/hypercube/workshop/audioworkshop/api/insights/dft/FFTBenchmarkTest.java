@@ -0,0 +1,55 @@
+package com.hypercube.workshop.audioworkshop.api.insights.dft;
+
+import com.hypercube.workshop.audioworkshop.api.consumer.SampleBuffer;
+import com.hypercube.workshop.audioworkshop.api.format.PCMBufferFormat;
+import com.hypercube.workshop.audioworkshop.api.insights.dft.fast.FFTCalculator;
+import com.hypercube.workshop.audioworkshop.api.insights.dft.fast.JavaFFTCalculator;
+import com.hypercube.workshop.audioworkshop.api.insights.dft.windows.BlackmanHarris;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+/**
+ * Compare {@link JavaFFTCalculator} with {@link FFTCalculator} (FFTW) for usual window sizes
+ * <p>This is slow so it runs only with {@code -Dbenchmark=true}</p>
+ */
+@Slf4j
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class FFTBenchmarkTest {
+    private static final int NB_CHANNELS = 2;
+    /**
+     * Each measure process about this amount of samples
+     */
+    private static final int SAMPLES_PER_MEASURE = 1 << 23;
+
+    private double measure(DFTCalculator calculator, SampleBuffer buffer) {
+        int nbWindows = Math.max(4, SAMPLES_PER_MEASURE / buffer.nbSamples());
+        // warmup
+        for (int i = 0; i < nbWindows; i++) {
+            calculator.onBuffer(buffer);
+        }
+        calculator.reset();
+        long start = System.nanoTime();
+        for (int i = 0; i < nbWindows; i++) {
+            calculator.onBuffer(buffer);
+        }
+        long elapsed = System.nanoTime() - start;
+        calculator.reset();
+        return elapsed / 1000.0 / nbWindows;
+    }
+
+    @Test
+    void javaVersusFFTW() {
+        for (int windowSize = 256; windowSize <= 65536; windowSize *= 2) {
+            PCMBufferFormat format = JavaFFTCalculatorTest.formatOfSize(windowSize, NB_CHANNELS);
+            SampleBuffer buffer = new SampleBuffer(JavaFFTCalculatorTest.randomSignal(NB_CHANNELS, windowSize, windowSize), 0, windowSize, NB_CHANNELS);
+            double javaMicros = measure(new JavaFFTCalculator(format, new BlackmanHarris()), buffer);
+            double fftwMicros;
+            try (FFTCalculator fftw = new FFTCalculator(format, new BlackmanHarris())) {
+                fftwMicros = measure(fftw, buffer);
+            }
+            log.info("Window {} samples: Java {} us, FFTW {} us per window ({} channels), ratio {}", windowSize,
+                    "%.1f".formatted(javaMicros), "%.1f".formatted(fftwMicros), NB_CHANNELS, "%.2f".formatted(javaMicros / fftwMicros));
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.hypercube.workshop.audioworkshop.api.insights.dft;
+
+import com.hypercube.workshop.audioworkshop.api.consumer.SampleBuffer;
+import com.hypercube.workshop.audioworkshop.api.format.PCMBufferFormat;
+import com.hypercube.workshop.audioworkshop.api.insights.dft.fast.FFTCalculator;
+import com.hypercube.workshop.audioworkshop.api.insights.dft.fast.FFTWPlanCache;
+import com.hypercube.workshop.audioworkshop.api.insights.dft.fast.FFTWPlanning;
+import com.hypercube.workshop.audioworkshop.api.insights.dft.fast.RealFFT;
+import com.hypercube.workshop.audioworkshop.api.insights.dft.windows.BlackmanHarris;
+import com.hypercube.workshop.audioworkshop.api.pcm.BitDepth;
+import com.hypercube.workshop.audioworkshop.api.pcm.PCMEncoding;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.ByteOrder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FFTWPlanCacheTest {
+    @AfterEach
+    void clear() {
+        FFTWPlanCache.clear();
+    }
+
+    @Test
+    void plansAreReused() {
+        FFTWPlanCache.Plan plan = FFTWPlanCache.acquire(1024, 2);
+        FFTWPlanCache.Plan other = FFTWPlanCache.acquire(1024, 2);
+        assertNotSame(plan, other);
+        FFTWPlanCache.release(plan);
+        assertSame(plan, FFTWPlanCache.acquire(1024, 2));
+        FFTWPlanCache.release(plan);
+        FFTWPlanCache.release(other);
+    }
+
+    @Test
+    void batchPlanTransformsAllChannels() {
+        int windowSize = 1000;
+        int nbChannels = 3;
+        int nbBins = windowSize / 2 + 1;
+        double[][] signal = JavaFFTCalculatorTest.randomSignal(nbChannels, windowSize, 42);
+        double[] samples = new double[windowSize * nbChannels];
+        for (int ch = 0; ch < nbChannels; ch++) {
+            System.arraycopy(signal[ch], 0, samples, ch * windowSize, windowSize);
+        }
+        double[] spectrum = new double[2 * nbBins * nbChannels];
+        FFTWPlanCache.Plan plan = FFTWPlanCache.acquire(windowSize, nbChannels, FFTWPlanning.MEASURE);
+        plan.execute(samples, spectrum);
+        FFTWPlanCache.release(plan);
+
+        RealFFT reference = new RealFFT(windowSize);
+        double[] expected = new double[2 * nbBins];
+        for (int ch = 0; ch < nbChannels; ch++) {
+            reference.forward(signal[ch], expected);
+            for (int i = 0; i < expected.length; i++) {
+                assertEquals(expected[i], spectrum[ch * 2 * nbBins + i], 1e-9, "channel %d index %d".formatted(ch, i));
+            }
+        }
+    }
+
+    @Test
+    void wisdomExport() {
+        File wisdom = new File("target/fftw.wisdom");
+        wisdom.delete();
+        FFTWPlanCache.setWisdomFile(wisdom);
+        try {
+            FFTWPlanCache.release(FFTWPlanCache.acquire(4096, 1, FFTWPlanning.MEASURE));
+            assertTrue(wisdom.exists());
+        } finally {
+            FFTWPlanCache.setWisdomFile(null);
+        }
+    }
+
+    @Test
+    void calculatorIsReusableAfterReset() {
+        PCMBufferFormat format = new PCMBufferFormat(20, 44100, BitDepth.BIT_DEPTH_16, 1, PCMEncoding.SIGNED, ByteOrder.LITTLE_ENDIAN);
+        int windowSize = format.getSampleBufferSize();
+        SampleBuffer buffer = new SampleBuffer(JavaFFTCalculatorTest.randomSignal(1, windowSize, 42), 0, windowSize, 1);
+        FFTCalculator calculator = new FFTCalculator(format, new BlackmanHarris());
+        calculator.onBuffer(buffer);
+        calculator.close();
+        assertThrows(IllegalStateException.class, () -> calculator.onBuffer(buffer));
+        calculator.reset();
+        calculator.onBuffer(buffer);
+        assertEquals(1, calculator.getMagnitudes()[0]
+                .size());
+        calculator.close();
+    }
+}
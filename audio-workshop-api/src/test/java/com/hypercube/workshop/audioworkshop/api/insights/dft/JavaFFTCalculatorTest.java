@@ -0,0 +1,89 @@
+package com.hypercube.workshop.audioworkshop.api.insights.dft;
+
+import com.hypercube.workshop.audioworkshop.api.consumer.SampleBuffer;
+import com.hypercube.workshop.audioworkshop.api.format.PCMBufferFormat;
+import com.hypercube.workshop.audioworkshop.api.insights.dft.fast.JavaFFTCalculator;
+import com.hypercube.workshop.audioworkshop.api.insights.dft.fast.RealFFT;
+import com.hypercube.workshop.audioworkshop.api.insights.dft.slow.SimpleDFTCalculator;
+import com.hypercube.workshop.audioworkshop.api.insights.dft.windows.BlackmanHarris;
+import com.hypercube.workshop.audioworkshop.api.pcm.BitDepth;
+import com.hypercube.workshop.audioworkshop.api.pcm.PCMEncoding;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JavaFFTCalculatorTest {
+    /**
+     * Buffers of 1 ms, the sample rate gives the window size
+     */
+    static PCMBufferFormat formatOfSize(int windowSize, int nbChannels) {
+        return new PCMBufferFormat(1, windowSize * 1000, BitDepth.BIT_DEPTH_16, nbChannels, PCMEncoding.SIGNED, ByteOrder.LITTLE_ENDIAN);
+    }
+
+    static double[][] randomSignal(int nbChannels, int nbSamples, long seed) {
+        Random random = new Random(seed);
+        double[][] samples = new double[nbChannels][nbSamples];
+        for (int ch = 0; ch < nbChannels; ch++) {
+            for (int s = 0; s < nbSamples; s++) {
+                samples[ch][s] = Math.sin(2 * Math.PI * (ch + 1) * 50 * s / nbSamples) * 0.5 + random.nextGaussian() * 0.1;
+            }
+        }
+        return samples;
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {2, 3, 4, 5, 8, 16, 17, 64, 100, 127, 256, 441, 1024})
+    void realFFTMatchesNaiveDFT(int size) {
+        double[] input = randomSignal(1, size, size)[0];
+        double[] output = new double[2 * (size / 2 + 1)];
+        RealFFT fft = new RealFFT(size);
+        fft.forward(input, output);
+        double tolerance = 1e-9 * size;
+        for (int k = 0; k <= size / 2; k++) {
+            double re = 0;
+            double im = 0;
+            for (int t = 0; t < size; t++) {
+                double angle = 2 * Math.PI * ((long) t * k % size) / size;
+                re += input[t] * Math.cos(angle);
+                im -= input[t] * Math.sin(angle);
+            }
+            assertEquals(re, output[2 * k], tolerance, "real part of bin " + k);
+            assertEquals(im, output[2 * k + 1], tolerance, "imaginary part of bin " + k);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {256, 512, 1000, 2048, 2205})
+    void sameMagnitudesAsSimpleDFTCalculator(int windowSize) {
+        int nbChannels = 2;
+        PCMBufferFormat format = formatOfSize(windowSize, nbChannels);
+        assertEquals(windowSize, format.getSampleBufferSize());
+        DFTCalculator reference = DFTEngine.SIMPLE.create(format, new BlackmanHarris());
+        DFTCalculator fft = DFTEngine.JAVA_FFT.create(format, new BlackmanHarris());
+        assertInstanceOf(SimpleDFTCalculator.class, reference);
+        assertInstanceOf(JavaFFTCalculator.class, fft);
+        for (int w = 0; w < 3; w++) {
+            SampleBuffer buffer = new SampleBuffer(randomSignal(nbChannels, windowSize, w), 0, windowSize, nbChannels);
+            reference.onBuffer(buffer);
+            fft.onBuffer(buffer);
+        }
+        for (int ch = 0; ch < nbChannels; ch++) {
+            assertEquals(3, fft.getMagnitudes()[ch].size());
+            for (int w = 0; w < 3; w++) {
+                double[] expected = reference.getMagnitudes()[ch].get(w)
+                        .getMagnitudes();
+                double[] actual = fft.getMagnitudes()[ch].get(w)
+                        .getMagnitudes();
+                assertEquals(windowSize / 2, actual.length);
+                for (int bin = 0; bin < expected.length; bin++) {
+                    // the naive DFT accumulates much more rounding errors, so we compare in dB
+                    assertEquals(expected[bin], actual[bin], 1e-6, "channel %d window %d bin %d".formatted(ch, w, bin));
+                }
+            }
+        }
+    }
+}
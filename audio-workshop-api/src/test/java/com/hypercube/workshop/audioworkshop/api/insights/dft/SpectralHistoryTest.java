@@ -0,0 +1,132 @@
+package com.hypercube.workshop.audioworkshop.api.insights.dft;
+
+import com.hypercube.workshop.audioworkshop.api.consumer.SampleBuffer;
+import com.hypercube.workshop.audioworkshop.api.format.PCMBufferFormat;
+import com.hypercube.workshop.audioworkshop.api.insights.dft.fast.JavaFFTCalculator;
+import com.hypercube.workshop.audioworkshop.api.insights.dft.windows.BlackmanHarris;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpectralHistoryTest {
+    private static void addSpectrum(SpectralHistory history, double value) {
+        double[] magnitudes = history.add(4);
+        for (int bin = 0; bin < magnitudes.length; bin++) {
+            magnitudes[bin] = value * (bin + 1);
+        }
+    }
+
+    @Test
+    void boundedHistoryKeepsTheLastSpectrums() {
+        SpectralHistory history = new SpectralHistory(3, false);
+        assertTrue(history.isEmpty());
+        for (int i = 1; i <= 10; i++) {
+            addSpectrum(history, i);
+        }
+        assertEquals(3, history.size());
+        assertEquals(8, history.get(0)
+                .getMagnitudes()[0]);
+        assertEquals(9, history.get(1)
+                .getMagnitudes()[0]);
+        assertEquals(40, history.getLast()
+                .getMagnitudes()[3]);
+        assertThrows(IndexOutOfBoundsException.class, () -> history.get(3));
+        // arrays are reused
+        double[] last = history.getLinear(2);
+        addSpectrum(history, 11);
+        addSpectrum(history, 12);
+        addSpectrum(history, 13);
+        assertSame(last, history.getLinear(2));
+    }
+
+    @Test
+    void unboundedHistoryGrows() {
+        SpectralHistory history = new SpectralHistory(SpectralHistory.UNBOUNDED, false);
+        for (int i = 0; i < 1000; i++) {
+            addSpectrum(history, i);
+        }
+        assertEquals(1000, history.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, history.get(i)
+                    .getMagnitudes()[0]);
+        }
+        history.clear();
+        assertEquals(0, history.size());
+    }
+
+    @Test
+    void clearDoesNotOverwriteKeptSpectrums() {
+        SpectralHistory history = new SpectralHistory(2, false);
+        addSpectrum(history, 1);
+        addSpectrum(history, 2);
+        DFTResult kept = history.getLast();
+        history.clear();
+        for (int i = 3; i <= 6; i++) {
+            addSpectrum(history, i);
+        }
+        assertEquals(2, kept.getMagnitudes()[0]);
+        assertNotSame(kept, history.getLast());
+    }
+
+    @Test
+    void decibelsOnRead() {
+        SpectralHistory history = new SpectralHistory(2, true);
+        addSpectrum(history, 10);
+        assertEquals(10, history.getLinear(0)[0]);
+        assertEquals(20, history.get(0)
+                .getMagnitudes()[0], 1e-12);
+        // read twice, converted once
+        assertEquals(20, history.get(0)
+                .getMagnitudes()[0], 1e-12);
+        assertEquals(10, history.getLinear(0)[0]);
+    }
+
+    @Test
+    void unboundedDecibelsAreConvertedInPlace() {
+        SpectralHistory history = new SpectralHistory(SpectralHistory.UNBOUNDED, true);
+        addSpectrum(history, 10);
+        double[] linear = history.getLinear(0);
+        assertEquals(10, linear[0]);
+        DFTResult result = history.get(0);
+        assertSame(linear, result.getMagnitudes());
+        assertEquals(20, result.getMagnitudes()[0], 1e-12);
+        assertEquals(20, history.get(0)
+                .getMagnitudes()[0], 1e-12);
+        assertThrows(IllegalStateException.class, () -> history.getLinear(0));
+    }
+
+    @Test
+    void callbackModeDoesNotRetainSpectrums() {
+        int windowSize = 1024;
+        PCMBufferFormat format = JavaFFTCalculatorTest.formatOfSize(windowSize, 2);
+        JavaFFTCalculator reference = new JavaFFTCalculator(format, new BlackmanHarris());
+        List<Double> peaks = new ArrayList<>();
+        JavaFFTCalculator callback = new JavaFFTCalculator(format, new BlackmanHarris(), (channel, spectrum) -> {
+            double peak = Double.NEGATIVE_INFINITY;
+            for (double magnitude : spectrum.getMagnitudes()) {
+                peak = Math.max(peak, magnitude);
+            }
+            peaks.add(peak);
+        });
+        for (int w = 0; w < 20; w++) {
+            SampleBuffer buffer = new SampleBuffer(JavaFFTCalculatorTest.randomSignal(2, windowSize, w), 0, windowSize, 2);
+            reference.onBuffer(buffer);
+            callback.onBuffer(buffer);
+        }
+        assertEquals(40, peaks.size());
+        assertEquals(1, callback.getMagnitudes()[0].size());
+        for (int w = 0; w < 20; w++) {
+            for (int ch = 0; ch < 2; ch++) {
+                double expected = Double.NEGATIVE_INFINITY;
+                for (double magnitude : reference.getMagnitudes()[ch].get(w)
+                        .getMagnitudes()) {
+                    expected = Math.max(expected, magnitude);
+                }
+                assertEquals(expected, (double) peaks.get(w * 2 + ch));
+            }
+        }
+    }
+}
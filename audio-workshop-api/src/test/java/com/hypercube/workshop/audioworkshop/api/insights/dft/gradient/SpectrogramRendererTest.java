@@ -0,0 +1,184 @@
+package com.hypercube.workshop.audioworkshop.api.insights.dft.gradient;
+
+import com.hypercube.workshop.audioworkshop.api.consumer.SampleBuffer;
+import com.hypercube.workshop.audioworkshop.api.format.PCMBufferFormat;
+import com.hypercube.workshop.audioworkshop.api.insights.dft.fast.JavaFFTCalculator;
+import com.hypercube.workshop.audioworkshop.api.insights.dft.windows.BlackmanHarris;
+import com.hypercube.workshop.audioworkshop.api.pcm.BitDepth;
+import com.hypercube.workshop.audioworkshop.api.pcm.PCMEncoding;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpectrogramRendererTest {
+    private static final double MIN_DB = SpectrogramRenderer.minDbFS(16);
+    private static final int BLACK = 0;
+    private static final int YELLOW = GradientColor.fromHexa("#FFE900")
+            .toRGB24();
+
+    private static double[] silentFrame(int nbBins) {
+        double[] frame = new double[nbBins];
+        Arrays.fill(frame, MIN_DB);
+        return frame;
+    }
+
+    private static int rgb(BufferedImage image, int x, int y) {
+        return image.getRGB(x, y) & 0xFFFFFF;
+    }
+
+    /**
+     * The gradient goes from black to yellow, the sum of the components is enough to compare two colors
+     */
+    private static int brightness(BufferedImage image, int x, int y) {
+        int rgb = rgb(image, x, y);
+        return (rgb >> 16) + ((rgb >> 8) & 0xFF) + (rgb & 0xFF);
+    }
+
+    /**
+     * @return the row of the brightest pixel in a column, the lowest one if many rows show the same bin
+     */
+    private static int brightestRow(BufferedImage image, int x) {
+        int best = image.getHeight() - 1;
+        for (int y = best - 1; y >= 0; y--) {
+            if (brightness(image, x, y) > brightness(image, x, best)) {
+                best = y;
+            }
+        }
+        return best;
+    }
+
+    @Test
+    void linearAxisOneRowPerBin() {
+        int nbBins = 64;
+        SpectrogramRenderer renderer = new SpectrogramRenderer(nbBins, nbBins, nbBins, nbBins, MIN_DB, 0, FrequencyScale.LINEAR, SpectrogramPooling.MAX);
+        // frame f lights the bin f: a diagonal from bottom left to top right
+        for (int f = 0; f < nbBins; f++) {
+            double[] frame = silentFrame(nbBins);
+            frame[f] = 0;
+            renderer.addFrame(frame, nbBins);
+        }
+        BufferedImage image = renderer.render(1);
+        for (int x = 0; x < nbBins; x++) {
+            for (int y = 0; y < nbBins; y++) {
+                assertEquals(y == nbBins - 1 - x ? YELLOW : BLACK, rgb(image, x, y), "pixel %d,%d".formatted(x, y));
+            }
+        }
+    }
+
+    @Test
+    void logAxisGivesMoreRowsToLowFrequencies() throws IOException {
+        int windowSize = 2048;
+        PCMBufferFormat format = new PCMBufferFormat(1, windowSize * 1000, BitDepth.BIT_DEPTH_16, 1, PCMEncoding.SIGNED, ByteOrder.LITTLE_ENDIAN);
+        int nbBins = windowSize / 2;
+        int height = 256;
+        int nbFrames = 40;
+        // the magnitudes are not normalized, a high maximum avoids saturated pixels
+        double maxDb = 80;
+        SpectrogramRenderer linear = new SpectrogramRenderer(nbFrames, height, nbBins, nbFrames, MIN_DB, maxDb, FrequencyScale.LINEAR, SpectrogramPooling.MAX);
+        SpectrogramRenderer log = new SpectrogramRenderer(nbFrames, height, nbBins, nbFrames, MIN_DB, maxDb, FrequencyScale.LOGARITHMIC, SpectrogramPooling.MAX);
+        JavaFFTCalculator fft = new JavaFFTCalculator(format, new BlackmanHarris(), (channel, spectrum) -> {
+            linear.onSpectrum(channel, spectrum);
+            log.onSpectrum(channel, spectrum);
+        });
+        // one octave per 10 frames: bins 8, 16, 32, 64
+        double[][] samples = new double[1][windowSize];
+        for (int f = 0; f < nbFrames; f++) {
+            int bin = 8 << (f / 10);
+            for (int s = 0; s < windowSize; s++) {
+                samples[0][s] = 0.5 * Math.sin(2 * Math.PI * bin * s / windowSize);
+            }
+            fft.onBuffer(new SampleBuffer(samples, 0, windowSize, 1));
+        }
+        assertEquals(nbFrames, linear.getFrame());
+        BufferedImage linearImage = linear.render();
+        BufferedImage logImage = log.render();
+        new File("target").mkdirs();
+        log.save(new File("target/spectrogram-log.png"));
+        for (int octave = 0; octave < 4; octave++) {
+            int bin = 8 << octave;
+            int x = octave * 10 + 5;
+            assertEquals(height - 1 - bin * height / nbBins, brightestRow(linearImage, x), 1);
+            // first row showing this bin, counted from the bottom
+            int expectedLogRow = height - 1 - (int) Math.ceil(Math.log(bin) / Math.log(nbBins) * height);
+            assertEquals(expectedLogRow, brightestRow(logImage, x));
+        }
+        // the octaves are evenly spaced on the log axis
+        int octave1 = brightestRow(logImage, 15) - brightestRow(logImage, 5);
+        int octave3 = brightestRow(logImage, 35) - brightestRow(logImage, 25);
+        assertEquals(octave1, octave3, 1);
+    }
+
+    @Test
+    void poolingManyFramesPerColumn() {
+        int nbBins = 16;
+        int nbFrames = 100_000;
+        SpectrogramRenderer max = new SpectrogramRenderer(100, nbBins, nbBins, nbFrames, MIN_DB, 0, FrequencyScale.LINEAR, SpectrogramPooling.MAX);
+        SpectrogramRenderer mean = new SpectrogramRenderer(100, nbBins, nbBins, nbFrames, MIN_DB, 0, FrequencyScale.LINEAR, SpectrogramPooling.MEAN);
+        double[] silence = silentFrame(nbBins);
+        double[] click = new double[nbBins];
+        for (int f = 0; f < nbFrames; f++) {
+            // a single loud frame in the column 50
+            double[] frame = f == 50_000 ? click : silence;
+            max.addFrame(frame, nbBins);
+            mean.addFrame(frame, nbBins);
+        }
+        BufferedImage maxImage = max.render();
+        BufferedImage meanImage = mean.render();
+        // the mean of the power: one frame at 0 dB among 1000 reads -30 dB
+        int expectedMean = colorOf(-30);
+        for (int y = 0; y < nbBins; y++) {
+            assertEquals(YELLOW, rgb(maxImage, 50, y));
+            assertEquals(BLACK, rgb(maxImage, 49, y));
+            assertColor(expectedMean, rgb(meanImage, 50, y));
+            assertEquals(BLACK, rgb(meanImage, 49, y));
+        }
+    }
+
+    @Test
+    void meanPoolingAveragesThePower() {
+        // two bins per row, one at 0 dB, the other silent: half the power is -3 dB, not the mean of the dB values
+        SpectrogramRenderer mean = new SpectrogramRenderer(1, 1, 2, 1, MIN_DB, 0, FrequencyScale.LINEAR, SpectrogramPooling.MEAN);
+        mean.addFrame(new double[]{0, MIN_DB}, 2);
+        assertColor(colorOf(10 * Math.log10(0.5 + Math.pow(10, MIN_DB / 10) / 2)), rgb(mean.render(), 0, 0));
+    }
+
+    /**
+     * The pixels are pooled in float, allow a rounding error on each component
+     */
+    private static void assertColor(int expected, int actual) {
+        for (int shift = 0; shift <= 16; shift += 8) {
+            assertEquals((expected >> shift) & 0xFF, (actual >> shift) & 0xFF, 1, "expected %06X got %06X".formatted(expected, actual));
+        }
+    }
+
+    private static int colorOf(double db) {
+        return GradientGenerator.fftGradient()
+                .interpolate((db - MIN_DB) / -MIN_DB * 100)
+                .toRGB24();
+    }
+
+    @Test
+    void fewFramesAreStretched() {
+        int nbBins = 32;
+        SpectrogramRenderer renderer = new SpectrogramRenderer(300, 100, nbBins, 3, MIN_DB, 0, FrequencyScale.LINEAR, SpectrogramPooling.MEAN);
+        renderer.addFrame(new double[nbBins], nbBins);
+        renderer.addFrame(silentFrame(nbBins), nbBins);
+        // partial window: only the low half of the spectrum
+        renderer.addFrame(new double[nbBins / 2], nbBins / 2);
+        BufferedImage single = renderer.render(1);
+        BufferedImage parallel = renderer.render(8);
+        for (int x = 0; x < 300; x++) {
+            for (int y = 0; y < 100; y++) {
+                int expected = x < 100 || (x >= 200 && y >= 50) ? YELLOW : BLACK;
+                assertEquals(expected, rgb(single, x, y), "pixel %d,%d".formatted(x, y));
+                assertEquals(rgb(single, x, y), rgb(parallel, x, y));
+            }
+        }
+    }
+}
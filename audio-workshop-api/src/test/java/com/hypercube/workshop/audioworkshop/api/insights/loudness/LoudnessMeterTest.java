@@ -0,0 +1,110 @@
+package com.hypercube.workshop.audioworkshop.api.insights.loudness;
+
+import com.hypercube.workshop.audioworkshop.api.consumer.FloatSampleBuffer;
+import com.hypercube.workshop.audioworkshop.api.consumer.SampleBuffer;
+import com.hypercube.workshop.audioworkshop.api.consumer.SampleBufferConsumer;
+import com.hypercube.workshop.audioworkshop.api.insights.peak.PeakCalculator;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Test signals from EBU Tech 3341 and 3342: stereo sines at 1 kHz
+ */
+class LoudnessMeterTest {
+    private static final int SAMPLE_RATE = 48000;
+    private static final int BUFFER_SIZE = 1000;
+
+    /**
+     * Stream a stereo sine made of segments, each one with its own level in dBFS and duration in seconds
+     */
+    private static void playSine(SampleBufferConsumer consumer, double frequency, double[] levels, double[] durations) {
+        double[][] samples = new double[2][BUFFER_SIZE];
+        long position = 0;
+        consumer.reset();
+        for (int segment = 0; segment < levels.length; segment++) {
+            double amplitude = Math.pow(10, levels[segment] / 20);
+            long end = position + (long) (durations[segment] * SAMPLE_RATE);
+            while (position < end) {
+                int count = (int) Math.min(BUFFER_SIZE, end - position);
+                for (int s = 0; s < count; s++) {
+                    double value = amplitude * Math.sin(2 * Math.PI * frequency * (position + s) / SAMPLE_RATE);
+                    samples[0][s] = value;
+                    samples[1][s] = value;
+                }
+                consumer.onBuffer(new SampleBuffer(samples, 0, count, 2));
+                position += count;
+            }
+        }
+    }
+
+    @Test
+    void steadySine() {
+        LoudnessMeter meter = new LoudnessMeter(SAMPLE_RATE, 2);
+        playSine(meter, 1000, new double[]{-23}, new double[]{20});
+        assertEquals(-23, meter.getMomentaryLoudness(), 0.1);
+        assertEquals(-23, meter.getShortTermLoudness(), 0.1);
+        assertEquals(-23, meter.getIntegratedLoudness(), 0.1);
+        assertEquals(0, meter.getLoudnessRange(), 0.2);
+        assertEquals(2, meter.getNormalizationGain(-21), 0.1);
+
+        // same result after a reset, in float mode
+        float[][] samples = new float[2][SAMPLE_RATE];
+        double amplitude = Math.pow(10, -23 / 20.0);
+        meter.reset();
+        for (int second = 0; second < 20; second++) {
+            for (int s = 0; s < SAMPLE_RATE; s++) {
+                samples[0][s] = (float) (amplitude * Math.sin(2 * Math.PI * 1000 * s / SAMPLE_RATE));
+                samples[1][s] = samples[0][s];
+            }
+            meter.onBuffer(new FloatSampleBuffer(samples, 0, SAMPLE_RATE, 2));
+        }
+        assertEquals(-23, meter.getIntegratedLoudness(), 0.1);
+    }
+
+    @Test
+    void gatingIgnoresQuietParts() {
+        LoudnessMeter meter = new LoudnessMeter(SAMPLE_RATE, 2);
+        playSine(meter, 1000, new double[]{-36, -23, -36}, new double[]{10, 60, 10});
+        assertEquals(-23, meter.getIntegratedLoudness(), 0.1);
+        // silence is below the absolute gate
+        playSine(meter, 1000, new double[]{-23, -200, -23}, new double[]{10, 20, 10});
+        assertEquals(-23, meter.getIntegratedLoudness(), 0.1);
+        assertEquals(-23, meter.getMaxShortTermLoudness(), 0.1);
+    }
+
+    @Test
+    void loudnessRange() {
+        LoudnessMeter meter = new LoudnessMeter(SAMPLE_RATE, 2);
+        playSine(meter, 1000, new double[]{-20, -30}, new double[]{20, 20});
+        assertEquals(10, meter.getLoudnessRange(), 1);
+        playSine(meter, 1000, new double[]{-20, -15}, new double[]{20, 20});
+        assertEquals(5, meter.getLoudnessRange(), 1);
+        // beyond the relative gate of -20 LU
+        playSine(meter, 1000, new double[]{-50, -35, -20, -35, -50}, new double[]{20, 20, 20, 20, 20});
+        assertEquals(15, meter.getLoudnessRange(), 1);
+    }
+
+    @Test
+    void truePeakBetweenSamples() {
+        TruePeakMeter truePeak = new TruePeakMeter(2);
+        PeakCalculator samplePeak = new PeakCalculator();
+        double[][] samples = new double[2][SAMPLE_RATE];
+        for (int s = 0; s < SAMPLE_RATE; s++) {
+            // a quarter of the sample rate, with a phase of 45 degrees: all samples are at +/-0.707
+            samples[0][s] = Math.sin(Math.PI / 2 * s + Math.PI / 4);
+            samples[1][s] = 0.5 * Math.sin(2 * Math.PI * 1000 * s / SAMPLE_RATE);
+        }
+        truePeak.reset();
+        samplePeak.reset();
+        // odd buffer sizes, the history must follow
+        for (int s = 0; s < SAMPLE_RATE; s += 997) {
+            SampleBuffer buffer = new SampleBuffer(samples, s, Math.min(SAMPLE_RATE, s + 997), 2);
+            truePeak.onBuffer(buffer);
+            samplePeak.onBuffer(buffer);
+        }
+        assertEquals(-3.01, samplePeak.getSamplePeakDb(), 0.01);
+        assertEquals(0, truePeak.getTruePeakDb(), 0.1);
+        assertEquals(0.5, truePeak.getTruePeak(1), 0.005);
+    }
+}
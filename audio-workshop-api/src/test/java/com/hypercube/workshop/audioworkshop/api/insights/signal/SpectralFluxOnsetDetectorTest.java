@@ -0,0 +1,199 @@
+package com.hypercube.workshop.audioworkshop.api.insights.signal;
+
+import com.hypercube.workshop.audioworkshop.api.consumer.SampleBuffer;
+import com.hypercube.workshop.audioworkshop.api.consumer.SampleBufferConsumer;
+import com.hypercube.workshop.audioworkshop.api.format.PCMFormat;
+import com.hypercube.workshop.audioworkshop.api.pcm.BitDepth;
+import com.hypercube.workshop.audioworkshop.api.pcm.PCMEncoding;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Synthetic notes over a noise floor, the true onsets are known to the sample
+ * <p>The latency is the number of samples received when the onset is reported, minus the true onset. The error is the
+ * reported onset minus the true one. {@link SignalStartDetector} and {@link SignalSegmentsDetector} are measured on the same
+ * signals for comparison.</p>
+ */
+@Slf4j
+class SpectralFluxOnsetDetectorTest {
+    private static final int SAMPLE_RATE = 48000;
+    private static final PCMFormat FORMAT = new PCMFormat(SAMPLE_RATE, BitDepth.BIT_DEPTH_16, 2, PCMEncoding.SIGNED, ByteOrder.LITTLE_ENDIAN);
+    /**
+     * 10 ms, a usual capture buffer
+     */
+    private static final int BUFFER_SIZE = 480;
+    private static final int ONE_MS = SAMPLE_RATE / 1000;
+
+    private record Onset(long position, long detectedAt, boolean refined) {
+    }
+
+    private static double[][] noise(int nbSamples, double levelDb, long seed) {
+        double[][] samples = new double[2][nbSamples];
+        double amplitude = Math.pow(10, levelDb / 20);
+        Random random = new Random(seed);
+        for (int s = 0; s < nbSamples; s++) {
+            samples[0][s] = random.nextGaussian() * amplitude;
+            samples[1][s] = random.nextGaussian() * amplitude;
+        }
+        return samples;
+    }
+
+    /**
+     * Add a decaying sine until the end, with a linear attack of attackSize samples
+     * <p>The note is not cut, a cut would be an onset too</p>
+     */
+    private static void addNote(double[][] samples, int start, double frequency, double levelDb, int attackSize) {
+        double amplitude = Math.pow(10, levelDb / 20);
+        for (int s = start; s < samples[0].length; s++) {
+            int t = s - start;
+            double envelope = amplitude * Math.exp(-t / (0.1 * SAMPLE_RATE)) * Math.min(1, (t + 1) / (double) attackSize);
+            double value = envelope * Math.sin(2 * Math.PI * frequency * t / SAMPLE_RATE);
+            samples[0][s] += value;
+            samples[1][s] += value;
+        }
+    }
+
+    private static void play(SampleBufferConsumer consumer, double[][] samples, int bufferSize) {
+        consumer.reset();
+        for (int s = 0; s < samples[0].length; s += bufferSize) {
+            consumer.onBuffer(new SampleBuffer(samples, s, Math.min(samples[0].length, s + bufferSize), 2));
+        }
+    }
+
+    private static List<Onset> detectOnsets(double[][] samples, int bufferSize) {
+        List<Onset> onsets = new ArrayList<>();
+        SpectralFluxOnsetDetector[] detector = new SpectralFluxOnsetDetector[1];
+        detector[0] = new SpectralFluxOnsetDetector(FORMAT, (position, strength) -> onsets.add(new Onset(position, detector[0].getPosition(), detector[0].isLastOnsetRefined())));
+        play(detector[0], samples, bufferSize);
+        return onsets;
+    }
+
+    /**
+     * {@link SignalStartDetector} finds only the first onset, it has to be reset by the caller
+     */
+    private static long signalStart(double[][] samples) {
+        SignalStartDetector detector = new SignalStartDetector(FORMAT);
+        play(detector, samples, BUFFER_SIZE);
+        return detector.isInSignal() ? detector.getSignalStart() : -1;
+    }
+
+    private static List<Long> segmentStarts(double[][] samples) {
+        SignalSegmentsDetector detector = new SignalSegmentsDetector(FORMAT, -60);
+        play(detector, samples, BUFFER_SIZE);
+        return detector.getSegments()
+                .stream()
+                .filter(segment -> segment.getType() == SignalSegmentType.SIGNAL)
+                .map(segment -> (long) segment.getSampleStart())
+                .toList();
+    }
+
+    @Test
+    void sharpOnsets() {
+        int[] starts = {24_011, 60_333, 101_777, 150_050, 190_123, 240_999};
+        double[] frequencies = {110, 440, 1000, 3000, 261.6, 7000};
+        double[][] samples = noise(300_000, -80, 1);
+        for (int n = 0; n < starts.length; n++) {
+            addNote(samples, starts[n], frequencies[n], -6, 1);
+        }
+        List<Long> segments = segmentStarts(samples);
+        for (int bufferSize : new int[]{BUFFER_SIZE, 1, 4800}) {
+            List<Onset> onsets = detectOnsets(samples, bufferSize);
+            assertEquals(starts.length, onsets.size(), "buffer size " + bufferSize);
+            for (int n = 0; n < starts.length; n++) {
+                Onset onset = onsets.get(n);
+                long error = onset.position() - starts[n];
+                long latency = onset.detectedAt() - starts[n];
+                assertTrue(Math.abs(error) <= ONE_MS, "note %d error %d".formatted(n, error));
+                assertTrue(onset.refined(), "note %d not refined".formatted(n));
+                assertTrue(latency >= 0 && latency <= 10 * ONE_MS, "note %d latency %d".formatted(n, latency));
+                if (bufferSize == BUFFER_SIZE) {
+                    long segmentError = segments.size() > n ? segments.get(n) - starts[n] : Long.MAX_VALUE;
+                    log.info("Note {} at {}: flux error {} latency {} samples, segments error {} samples", n, starts[n], error, latency, segmentError);
+                }
+            }
+        }
+        // only the first note for the energy threshold
+        log.info("SignalStartDetector error {} samples", signalStart(samples) - starts[0]);
+    }
+
+    @Test
+    void softAndSlowOnsets() {
+        // -46 dBFS is below the threshold of SignalStartDetector
+        double[][] soft = noise(48_000, -80, 2);
+        addNote(soft, 20_000, 800, -46, 1);
+        List<Onset> onsets = detectOnsets(soft, BUFFER_SIZE);
+        assertEquals(1, onsets.size());
+        assertTrue(Math.abs(onsets.get(0)
+                .position() - 20_000) <= ONE_MS, "soft onset at " + onsets.get(0)
+                .position());
+        assertEquals(-1, signalStart(soft));
+
+        // 5 ms linear attack: the onset is found in the attack
+        double[][] slow = noise(48_000, -80, 3);
+        addNote(slow, 20_000, 200, -6, 5 * ONE_MS);
+        onsets = detectOnsets(slow, BUFFER_SIZE);
+        assertEquals(1, onsets.size());
+        long error = onsets.get(0)
+                .position() - 20_000;
+        assertTrue(error >= 0 && error <= 5 * ONE_MS, "slow attack error " + error);
+        log.info("5 ms attack: flux error {} samples, latency {} samples, SignalStartDetector error {} samples", error,
+                onsets.get(0)
+                        .detectedAt() - 20_000, signalStart(slow) - 20_000);
+    }
+
+    @Test
+    void pitchChange() {
+        // legato: same level, the frequency changes without phase jump, invisible for the energy detectors
+        double[][] samples = noise(96_000, -80, 4);
+        double phase = 0;
+        for (int s = 10_000; s < 96_000; s++) {
+            phase += 2 * Math.PI * (s < 50_000 ? 440 : 660) / SAMPLE_RATE;
+            samples[0][s] += 0.3 * Math.sin(phase);
+            samples[1][s] += 0.3 * Math.sin(phase);
+        }
+        List<Onset> onsets = detectOnsets(samples, BUFFER_SIZE);
+        assertEquals(2, onsets.size());
+        assertTrue(Math.abs(onsets.get(0)
+                .position() - 10_000) <= ONE_MS);
+        assertTrue(onsets.get(0)
+                .refined());
+        // nothing stands out in the energy: the center of the window
+        assertFalse(onsets.get(1)
+                .refined());
+        long error = onsets.get(1)
+                .position() - 50_000;
+        assertTrue(Math.abs(error) <= SpectralFluxOnsetDetector.DEFAULT_WINDOW_SIZE / 2, "pitch change error " + error);
+        log.info("Pitch change: flux error {} samples, latency {} samples, segments found {}", error, onsets.get(1)
+                .detectedAt() - 50_000, segmentStarts(samples).size());
+    }
+
+    @Test
+    void noOnsetInNoiseOrSteadyTone() {
+        for (double levelDb : new double[]{-90, -60, -30}) {
+            double[][] samples = noise(5 * SAMPLE_RATE, levelDb, 5);
+            assertTrue(detectOnsets(samples, BUFFER_SIZE).isEmpty(), "noise at %f dB".formatted(levelDb));
+        }
+        // a tone already playing, over noise
+        double[][] samples = noise(5 * SAMPLE_RATE, -70, 6);
+        for (int s = 0; s < samples[0].length; s++) {
+            samples[0][s] += 0.25 * Math.sin(2 * Math.PI * 1000 * s / SAMPLE_RATE);
+            samples[1][s] += 0.25 * Math.sin(2 * Math.PI * 1000 * s / SAMPLE_RATE);
+        }
+        // the tone is already there when the detection starts
+        assertTrue(detectOnsets(samples, BUFFER_SIZE).isEmpty());
+
+        SpectralFluxOnsetDetector detector = new SpectralFluxOnsetDetector(FORMAT, (position, strength) -> {
+        });
+        play(detector, noise(SAMPLE_RATE, -60, 7), BUFFER_SIZE);
+        assertFalse(detector.hasOnset());
+    }
+}
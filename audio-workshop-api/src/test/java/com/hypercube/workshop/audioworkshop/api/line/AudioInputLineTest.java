@@ -0,0 +1,69 @@
+package com.hypercube.workshop.audioworkshop.api.line;
+
+import com.hypercube.workshop.audioworkshop.api.consumer.SampleBuffer;
+import com.hypercube.workshop.audioworkshop.api.format.PCMBufferFormat;
+import com.hypercube.workshop.audioworkshop.api.pcm.BitDepth;
+import com.hypercube.workshop.audioworkshop.api.pcm.PCMEncoding;
+import org.junit.jupiter.api.Test;
+
+import javax.sound.sampled.LineUnavailableException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteOrder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AudioInputLineTest {
+    private static final PCMBufferFormat FORMAT = new PCMBufferFormat(1, 44100, BitDepth.BIT_DEPTH_16, 2, PCMEncoding.SIGNED, ByteOrder.LITTLE_ENDIAN);
+
+    private final com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private long record(int nbBuffers, SampleBuffer[] lastBuffer) throws LineUnavailableException {
+        AudioInputLine line = new AudioInputLine(null, FORMAT, new SyntheticTargetDataLine(nbBuffers));
+        long threadId = Thread.currentThread()
+                .threadId();
+        long before = threadMXBean.getCurrentThreadAllocatedBytes();
+        line.record((buffer, pcmBuffer, pcmSize) -> {
+            if (lastBuffer[0] != null) {
+                assertSame(lastBuffer[0], buffer);
+            }
+            lastBuffer[0] = buffer;
+            return true;
+        });
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+        assertEquals(nbBuffers, line.getTimingHistogram()
+                .getNbBuffers());
+        return allocated;
+    }
+
+    @Test
+    void recordDoesNotAllocatePerBuffer() throws LineUnavailableException {
+        // warmup, so the JIT compile the capture loop and the PCM converter
+        record(50_000, new SampleBuffer[1]);
+
+        // the setup of a recording allocates a constant amount of memory whatever the number of buffers
+        long allocatedSmall = record(1_000, new SampleBuffer[1]);
+        long allocatedLarge = record(100_000, new SampleBuffer[1]);
+        long allocatedPerBuffer = (allocatedLarge - allocatedSmall) / 99_000;
+        assertTrue(allocatedPerBuffer == 0, "Capture loop allocates %d bytes per buffer".formatted(allocatedPerBuffer));
+    }
+
+    @Test
+    void timingHistogram() {
+        BufferTimingHistogram histogram = new BufferTimingHistogram();
+        long budget = 1_000_000;
+        histogram.record(budget / 20, budget);
+        histogram.record(budget / 2, budget);
+        histogram.record(budget * 3 / 2, budget);
+        histogram.record(budget * 50, budget);
+        assertEquals(4, histogram.getNbBuffers());
+        assertEquals(2, histogram.getOverruns());
+        assertEquals(1, histogram.getBucket(0));
+        assertEquals(1, histogram.getBucket(5));
+        assertEquals(1, histogram.getBucket(15));
+        assertEquals(1, histogram.getBucket(BufferTimingHistogram.NB_BUCKETS - 1));
+        assertEquals(60, histogram.getPercentile(50));
+        assertEquals(budget * 50, histogram.getMaxElapsedNanos());
+    }
+}
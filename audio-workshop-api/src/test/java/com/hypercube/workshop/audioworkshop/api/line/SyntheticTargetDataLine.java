@@ -0,0 +1,157 @@
+package com.hypercube.workshop.audioworkshop.api.line;
+
+import javax.sound.sampled.*;
+
+/**
+ * In memory {@link TargetDataLine} delivering a 16 bits sawtooth without any allocation
+ * <p>The line returns 0 (end of recording) after {@link #nbBuffers} reads.</p>
+ */
+class SyntheticTargetDataLine implements TargetDataLine {
+    private final int nbBuffers;
+    private AudioFormat format;
+    private int bufferSize;
+    private int nbBuffersRead;
+    private boolean open;
+    private boolean running;
+    private short value;
+
+    SyntheticTargetDataLine(int nbBuffers) {
+        this.nbBuffers = nbBuffers;
+    }
+
+    @Override
+    public void open(AudioFormat format, int bufferSize) {
+        this.format = format;
+        this.bufferSize = bufferSize;
+        this.open = true;
+    }
+
+    @Override
+    public void open(AudioFormat format) {
+        open(format, AudioSystem.NOT_SPECIFIED);
+    }
+
+    @Override
+    public void open() {
+        open = true;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (nbBuffersRead++ >= nbBuffers) {
+            return 0;
+        }
+        boolean bigEndian = format.isBigEndian();
+        for (int i = off; i + 1 < off + len; i += 2) {
+            value += 64;
+            b[i] = (byte) (bigEndian ? value >> 8 : value);
+            b[i + 1] = (byte) (bigEndian ? value : value >> 8);
+        }
+        return len;
+    }
+
+    @Override
+    public void drain() {
+        // nothing to drain
+    }
+
+    @Override
+    public void flush() {
+        // nothing to flush
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public boolean isActive() {
+        return running;
+    }
+
+    @Override
+    public AudioFormat getFormat() {
+        return format;
+    }
+
+    @Override
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    @Override
+    public int available() {
+        return bufferSize;
+    }
+
+    @Override
+    public int getFramePosition() {
+        return (int) getLongFramePosition();
+    }
+
+    @Override
+    public long getLongFramePosition() {
+        return (long) nbBuffersRead * bufferSize / format.getFrameSize();
+    }
+
+    @Override
+    public long getMicrosecondPosition() {
+        return (long) (getLongFramePosition() * 1000000L / format.getFrameRate());
+    }
+
+    @Override
+    public float getLevel() {
+        return AudioSystem.NOT_SPECIFIED;
+    }
+
+    @Override
+    public Line.Info getLineInfo() {
+        return new Line.Info(TargetDataLine.class);
+    }
+
+    @Override
+    public void close() {
+        open = false;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public Control[] getControls() {
+        return new Control[0];
+    }
+
+    @Override
+    public boolean isControlSupported(Control.Type control) {
+        return false;
+    }
+
+    @Override
+    public Control getControl(Control.Type control) {
+        throw new IllegalArgumentException("Unsupported control: " + control);
+    }
+
+    @Override
+    public void addLineListener(LineListener listener) {
+        // no events
+    }
+
+    @Override
+    public void removeLineListener(LineListener listener) {
+        // no events
+    }
+}
@@ -2,12 +2,16 @@ package com.hypercube.workshop.audioworkshop.api.pcm;
 
 import com.hypercube.workshop.audioworkshop.api.format.PCMFormat;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.Random;
 import java.util.regex.Pattern;
 import java.util.stream.IntStream;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 public class PCMConverterTest {
@@ -29,6 +33,17 @@ public class PCMConverterTest {
         }
     }
 
+    double[][] widen(float[][] samples) {
+        double[][] result = new double[samples.length][];
+        for (int c = 0; c < samples.length; c++) {
+            result[c] = new double[samples[c].length];
+            for (int i = 0; i < samples[c].length; i++) {
+                result[c][i] = samples[c][i];
+            }
+        }
+        return result;
+    }
+
     void assertSameArrays(double[][] expected, double[][] actual) {
         assertEquals(expected.length, actual.length);
         for (int i = 0; i < expected.length; i++) {
@@ -84,6 +99,17 @@ public class PCMConverterTest {
     @Test
     void signed24BitsLE() {
         PCMFormat format = new PCMFormat(44100, BitDepth.BIT_DEPTH_24, MONO, PCMEncoding.SIGNED, ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer data = forgeInput(format, "000000 FFFF7F 000080 FFFFFF");
+        double[][] expected = new double[][]{new double[]{0, 0.9999998807907104, -1, -0.00000011920928955078125}};
+        double[][] output = new double[MONO][expected[0].length];
+        PCMConverter.getPCMtoSampleFunction(format)
+                .convert(data, output, expected[0].length, MONO);
+        assertSameArrays(expected, output);
+    }
+
+    @Test
+    void signed24BitsBE() {
+        PCMFormat format = new PCMFormat(44100, BitDepth.BIT_DEPTH_24, MONO, PCMEncoding.SIGNED, ByteOrder.BIG_ENDIAN);
         ByteBuffer data = forgeInput(format, "000000 7FFFFF 800000 FFFFFF");
         double[][] expected = new double[][]{new double[]{0, 0.9999998807907104, -1, -0.00000011920928955078125}};
         double[][] output = new double[MONO][expected[0].length];
@@ -139,7 +165,7 @@ public class PCMConverterTest {
     @Test
     void unsigned24BitsLE() {
         PCMFormat format = new PCMFormat(44100, BitDepth.BIT_DEPTH_24, MONO, PCMEncoding.UNSIGNED, ByteOrder.LITTLE_ENDIAN);
-        ByteBuffer data = forgeInput(format, "000000 7FFFFF 800000 FFFFFF");
+        ByteBuffer data = forgeInput(format, "000000 FFFF7F 000080 FFFFFF");
         double[][] expected = new double[][]{new double[]{-1, -0.00000011920928955078125, 0, 0.9999998807907104}};
         double[][] output = new double[MONO][expected[0].length];
         PCMConverter.getPCMtoSampleFunction(format)
@@ -147,6 +173,131 @@ public class PCMConverterTest {
         assertSameArrays(expected, output);
     }
 
+    /**
+     * Every encoding and bit depth can be decoded and encoded, in double and in float, for any channel count
+     */
+    @ParameterizedTest
+    @CsvSource({
+            "BIT_DEPTH_8,SIGNED", "BIT_DEPTH_8,UNSIGNED",
+            "BIT_DEPTH_16,SIGNED", "BIT_DEPTH_16,UNSIGNED",
+            "BIT_DEPTH_24,SIGNED", "BIT_DEPTH_24,UNSIGNED",
+            "BIT_DEPTH_32,SIGNED", "BIT_DEPTH_32,UNSIGNED"
+    })
+    void roundTrip(BitDepth bitDepth, PCMEncoding encoding) {
+        Random random = new Random(1234);
+        for (ByteOrder byteOrder : new ByteOrder[]{ByteOrder.LITTLE_ENDIAN, ByteOrder.BIG_ENDIAN}) {
+            for (int nbChannels = 1; nbChannels <= 6; nbChannels++) {
+                for (int nbSamples : new int[]{0, 1, 3, 17, 1024, 1031}) {
+                    PCMFormat format = new PCMFormat(44100, bitDepth, nbChannels, encoding, byteOrder);
+                    byte[] pcm = new byte[nbSamples * nbChannels * bitDepth.getBytes()];
+                    random.nextBytes(pcm);
+
+                    double[][] samples = new double[nbChannels][nbSamples];
+                    PCMConverter.getPCMtoSampleFunction(format)
+                            .convert(format.wrapPCMBuffer(pcm), samples, nbSamples, nbChannels);
+                    byte[] encoded = new byte[pcm.length];
+                    PCMConverter.getSampleToPCMFunction(format)
+                            .convert(samples, format.wrapPCMBuffer(encoded), nbSamples, nbChannels);
+                    // PCM => samples => PCM is lossless
+                    assertArrayEquals(pcm, encoded);
+
+                    float[][] floatSamples = new float[nbChannels][nbSamples];
+                    PCMConverter.getPCMtoFloatSampleFunction(format)
+                            .convert(format.wrapPCMBuffer(pcm), floatSamples, nbSamples, nbChannels);
+                    // up to 24 bits, float samples are exactly the double ones
+                    if (bitDepth != BitDepth.BIT_DEPTH_32) {
+                        assertSameArrays(samples, widen(floatSamples));
+                        byte[] floatEncoded = new byte[pcm.length];
+                        PCMConverter.getFloatSampleToPCMFunction(format)
+                                .convert(floatSamples, format.wrapPCMBuffer(floatEncoded), nbSamples, nbChannels);
+                        assertArrayEquals(encoded, floatEncoded);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Heap buffers go through {@link BulkPCMConverter}, direct ones through the scalar codecs: they must agree bit for bit
+     * <p>The heap buffer is a slice, so the bulk path has to honor the array offset.</p>
+     */
+    @ParameterizedTest
+    @CsvSource({
+            "BIT_DEPTH_8,SIGNED", "BIT_DEPTH_8,UNSIGNED",
+            "BIT_DEPTH_16,SIGNED", "BIT_DEPTH_16,UNSIGNED",
+            "BIT_DEPTH_24,SIGNED", "BIT_DEPTH_24,UNSIGNED",
+            "BIT_DEPTH_32,SIGNED", "BIT_DEPTH_32,UNSIGNED"
+    })
+    void bulkMatchesScalar(BitDepth bitDepth, PCMEncoding encoding) {
+        Random random = new Random(5678);
+        for (ByteOrder byteOrder : new ByteOrder[]{ByteOrder.LITTLE_ENDIAN, ByteOrder.BIG_ENDIAN}) {
+            for (int nbChannels = 1; nbChannels <= 6; nbChannels++) {
+                int nbSamples = 1031;
+                PCMFormat format = new PCMFormat(44100, bitDepth, nbChannels, encoding, byteOrder);
+                int size = nbSamples * nbChannels * bitDepth.getBytes();
+                byte[] pcm = new byte[size];
+                random.nextBytes(pcm);
+                ByteBuffer heap = heapSlice(pcm, byteOrder);
+                ByteBuffer direct = ByteBuffer.allocateDirect(size)
+                        .order(byteOrder)
+                        .put(pcm);
+
+                double[][] bulkSamples = new double[nbChannels][nbSamples];
+                double[][] scalarSamples = new double[nbChannels][nbSamples];
+                PCMConverter.getPCMtoSampleFunction(format)
+                        .convert(heap, bulkSamples, nbSamples, nbChannels);
+                PCMConverter.getPCMtoSampleFunction(format)
+                        .convert(direct, scalarSamples, nbSamples, nbChannels);
+                assertSameArrays(scalarSamples, bulkSamples);
+                assertEquals(direct.position(), heap.position());
+
+                float[][] bulkFloatSamples = new float[nbChannels][nbSamples];
+                float[][] scalarFloatSamples = new float[nbChannels][nbSamples];
+                PCMConverter.getPCMtoFloatSampleFunction(format)
+                        .convert(heap, bulkFloatSamples, nbSamples, nbChannels);
+                PCMConverter.getPCMtoFloatSampleFunction(format)
+                        .convert(direct, scalarFloatSamples, nbSamples, nbChannels);
+                assertSameArrays(widen(scalarFloatSamples), widen(bulkFloatSamples));
+
+                // out of range samples included, both paths must write the same bytes
+                double[][] samples = new double[nbChannels][nbSamples];
+                float[][] floatSamples = new float[nbChannels][nbSamples];
+                for (int c = 0; c < nbChannels; c++) {
+                    for (int s = 0; s < nbSamples; s++) {
+                        samples[c][s] = random.nextDouble() * 2.2 - 1.1;
+                        floatSamples[c][s] = (float) samples[c][s];
+                    }
+                }
+                PCMConverter.getSampleToPCMFunction(format)
+                        .convert(samples, heap, nbSamples, nbChannels);
+                PCMConverter.getSampleToPCMFunction(format)
+                        .convert(samples, direct, nbSamples, nbChannels);
+                assertArrayEquals(bytes(direct), bytes(heap));
+                assertEquals(direct.position(), heap.position());
+
+                PCMConverter.getFloatSampleToPCMFunction(format)
+                        .convert(floatSamples, heap, nbSamples, nbChannels);
+                PCMConverter.getFloatSampleToPCMFunction(format)
+                        .convert(floatSamples, direct, nbSamples, nbChannels);
+                assertArrayEquals(bytes(direct), bytes(heap));
+            }
+        }
+    }
+
+    private ByteBuffer heapSlice(byte[] pcm, ByteOrder byteOrder) {
+        byte[] padded = new byte[pcm.length + 7];
+        System.arraycopy(pcm, 0, padded, 5, pcm.length);
+        return ByteBuffer.wrap(padded, 5, pcm.length)
+                .slice()
+                .order(byteOrder);
+    }
+
+    private byte[] bytes(ByteBuffer buffer) {
+        byte[] result = new byte[buffer.capacity()];
+        buffer.get(0, result);
+        return result;
+    }
+
     private ByteBuffer forgeInput(PCMFormat format, String hexa) {
         Integer[] data = Pattern.compile("[0-9A-F]{2}\\s?")
                 .matcher(hexa)
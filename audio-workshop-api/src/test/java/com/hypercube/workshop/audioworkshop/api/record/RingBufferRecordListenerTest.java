@@ -0,0 +1,163 @@
+package com.hypercube.workshop.audioworkshop.api.record;
+
+import com.hypercube.workshop.audioworkshop.api.consumer.SampleBuffer;
+import com.hypercube.workshop.audioworkshop.api.errors.AudioError;
+import com.hypercube.workshop.audioworkshop.api.format.PCMBufferFormat;
+import com.hypercube.workshop.audioworkshop.api.pcm.BitDepth;
+import com.hypercube.workshop.audioworkshop.api.pcm.PCMEncoding;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RingBufferRecordListenerTest {
+    private static final PCMBufferFormat FORMAT = new PCMBufferFormat(1, 44100, BitDepth.BIT_DEPTH_16, 2, PCMEncoding.SIGNED, ByteOrder.LITTLE_ENDIAN);
+    private static final int CAPACITY = 8;
+
+    private final double[][] samples = FORMAT.allocateSampleBuffer();
+    private final byte[] pcm = FORMAT.allocatePcmBuffer();
+    private final SampleBuffer buffer = new SampleBuffer(samples, 0, FORMAT.getSampleBufferSize(), FORMAT.getNbChannels());
+
+    /**
+     * Each buffer is tagged with its sequence number in the first sample and the first PCM byte
+     */
+    private boolean produce(RingBufferRecordListener ringBuffer, int sequence) {
+        samples[0][0] = sequence;
+        samples[1][buffer.nbSamples() - 1] = -sequence;
+        pcm[0] = (byte) sequence;
+        return ringBuffer.onNewBuffer(buffer, pcm, pcm.length);
+    }
+
+    private RecordListener collectTo(List<Integer> received) {
+        return (b, pcmBuffer, pcmSize) -> {
+            int sequence = (int) b.sample(0, 0);
+            assertEquals(-sequence, b.sample(1, b.nbSamples() - 1));
+            assertEquals((byte) sequence, pcmBuffer[0]);
+            assertEquals(pcm.length, pcmSize);
+            received.add(sequence);
+            return true;
+        };
+    }
+
+    @Test
+    void blockKeepsEveryBufferInOrder() {
+        List<Integer> received = new ArrayList<>();
+        RecordListener collector = collectTo(received);
+        int nbBuffers = 1000;
+        try (RingBufferRecordListener ringBuffer = new RingBufferRecordListener(FORMAT, CAPACITY, BackPressurePolicy.BLOCK, (b, pcmBuffer, pcmSize) -> {
+            if (b.sample(0, 0) % 100 == 0) {
+                // slow consumer from time to time
+                sleep(5);
+            }
+            return collector.onNewBuffer(b, pcmBuffer, pcmSize);
+        })) {
+            ringBuffer.start();
+            for (int i = 0; i < nbBuffers; i++) {
+                assertTrue(produce(ringBuffer, i));
+            }
+        }
+        assertEquals(nbBuffers, received.size());
+        for (int i = 0; i < nbBuffers; i++) {
+            assertEquals(i, (int) received.get(i));
+        }
+    }
+
+    @Test
+    void dropOldest() {
+        List<Integer> received = new ArrayList<>();
+        RingBufferRecordListener ringBuffer = new RingBufferRecordListener(FORMAT, CAPACITY, BackPressurePolicy.DROP_OLDEST, collectTo(received));
+        // the consumer is not started yet, so the ring overflows
+        for (int i = 0; i < CAPACITY + 5; i++) {
+            assertTrue(produce(ringBuffer, i));
+        }
+        assertEquals(5, ringBuffer.getOverruns());
+        assertEquals(CAPACITY, ringBuffer.getPending());
+        ringBuffer.start();
+        ringBuffer.close();
+        assertEquals(CAPACITY, received.size());
+        for (int i = 0; i < CAPACITY; i++) {
+            assertEquals(i + 5, (int) received.get(i));
+        }
+        assertEquals(CAPACITY, ringBuffer.getConsumed());
+    }
+
+    /**
+     * The capture thread wraps around the ring many times while the consumer holds a slot, the slot must not change under it
+     */
+    @Test
+    void dropOldestWithSlowConsumer() {
+        List<Integer> received = new ArrayList<>();
+        RecordListener collector = collectTo(received);
+        int nbBuffers = 2000;
+        RingBufferRecordListener ringBuffer = new RingBufferRecordListener(FORMAT, 2, BackPressurePolicy.DROP_OLDEST, (b, pcmBuffer, pcmSize) -> {
+            int sequence = (int) b.sample(0, 0);
+            sleep(1);
+            assertEquals(sequence, (int) b.sample(0, 0), "The slot was overwritten while the consumer was reading it");
+            return collector.onNewBuffer(b, pcmBuffer, pcmSize);
+        });
+        ringBuffer.start();
+        for (int i = 0; i < nbBuffers; i++) {
+            assertTrue(produce(ringBuffer, i));
+            LockSupport.parkNanos(20_000);
+        }
+        ringBuffer.close();
+        assertTrue(ringBuffer.getOverruns() > 0);
+        assertEquals(received.size(), ringBuffer.getConsumed());
+        for (int i = 1; i < received.size(); i++) {
+            assertTrue(received.get(i) > received.get(i - 1));
+        }
+        assertEquals(nbBuffers - 1, (int) received.get(received.size() - 1));
+    }
+
+    @Test
+    void fail() {
+        RingBufferRecordListener ringBuffer = new RingBufferRecordListener(FORMAT, CAPACITY, BackPressurePolicy.FAIL, collectTo(new ArrayList<>()));
+        for (int i = 0; i < CAPACITY; i++) {
+            assertTrue(produce(ringBuffer, i));
+        }
+        assertThrows(AudioError.class, () -> produce(ringBuffer, CAPACITY));
+        assertEquals(1, ringBuffer.getOverruns());
+        assertFalse(produce(ringBuffer, CAPACITY + 1));
+    }
+
+    @Test
+    void consumerStopsTheRecording() {
+        List<Integer> received = new ArrayList<>();
+        RecordListener collector = collectTo(received);
+        try (RingBufferRecordListener ringBuffer = new RingBufferRecordListener(FORMAT, CAPACITY, BackPressurePolicy.BLOCK,
+                (b, pcmBuffer, pcmSize) -> collector.onNewBuffer(b, pcmBuffer, pcmSize) && received.size() < 3)) {
+            ringBuffer.start();
+            int i = 0;
+            while (produce(ringBuffer, i)) {
+                i++;
+                assertTrue(i < 10_000, "The recording should have been stopped");
+                sleep(1);
+            }
+        }
+        assertEquals(List.of(0, 1, 2), received);
+    }
+
+    @Test
+    void consumerErrorIsRethrown() {
+        RingBufferRecordListener ringBuffer = new RingBufferRecordListener(FORMAT, CAPACITY, BackPressurePolicy.BLOCK, (b, pcmBuffer, pcmSize) -> {
+            throw new IllegalStateException("boom");
+        });
+        ringBuffer.start();
+        produce(ringBuffer, 0);
+        IllegalStateException e = assertThrows(IllegalStateException.class, ringBuffer::close);
+        assertEquals("boom", e.getMessage());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                    .interrupt();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.hypercube.workshop.audioworkshop.files.flac;
+
+import com.hypercube.workshop.audioworkshop.api.consumer.SampleBuffer;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+class FlacDecoderTest {
+    private static final File FOLDER = new File("target/flac-decoder");
+
+    /**
+     * Decode a range of samples and check them against the source, sample by sample
+     *
+     * @return how many samples were decoded
+     */
+    private static long decodeAndCompare(FlacDecoder decoder, int[][] expected, int bitsPerSample, long from, long nbSamples) throws IOException {
+        double scale = 1L << (bitsPerSample - 1);
+        long[] position = {from};
+        decoder.decode(from, nbSamples, (SampleBuffer buffer) -> {
+            assertEquals(expected.length, buffer.nbChannels());
+            for (int s = 0; s < buffer.nbSamples(); s++) {
+                for (int c = 0; c < buffer.nbChannels(); c++) {
+                    int sample = (int) (buffer.sample(c, s) * scale);
+                    assertEquals(expected[c][(int) position[0]], sample, "channel %d sample %d".formatted(c, position[0]));
+                }
+                position[0]++;
+            }
+        });
+        return position[0] - from;
+    }
+
+    @Test
+    void crcReferenceValues() {
+        byte[] check = "123456789".getBytes(StandardCharsets.US_ASCII);
+        assertEquals(0xF4, FlacCrc.crc8(check, 0, check.length));
+        assertEquals(0xFEE8, FlacCrc.crc16(check, 0, check.length));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "16,2,4096,false",
+            "16,2,1152,true",
+            "24,2,4608,false",
+            "8,1,192,false",
+            "16,1,576,true",
+            "24,6,2048,false",
+            "20,3,1000,true"
+    })
+    void roundTrip(int bitsPerSample, int nbChannels, int blockSize, boolean variableBlockSize) throws IOException {
+        File file = new File(FOLDER, "round-trip-%d-%d-%d-%s.flac".formatted(bitsPerSample, nbChannels, blockSize, variableBlockSize));
+        int nbSamples = 44100 * 2 + 17;
+        int[][] signal = FlacTestFileWriter.createSignal(nbChannels, nbSamples, bitsPerSample);
+        new FlacTestFileWriter(44100, bitsPerSample, blockSize, variableBlockSize, 0).write(file, signal);
+
+        try (FlacDecoder decoder = new FlacDecoder(file)) {
+            FlacAudioInfo info = decoder.getInfo();
+            assertEquals(nbChannels, info.getNumChannels());
+            assertEquals(bitsPerSample, info.getBitDepth());
+            assertEquals(nbSamples, info.getNbSamples());
+            assertEquals(nbSamples, decodeAndCompare(decoder, signal, bitsPerSample, 0, Long.MAX_VALUE));
+        }
+    }
+
+    @Test
+    void seekTableRandomAccess() throws IOException {
+        File file = new File(FOLDER, "seek-table.flac");
+        int nbSamples = 44100 * 10;
+        int[][] signal = FlacTestFileWriter.createSignal(2, nbSamples, 16);
+        new FlacTestFileWriter(44100, 16, 4096, false, 10).write(file, signal);
+
+        try (FlacDecoder decoder = new FlacDecoder(file)) {
+            FlacAudioInfo info = decoder.getInfo();
+            // one seek point every 10 frames and a placeholder
+            assertEquals(nbSamples / 4096 / 10 + 2, info.getSeekPoints()
+                    .size());
+            assertTrue(info.getSeekPoints()
+                    .getLast()
+                    .isPlaceholder());
+            assertEquals(1000, decodeAndCompare(decoder, signal, 16, 0, 1000));
+            assertEquals(5000, decodeAndCompare(decoder, signal, 16, 123456, 5000));
+            assertEquals(4096, decodeAndCompare(decoder, signal, 16, 4096 * 20, 4096));
+            assertEquals(1, decodeAndCompare(decoder, signal, 16, nbSamples - 1, 1));
+            assertEquals(100, decodeAndCompare(decoder, signal, 16, nbSamples - 100, 1000));
+            assertEquals(0, decodeAndCompare(decoder, signal, 16, nbSamples, 1000));
+            // going backward
+            assertEquals(10, decodeAndCompare(decoder, signal, 16, 10, 10));
+        }
+
+        // break the first frame: only the samples after the first seek point can be decoded
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            long firstFrame = new FlacReader(file).parse()
+                    .getFirstFrameOffset();
+            raf.seek(firstFrame + 20);
+            raf.write(raf.readByte() ^ 0x55);
+        }
+        try (FlacDecoder decoder = new FlacDecoder(file)) {
+            assertThrows(FlacError.class, () -> decodeAndCompare(decoder, signal, 16, 0, 10));
+            assertEquals(10, decodeAndCompare(decoder, signal, 16, 4096 * 10, 10));
+        }
+    }
+
+    @Test
+    void throughput() throws IOException {
+        File file = new File(FOLDER, "throughput.flac");
+        int sampleRate = 44100;
+        int durationInSeconds = 60;
+        int[][] signal = FlacTestFileWriter.createSignal(2, sampleRate * durationInSeconds, 16);
+        new FlacTestFileWriter(sampleRate, 16, 4096, false, 0).write(file, signal);
+
+        try (FlacDecoder decoder = new FlacDecoder(file)) {
+            double[] peak = {0};
+            // warmup
+            for (int i = 0; i < 3; i++) {
+                decoder.decode(buffer -> peak[0] = Math.max(peak[0], Math.abs(buffer.sample(0, 0))));
+            }
+            long start = System.nanoTime();
+            decoder.decode(buffer -> peak[0] = Math.max(peak[0], Math.abs(buffer.sample(0, 0))));
+            double elapsed = (System.nanoTime() - start) / 1_000_000_000.0;
+            log.info("Decoded {} seconds of stereo 16 bits in {} ms: {}x real time, {} MB/s of FLAC", durationInSeconds, (long) (elapsed * 1000),
+                    (long) (durationInSeconds / elapsed), "%.1f".formatted(file.length() / elapsed / 1024 / 1024));
+            assertTrue(peak[0] > 0);
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package com.hypercube.workshop.audioworkshop.files.flac;
+
+import com.hypercube.workshop.audioworkshop.api.format.PCMFormat;
+import com.hypercube.workshop.audioworkshop.api.pcm.BitDepth;
+import com.hypercube.workshop.audioworkshop.api.pcm.PCMEncoding;
+import com.hypercube.workshop.audioworkshop.files.riff.RiffReadMode;
+import com.hypercube.workshop.audioworkshop.files.riff.WavTestFileWriter;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+class FlacEncoderTest {
+    private static final File FOLDER = new File("target/flac-encoder");
+
+    private static PCMFormat format(int bitsPerSample, int nbChannels) {
+        return new PCMFormat(44100, BitDepth.valueOf(bitsPerSample), nbChannels, PCMEncoding.SIGNED, ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static File encode(String name, int[][] signal, PCMFormat format, FlacCompressionLevel level, int nbThreads) throws IOException {
+        FOLDER.mkdirs();
+        File file = new File(FOLDER, name);
+        try (FlacWriter writer = new FlacWriter(file);
+             FlacEncoder encoder = new FlacEncoder(writer, format, level, signal[0].length, nbThreads)) {
+            writer.writeVorbisTags(Map.of("TITLE", "Encoder test"));
+            // odd sizes to cross the block boundaries
+            for (int pos = 0; pos < signal[0].length; pos += 10000) {
+                int size = Math.min(10000, signal[0].length - pos);
+                int[][] part = new int[signal.length][];
+                for (int c = 0; c < signal.length; c++) {
+                    part[c] = Arrays.copyOfRange(signal[c], pos, pos + size);
+                }
+                encoder.encode(part, size);
+            }
+        }
+        return file;
+    }
+
+    private static long decodeAndCompare(File file, int[][] expected, int bitsPerSample, long from, long nbSamples) throws IOException {
+        double scale = 1L << (bitsPerSample - 1);
+        long[] position = {from};
+        try (FlacDecoder decoder = new FlacDecoder(file)) {
+            decoder.decode(from, nbSamples, buffer -> {
+                for (int s = 0; s < buffer.nbSamples(); s++) {
+                    for (int c = 0; c < buffer.nbChannels(); c++) {
+                        assertEquals(expected[c][(int) position[0]], (int) (buffer.sample(c, s) * scale), "channel %d sample %d".formatted(c, position[0]));
+                    }
+                    position[0]++;
+                }
+            });
+        }
+        return position[0] - from;
+    }
+
+    private static byte[] md5(int[][] signal, int bitsPerSample) throws NoSuchAlgorithmException {
+        MessageDigest md5 = MessageDigest.getInstance("MD5");
+        int bytesPerSample = (bitsPerSample + 7) / 8;
+        for (int s = 0; s < signal[0].length; s++) {
+            for (int[] channel : signal) {
+                for (int b = 0; b < bytesPerSample; b++) {
+                    md5.update((byte) (channel[s] >> (8 * b)));
+                }
+            }
+        }
+        return md5.digest();
+    }
+
+    private static byte[] readStreamInfoMD5(File file) throws IOException {
+        byte[] content = Files.readAllBytes(file.toPath());
+        // "fLaC" + block header + 18 bytes before the MD5
+        return Arrays.copyOfRange(content, 4 + 4 + 18, 4 + 4 + 34);
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "16,2,FAST",
+            "16,2,DEFAULT",
+            "16,2,BEST",
+            "24,2,DEFAULT",
+            "8,1,DEFAULT",
+            "24,6,FAST",
+            "32,2,DEFAULT"
+    })
+    void roundTrip(int bitsPerSample, int nbChannels, FlacCompressionLevel level) throws Exception {
+        int nbSamples = 44100 * 3 + 17;
+        int[][] signal = FlacTestFileWriter.createSignal(nbChannels, nbSamples, bitsPerSample);
+        File file = encode("round-trip-%d-%d-%s.flac".formatted(bitsPerSample, nbChannels, level), signal, format(bitsPerSample, nbChannels), level, 4);
+
+        FlacAudioInfo info = new FlacReader(file).parse();
+        assertEquals(nbSamples, info.getNbSamples());
+        assertEquals(level.getBlockSize(), info.getMinBlockSize());
+        assertEquals(level.getBlockSize(), info.getMaxBlockSize());
+        assertTrue(info.getMaxFrameSize() > 0);
+        assertEquals(HexFormat.of()
+                .formatHex(md5(signal, bitsPerSample)), HexFormat.of()
+                .formatHex(readStreamInfoMD5(file)));
+        assertEquals(nbSamples, decodeAndCompare(file, signal, bitsPerSample, 0, Long.MAX_VALUE));
+    }
+
+    @Test
+    void pcmInput() throws IOException {
+        // 8 bits unsigned, as found in WAV files
+        int nbSamples = 5000;
+        int[][] signal = FlacTestFileWriter.createSignal(2, nbSamples, 8);
+        ByteBuffer pcm = ByteBuffer.allocate(nbSamples * 2);
+        for (int s = 0; s < nbSamples; s++) {
+            pcm.put((byte) (signal[0][s] + 128));
+            pcm.put((byte) (signal[1][s] + 128));
+        }
+        PCMFormat format = new PCMFormat(44100, BitDepth.BIT_DEPTH_8, 2, PCMEncoding.UNSIGNED, ByteOrder.LITTLE_ENDIAN);
+        File file = new File(FOLDER, "pcm-8-unsigned.flac");
+        FOLDER.mkdirs();
+        try (FlacWriter writer = new FlacWriter(file);
+             FlacEncoder encoder = new FlacEncoder(writer, format, FlacCompressionLevel.DEFAULT, 0)) {
+            encoder.encode(pcm.flip(), nbSamples * 2);
+        }
+        assertEquals(nbSamples, decodeAndCompare(file, signal, 8, 0, Long.MAX_VALUE));
+
+        // 24 bits big endian
+        signal = FlacTestFileWriter.createSignal(1, nbSamples, 24);
+        pcm = ByteBuffer.allocate(nbSamples * 3);
+        for (int s = 0; s < nbSamples; s++) {
+            pcm.put((byte) (signal[0][s] >> 16));
+            pcm.put((byte) (signal[0][s] >> 8));
+            pcm.put((byte) signal[0][s]);
+        }
+        format = new PCMFormat(44100, BitDepth.BIT_DEPTH_24, 1, PCMEncoding.SIGNED, ByteOrder.BIG_ENDIAN);
+        file = new File(FOLDER, "pcm-24-be.flac");
+        try (FlacWriter writer = new FlacWriter(file);
+             FlacEncoder encoder = new FlacEncoder(writer, format, FlacCompressionLevel.FAST, 0)) {
+            encoder.encode(pcm.flip(), nbSamples * 3);
+        }
+        assertEquals(nbSamples, decodeAndCompare(file, signal, 24, 0, Long.MAX_VALUE));
+    }
+
+    /**
+     * A full scale square and a full scale ramp: the fixed predictors go way beyond 32 bits on each edge
+     */
+    @ParameterizedTest
+    @CsvSource({"FAST", "DEFAULT", "BEST"})
+    void fullScale32Bits(FlacCompressionLevel level) throws Exception {
+        int nbSamples = 44100 + 17;
+        long step = 0xFFFFFFFFL / 99;
+        int[][] signal = new int[2][nbSamples];
+        for (int s = 0; s < nbSamples; s++) {
+            signal[0][s] = (s / 50) % 2 == 0 ? Integer.MAX_VALUE : Integer.MIN_VALUE;
+            signal[1][s] = (int) (Integer.MIN_VALUE + (s % 100) * step);
+        }
+        // an accepted order gives the exact residuals, never wrapped ones
+        int[] residual = new int[nbSamples];
+        int[][] binomials = {{1}, {1, -1}, {1, -2, 1}, {1, -3, 3, -1}, {1, -4, 6, -4, 1}};
+        for (int[] channel : signal) {
+            assertFalse(FlacFrameEncoder.computeFixedResidual(channel, nbSamples, 1, residual));
+            for (int order = 0; order < binomials.length; order++) {
+                if (FlacFrameEncoder.computeFixedResidual(channel, nbSamples, order, residual)) {
+                    for (int i = order; i < nbSamples; i++) {
+                        long expected = 0;
+                        for (int j = 0; j <= order; j++) {
+                            expected += binomials[order][j] * (long) channel[i - j];
+                        }
+                        assertEquals(expected, residual[i], "order %d sample %d".formatted(order, i));
+                        assertTrue(residual[i] != Integer.MIN_VALUE);
+                    }
+                }
+            }
+        }
+        File file = encode("full-scale-32-%s.flac".formatted(level), signal, format(32, 2), level, 2);
+        assertEquals(nbSamples, decodeAndCompare(file, signal, 32, 0, Long.MAX_VALUE));
+    }
+
+    @Test
+    void seekTable() throws IOException {
+        int nbSamples = 44100 * 35;
+        int[][] signal = FlacTestFileWriter.createSignal(2, nbSamples, 16);
+        File file = encode("seek-table.flac", signal, format(16, 2), FlacCompressionLevel.FAST, 4);
+
+        FlacAudioInfo info = new FlacReader(file).parse();
+        // one point every 10 seconds
+        assertEquals(4, info.getSeekPoints()
+                .size());
+        for (int i = 0; i < 4; i++) {
+            FlacSeekPoint seekPoint = info.getSeekPoints()
+                    .get(i);
+            long target = i * 441000L;
+            assertTrue(seekPoint.sampleNumber() <= target && target < seekPoint.sampleNumber() + seekPoint.nbSamples(), seekPoint.toString());
+        }
+        assertEquals(1000, decodeAndCompare(file, signal, 16, 441000 * 3 + 5, 1000));
+        assertEquals(100, decodeAndCompare(file, signal, 16, nbSamples - 100, 1000));
+    }
+
+    @Test
+    void sameOutputWithAnyNumberOfThreads() throws IOException {
+        int[][] signal = FlacTestFileWriter.createSignal(2, 44100 * 5, 16);
+        File single = encode("single-thread.flac", signal, format(16, 2), FlacCompressionLevel.DEFAULT, 1);
+        File multi = encode("multi-thread.flac", signal, format(16, 2), FlacCompressionLevel.DEFAULT, 8);
+        assertArrayEquals(Files.readAllBytes(single.toPath()), Files.readAllBytes(multi.toPath()));
+    }
+
+    @Test
+    void compressionLevels() throws IOException {
+        int nbSamples = 44100 * 10;
+        int[][] signal = FlacTestFileWriter.createSignal(2, nbSamples, 16);
+        long rawSize = nbSamples * 4L;
+        long previousSize = Long.MAX_VALUE;
+        for (FlacCompressionLevel level : FlacCompressionLevel.values()) {
+            encode("level-" + level + ".flac", signal, format(16, 2), level, 1);
+            long start = System.nanoTime();
+            File file = encode("level-" + level + ".flac", signal, format(16, 2), level, 1);
+            double elapsed = (System.nanoTime() - start) / 1_000_000_000.0;
+            log.info("{}: {}% of the WAV size, {}x real time on one thread", level, "%.1f".formatted(file.length() * 100.0 / rawSize), (long) (10 / elapsed));
+            assertTrue(file.length() <= previousSize, level.toString());
+            previousSize = file.length();
+        }
+        assertTrue(previousSize < rawSize * 0.8);
+    }
+
+    @ParameterizedTest
+    @EnumSource(RiffReadMode.class)
+    void encodeWav(RiffReadMode readMode) throws IOException {
+        FOLDER.mkdirs();
+        File wav = new File(FOLDER, "source-%s.wav".formatted(readMode));
+        File flac = new File(FOLDER, "source-%s.flac".formatted(readMode));
+        int nbSamples = 44100 * 2;
+        int[][] signal = FlacTestFileWriter.createSignal(2, nbSamples, 24);
+        WavTestFileWriter.write(wav, format(24, 2), nbSamples, (c, s) -> signal[c][s]);
+        FlacEncoder.encode(wav, flac, FlacCompressionLevel.DEFAULT, readMode);
+        assertTrue(flac.length() < wav.length());
+        assertEquals(nbSamples, decodeAndCompare(flac, signal, 24, 0, Long.MAX_VALUE));
+    }
+
+    @Test
+    void throughput() throws IOException {
+        int durationInSeconds = 60;
+        int[][] signal = FlacTestFileWriter.createSignal(2, 44100 * durationInSeconds, 16);
+        int nbThreads = Runtime.getRuntime()
+                .availableProcessors();
+        for (int threads : new int[]{1, nbThreads}) {
+            encode("throughput.flac", signal, format(16, 2), FlacCompressionLevel.DEFAULT, threads);
+            long start = System.nanoTime();
+            File file = encode("throughput.flac", signal, format(16, 2), FlacCompressionLevel.DEFAULT, threads);
+            double elapsed = (System.nanoTime() - start) / 1_000_000_000.0;
+            log.info("Encoded {} seconds of stereo 16 bits with {} threads in {} ms: {}x real time", durationInSeconds, threads, (long) (elapsed * 1000),
+                    (long) (durationInSeconds / elapsed));
+            assertTrue(file.length() > 0);
+        }
+    }
+}
@@ -0,0 +1,426 @@
+package com.hypercube.workshop.audioworkshop.files.flac;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Minimal FLAC encoder for the decoder tests
+ * <p>It does not try to be compact: it rotates over all kinds of subframes, stereo decorrelations and residual codings
+ * so a small file goes through every path of {@link FlacFrameDecoder}.</p>
+ */
+class FlacTestFileWriter {
+    private final int sampleRate;
+    private final int bitsPerSample;
+    private final int blockSize;
+    private final boolean variableBlockSize;
+    private final int seekPointInterval;
+    private final Random random = new Random(1234);
+
+    /**
+     * @param variableBlockSize alternate between blockSize and odd smaller sizes
+     * @param seekPointInterval one seek point every N frames, 0 for no SEEKTABLE
+     */
+    FlacTestFileWriter(int sampleRate, int bitsPerSample, int blockSize, boolean variableBlockSize, int seekPointInterval) {
+        this.sampleRate = sampleRate;
+        this.bitsPerSample = bitsPerSample;
+        this.blockSize = blockSize;
+        this.variableBlockSize = variableBlockSize;
+        this.seekPointInterval = seekPointInterval;
+    }
+
+    /**
+     * Sines, noise, a bit of silence (CONSTANT subframes) and a part with wasted bits
+     */
+    static int[][] createSignal(int nbChannels, int nbSamples, int bitsPerSample) {
+        Random random = new Random(nbChannels * 31L + nbSamples);
+        double amplitude = (1L << (bitsPerSample - 1)) * 0.8;
+        int maxValue = (int) ((1L << (bitsPerSample - 1)) - 1);
+        int[][] samples = new int[nbChannels][nbSamples];
+        for (int c = 0; c < nbChannels; c++) {
+            for (int s = 0; s < nbSamples; s++) {
+                double value = Math.sin(s * 2 * Math.PI * (110.0 * (c + 1)) / 44100) * 0.7
+                        + Math.sin(s * 2 * Math.PI * 3520.0 / 44100) * 0.2
+                        + random.nextGaussian() * 0.02;
+                int sample = (int) Math.max(-maxValue, Math.min(maxValue, Math.round(value * amplitude)));
+                if (s >= nbSamples / 4 && s < nbSamples / 3) {
+                    sample = 0;
+                } else if (s >= nbSamples / 2 && s < nbSamples * 2 / 3) {
+                    sample &= ~0xF;
+                }
+                samples[c][s] = sample;
+            }
+        }
+        return samples;
+    }
+
+    void write(File file, int[][] samples) throws IOException {
+        int nbChannels = samples.length;
+        int nbSamples = samples[0].length;
+        ByteArrayOutputStream frames = new ByteArrayOutputStream();
+        List<long[]> seekPoints = new ArrayList<>();
+        int minBlockSize = Integer.MAX_VALUE;
+        int maxBlockSize = 0;
+        int minFrameSize = Integer.MAX_VALUE;
+        int maxFrameSize = 0;
+        int frameIndex = 0;
+        for (int start = 0; start < nbSamples; frameIndex++) {
+            int size = Math.min(getBlockSize(frameIndex), nbSamples - start);
+            byte[] frame = encodeFrame(samples, frameIndex, start, size);
+            if (seekPointInterval > 0 && frameIndex % seekPointInterval == 0) {
+                seekPoints.add(new long[]{start, frames.size(), size});
+            }
+            frames.write(frame);
+            if (start + size < nbSamples || variableBlockSize) {
+                minBlockSize = Math.min(minBlockSize, size);
+            }
+            maxBlockSize = Math.max(maxBlockSize, size);
+            minFrameSize = Math.min(minFrameSize, frame.length);
+            maxFrameSize = Math.max(maxFrameSize, frame.length);
+            start += size;
+        }
+        if (minBlockSize == Integer.MAX_VALUE) {
+            minBlockSize = maxBlockSize;
+        }
+        file.getParentFile()
+                .mkdirs();
+        try (OutputStream out = new FileOutputStream(file)) {
+            BitWriter header = new BitWriter();
+            header.writeBytes("fLaC".getBytes());
+            // STREAMINFO
+            header.write(FlacBlockType.STREAMINFO.ordinal(), 8);
+            header.write(34, 24);
+            header.write(variableBlockSize ? minBlockSize : blockSize, 16);
+            header.write(variableBlockSize ? maxBlockSize : blockSize, 16);
+            header.write(minFrameSize, 24);
+            header.write(maxFrameSize, 24);
+            header.write(sampleRate, 20);
+            header.write(nbChannels - 1, 3);
+            header.write(bitsPerSample - 1, 5);
+            header.write((long) nbSamples >>> 32, 4);
+            header.write(nbSamples, 32);
+            header.writeBytes(new byte[16]);
+            // SEEKTABLE, with a placeholder at the end
+            if (!seekPoints.isEmpty()) {
+                header.write(FlacBlockType.SEEKTABLE.ordinal(), 8);
+                header.write((seekPoints.size() + 1) * 18L, 24);
+                for (long[] seekPoint : seekPoints) {
+                    header.write(seekPoint[0] >>> 32, 32);
+                    header.write(seekPoint[0], 32);
+                    header.write(seekPoint[1] >>> 32, 32);
+                    header.write(seekPoint[1], 32);
+                    header.write(seekPoint[2], 16);
+                }
+                header.write(0xFFFFFFFFL, 32);
+                header.write(0xFFFFFFFFL, 32);
+                header.write(0, 64 + 16);
+            }
+            // PADDING, the last block
+            header.write(0x80 | FlacBlockType.PADDING.ordinal(), 8);
+            header.write(10, 24);
+            header.writeBytes(new byte[10]);
+            out.write(header.toByteArray());
+            frames.writeTo(out);
+        }
+    }
+
+    private int getBlockSize(int frameIndex) {
+        if (variableBlockSize && frameIndex % 2 == 1) {
+            return blockSize / 2 + 3 + frameIndex % 5;
+        }
+        return blockSize;
+    }
+
+    private byte[] encodeFrame(int[][] samples, int frameIndex, int start, int size) {
+        int nbChannels = samples.length;
+        int channelAssignment = nbChannels == 2 ? new int[]{1, 8, 9, 10}[frameIndex % 4] : nbChannels - 1;
+        int[][] channels = new int[nbChannels][size];
+        int[] channelBits = new int[nbChannels];
+        for (int c = 0; c < nbChannels; c++) {
+            System.arraycopy(samples[c], start, channels[c], 0, size);
+            channelBits[c] = bitsPerSample;
+        }
+        if (channelAssignment >= 8) {
+            int[] left = channels[0];
+            int[] right = channels[1];
+            int[] side = new int[size];
+            int[] mid = new int[size];
+            for (int i = 0; i < size; i++) {
+                side[i] = left[i] - right[i];
+                mid[i] = (left[i] + right[i]) >> 1;
+            }
+            switch (channelAssignment) {
+                case 8 -> {
+                    channels[1] = side;
+                    channelBits[1]++;
+                }
+                case 9 -> {
+                    channels[0] = side;
+                    channelBits[0]++;
+                }
+                default -> {
+                    channels[0] = mid;
+                    channels[1] = side;
+                    channelBits[1]++;
+                }
+            }
+        }
+
+        BitWriter out = new BitWriter();
+        out.write(0x3FFE, 14);
+        out.write(0, 1);
+        out.write(variableBlockSize ? 1 : 0, 1);
+        int blockSizeCode = getBlockSizeCode(size);
+        out.write(blockSizeCode, 4);
+        // sample rate from STREAMINFO
+        out.write(0, 4);
+        out.write(channelAssignment, 4);
+        out.write(switch (bitsPerSample) {
+            case 8 -> 1;
+            case 16 -> 4;
+            case 24 -> 6;
+            default -> 0;
+        }, 3);
+        out.write(0, 1);
+        writeCodedNumber(out, variableBlockSize ? start : frameIndex);
+        if (blockSizeCode == 6) {
+            out.write(size - 1, 8);
+        } else if (blockSizeCode == 7) {
+            out.write(size - 1, 16);
+        }
+        byte[] header = out.toByteArray();
+        out.write(FlacCrc.crc8(header, 0, header.length), 8);
+        for (int c = 0; c < nbChannels; c++) {
+            writeSubframe(out, channels[c], channelBits[c], frameIndex + c);
+        }
+        out.alignToByte();
+        byte[] frame = out.toByteArray();
+        out.write(FlacCrc.crc16(frame, 0, frame.length), 16);
+        return out.toByteArray();
+    }
+
+    private static int getBlockSizeCode(int size) {
+        if (size == 192) {
+            return 1;
+        }
+        for (int code = 2; code <= 5; code++) {
+            if (size == 576 << (code - 2)) {
+                return code;
+            }
+        }
+        for (int code = 8; code <= 15; code++) {
+            if (size == 256 << (code - 8)) {
+                return code;
+            }
+        }
+        return size <= 256 ? 6 : 7;
+    }
+
+    private static void writeCodedNumber(BitWriter out, long value) {
+        if (value < 0x80) {
+            out.write(value, 8);
+            return;
+        }
+        int nbBytes = 2;
+        while (value >= 1L << (5 * nbBytes + 1)) {
+            nbBytes++;
+        }
+        out.write(((0xFF00 >> nbBytes) & 0xFF) | (value >>> (6 * (nbBytes - 1))), 8);
+        for (int i = nbBytes - 2; i >= 0; i--) {
+            out.write(0x80 | ((value >>> (6 * i)) & 0x3F), 8);
+        }
+    }
+
+    private void writeSubframe(BitWriter out, int[] x, int bps, int kind) {
+        int size = x.length;
+        boolean constant = true;
+        int or = 0;
+        for (int i = 0; i < size; i++) {
+            constant &= x[i] == x[0];
+            or |= x[i];
+        }
+        int wastedBits = or == 0 ? 0 : Integer.numberOfTrailingZeros(or);
+        out.write(0, 1);
+        if (constant) {
+            out.write(0, 6);
+            out.write(0, 1);
+            out.write(x[0], bps);
+            return;
+        }
+        int[] s = x;
+        if (wastedBits > 0) {
+            s = new int[size];
+            for (int i = 0; i < size; i++) {
+                s[i] = x[i] >> wastedBits;
+            }
+            bps -= wastedBits;
+        }
+        int type = kind % 4;
+        if (type == 0) {
+            writeSubframeHeader(out, 1, wastedBits);
+            for (int v : s) {
+                out.write(v, bps);
+            }
+        } else if (type == 1) {
+            int order = Math.min(kind / 4 % 5, size);
+            writeSubframeHeader(out, 8 + order, wastedBits);
+            int[] residual = new int[size];
+            for (int i = 0; i < size; i++) {
+                if (i < order) {
+                    out.write(s[i], bps);
+                    continue;
+                }
+                residual[i] = s[i] - switch (order) {
+                    case 1 -> s[i - 1];
+                    case 2 -> 2 * s[i - 1] - s[i - 2];
+                    case 3 -> 3 * s[i - 1] - 3 * s[i - 2] + s[i - 3];
+                    case 4 -> 4 * s[i - 1] - 6 * s[i - 2] + 4 * s[i - 3] - s[i - 4];
+                    default -> 0;
+                };
+            }
+            writeResidual(out, residual, order, kind);
+        } else {
+            int[] coefficients;
+            int precision;
+            int shift;
+            if (type == 2) {
+                // same as the fixed order 2 predictor
+                coefficients = new int[]{2048, -1024};
+                precision = 13;
+                shift = 10;
+            } else {
+                coefficients = new int[1 + kind * 7 % 32];
+                for (int i = 0; i < coefficients.length; i++) {
+                    coefficients[i] = random.nextInt(-64, 65);
+                }
+                precision = 8;
+                shift = 9;
+            }
+            int order = Math.min(coefficients.length, size);
+            writeSubframeHeader(out, 31 + order, wastedBits);
+            for (int i = 0; i < order; i++) {
+                out.write(s[i], bps);
+            }
+            out.write(precision - 1, 4);
+            out.write(shift, 5);
+            for (int i = 0; i < order; i++) {
+                out.write(coefficients[i], precision);
+            }
+            int[] residual = new int[size];
+            for (int i = order; i < size; i++) {
+                long sum = 0;
+                for (int j = 0; j < order; j++) {
+                    sum += (long) coefficients[j] * s[i - 1 - j];
+                }
+                residual[i] = s[i] - (int) (sum >> shift);
+            }
+            writeResidual(out, residual, order, kind);
+        }
+    }
+
+    private static void writeSubframeHeader(BitWriter out, int type, int wastedBits) {
+        out.write(type, 6);
+        if (wastedBits > 0) {
+            out.write(1, 1);
+            out.writeUnary(wastedBits - 1);
+        } else {
+            out.write(0, 1);
+        }
+    }
+
+    private static void writeResidual(BitWriter out, int[] residual, int predictorOrder, int kind) {
+        int size = residual.length;
+        int method = kind % 2;
+        int parameterSize = method == 0 ? 4 : 5;
+        int escapeCode = (1 << parameterSize) - 1;
+        int partitionOrder = kind % 5;
+        while (partitionOrder > 0 && (size % (1 << partitionOrder) != 0 || (size >> partitionOrder) < predictorOrder)) {
+            partitionOrder--;
+        }
+        out.write(method, 2);
+        out.write(partitionOrder, 4);
+        int partitionSize = size >> partitionOrder;
+        int start = predictorOrder;
+        for (int p = 0; p < 1 << partitionOrder; p++) {
+            int end = (p + 1) * partitionSize;
+            long sum = 0;
+            int rawBits = 0;
+            for (int i = start; i < end; i++) {
+                sum += Math.abs((long) residual[i]);
+                int r = residual[i];
+                rawBits = Math.max(rawBits, r == 0 ? 0 : 33 - Integer.numberOfLeadingZeros(r < 0 ? ~r : r));
+            }
+            long mean = end > start ? sum / (end - start) : 0;
+            int parameter = mean == 0 ? 0 : 63 - Long.numberOfLeadingZeros(mean);
+            if (kind % 7 == 3 && p == 0 || parameter >= escapeCode) {
+                out.write(escapeCode, parameterSize);
+                out.write(rawBits, 5);
+                for (int i = start; i < end; i++) {
+                    out.write(residual[i], rawBits);
+                }
+            } else {
+                out.write(parameter, parameterSize);
+                for (int i = start; i < end; i++) {
+                    int value = (residual[i] << 1) ^ (residual[i] >> 31);
+                    out.writeUnary(value >>> parameter);
+                    out.write(value, parameter);
+                }
+            }
+            start = end;
+        }
+    }
+
+    /**
+     * Big endian bit writer, up to 32 bits at a time
+     */
+    private static class BitWriter {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private long accumulator;
+        private int nbBits;
+
+        void write(long value, int size) {
+            while (size > 32) {
+                write(value >>> 32, size - 32);
+                size = 32;
+            }
+            if (size == 0) {
+                return;
+            }
+            accumulator = (accumulator << size) | (value & ((1L << size) - 1));
+            nbBits += size;
+            while (nbBits >= 8) {
+                out.write((int) (accumulator >>> (nbBits - 8)));
+                nbBits -= 8;
+            }
+        }
+
+        void writeUnary(int zeros) {
+            for (; zeros > 32; zeros -= 32) {
+                write(0, 32);
+            }
+            write(0, zeros);
+            write(1, 1);
+        }
+
+        void writeBytes(byte[] data) {
+            for (byte b : data) {
+                write(b, 8);
+            }
+        }
+
+        void alignToByte() {
+            if (nbBits > 0) {
+                write(0, 8 - nbBits);
+            }
+        }
+
+        byte[] toByteArray() {
+            return out.toByteArray();
+        }
+    }
+}
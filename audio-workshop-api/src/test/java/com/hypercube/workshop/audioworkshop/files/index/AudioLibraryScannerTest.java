@@ -0,0 +1,129 @@
+package com.hypercube.workshop.audioworkshop.files.index;
+
+import com.hypercube.workshop.audioworkshop.api.format.PCMFormat;
+import com.hypercube.workshop.audioworkshop.api.pcm.BitDepth;
+import com.hypercube.workshop.audioworkshop.files.flac.FlacCompressionLevel;
+import com.hypercube.workshop.audioworkshop.files.flac.FlacEncoder;
+import com.hypercube.workshop.audioworkshop.files.riff.RiffReadMode;
+import com.hypercube.workshop.audioworkshop.files.riff.WavTestFileWriter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AudioLibraryScannerTest {
+    private static final File LIBRARY = new File("target/audio-library");
+    private static final File INDEX = new File("target/audio-library.index");
+    private static final PCMFormat FORMAT = WavTestFileWriter.format(BitDepth.BIT_DEPTH_16, 2);
+
+    private static void writeWav(File file, int nbSamples, int seed) throws IOException {
+        WavTestFileWriter.write(file, FORMAT, nbSamples, (c, s) -> ((s * 2 + c) * seed) & 0x3FFF);
+    }
+
+    @BeforeEach
+    void createLibrary() throws IOException {
+        if (LIBRARY.exists()) {
+            try (Stream<File> files = Files.walk(LIBRARY.toPath())
+                    .map(Path::toFile)) {
+                files.sorted((a, b) -> b.getPath()
+                                .compareTo(a.getPath()))
+                        .forEach(File::delete);
+            }
+        }
+        INDEX.delete();
+        for (int i = 0; i < 20; i++) {
+            writeWav(new File(LIBRARY, "pack%d/sample%02d.wav".formatted(i % 3, i)), 4410 + i, i + 1);
+        }
+        writeWav(new File(LIBRARY, "loop.wav"), 1000, 7);
+        FlacEncoder.encode(new File(LIBRARY, "loop.wav"), new File(LIBRARY, "loop.flac"), FlacCompressionLevel.FAST);
+        Files.writeString(new File(LIBRARY, "broken.wav").toPath(), "not a riff file");
+        Files.writeString(new File(LIBRARY, "readme.txt").toPath(), "ignored");
+    }
+
+    @Test
+    void incrementalScan() throws IOException {
+        AudioLibraryScanner scanner = new AudioLibraryScanner(4);
+        AudioLibraryScanner.ScanReport report = scanner.scan(LIBRARY, INDEX);
+        assertEquals(23, report.nbFiles());
+        assertEquals(23, report.nbParsed());
+        assertEquals(1, report.nbErrors());
+
+        AudioIndex index = AudioIndex.load(INDEX);
+        assertEquals(23, index.size());
+        AudioIndexEntry wav = index.get("loop.wav")
+                .orElseThrow();
+        assertTrue(wav.isValid());
+        assertEquals(AudioFileFormat.WAV, wav.format());
+        assertEquals(44100, wav.sampleRate());
+        assertEquals(2, wav.nbChannels());
+        assertEquals(16, wav.bitDepth());
+        assertEquals(1000, wav.nbSamples());
+        // RiffWriter reserves a JUNK chunk for RF64
+        assertEquals(List.of("JUNK", "fmt ", "data"), wav.chunks());
+        assertEquals(16, wav.checksum()
+                .length());
+        AudioIndexEntry flac = index.get("loop.flac")
+                .orElseThrow();
+        assertEquals(1000, flac.nbSamples());
+        assertEquals("STREAMINFO", flac.chunks()
+                .getFirst());
+        assertEquals(32, flac.checksum()
+                .length());
+        assertFalse(index.get("broken.wav")
+                .orElseThrow()
+                .isValid());
+        assertTrue(index.get("pack1/sample04.wav")
+                .isPresent());
+
+        // nothing changed, nothing is parsed, not even the broken file
+        report = scanner.scan(LIBRARY, INDEX);
+        assertEquals(0, report.nbParsed());
+        assertEquals(23, report.nbUnchanged());
+
+        // one modified, one removed, one added
+        File modified = new File(LIBRARY, "pack0/sample00.wav");
+        writeWav(modified, 8000, 3);
+        assertTrue(modified.setLastModified(modified.lastModified() + 2000));
+        assertTrue(new File(LIBRARY, "pack2/sample02.wav").delete());
+        writeWav(new File(LIBRARY, "new/sample.wav"), 100, 5);
+        report = scanner.scan(LIBRARY, INDEX);
+        assertEquals(23, report.nbFiles());
+        assertEquals(2, report.nbParsed());
+        assertEquals(21, report.nbUnchanged());
+        assertEquals(1, report.nbRemoved());
+        assertEquals(8000, AudioIndex.load(INDEX)
+                .get("pack0/sample00.wav")
+                .orElseThrow()
+                .nbSamples());
+    }
+
+    @Test
+    void mappedScanGivesTheSameIndex() throws IOException {
+        new AudioLibraryScanner(2).scan(LIBRARY, INDEX);
+        File mappedIndex = new File(INDEX.getParentFile(), "mapped-" + INDEX.getName());
+        mappedIndex.delete();
+        new AudioLibraryScanner(2, RiffReadMode.MAPPED).scan(LIBRARY, mappedIndex);
+        AudioIndex expected = AudioIndex.load(INDEX);
+        AudioIndex actual = AudioIndex.load(mappedIndex);
+        assertEquals(expected.size(), actual.size());
+        for (String path : List.of("loop.wav", "pack1/sample04.wav", "broken.wav")) {
+            assertEquals(expected.get(path)
+                    .orElseThrow(), actual.get(path)
+                    .orElseThrow(), path);
+        }
+    }
+
+    @Test
+    void corruptedIndexIsRebuilt() throws IOException {
+        Files.writeString(INDEX.toPath(), "garbage");
+        AudioLibraryScanner.ScanReport report = new AudioLibraryScanner(2).scan(LIBRARY, INDEX);
+        assertEquals(23, report.nbParsed());
+    }
+}
@@ -0,0 +1,126 @@
+package com.hypercube.workshop.audioworkshop.files.io;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PositionalReadWriteStreamTest {
+    /**
+     * Tiny page, so almost every field crosses a page boundary
+     */
+    private static final int PAGE_SIZE = 9;
+
+    private File createFile(String name, byte[] content) throws IOException {
+        File file = new File("target/" + name);
+        file.getParentFile()
+                .mkdirs();
+        Files.write(file.toPath(), content);
+        return file;
+    }
+
+    private byte[] sequence(int size) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) i;
+        }
+        return data;
+    }
+
+    @Test
+    void readPrimitivesAcrossPages() throws IOException {
+        byte[] content = sequence(64);
+        ByteBuffer le = ByteBuffer.wrap(content)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer be = ByteBuffer.wrap(content)
+                .order(ByteOrder.BIG_ENDIAN);
+        File file = createFile("stream-read.bin", content);
+        try (PositionalReadWriteStream stream = new PositionalReadWriteStream(file, false, PAGE_SIZE)) {
+            assertEquals(le.getInt(0), stream.getIntLE());
+            assertEquals(be.getShort(4), stream.getShortBE());
+            assertEquals(le.getLong(6), stream.getLongLE());
+            assertEquals(be.getInt(14), stream.getIntBE());
+            assertEquals(18, stream.getByte());
+            assertEquals(be.getLong(19), stream.getLongBE());
+            assertEquals((double) le.getFloat(27), stream.getdoubleLE());
+            assertEquals(le.getShort(31), stream.getShortLE());
+            assertEquals(33, stream.positionLong());
+            stream.seekUInt(2);
+            assertEquals(le.getInt(2), stream.getIntLE());
+            stream.seekLong(60);
+            assertEquals(le.getInt(60), stream.getIntLE());
+            assertEquals(-1, stream.read());
+            assertEquals(64, stream.capacity());
+        }
+    }
+
+    @Test
+    void readBytes() throws IOException {
+        byte[] content = sequence(100);
+        File file = createFile("stream-bytes.bin", content);
+        try (PositionalReadWriteStream stream = new PositionalReadWriteStream(file, false, PAGE_SIZE)) {
+            stream.getShortLE();
+            // bigger than the page, read directly from the file
+            byte[] large = stream.readNBytes(50);
+            assertEquals(2, large[0]);
+            assertEquals(51, large[49]);
+            assertEquals(52, stream.getByte());
+            assertEquals(10, stream.skip(10));
+            assertEquals(63, stream.getByte());
+            byte[] rest = new byte[50];
+            assertEquals(36, stream.read(rest));
+            assertEquals(99, rest[35]);
+            assertEquals(-1, stream.read(rest));
+            assertEquals(0, stream.skip(10));
+            stream.seekLong(98);
+            assertThrows(EOFException.class, stream::getIntLE);
+        }
+    }
+
+    @Test
+    void writeThenReadBack() throws IOException {
+        File file = createFile("stream-write.bin", sequence(32));
+        try (PositionalReadWriteStream stream = new PositionalReadWriteStream(file, true, PAGE_SIZE)) {
+            stream.getShortLE();
+            stream.putIntLE(0x11223344);
+            stream.seekLong(20);
+            stream.putShortBE((short) 0x5566);
+            stream.seekLong(2);
+            // not flushed yet, but visible
+            assertEquals(0x11223344, stream.getIntLE());
+            stream.seekLong(30);
+            // extend the file
+            stream.putIntBE(0x778899AA);
+            assertEquals(34, stream.capacity());
+            stream.seekLong(20);
+            assertEquals(0x5566, stream.getShortBE());
+        }
+        byte[] content = Files.readAllBytes(file.toPath());
+        assertEquals(34, content.length);
+        ByteBuffer le = ByteBuffer.wrap(content)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(0x11223344, le.getInt(2));
+        assertEquals(6, content[6]);
+        assertEquals((short) 0x6655, le.getShort(20));
+        assertEquals(0xAA998877, le.getInt(30));
+        byte[] untouched = new byte[8];
+        System.arraycopy(content, 22, untouched, 0, 8);
+        assertArrayEquals(new byte[]{22, 23, 24, 25, 26, 27, 28, 29}, untouched);
+    }
+
+    @Test
+    void readOnly() throws IOException {
+        File file = createFile("stream-readonly.bin", sequence(8));
+        try (PositionalReadWriteStream stream = new PositionalReadWriteStream(file, false)) {
+            assertThrows(IOException.class, () -> stream.putByte(0));
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.hypercube.workshop.audioworkshop.files.io;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class XXHash64Test {
+    private long hash(byte[] data, long seed) {
+        XXHash64 xxHash64 = new XXHash64(seed);
+        xxHash64.update(data, 0, data.length);
+        return xxHash64.getValue();
+    }
+
+    @Test
+    void referenceValues() {
+        // values given by the reference implementation
+        assertEquals(0xEF46DB3751D8E999L, hash(new byte[0], 0));
+        assertEquals(0x44BC2CF5AD770999L, hash("abc".getBytes(StandardCharsets.US_ASCII), 0));
+        assertEquals(0x95584AF7701F808DL, hash(new byte[0], 12345));
+        // published reference values, 39 and 43 bytes: a 32 bytes stripe then tails of 4 + 3 and 8 + 3 bytes
+        assertEquals(0xFBCEA83C8A378BF1L, hash("Nobody inspects the spammish repetition".getBytes(StandardCharsets.US_ASCII), 0));
+        assertEquals(0x0B242D361FDA71BCL, hash("The quick brown fox jumps over the lazy dog".getBytes(StandardCharsets.US_ASCII), 0));
+        assertEquals(0xB559B98D844E0635L, hash("xxhash".getBytes(StandardCharsets.US_ASCII), 20141025));
+    }
+
+    @Test
+    void incrementalUpdates() {
+        Random random = new Random(1);
+        byte[] data = new byte[1000];
+        random.nextBytes(data);
+        for (int size : new int[]{3, 31, 32, 33, 100, 1000}) {
+            long expected = hash(Arrays.copyOf(data, size), 0);
+            XXHash64 xxHash64 = new XXHash64();
+            for (int pos = 0; pos < size; ) {
+                int len = Math.min(size - pos, 1 + random.nextInt(40));
+                switch (random.nextInt(3)) {
+                    case 0 -> xxHash64.update(data, pos, len);
+                    case 1 -> xxHash64.update(ByteBuffer.wrap(data, pos, len));
+                    default -> {
+                        ByteBuffer direct = ByteBuffer.allocateDirect(len);
+                        direct.put(data, pos, len)
+                                .flip();
+                        xxHash64.update(direct);
+                    }
+                }
+                pos += len;
+            }
+            assertEquals(expected, xxHash64.getValue(), "size " + size);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.hypercube.workshop.audioworkshop.files.record;
+
+import com.hypercube.workshop.audioworkshop.api.consumer.SampleBuffer;
+import com.hypercube.workshop.audioworkshop.api.errors.AudioError;
+import com.hypercube.workshop.audioworkshop.api.format.PCMBufferFormat;
+import com.hypercube.workshop.audioworkshop.api.pcm.BitDepth;
+import com.hypercube.workshop.audioworkshop.api.pcm.PCMEncoding;
+import com.hypercube.workshop.audioworkshop.api.record.BackPressurePolicy;
+import com.hypercube.workshop.audioworkshop.files.riff.RiffFileInfo;
+import com.hypercube.workshop.audioworkshop.files.riff.RiffReader;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncWavRecordListenerTest {
+    /**
+     * RIFF header, JUNK placeholder for ds64, WAVEFORMATEXTENSIBLE, data chunk header
+     */
+    private static final int HEADER_SIZE = 12 + 8 + 28 + 8 + 40 + 8;
+    private static final PCMBufferFormat FORMAT = new PCMBufferFormat(10, 44100, BitDepth.BIT_DEPTH_16, 2, PCMEncoding.SIGNED, ByteOrder.LITTLE_ENDIAN);
+
+    private final byte[] pcm = FORMAT.allocatePcmBuffer();
+    private final SampleBuffer buffer = new SampleBuffer(FORMAT.allocateSampleBuffer(), 0, FORMAT.getSampleBufferSize(), FORMAT.getNbChannels());
+
+    /**
+     * Each byte depends on its position in the whole recording
+     */
+    private boolean produce(AsyncWavRecordListener out, int sequence) {
+        for (int i = 0; i < pcm.length; i++) {
+            pcm[i] = expectedByte((long) sequence * pcm.length + i);
+        }
+        return out.onNewBuffer(buffer, pcm, pcm.length);
+    }
+
+    private static byte expectedByte(long position) {
+        return (byte) (position * 31 + position / 997);
+    }
+
+    /**
+     * Read the size of a root chunk, the file may be incomplete
+     */
+    private static int readChunkSize(File file, String chunkId) throws IOException {
+        ByteBuffer content = ByteBuffer.wrap(Files.readAllBytes(file.toPath()))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        if (chunkId.equals("RIFF")) {
+            return content.getInt(4);
+        }
+        for (int pos = 12; pos + 8 <= content.limit(); ) {
+            String id = new String(content.array(), pos, 4, StandardCharsets.US_ASCII);
+            int size = content.getInt(pos + 4);
+            if (id.equals(chunkId)) {
+                return size;
+            }
+            pos += 8 + size + (size & 1);
+        }
+        throw new AssertionError("No chunk " + chunkId);
+    }
+
+    @Test
+    void coalesceBuffersInOrder() throws IOException {
+        File file = new File("target/async-record/coalesce.wav");
+        int nbBuffers = 500;
+        // buffers of 3.5 audio buffers, rounded down to frames: most audio buffers are split in two
+        AsyncWavRecordListener out = new AsyncWavRecordListener(file, FORMAT, BackPressurePolicy.BLOCK, pcm.length * 7 / 2 + 1, 4, 0, 1, TimeUnit.SECONDS);
+        try (out) {
+            for (int i = 0; i < nbBuffers; i++) {
+                assertTrue(produce(out, i));
+            }
+        }
+        assertEquals((long) nbBuffers * pcm.length, out.getBytesWritten());
+        assertEquals(0, out.getDroppedBytes());
+        assertTrue(out.getNbWrites() < nbBuffers / 3);
+        try (RiffReader riffReader = new RiffReader(file, false)) {
+            RiffFileInfo info = riffReader.parse();
+            assertEquals((long) nbBuffers * FORMAT.getSampleBufferSize(), info.getAudioInfo()
+                    .getNbSamples());
+            ByteBuffer data = riffReader.getChunkBuffer(info.getDataChunk());
+            assertEquals((long) nbBuffers * pcm.length, data.limit());
+            for (int i = 0; i < data.limit(); i++) {
+                if (data.get(i) != expectedByte(i)) {
+                    fail("Unexpected byte at " + i);
+                }
+            }
+        }
+    }
+
+    @Test
+    void headerIsUpdatedWhileRecording() throws IOException, InterruptedException {
+        File file = new File("target/async-record/crash.wav");
+        long preallocated = 1024 * 1024;
+        try (AsyncWavRecordListener out = new AsyncWavRecordListener(file, FORMAT, BackPressurePolicy.BLOCK, pcm.length * 4, 4, preallocated, 20, TimeUnit.MILLISECONDS)) {
+            assertTrue(file.length() > preallocated);
+            for (int i = 0; i < 10; i++) {
+                assertTrue(produce(out, i));
+            }
+            // the last buffer is not full, it is sent by the next call after the update period
+            Thread.sleep(50);
+            assertTrue(out.onNewBuffer(buffer, pcm, 0));
+            long expected = 10L * pcm.length;
+            for (int retry = 0; retry < 100 && readChunkSize(file, "data") != expected; retry++) {
+                Thread.sleep(20);
+            }
+            // the file is valid without being closed
+            assertEquals(expected, readChunkSize(file, "data"));
+            assertEquals(HEADER_SIZE - 8 + expected, readChunkSize(file, "RIFF"));
+            assertTrue(out.getHeaderUpdates() > 0);
+            assertTrue(file.length() > preallocated);
+        }
+        // the preallocated space is released on close
+        assertEquals(HEADER_SIZE + 10L * pcm.length, file.length());
+    }
+
+    @Test
+    void rejectInvalidPool() {
+        File file = new File("target/async-record/invalid.wav");
+        assertThrows(AudioError.class, () -> new AsyncWavRecordListener(file, FORMAT, BackPressurePolicy.BLOCK, 3, 4, 0, 1, TimeUnit.SECONDS));
+        assertThrows(AudioError.class, () -> new AsyncWavRecordListener(file, FORMAT, BackPressurePolicy.BLOCK, 4096, 1, 0, 1, TimeUnit.SECONDS));
+        assertThrows(AudioError.class, () -> new AsyncWavRecordListener(file, FORMAT, BackPressurePolicy.BLOCK, 4096, 4, 0, 0, TimeUnit.SECONDS));
+        assertFalse(file.exists());
+    }
+}
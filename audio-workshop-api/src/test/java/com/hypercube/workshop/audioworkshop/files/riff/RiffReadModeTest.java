@@ -0,0 +1,80 @@
+package com.hypercube.workshop.audioworkshop.files.riff;
+
+import com.hypercube.workshop.audioworkshop.api.pcm.BitDepth;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RiffReadModeTest {
+    private static final File FILE = new File("target/read-mode.wav");
+    private static final int NB_SAMPLES = 10007;
+
+    @BeforeAll
+    static void writeFile() throws IOException {
+        WavTestFileWriter.write(FILE, WavTestFileWriter.format(BitDepth.BIT_DEPTH_16, 2), NB_SAMPLES, (c, s) -> (s * 2 + c) * 31);
+    }
+
+    private byte[] streamData(RiffReadMode readMode, int bufferSize) throws IOException {
+        try (RiffReader riffReader = new RiffReader(FILE, readMode)) {
+            var info = riffReader.parse();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            riffReader.streamChunk(info.getDataChunk(), bufferSize, (data, nbRead) -> {
+                data.rewind();
+                for (int i = 0; i < nbRead; i++) {
+                    out.write(data.get());
+                }
+            });
+            return out.toByteArray();
+        }
+    }
+
+    @Test
+    void streamChunkGivesTheSameBytes() throws IOException {
+        byte[] expected = streamData(RiffReadMode.STREAM, 4096);
+        assertEquals(NB_SAMPLES * 4, expected.length);
+        assertArrayEquals(expected, streamData(RiffReadMode.MAPPED, 4096));
+        assertArrayEquals(expected, streamData(RiffReadMode.MAPPED, 1000));
+    }
+
+    @Test
+    void mappedChunksAreReadOnlySlices() throws IOException {
+        try (RiffReader riffReader = new RiffReader(FILE, RiffReadMode.MAPPED)) {
+            var info = riffReader.parse();
+            ByteBuffer data = riffReader.getChunkBuffer(info.getDataChunk());
+            assertTrue(data.isDirect());
+            assertTrue(data.isReadOnly());
+            assertEquals(0, data.position());
+            assertEquals(NB_SAMPLES * 4, data.remaining());
+            // second sample of the first frame: 31
+            assertEquals(31, data.getShort(2));
+        }
+    }
+
+    @Test
+    void checksumAndExtract() throws IOException {
+        for (ChecksumAlgorithm algorithm : ChecksumAlgorithm.values()) {
+            File target = new File("target/read-mode-extract.wav");
+            String expected;
+            try (RiffReader riffReader = new RiffReader(FILE, false)) {
+                var info = riffReader.parse();
+                expected = riffReader.computeAudioChecksum(info.getAudioInfo(), algorithm);
+            }
+            assertEquals(algorithm.getNbHexDigits(), expected.length());
+            try (RiffReader riffReader = new RiffReader(FILE, RiffReadMode.MAPPED)) {
+                var info = riffReader.parse();
+                assertEquals(expected, riffReader.computeAudioChecksum(info.getAudioInfo(), algorithm));
+                riffReader.extract(info.getAudioInfo(), target);
+            }
+            try (RiffReader riffReader = new RiffReader(target, false)) {
+                var info = riffReader.parse();
+                assertEquals(expected, riffReader.computeAudioChecksum(info.getAudioInfo(), algorithm));
+            }
+        }
+    }
+}
@@ -43,7 +43,7 @@ class RiffReaderTest {
                             new MetadataAssert(MetadataField.AUTHOR, "kabal@CAPELLA")
                     )),
             new FormatAssert("M1F1-int16C-AFsp.aif", "PCM", null, "FVER,COMM,ANNO,SSND", 2, 16, 8000, "00:00:02.936", List.of()),
-            new FormatAssert("M1F1-int8-AFsp.aif", "PCM", null, "COMM,ANNO,SSND", 2, 8, 8000, "00:00:02.937", List.of()),
+            new FormatAssert("M1F1-int8-AFsp.aif", "PCM", null, "COMM,ANNO,SSND", 2, 8, 8000, "00:00:02.936", List.of()),
             new FormatAssert("M1F1-Alaw-AFsp.wav", "ITU_G711_ALAW", null, "fmt,fact,data,afsp,LIST", 2, 8, 8000, "00:00:02.936",
                     List.of(new MetadataAssert(MetadataField.CREATED, "2003-01-30 03:28:44 UTC"),
                             new MetadataAssert(MetadataField.SOFTWARE, "CopyAudio"),
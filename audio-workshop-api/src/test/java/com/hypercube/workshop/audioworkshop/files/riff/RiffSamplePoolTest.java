@@ -0,0 +1,271 @@
+package com.hypercube.workshop.audioworkshop.files.riff;
+
+import com.hypercube.workshop.audioworkshop.api.consumer.SampleBuffer;
+import com.hypercube.workshop.audioworkshop.files.exceptions.AudioParserException;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+class RiffSamplePoolTest {
+    private static final File FOLDER = new File("target/sample-pool");
+
+    /**
+     * Minimal DLS: a fake instrument list, the pool table and the wave pool
+     */
+    private static class DlsBuilder {
+        private final List<byte[]> waves = new ArrayList<>();
+
+        private static byte[] chunk(String id, byte[]... contents) {
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            for (byte[] c : contents) {
+                content.writeBytes(c);
+            }
+            ByteBuffer header = ByteBuffer.allocate(8)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            header.put(id.getBytes(StandardCharsets.US_ASCII));
+            header.putInt(content.size());
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            out.writeBytes(header.array());
+            out.writeBytes(content.toByteArray());
+            if ((content.size() & 1) != 0) {
+                out.write(0);
+            }
+            return out.toByteArray();
+        }
+
+        private static byte[] ascii(String value) {
+            return value.getBytes(StandardCharsets.US_ASCII);
+        }
+
+        /**
+         * The value of each sample depends on its wave, channel and position
+         */
+        static int expectedValue(int wave, int channel, int position, int bitsPerSample) {
+            int value = (wave * 1000 + channel * 100 + position) % 100 - 50;
+            return bitsPerSample == 8 ? value : value * 256;
+        }
+
+        DlsBuilder addWave(String name, int bitsPerSample, int nbChannels, int nbSamples) {
+            return addWave(name, bitsPerSample, nbChannels, nbSamples, false);
+        }
+
+        /**
+         * @param compressed add the "ewav" chunk of Gigastudio, the data is left uncompressed
+         */
+        DlsBuilder addWave(String name, int bitsPerSample, int nbChannels, int nbSamples, boolean compressed) {
+            int wave = waves.size();
+            int bytesPerSample = bitsPerSample / 8;
+            ByteBuffer fmt = ByteBuffer.allocate(16)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            fmt.putShort((short) WaveCodecs.PCM.getValue());
+            fmt.putShort((short) nbChannels);
+            fmt.putInt(22050);
+            fmt.putInt(22050 * nbChannels * bytesPerSample);
+            fmt.putShort((short) (nbChannels * bytesPerSample));
+            fmt.putShort((short) bitsPerSample);
+            ByteBuffer data = ByteBuffer.allocate(nbSamples * nbChannels * bytesPerSample)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            for (int s = 0; s < nbSamples; s++) {
+                for (int c = 0; c < nbChannels; c++) {
+                    int value = expectedValue(wave, c, s, bitsPerSample);
+                    if (bitsPerSample == 8) {
+                        data.put((byte) (value + 128));
+                    } else {
+                        data.putShort((short) value);
+                    }
+                }
+            }
+            byte[] ewav = compressed ? chunk("ewav", new byte[16]) : new byte[0];
+            waves.add(chunk("LIST", ascii("wave"), ewav, chunk("fmt ", fmt.array()), chunk("data", data.array()),
+                    chunk("LIST", ascii("INFO"), chunk("INAM", ascii(name + "\0")))));
+            return this;
+        }
+
+        void write(File file) throws IOException {
+            ByteBuffer ptbl = ByteBuffer.allocate(8 + 4 * waves.size())
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            ptbl.putInt(8);
+            ptbl.putInt(waves.size());
+            ByteArrayOutputStream wvpl = new ByteArrayOutputStream();
+            for (byte[] wave : waves) {
+                ptbl.putInt(wvpl.size());
+                wvpl.writeBytes(wave);
+            }
+            byte[] colh = ByteBuffer.allocate(4)
+                    .order(ByteOrder.LITTLE_ENDIAN)
+                    .putInt(1)
+                    .array();
+            byte[] lins = chunk("LIST", ascii("lins"), chunk("LIST", ascii("ins "), chunk("insh", new byte[12]),
+                    chunk("LIST", ascii("INFO"), chunk("INAM", ascii("instrument\0")))));
+            byte[] riff = chunk("RIFF", ascii("DLS "), chunk("colh", colh), lins, chunk("ptbl", ptbl.array()),
+                    chunk("LIST", ascii("wvpl"), wvpl.toByteArray()));
+            file.getParentFile()
+                    .mkdirs();
+            Files.write(file.toPath(), riff);
+        }
+    }
+
+    private static void assertWave(SampleBuffer buffer, int wave, int bitsPerSample) {
+        double scale = bitsPerSample == 8 ? 0x80 : 0x8000;
+        for (int c = 0; c < buffer.nbChannels(); c++) {
+            for (int s = 0; s < buffer.nbSamples(); s++) {
+                assertEquals(DlsBuilder.expectedValue(wave, c, s, bitsPerSample), (int) Math.round(buffer.sample(c, s) * scale));
+            }
+        }
+    }
+
+    @Test
+    void randomAccess() throws IOException {
+        File file = new File(FOLDER, "pool.dls");
+        new DlsBuilder().addWave("kick", 16, 1, 1000)
+                .addWave("pad", 16, 2, 3001)
+                .addWave("lofi", 8, 1, 777)
+                .write(file);
+
+        try (RiffSamplePool pool = new RiffSamplePool(file)) {
+            assertEquals(3, pool.size());
+            RiffPoolSample pad = pool.getSample(1);
+            assertEquals("pad", pad.name());
+            assertEquals(3001, pad.nbSamples());
+            assertEquals(2, pad.format()
+                    .getNbChannels());
+            assertEquals(22050, pad.format()
+                    .getSampleRate());
+            assertWave(pool.decode(2), 2, 8);
+            assertWave(pool.decode(0), 0, 16);
+            assertWave(pool.decode(1), 1, 16);
+            assertSame(pool.decode(1), pool.decode(1));
+        }
+
+        // same samples than the full parser
+        try (RiffReader riffReader = new RiffReader(file, false);
+             RiffSamplePool pool = new RiffSamplePool(file)) {
+            List<RiffAudioInfo> files = riffReader.parse()
+                    .getFiles();
+            assertEquals(files.size(), pool.size());
+            for (int i = 0; i < pool.size(); i++) {
+                assertEquals(files.get(i)
+                        .getFilename(), pool.getSample(i)
+                        .name());
+                assertEquals(files.get(i)
+                        .getNbSamples(), pool.getSample(i)
+                        .nbSamples());
+            }
+        }
+    }
+
+    @Test
+    void leastRecentlyUsedCache() throws IOException {
+        File file = new File(FOLDER, "lru.dls");
+        DlsBuilder builder = new DlsBuilder();
+        for (int i = 0; i < 10; i++) {
+            builder.addWave("wave" + i, 16, 1, 1000);
+        }
+        builder.write(file);
+        // room for 3 waves of 1000 doubles
+        try (RiffSamplePool pool = new RiffSamplePool(file, 3 * 8000)) {
+            SampleBuffer first = pool.decode(0);
+            pool.decode(1);
+            pool.decode(2);
+            assertSame(first, pool.decode(0));
+            // evicts the wave 1, the least recently used
+            SampleBuffer fourth = pool.decode(3);
+            assertEquals(3, pool.getNbCachedSamples());
+            assertSame(first, pool.decode(0));
+            // evicts the waves 2 then 3
+            assertWave(pool.decode(1), 1, 16);
+            assertWave(pool.decode(2), 2, 16);
+            assertNotSame(fourth, pool.decode(3));
+            assertEquals(3, pool.getNbCachedSamples());
+        }
+    }
+
+    @Test
+    void openLargePool() throws IOException {
+        File file = new File(FOLDER, "large.dls");
+        DlsBuilder builder = new DlsBuilder();
+        for (int i = 0; i < 2000; i++) {
+            builder.addWave("wave" + i, 16, 2, 2000);
+        }
+        builder.write(file);
+
+        long start = System.nanoTime();
+        try (RiffReader riffReader = new RiffReader(file, false)) {
+            assertEquals(2000, riffReader.parse()
+                    .getFiles()
+                    .size());
+        }
+        long fullParse = System.nanoTime() - start;
+        start = System.nanoTime();
+        try (RiffSamplePool pool = new RiffSamplePool(file)) {
+            assertWave(pool.decode(1234), 1234, 16);
+        }
+        long lazy = System.nanoTime() - start;
+        log.info("Get one wave among 2000: {} ms with RiffReader.parse(), {} ms with RiffSamplePool", fullParse / 1_000_000, lazy / 1_000_000);
+    }
+
+    @Test
+    void concurrentDecode() throws Exception {
+        File file = new File(FOLDER, "concurrent.dls");
+        DlsBuilder builder = new DlsBuilder();
+        for (int i = 0; i < 64; i++) {
+            builder.addWave("wave" + i, 16, 2, 500 + i);
+        }
+        builder.write(file);
+        try (RiffSamplePool pool = new RiffSamplePool(file, 0);
+             ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int first = t;
+                results.add(executor.submit(() -> {
+                    for (int i = 0; i < 64; i++) {
+                        int wave = (first * 8 + i) % 64;
+                        assertWave(pool.decode(wave), wave, 16);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        }
+    }
+
+    @Test
+    void compressedWave() throws IOException {
+        File file = new File(FOLDER, "compressed.gig");
+        new DlsBuilder().addWave("plain", 16, 1, 100)
+                .addWave("compressed", 16, 1, 100, true)
+                .write(file);
+        try (RiffSamplePool pool = new RiffSamplePool(file)) {
+            assertWave(pool.decode(0), 0, 16);
+            AudioParserException e = assertThrows(AudioParserException.class, () -> pool.decode(1));
+            assertTrue(e.getMessage()
+                    .contains("compressed"));
+        }
+    }
+
+    @Test
+    void notADls() throws IOException {
+        File file = new File(FOLDER, "not-a-dls.dls");
+        file.getParentFile()
+                .mkdirs();
+        Files.write(file.toPath(), DlsBuilder.chunk("RIFF", DlsBuilder.ascii("WAVE")));
+        assertThrows(AudioParserException.class, () -> new RiffSamplePool(file));
+    }
+}
@@ -7,16 +7,19 @@ import com.hypercube.workshop.audioworkshop.api.pcm.BitDepth;
 import com.hypercube.workshop.audioworkshop.api.pcm.PCMEncoding;
 import com.hypercube.workshop.audioworkshop.api.pcm.PCMMarker;
 import com.hypercube.workshop.audioworkshop.files.riff.chunks.Chunks;
+import com.hypercube.workshop.audioworkshop.files.riff.chunks.RiffDS64Chunk;
 import com.hypercube.workshop.audioworkshop.files.riff.chunks.markers.adtl.RiffAdtlLabelChunk;
 import com.hypercube.workshop.audioworkshop.files.riff.chunks.markers.cue.RiffCueChunk;
 import org.junit.jupiter.api.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.nio.ByteOrder;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class RiffWriterTest {
     @Test
@@ -56,5 +59,65 @@ public class RiffWriterTest {
                     .sampleOffset());
         }
     }
-}
 
+    private File writeSamples(String name, String riff64Id, long maxChunkSize, int nbSamples) throws IOException {
+        PCMFormat format = new PCMFormat(44100, BitDepth.BIT_DEPTH_16, 2, PCMEncoding.SIGNED, ByteOrder.LITTLE_ENDIAN);
+        File file = new File("target/" + name);
+        try (RiffWriter riffWriter = new RiffWriter(file, riff64Id, maxChunkSize)) {
+            riffWriter.writeFmtChunk(format);
+            riffWriter.beginChunk(Chunks.DATA);
+            for (int i = 0; i < nbSamples * 2; i++) {
+                riffWriter.writeShortLE(i);
+            }
+            riffWriter.endChunk();
+            riffWriter.writeMarkers(List.of(new PCMMarker("label1", 10)));
+        }
+        return file;
+    }
+
+    private String readId(File file) throws IOException {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            byte[] id = new byte[4];
+            in.readFully(id);
+            return new String(id);
+        }
+    }
+
+    @Test
+    void smallFilesStayRiff() throws IOException {
+        File file = writeSamples("small.wav", RiffConstants.RF64, 1000, 100);
+        assertEquals(RiffConstants.RIFF, readId(file));
+        try (RiffReader riffReader = new RiffReader(file, false)) {
+            var info = riffReader.parse();
+            assertTrue(info.getRootChunk(Chunks.JUNK)
+                    .isPresent());
+            assertEquals(100, info.getAudioInfo()
+                    .getNbSamples());
+        }
+    }
+
+    @Test
+    void upgradeToRiff64() throws IOException {
+        for (String riff64Id : List.of(RiffConstants.RF64, RiffConstants.BW64)) {
+            File file = writeSamples("upgraded-" + riff64Id + ".wav", riff64Id, 1000, 1000);
+            assertEquals(riff64Id, readId(file));
+            try (RiffReader riffReader = new RiffReader(file, false)) {
+                var info = riffReader.parse();
+                RiffDS64Chunk ds64 = (RiffDS64Chunk) info.getRootChunk(Chunks.DS64)
+                        .orElseThrow();
+                assertEquals(file.length() - 8, ds64.getRiffSize());
+                assertEquals(4000, ds64.getDataSize());
+                assertEquals(1000, ds64.getSampleCount());
+                assertEquals(4000, info.getDataChunk()
+                        .getContentSize());
+                assertEquals(1000, info.getAudioInfo()
+                        .getNbSamples());
+                List<RiffCueChunk> cue = info.collectChunks(Chunks.CUE);
+                assertEquals(10, cue.getFirst()
+                        .getCuePoints()
+                        .getFirst()
+                        .sampleOffset());
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.hypercube.workshop.audioworkshop.files.riff;
+
+import com.hypercube.workshop.audioworkshop.api.format.PCMFormat;
+import com.hypercube.workshop.audioworkshop.api.pcm.BitDepth;
+import com.hypercube.workshop.audioworkshop.api.pcm.PCMEncoding;
+import com.hypercube.workshop.audioworkshop.files.riff.chunks.Chunks;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+/**
+ * WAV fixtures for the tests: a fmt chunk and a data chunk, nothing else
+ * <p>Samples are signed integers at the bit depth of the format, written in little endian. The generator is called
+ * sample after sample, channel after channel, so it can use its own {@link Random}.</p>
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class WavTestFileWriter {
+    public static final int SAMPLE_RATE = 44100;
+
+    @FunctionalInterface
+    public interface SampleGenerator {
+        int sample(int channel, int sampleIndex);
+    }
+
+    public static PCMFormat format(BitDepth bitDepth, int nbChannels) {
+        return new PCMFormat(SAMPLE_RATE, bitDepth, nbChannels, PCMEncoding.SIGNED, ByteOrder.LITTLE_ENDIAN);
+    }
+
+    public static File write(File file, PCMFormat format, int nbSamples, SampleGenerator generator) throws IOException {
+        if (file.getParentFile() != null) {
+            file.getParentFile()
+                    .mkdirs();
+        }
+        int bytesPerSample = format.getBytesPerSamples();
+        byte[] frame = new byte[format.getFrameSizeInBytes()];
+        try (RiffWriter riffWriter = new RiffWriter(file)) {
+            riffWriter.writeFmtChunk(format);
+            riffWriter.beginChunk(Chunks.DATA);
+            for (int s = 0; s < nbSamples; s++) {
+                for (int c = 0; c < format.getNbChannels(); c++) {
+                    int value = generator.sample(c, s);
+                    for (int b = 0; b < bytesPerSample; b++) {
+                        frame[c * bytesPerSample + b] = (byte) (value >> (8 * b));
+                    }
+                }
+                riffWriter.write(frame);
+            }
+            riffWriter.endChunk();
+        }
+        return file;
+    }
+
+    /**
+     * A decaying sine with some noise, hitting full scale at the start, a different frequency per channel
+     * <p>Above 16 bits, the low bits are random.</p>
+     */
+    public static File writeDecayingSine(File file, BitDepth bitDepth, int nbChannels, int nbSamples) throws IOException {
+        Random random = new Random(nbSamples);
+        return write(file, format(bitDepth, nbChannels), nbSamples, (c, s) -> {
+            double envelope = Math.exp(-3.0 * s / nbSamples);
+            double value = envelope * Math.sin(s * 0.01 * (c + 1)) + random.nextGaussian() * 0.01;
+            int v = (int) Math.round(Math.max(-1, Math.min(1, value)) * 32767);
+            return switch (bitDepth) {
+                case BIT_DEPTH_16 -> v;
+                case BIT_DEPTH_24 -> v * 256 + random.nextInt(256);
+                case BIT_DEPTH_32 -> v * 65536 + random.nextInt(65536);
+                default -> throw new IllegalArgumentException("Unsupported bit depth: " + bitDepth);
+            };
+        });
+    }
+}
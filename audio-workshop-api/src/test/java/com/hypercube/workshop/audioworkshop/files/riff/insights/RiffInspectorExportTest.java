@@ -0,0 +1,133 @@
+package com.hypercube.workshop.audioworkshop.files.riff.insights;
+
+import com.hypercube.workshop.audioworkshop.api.consumer.SampleBuffer;
+import com.hypercube.workshop.audioworkshop.api.pcm.BitDepth;
+import com.hypercube.workshop.audioworkshop.files.riff.RiffFileInfo;
+import com.hypercube.workshop.audioworkshop.files.riff.RiffReader;
+import com.hypercube.workshop.audioworkshop.files.riff.WavTestFileWriter;
+import com.hypercube.workshop.audioworkshop.files.riff.WaveChannels;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@Slf4j
+class RiffInspectorExportTest {
+    private static final File FOLDER = new File("target/riff-export");
+
+    /**
+     * The CSV export before the char buffered formatter
+     */
+    private static void saveLegacyCsv(RiffInspector inspector, int nbChannels, File csvFile) throws IOException {
+        try (PrintWriter out = new PrintWriter(new FileOutputStream(csvFile))) {
+            out.println("Sep=,");
+            for (int c = 0; c < nbChannels; c++) {
+                if (c > 0) {
+                    out.print(",");
+                }
+                out.print(WaveChannels.valueOfOrdinal(c)
+                        .getShortTitle());
+            }
+            out.println();
+            inspector.inspect((buffer) -> {
+                for (int s = 0; s < buffer.nbSamples(); s++) {
+                    for (int c = 0; c < buffer.nbChannels(); c++) {
+                        if (c > 0) {
+                            out.print(",");
+                        }
+                        out.print(String.format(Locale.ENGLISH, "%f", buffer.sample(c, s)));
+                    }
+                    out.println();
+                }
+            });
+        }
+    }
+
+    @Test
+    void csvMatchesStringFormat() throws IOException {
+        for (BitDepth bitDepth : new BitDepth[]{BitDepth.BIT_DEPTH_16, BitDepth.BIT_DEPTH_24}) {
+            File wav = WavTestFileWriter.writeDecayingSine(new File(FOLDER, "csv-%s.wav".formatted(bitDepth)), bitDepth, 2, 20000);
+            File csv = new File(FOLDER, "csv-%s.csv".formatted(bitDepth));
+            File legacyCsv = new File(FOLDER, "csv-%s-legacy.csv".formatted(bitDepth));
+            try (RiffReader riffReader = new RiffReader(wav, false)) {
+                RiffInspector inspector = new RiffInspector(riffReader, riffReader.parse());
+                long start = System.nanoTime();
+                saveLegacyCsv(inspector, 2, legacyCsv);
+                long legacy = System.nanoTime() - start;
+                start = System.nanoTime();
+                inspector.saveCsv(csv);
+                long buffered = System.nanoTime() - start;
+                log.info("CSV {}: {} ms with String.format, {} ms with CsvSampleWriter", bitDepth, legacy / 1_000_000, buffered / 1_000_000);
+            }
+            assertArrayEquals(Files.readAllBytes(legacyCsv.toPath()), Files.readAllBytes(csv.toPath()));
+        }
+    }
+
+    @Test
+    void formatEdgeCases() throws IOException {
+        Random random = new Random(42);
+        int nbValues = 100_000;
+        double[] values = new double[nbValues];
+        double[] edgeCases = {0, -0.0, 1, -1, 0.0078125, -0.0078125, 0.0000005, 0.1234565, 0.9999995, -0.9999995, 1e-300, -1e-300,
+                999999.9999995, 1e6, -1e7, 1e300, Double.MAX_VALUE, Double.MIN_VALUE, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        System.arraycopy(edgeCases, 0, values, 0, edgeCases.length);
+        for (int i = edgeCases.length; i < nbValues; i++) {
+            values[i] = switch (i % 4) {
+                case 0 -> random.nextDouble() * 2 - 1;
+                case 1 -> (random.nextInt(0x1000000) - 0x800000) / (double) 0x800000;
+                // ties on the 7th decimal
+                case 2 -> (random.nextInt(2_000_000) - 1_000_000 + 0.5) / 1e6;
+                default -> random.nextGaussian() * 1000;
+            };
+        }
+        File csv = new File(FOLDER, "edge-cases.csv");
+        try (CsvSampleWriter out = new CsvSampleWriter(csv, 1)) {
+            out.onBuffer(new SampleBuffer(new double[][]{values}, 0, nbValues, 1));
+        }
+        String[] lines = Files.readString(csv.toPath())
+                .split(System.lineSeparator());
+        assertEquals(nbValues + 2, lines.length);
+        for (int i = 0; i < nbValues; i++) {
+            assertEquals(String.format(Locale.ENGLISH, "%f", values[i]), lines[i + 2], "value " + values[i]);
+        }
+    }
+
+    @Test
+    void pngMatchesRiffInspectorState() throws IOException {
+        File wav = WavTestFileWriter.writeDecayingSine(new File(FOLDER, "png.wav"), BitDepth.BIT_DEPTH_16, 2, 300_000);
+        int width = 1000;
+        int height = 300;
+        try (RiffReader riffReader = new RiffReader(wav, false)) {
+            RiffFileInfo info = riffReader.parse();
+            RiffInspector inspector = new RiffInspector(riffReader, info);
+            int samplesPerPixel = (int) (info.getAudioInfo()
+                    .getNbSamples() / width);
+            BufferedImage expected = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            inspector.inspect(new RiffInspectorState(expected, samplesPerPixel, info.getAudioInfo()
+                    .toPCMFormat()));
+
+            WaveformPeaks peaks = new WaveformPeaks(2, width, samplesPerPixel);
+            inspector.inspect(peaks);
+            assertEquals(width, peaks.getNbColumns());
+            for (int nbThreads : new int[]{1, 4}) {
+                BufferedImage actual = new WaveformRenderer(width, height, 2, nbThreads).render(peaks);
+                for (int y = 0; y < height; y++) {
+                    for (int x = 0; x < width; x++) {
+                        assertEquals(expected.getRGB(x, y), actual.getRGB(x, y), "pixel %d,%d".formatted(x, y));
+                    }
+                }
+            }
+            inspector.savePng(new File(FOLDER, "png.png"), width, height);
+        }
+    }
+}
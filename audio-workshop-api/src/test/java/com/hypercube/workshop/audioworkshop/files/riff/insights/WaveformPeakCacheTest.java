@@ -0,0 +1,179 @@
+package com.hypercube.workshop.audioworkshop.files.riff.insights;
+
+import com.hypercube.workshop.audioworkshop.api.pcm.BitDepth;
+import com.hypercube.workshop.audioworkshop.files.riff.ChecksumAlgorithm;
+import com.hypercube.workshop.audioworkshop.files.riff.RiffReader;
+import com.hypercube.workshop.audioworkshop.files.riff.WavTestFileWriter;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WaveformPeakCacheTest {
+    private static final File FOLDER = new File("target/peak-cache");
+    private static final int NB_CHANNELS = 2;
+    private static final int NB_SAMPLES = 100_000;
+
+    private static File writeWav(String name) throws IOException {
+        return WavTestFileWriter.writeDecayingSine(new File(FOLDER, name), BitDepth.BIT_DEPTH_16, NB_CHANNELS, NB_SAMPLES);
+    }
+
+    /**
+     * Min, max and RMS computed from the samples, for the columns of the query
+     */
+    private static double[][][] expectedColumns(File wav, long samplesPerPixel, int nbColumns) throws IOException {
+        double[][][] expected = new double[3][NB_CHANNELS][nbColumns];
+        double[][] sumSquares = new double[NB_CHANNELS][nbColumns];
+        for (int c = 0; c < NB_CHANNELS; c++) {
+            Arrays.fill(expected[0][c], Double.POSITIVE_INFINITY);
+            Arrays.fill(expected[1][c], Double.NEGATIVE_INFINITY);
+        }
+        long[] position = {0};
+        try (RiffReader riffReader = new RiffReader(wav, false)) {
+            new RiffInspector(riffReader, riffReader.parse()).inspect(buffer -> {
+                for (int s = 0; s < buffer.nbSamples(); s++) {
+                    int x = (int) (position[0]++ / samplesPerPixel);
+                    if (x >= nbColumns) {
+                        continue;
+                    }
+                    for (int c = 0; c < NB_CHANNELS; c++) {
+                        double sample = buffer.sample(c, s);
+                        expected[0][c][x] = Math.min(expected[0][c][x], sample);
+                        expected[1][c][x] = Math.max(expected[1][c][x], sample);
+                        sumSquares[c][x] += sample * sample;
+                    }
+                }
+            });
+        }
+        for (int c = 0; c < NB_CHANNELS; c++) {
+            for (int x = 0; x < nbColumns; x++) {
+                long count = Math.min(samplesPerPixel, NB_SAMPLES - x * samplesPerPixel);
+                expected[2][c][x] = Math.sqrt(sumSquares[c][x] / count);
+            }
+        }
+        return expected;
+    }
+
+    @Test
+    void alignedQueriesAreExact() throws IOException {
+        File wav = writeWav("aligned.wav");
+        WaveformPeakCache cache = WaveformPeakCache.build(wav, 256);
+        assertEquals(NB_SAMPLES, cache.getNbSamples());
+        assertEquals(NB_CHANNELS, cache.getNbChannels());
+        assertEquals((NB_SAMPLES + 255) / 256, cache.getNbEntries(0));
+        assertEquals(1, cache.getNbEntries(cache.getNbLevels() - 1));
+        for (long samplesPerPixel : new long[]{256, 1024, 4096, 65536}) {
+            int width = (int) ((NB_SAMPLES + samplesPerPixel - 1) / samplesPerPixel);
+            PeakColumns columns = cache.query(0, samplesPerPixel * width, width);
+            assertEquals(width, columns.getNbColumns());
+            double[][][] expected = expectedColumns(wav, samplesPerPixel, width);
+            for (int c = 0; c < NB_CHANNELS; c++) {
+                for (int x = 0; x < width; x++) {
+                    String pixel = "%d samples per pixel, channel %d, column %d".formatted(samplesPerPixel, c, x);
+                    assertEquals(expected[0][c][x], columns.getMin(c, x), 0, pixel);
+                    assertEquals(expected[1][c][x], columns.getMax(c, x), 0, pixel);
+                    assertEquals(expected[2][c][x], columns.getRms(c, x), 1e-5, pixel);
+                }
+            }
+        }
+    }
+
+    @Test
+    void unalignedQueriesNeverUnderEstimate() throws IOException {
+        File wav = writeWav("unaligned.wav");
+        WaveformPeakCache cache = WaveformPeakCache.build(wav, 256);
+        int width = 333;
+        long samplesPerPixel = NB_SAMPLES / width;
+        PeakColumns columns = cache.query(0, NB_SAMPLES, width);
+        assertEquals(width, columns.getNbColumns());
+        assertEquals(samplesPerPixel, columns.getSamplesPerPixel());
+        double[][][] expected = expectedColumns(wav, samplesPerPixel, width);
+        for (int c = 0; c < NB_CHANNELS; c++) {
+            for (int x = 0; x < width; x++) {
+                assertTrue(columns.getMin(c, x) <= expected[0][c][x]);
+                assertTrue(columns.getMax(c, x) >= expected[1][c][x]);
+            }
+        }
+        // a zoom in the middle of the file
+        PeakColumns zoom = cache.query(50_000, 51_000, 100);
+        assertEquals(100, zoom.getNbColumns());
+        assertEquals(10, zoom.getSamplesPerPixel());
+    }
+
+    @Test
+    void sidecarIsReusedUntilTheSourceChanges() throws IOException {
+        File wav = writeWav("sidecar.wav");
+        File sidecar = WaveformPeakCache.sidecarOf(wav);
+        sidecar.delete();
+        WaveformPeakCache created = WaveformPeakCache.getOrCreate(wav);
+        assertTrue(sidecar.exists());
+        long sidecarDate = sidecar.lastModified() - 10_000;
+        assertTrue(sidecar.setLastModified(sidecarDate));
+
+        WaveformPeakCache loaded = WaveformPeakCache.getOrCreate(wav);
+        assertEquals(sidecarDate, sidecar.lastModified(), "the sidecar must not be rewritten");
+        assertEquals(created.getChecksum(), loaded.getChecksum());
+        // computed in the same pass than the peaks, but identical to a separate read
+        try (RiffReader riffReader = new RiffReader(wav, false)) {
+            assertEquals(riffReader.computeChecksum(riffReader.parse()
+                    .getDataChunk(), ChecksumAlgorithm.XXHASH64), created.getChecksum());
+        }
+        assertEquals(created.getNbLevels(), loaded.getNbLevels());
+        for (int level = 0; level < created.getNbLevels(); level++) {
+            assertEquals(created.getNbEntries(level), loaded.getNbEntries(level));
+        }
+        PeakColumns expected = created.query(0, NB_SAMPLES, 500);
+        PeakColumns actual = loaded.query(0, NB_SAMPLES, 500);
+        for (int c = 0; c < NB_CHANNELS; c++) {
+            assertArrayEquals(expected.min[c], actual.min[c]);
+            assertArrayEquals(expected.max[c], actual.max[c]);
+            assertArrayEquals(expected.rms[c], actual.rms[c]);
+        }
+        // the known checksum is enough, whatever the date of the file
+        assertTrue(wav.setLastModified(wav.lastModified() + 5_000));
+        assertEquals(created.getChecksum(), WaveformPeakCache.getOrCreate(wav, created.getChecksum())
+                .getChecksum());
+        assertEquals(sidecarDate, sidecar.lastModified());
+
+        // otherwise touching the source rebuilds the sidecar
+        WaveformPeakCache rebuilt = WaveformPeakCache.getOrCreate(wav);
+        assertTrue(rebuilt.isUpToDate(wav));
+        assertTrue(sidecar.lastModified() != sidecarDate);
+        assertEquals(created.getChecksum(), rebuilt.getChecksum());
+
+        // a corrupted sidecar is ignored
+        try (RandomAccessFile raf = new RandomAccessFile(sidecar, "rw")) {
+            raf.writeInt(0);
+        }
+        assertNull(WaveformPeakCache.load(sidecar));
+        WaveformPeakCache.getOrCreate(wav)
+                .savePng(new File(FOLDER, "sidecar.png"), 800, 200);
+        assertNotNull(WaveformPeakCache.load(sidecar));
+    }
+
+    @Test
+    void failedSaveLeavesNothingBehind() throws IOException {
+        File wav = writeWav("blocked-sidecar.wav");
+        File sidecar = WaveformPeakCache.sidecarOf(wav);
+        File tmp = new File(sidecar.getPath() + ".tmp");
+        sidecar.delete();
+        // a non empty folder in place of the sidecar can't be replaced
+        File blocker = new File(sidecar, "blocker");
+        blocker.getParentFile()
+                .mkdirs();
+        blocker.createNewFile();
+        try {
+            WaveformPeakCache cache = WaveformPeakCache.getOrCreate(wav);
+            assertEquals(NB_SAMPLES, cache.getNbSamples());
+            assertFalse(tmp.exists());
+            assertTrue(sidecar.isDirectory());
+        } finally {
+            blocker.delete();
+            sidecar.delete();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.hypercube.workshop.audioworkshop.benchmarks;
+
+import com.hypercube.workshop.audioworkshop.api.consumer.SampleBuffer;
+import com.hypercube.workshop.audioworkshop.api.format.PCMBufferFormat;
+import com.hypercube.workshop.audioworkshop.api.insights.dft.DFTCalculator;
+import com.hypercube.workshop.audioworkshop.api.insights.dft.DFTEngine;
+import com.hypercube.workshop.audioworkshop.api.insights.dft.fast.FFTCalculator;
+import com.hypercube.workshop.audioworkshop.api.insights.dft.fast.JavaFFTCalculator;
+import com.hypercube.workshop.audioworkshop.api.insights.dft.windows.BlackmanHarris;
+import com.hypercube.workshop.audioworkshop.api.pcm.BitDepth;
+import com.hypercube.workshop.audioworkshop.api.pcm.PCMEncoding;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One window through {@link FFTCalculator} (FFTW) and {@link JavaFFTCalculator}
+ * <p>The history keeps only the last spectrum, so the measure does not include the growth of the result list.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FFTCalculatorBenchmark {
+    @Param({"FFTW", "JAVA_FFT"})
+    private DFTEngine engine;
+    @Param({"1024", "4096", "16384"})
+    private int windowSize;
+    @Param({"1", "2"})
+    private int nbChannels;
+
+    private DFTCalculator calculator;
+    private SampleBuffer window;
+
+    @Setup
+    public void setup() {
+        // 1 ms buffers, so the sample rate gives the window size
+        PCMBufferFormat format = new PCMBufferFormat(1, windowSize * 1000, BitDepth.BIT_DEPTH_16, nbChannels, PCMEncoding.SIGNED, ByteOrder.LITTLE_ENDIAN);
+        calculator = switch (engine) {
+            case FFTW -> new FFTCalculator(format, new BlackmanHarris(), 1);
+            case JAVA_FFT -> new JavaFFTCalculator(format, new BlackmanHarris(), 1);
+            case SIMPLE -> throw new IllegalArgumentException("The naive DFT is too slow to be benchmarked");
+        };
+        double[][] samples = SyntheticSignals.create(nbChannels, windowSize, 44100);
+        window = new SampleBuffer(samples, 0, windowSize, nbChannels);
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (calculator instanceof FFTCalculator fftCalculator) {
+            fftCalculator.close();
+        }
+    }
+
+    @Benchmark
+    public DFTCalculator onBuffer() {
+        calculator.onBuffer(window);
+        return calculator;
+    }
+}
@@ -0,0 +1,76 @@
+package com.hypercube.workshop.audioworkshop.benchmarks;
+
+import com.hypercube.workshop.audioworkshop.api.format.PCMBufferFormat;
+import com.hypercube.workshop.audioworkshop.api.pcm.BitDepth;
+import com.hypercube.workshop.audioworkshop.api.pcm.PCMConverter;
+import com.hypercube.workshop.audioworkshop.api.pcm.PCMEncoding;
+import com.hypercube.workshop.audioworkshop.api.pcm.PCMtoSampleFunction;
+import com.hypercube.workshop.audioworkshop.api.pcm.SampleToPCMFunction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PCM to samples and samples to PCM, for one buffer of 50ms at 48 kHz
+ * <p>A HEAP buffer goes through the bulk codecs working on the backing array, a DIRECT buffer has no array and
+ * goes through the scalar ones, so the two give the gain of the bulk path.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PCMConverterBenchmark {
+    @Param({"8", "16", "24", "32"})
+    private int bitDepth;
+    @Param({"1", "2", "6"})
+    private int nbChannels;
+    @Param({"LITTLE_ENDIAN", "BIG_ENDIAN"})
+    private String byteOrder;
+    @Param({"HEAP", "DIRECT"})
+    private String buffer;
+
+    private PCMtoSampleFunction pcmToSample;
+    private SampleToPCMFunction sampleToPcm;
+    private double[][] samples;
+    private ByteBuffer pcmBuffer;
+    private int nbSamples;
+
+    @Setup
+    public void setup() {
+        ByteOrder order = "BIG_ENDIAN".equals(byteOrder) ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+        PCMBufferFormat format = new PCMBufferFormat(50, 48000, BitDepth.valueOf(bitDepth), nbChannels, PCMEncoding.SIGNED, order);
+        pcmToSample = PCMConverter.getPCMtoSampleFunction(format);
+        sampleToPcm = PCMConverter.getSampleToPCMFunction(format);
+        nbSamples = format.getSampleBufferSize();
+        samples = SyntheticSignals.create(nbChannels, nbSamples, format.getSampleRate());
+        pcmBuffer = "DIRECT".equals(buffer) ? ByteBuffer.allocateDirect(format.getByteBufferSize())
+                .order(order) : format.wrapPCMBuffer(format.allocatePcmBuffer());
+        sampleToPcm.convert(samples, pcmBuffer, nbSamples, nbChannels);
+    }
+
+    @Benchmark
+    public double[][] pcmToSample() {
+        pcmToSample.convert(pcmBuffer, samples, nbSamples, nbChannels);
+        return samples;
+    }
+
+    @Benchmark
+    public ByteBuffer sampleToPcm() {
+        sampleToPcm.convert(samples, pcmBuffer, nbSamples, nbChannels);
+        return pcmBuffer;
+    }
+}
@@ -0,0 +1,48 @@
+package com.hypercube.workshop.audioworkshop.benchmarks;
+
+import com.hypercube.workshop.audioworkshop.api.consumer.SampleBuffer;
+import com.hypercube.workshop.audioworkshop.api.insights.rms.RMSCalculator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link RMSCalculator} on buffers of various sizes
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RMSCalculatorBenchmark {
+    @Param({"256", "2400", "48000"})
+    private int bufferSize;
+    @Param({"1", "2", "6"})
+    private int nbChannels;
+
+    private RMSCalculator calculator;
+    private SampleBuffer buffer;
+
+    @Setup
+    public void setup() {
+        calculator = new RMSCalculator(nbChannels);
+        buffer = new SampleBuffer(SyntheticSignals.create(nbChannels, bufferSize, 48000), 0, bufferSize, nbChannels);
+    }
+
+    @Benchmark
+    public double[] onBuffer() {
+        calculator.onBuffer(buffer);
+        return calculator.getRms();
+    }
+}
@@ -0,0 +1,63 @@
+package com.hypercube.workshop.audioworkshop.benchmarks;
+
+import com.hypercube.workshop.audioworkshop.api.insights.rms.RMSCalculator;
+import com.hypercube.workshop.audioworkshop.files.riff.RiffFileInfo;
+import com.hypercube.workshop.audioworkshop.files.riff.RiffReadMode;
+import com.hypercube.workshop.audioworkshop.files.riff.RiffReader;
+import com.hypercube.workshop.audioworkshop.files.riff.insights.RiffInspector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decode a whole file with {@link RiffInspector}, the samples go to a {@link RMSCalculator}
+ * <p>The file is parsed once per trial, only the decoding is measured. AIFF files are not listed since
+ * {@link RiffInspector} reads the WAV data chunk only. Both {@link RiffReadMode} are compared: heap copies vs slices of
+ * the memory mapped file.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RiffInspectorBenchmark {
+    @Param({"WAV_16_MONO_1S", "WAV_16_STEREO_10S", "WAV_24_STEREO_10S_CUES", "WAV_32_STEREO_60S"})
+    private SyntheticAudioFile audioFile;
+    @Param
+    private RiffReadMode readMode;
+
+    private RiffReader riffReader;
+    private RiffFileInfo info;
+    private RMSCalculator rmsCalculator;
+
+    @Setup
+    public void setup() throws IOException {
+        riffReader = new RiffReader(audioFile.getFile(), readMode);
+        info = riffReader.parse();
+        rmsCalculator = new RMSCalculator(audioFile.getNbChannels());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        riffReader.close();
+    }
+
+    @Benchmark
+    public double[] inspect() {
+        new RiffInspector(riffReader, info).inspect(rmsCalculator);
+        return rmsCalculator.getRms();
+    }
+}
@@ -0,0 +1,49 @@
+package com.hypercube.workshop.audioworkshop.benchmarks;
+
+import com.hypercube.workshop.audioworkshop.files.riff.RiffFileInfo;
+import com.hypercube.workshop.audioworkshop.files.riff.RiffReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Open and parse WAV, AIFF and DLS files with {@link RiffReader}, the audio data is not read
+ * <p>The DLS files and the WAV files with thousands of cue points are made of many small chunks, so they mostly measure
+ * the primitive reads of {@link com.hypercube.workshop.audioworkshop.files.io.PositionalReadWriteStream}.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RiffReaderBenchmark {
+    @Param
+    private SyntheticAudioFile audioFile;
+
+    private File file;
+
+    @Setup
+    public void setup() {
+        file = audioFile.getFile();
+    }
+
+    @Benchmark
+    public RiffFileInfo parse() throws IOException {
+        try (RiffReader riffReader = new RiffReader(file, false)) {
+            return riffReader.parse();
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.hypercube.workshop.audioworkshop.benchmarks;
+
+import com.hypercube.workshop.audioworkshop.api.errors.AudioError;
+import com.hypercube.workshop.audioworkshop.api.format.PCMBufferFormat;
+import com.hypercube.workshop.audioworkshop.api.format.PCMFormat;
+import com.hypercube.workshop.audioworkshop.api.pcm.BitDepth;
+import com.hypercube.workshop.audioworkshop.api.pcm.PCMConverter;
+import com.hypercube.workshop.audioworkshop.api.pcm.PCMEncoding;
+import com.hypercube.workshop.audioworkshop.api.pcm.PCMMarker;
+import com.hypercube.workshop.audioworkshop.files.riff.RiffConstants;
+import com.hypercube.workshop.audioworkshop.files.riff.RiffWriter;
+import com.hypercube.workshop.audioworkshop.files.riff.chunks.Chunks;
+import lombok.Getter;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Audio files generated from {@link SyntheticSignals}, in several sizes and formats
+ * <p>They are written once in {@code target/benchmark-files} (or the directory given by the system property
+ * {@value #DIRECTORY_PROPERTY}) and reused by the next runs.</p>
+ * <ul>
+ *     <li>WAV files are written with {@link RiffWriter}, some of them with many cue points to stress the chunk parsing</li>
+ *     <li>AIFF files are written by hand since {@link RiffWriter} only knows WAV: FORM/AIFF with a COMM and a SSND chunk, big endian</li>
+ *     <li>DLS files are made of thousands of small chunks, see {@link SyntheticDLSWriter}</li>
+ * </ul>
+ */
+@Getter
+public enum SyntheticAudioFile {
+    WAV_16_MONO_1S(Container.WAV, 44100, BitDepth.BIT_DEPTH_16, 1, 1, 0),
+    WAV_16_STEREO_10S(Container.WAV, 44100, BitDepth.BIT_DEPTH_16, 2, 10, 16),
+    WAV_24_STEREO_10S_CUES(Container.WAV, 48000, BitDepth.BIT_DEPTH_24, 2, 10, 2000),
+    WAV_16_MONO_10S_MANY_CUES(Container.WAV, 44100, BitDepth.BIT_DEPTH_16, 1, 10, 20000),
+    WAV_32_STEREO_60S(Container.WAV, 96000, BitDepth.BIT_DEPTH_32, 2, 60, 0),
+    AIFF_16_STEREO_10S(Container.AIFF, 44100, BitDepth.BIT_DEPTH_16, 2, 10, 0),
+    AIFF_24_MONO_60S(Container.AIFF, 48000, BitDepth.BIT_DEPTH_24, 1, 60, 0),
+    DLS_128_INSTRUMENTS(22050, BitDepth.BIT_DEPTH_16, 128, 16),
+    DLS_512_INSTRUMENTS(22050, BitDepth.BIT_DEPTH_16, 512, 32);
+
+    public static final String DIRECTORY_PROPERTY = "audioworkshop.benchmarks.dir";
+
+    public enum Container {
+        WAV,
+        AIFF,
+        DLS
+    }
+
+    private final Container container;
+    private final int sampleRate;
+    private final BitDepth bitDepth;
+    private final int nbChannels;
+    private final int durationInSeconds;
+    private final int nbMarkers;
+    private final int nbInstruments;
+    private final int nbRegions;
+
+    SyntheticAudioFile(Container container, int sampleRate, BitDepth bitDepth, int nbChannels, int durationInSeconds, int nbMarkers) {
+        this.container = container;
+        this.sampleRate = sampleRate;
+        this.bitDepth = bitDepth;
+        this.nbChannels = nbChannels;
+        this.durationInSeconds = durationInSeconds;
+        this.nbMarkers = nbMarkers;
+        this.nbInstruments = 0;
+        this.nbRegions = 0;
+    }
+
+    /**
+     * Mono DLS sound bank, there is one sample for 4 regions
+     */
+    SyntheticAudioFile(int sampleRate, BitDepth bitDepth, int nbInstruments, int nbRegions) {
+        this.container = Container.DLS;
+        this.sampleRate = sampleRate;
+        this.bitDepth = bitDepth;
+        this.nbChannels = 1;
+        this.durationInSeconds = 0;
+        this.nbMarkers = 0;
+        this.nbInstruments = nbInstruments;
+        this.nbRegions = nbRegions;
+    }
+
+    public PCMFormat getFormat() {
+        ByteOrder byteOrder = container == Container.AIFF ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+        return new PCMFormat(sampleRate, bitDepth, nbChannels, PCMEncoding.SIGNED, byteOrder);
+    }
+
+    public long getNbSamples() {
+        return (long) sampleRate * durationInSeconds;
+    }
+
+    /**
+     * @return the file, generated if it does not exist yet
+     */
+    public synchronized File getFile() {
+        File dir = new File(System.getProperty(DIRECTORY_PROPERTY, "target/benchmark-files"));
+        String extension = switch (container) {
+            case WAV -> ".wav";
+            case AIFF -> ".aif";
+            case DLS -> ".dls";
+        };
+        File file = new File(dir, name().toLowerCase() + extension);
+        if (!file.exists() || file.length() == 0) {
+            try {
+                switch (container) {
+                    case WAV -> writeWAV(file);
+                    case AIFF -> writeAIFF(file);
+                    case DLS -> new SyntheticDLSWriter(getFormat(), nbInstruments, nbRegions).write(file);
+                }
+            } catch (IOException e) {
+                throw new AudioError("Unable to generate " + file.getAbsolutePath(), e);
+            }
+        }
+        return file;
+    }
+
+    private void writeWAV(File file) throws IOException {
+        try (RiffWriter riffWriter = new RiffWriter(file)) {
+            riffWriter.writeFmtChunk(getFormat());
+            riffWriter.beginChunk(Chunks.DATA);
+            writeSamples(new PCMBufferFormat(100, getFormat()), riffWriter::write);
+            riffWriter.endChunk();
+            if (nbMarkers > 0) {
+                List<PCMMarker> markers = new ArrayList<>(nbMarkers);
+                long step = getNbSamples() / nbMarkers;
+                for (int i = 0; i < nbMarkers; i++) {
+                    markers.add(PCMMarker.of("Marker " + (i + 1), i * step));
+                }
+                riffWriter.writeMarkers(markers);
+            }
+        }
+    }
+
+    private void writeAIFF(File file) throws IOException {
+        final int commSize = 18;
+        long nbAudioBytes = getNbSamples() * getFormat().getFrameSizeInBytes();
+        long formSize = 4 + (8 + commSize) + (8 + 8 + nbAudioBytes) + (nbAudioBytes % 2);
+        file.getParentFile()
+                .mkdirs();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.write(RiffConstants.FORM.getBytes(StandardCharsets.US_ASCII));
+            out.writeInt((int) formSize);
+            out.write(RiffConstants.RIFF_TYPE_AIFF.getBytes(StandardCharsets.US_ASCII));
+
+            out.write(Chunks.AIFF_FORMAT.getBytes(StandardCharsets.US_ASCII));
+            out.writeInt(commSize);
+            out.writeShort(nbChannels);
+            out.writeInt((int) getNbSamples());
+            out.writeShort(bitDepth.getBits());
+            writeExtended(out, sampleRate);
+
+            out.write(Chunks.AIFF_SSND.getBytes(StandardCharsets.US_ASCII));
+            out.writeInt((int) (8 + nbAudioBytes));
+            // offset and block size
+            out.writeInt(0);
+            out.writeInt(0);
+            writeSamples(new PCMBufferFormat(100, getFormat()), out::write);
+            if (nbAudioBytes % 2 != 0) {
+                out.writeByte(0);
+            }
+        }
+    }
+
+    /**
+     * IEEE 754 80 bits extended precision, only for positive integers like sample rates
+     */
+    private static void writeExtended(DataOutputStream out, int value) throws IOException {
+        int log2 = 31 - Integer.numberOfLeadingZeros(value);
+        out.writeShort(16383 + log2);
+        out.writeLong((long) value << (63 - log2));
+    }
+
+    private void writeSamples(PCMBufferFormat format, PCMWriter writer) throws IOException {
+        var converter = PCMConverter.getSampleToPCMFunction(format);
+        byte[] pcm = format.allocatePcmBuffer();
+        double[][] samples = format.allocateSampleBuffer();
+        int bufferSize = format.getSampleBufferSize();
+        long nbSamples = getNbSamples();
+        for (long pos = 0; pos < nbSamples; pos += bufferSize) {
+            int size = (int) Math.min(bufferSize, nbSamples - pos);
+            SyntheticSignals.fill(samples, size, pos, sampleRate);
+            converter.convert(samples, format.wrapPCMBuffer(pcm), size, nbChannels);
+            writer.write(pcm, 0, size * format.getFrameSizeInBytes());
+        }
+    }
+
+    @FunctionalInterface
+    private interface PCMWriter {
+        void write(byte[] data, int offset, int nbBytes) throws IOException;
+    }
+}
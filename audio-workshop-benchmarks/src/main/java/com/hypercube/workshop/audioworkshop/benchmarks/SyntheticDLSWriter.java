@@ -0,0 +1,214 @@
+package com.hypercube.workshop.audioworkshop.benchmarks;
+
+import com.hypercube.workshop.audioworkshop.api.format.PCMBufferFormat;
+import com.hypercube.workshop.audioworkshop.api.format.PCMFormat;
+import com.hypercube.workshop.audioworkshop.api.pcm.PCMConverter;
+import com.hypercube.workshop.audioworkshop.files.riff.RiffConstants;
+import com.hypercube.workshop.audioworkshop.files.riff.chunks.Chunks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * Write a DLS level 2 file with a lot of small chunks, to stress the chunk parsing of the RiffReader
+ * <pre>
+ * RIFF DLS
+ *   colh, vers
+ *   LIST lins
+ *     LIST ins  (per instrument)
+ *       insh
+ *       LIST lrgn
+ *         LIST rgn  (per region) rgnh, wsmp, wlnk
+ *       LIST INFO INAM
+ *   ptbl
+ *   LIST wvpl
+ *     LIST wave (per sample) fmt, wsmp, data, LIST INFO INAM
+ *   LIST INFO INAM
+ * </pre>
+ * <p>The file is built in memory since {@link com.hypercube.workshop.audioworkshop.files.riff.RiffWriter} only writes WAV.</p>
+ */
+class SyntheticDLSWriter {
+    private static final int WAVE_SIZE_IN_SAMPLES = 2048;
+    private static final int NB_KEYS = 128;
+
+    private final PCMFormat format;
+    private final int nbInstruments;
+    private final int nbRegions;
+    private final int nbWaves;
+    private final Deque<Integer> chunkSizeStack = new ArrayDeque<>();
+    private ByteBuffer out;
+
+    SyntheticDLSWriter(PCMFormat format, int nbInstruments, int nbRegions) {
+        this.format = format;
+        this.nbInstruments = nbInstruments;
+        this.nbRegions = nbRegions;
+        this.nbWaves = nbInstruments * nbRegions / 4;
+    }
+
+    void write(File file) throws IOException {
+        int waveSize = WAVE_SIZE_IN_SAMPLES * format.getFrameSizeInBytes();
+        out = ByteBuffer.allocate(1024 + nbInstruments * (128 + nbRegions * 96) + nbWaves * (128 + waveSize))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        beginChunk(RiffConstants.RIFF);
+        writeId(RiffConstants.AIFF_TYPE_DLS);
+
+        beginChunk("colh");
+        out.putInt(nbInstruments);
+        endChunk();
+
+        beginChunk(Chunks.VERS);
+        out.putInt(0x00010000);
+        out.putInt(0);
+        endChunk();
+
+        beginList(Chunks.LINS);
+        for (int i = 0; i < nbInstruments; i++) {
+            writeInstrument(i);
+        }
+        endChunk();
+
+        // the pool table is written before the pool, we know the offsets since all waves have the same size
+        beginChunk(Chunks.PTBL);
+        out.putInt(8);
+        out.putInt(nbWaves);
+        int offsetsPosition = out.position();
+        out.position(offsetsPosition + nbWaves * 4);
+        endChunk();
+
+        beginList("wvpl");
+        // offsets start after the list type
+        int poolStart = out.position();
+        byte[] pcm = createPCM();
+        for (int w = 0; w < nbWaves; w++) {
+            out.putInt(offsetsPosition + w * 4, out.position() - poolStart);
+            writeWave(w, pcm);
+        }
+        endChunk();
+
+        writeName("Synthetic DLS");
+        endChunk();
+
+        file.getParentFile()
+                .mkdirs();
+        Files.write(file.toPath(), Arrays.copyOf(out.array(), out.position()));
+    }
+
+    private void writeInstrument(int instrument) {
+        beginList(Chunks.INS);
+        beginChunk("insh");
+        out.putInt(nbRegions);
+        out.putInt(instrument / 128);
+        out.putInt(instrument % 128);
+        endChunk();
+        beginList(Chunks.LRGN);
+        int keysPerRegion = Math.max(1, NB_KEYS / nbRegions);
+        for (int r = 0; r < nbRegions; r++) {
+            beginList(Chunks.RGN);
+            beginChunk(Chunks.RGNH);
+            int low = Math.min(NB_KEYS - 1, r * keysPerRegion);
+            out.putShort((short) low);
+            out.putShort((short) Math.min(NB_KEYS - 1, low + keysPerRegion - 1));
+            out.putShort((short) 0);
+            out.putShort((short) 127);
+            out.putShort((short) 0);
+            out.putShort((short) 0);
+            endChunk();
+            writeWaveSample(low);
+            beginChunk(Chunks.WLNK);
+            out.putShort((short) 0);
+            out.putShort((short) 0);
+            out.putInt(1);
+            out.putInt((instrument * nbRegions + r) % nbWaves);
+            endChunk();
+            endChunk();
+        }
+        endChunk();
+        writeName("Instrument %03d".formatted(instrument));
+        endChunk();
+    }
+
+    private void writeWave(int wave, byte[] pcm) {
+        beginList("wave");
+        beginChunk(Chunks.FORMAT);
+        out.putShort((short) 1);
+        out.putShort((short) format.getNbChannels());
+        out.putInt(format.getSampleRate());
+        out.putInt(format.getSampleRate() * format.getFrameSizeInBytes());
+        out.putShort((short) format.getFrameSizeInBytes());
+        out.putShort((short) format.getBitDepth()
+                .getBits());
+        endChunk();
+        writeWaveSample(60);
+        beginChunk(Chunks.DATA);
+        out.put(pcm);
+        endChunk();
+        writeName("Sample %04d".formatted(wave));
+        endChunk();
+    }
+
+    private void writeWaveSample(int unityNote) {
+        beginChunk("wsmp");
+        out.putInt(20);
+        out.putShort((short) unityNote);
+        out.putShort((short) 0);
+        out.putInt(0);
+        out.putInt(0);
+        out.putInt(0);
+        endChunk();
+    }
+
+    private void writeName(String name) {
+        beginList(Chunks.LIST_TYPE_INFO);
+        beginChunk("INAM");
+        out.put(name.getBytes(StandardCharsets.US_ASCII));
+        out.put((byte) 0);
+        endChunk();
+        endChunk();
+    }
+
+    private byte[] createPCM() {
+        PCMBufferFormat bufferFormat = new PCMBufferFormat(1000, format);
+        double[][] samples = SyntheticSignals.create(format.getNbChannels(), WAVE_SIZE_IN_SAMPLES, format.getSampleRate());
+        byte[] pcm = new byte[WAVE_SIZE_IN_SAMPLES * format.getFrameSizeInBytes()];
+        PCMConverter.getSampleToPCMFunction(bufferFormat)
+                .convert(samples, bufferFormat.wrapPCMBuffer(pcm), WAVE_SIZE_IN_SAMPLES, format.getNbChannels());
+        return pcm;
+    }
+
+    private void writeId(String id) {
+        out.put(id.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private void beginList(String listType) {
+        beginChunk(Chunks.LIST);
+        writeId(listType);
+    }
+
+    private void align() {
+        if (out.position() % 2 != 0) {
+            out.put((byte) 0);
+        }
+    }
+
+    private void beginChunk(String chunkId) {
+        writeId(chunkId);
+        chunkSizeStack.push(out.position());
+        out.putInt(0);
+    }
+
+    /**
+     * The pad byte is not part of the chunk size, but it is part of the parent
+     */
+    private void endChunk() {
+        int pos = chunkSizeStack.pop();
+        out.putInt(pos, out.position() - pos - 4);
+        align();
+    }
+}
@@ -0,0 +1,42 @@
+package com.hypercube.workshop.audioworkshop.benchmarks;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic test signals, so two benchmark runs always process the same samples
+ * <p>Each channel is a mix of 3 sines (different for each channel) and a bit of seeded noise, normalized in [-1,1]</p>
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class SyntheticSignals {
+    public static final long SEED = 0xA0D10L;
+    private static final double[] FREQUENCIES = {110, 440, 3520};
+    private static final double NOISE_LEVEL = 0.05;
+
+    /**
+     * @param startSample position of the first sample in the signal, to generate it buffer per buffer
+     */
+    public static void fill(double[][] samples, int nbSamples, long startSample, int sampleRate) {
+        SplittableRandom random = new SplittableRandom(SEED + startSample);
+        for (int ch = 0; ch < samples.length; ch++) {
+            double[] channel = samples[ch];
+            for (int s = 0; s < nbSamples; s++) {
+                double t = (double) (startSample + s) / sampleRate;
+                double value = 0;
+                for (int f = 0; f < FREQUENCIES.length; f++) {
+                    value += Math.sin(2 * Math.PI * FREQUENCIES[f] * (ch + 1) * t) / (f + 2);
+                }
+                value += (random.nextDouble() * 2 - 1) * NOISE_LEVEL;
+                channel[s] = value * 0.9;
+            }
+        }
+    }
+
+    public static double[][] create(int nbChannels, int nbSamples, int sampleRate) {
+        double[][] samples = new double[nbChannels][nbSamples];
+        fill(samples, nbSamples, 0, sampleRate);
+        return samples;
+    }
+}
@@ -0,0 +1,68 @@
+package com.hypercube.workshop.audioworkshop.benchmarks;
+
+import com.hypercube.workshop.audioworkshop.api.consumer.RingWindowedSampleBufferConsumer;
+import com.hypercube.workshop.audioworkshop.api.consumer.SampleBuffer;
+import com.hypercube.workshop.audioworkshop.api.consumer.SampleBufferConsumer;
+import com.hypercube.workshop.audioworkshop.api.consumer.WindowedSampleBufferConsumer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cut buffers of 50 ms at 48 kHz in overlapping windows, with {@link WindowedSampleBufferConsumer} and
+ * {@link RingWindowedSampleBufferConsumer}
+ * <p>The windows are given to a {@link Blackhole}, so only the windowing itself is measured.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WindowedSampleBufferConsumerBenchmark {
+    private static final int BUFFER_SIZE = 2400;
+
+    public enum Implementation {
+        COPY,
+        RING
+    }
+
+    @Param({"COPY", "RING"})
+    private Implementation implementation;
+    @Param({"1024", "4096"})
+    private int windowSize;
+    @Param({"0", "50", "75"})
+    private int overlapPercent;
+    @Param({"2"})
+    private int nbChannels;
+
+    private SampleBufferConsumer windowedConsumer;
+    private SampleBuffer buffer;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        int sampleIncrement = windowSize * (100 - overlapPercent) / 100;
+        SampleBufferConsumer consumer = blackhole::consume;
+        windowedConsumer = switch (implementation) {
+            case COPY -> new WindowedSampleBufferConsumer(windowSize, sampleIncrement, nbChannels, consumer);
+            case RING -> new RingWindowedSampleBufferConsumer(windowSize, sampleIncrement, nbChannels, consumer);
+        };
+        buffer = new SampleBuffer(SyntheticSignals.create(nbChannels, BUFFER_SIZE, 48000), 0, BUFFER_SIZE, nbChannels);
+    }
+
+    @Benchmark
+    public void onBuffer() {
+        windowedConsumer.onBuffer(buffer);
+    }
+}
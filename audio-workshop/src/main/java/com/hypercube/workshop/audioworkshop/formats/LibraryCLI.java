@@ -0,0 +1,41 @@
+package com.hypercube.workshop.audioworkshop.formats;
+
+import com.hypercube.workshop.audioworkshop.files.index.AudioIndex;
+import com.hypercube.workshop.audioworkshop.files.index.AudioIndexEntry;
+import com.hypercube.workshop.audioworkshop.files.index.AudioLibraryScanner;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.shell.standard.ShellComponent;
+import org.springframework.shell.standard.ShellMethod;
+import org.springframework.shell.standard.ShellOption;
+
+import java.io.File;
+import java.io.IOException;
+
+@Slf4j
+@ShellComponent
+@AllArgsConstructor
+public class LibraryCLI {
+    private static final String INDEX_FILENAME = ".audio-index";
+
+    @ShellMethod(value = "Index all WAV/AIFF/FLAC files of a folder, only new or modified files are parsed")
+    public void scanLibrary(@ShellOption(value = "-i") File folder, @ShellOption(value = "-o", defaultValue = ShellOption.NULL) File indexFile, @ShellOption(value = "-t", defaultValue = "0") int nbThreads) throws IOException {
+        File index = indexFile != null ? indexFile : new File(folder, INDEX_FILENAME);
+        AudioLibraryScanner scanner = nbThreads > 0 ? new AudioLibraryScanner(nbThreads) : new AudioLibraryScanner();
+        scanner.scan(folder, index);
+    }
+
+    @ShellMethod(value = "List the content of a library index")
+    public void listLibrary(@ShellOption(value = "-i") File indexFile) {
+        AudioIndex index = AudioIndex.load(indexFile);
+        for (AudioIndexEntry entry : index.getEntries()) {
+            if (entry.isValid()) {
+                log.info("%s %s %d Hz %d bits %d ch %.1f s %s %s".formatted(entry.path(), entry.format(), entry.sampleRate(), entry.bitDepth(), entry.nbChannels(),
+                        entry.duration(), entry.chunks(), entry.checksum()));
+            } else {
+                log.warn("%s %s".formatted(entry.path(), entry.error()));
+            }
+        }
+        log.info("{} files", index.size());
+    }
+}
@@ -6,6 +6,7 @@ import com.hypercube.workshop.audioworkshop.files.riff.RiffAudioInfo;
 import com.hypercube.workshop.audioworkshop.files.riff.RiffFileInfo;
 import com.hypercube.workshop.audioworkshop.files.riff.RiffReader;
 import com.hypercube.workshop.audioworkshop.files.riff.insights.RiffInspector;
+import com.hypercube.workshop.audioworkshop.files.riff.insights.WaveformPeakCache;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.shell.standard.ShellComponent;
@@ -68,8 +69,20 @@ public class WaveCLI {
         }
     }
 
-    @ShellMethod(value = "Generate the WAV waveform in PNG")
-    public void wavToPng(@ShellOption(value = "-i") File file, @ShellOption(value = "-o") File pngWaveform, @ShellOption(value = "-W") int width, @ShellOption(value = "-H") int height) throws IOException {
+    @ShellMethod(value = "Generate the WAV waveform in PNG, with --cache a peak cache is kept next to the file to draw it faster next time")
+    public void wavToPng(@ShellOption(value = "-i") File file, @ShellOption(value = "-o") File pngWaveform, @ShellOption(value = "-W") int width, @ShellOption(value = "-H") int height, @ShellOption(value = "--cache", defaultValue = "false") boolean cache) throws IOException {
+        if (cache) {
+            WaveformPeakCache peaks = null;
+            try {
+                peaks = WaveformPeakCache.getOrCreate(file);
+            } catch (RuntimeException e) {
+                log.warn("Unable to use the peak cache of " + file.getAbsolutePath() + ", the waveform is drawn without it", e);
+            }
+            if (peaks != null) {
+                peaks.savePng(pngWaveform, width, height);
+                return;
+            }
+        }
         try (RiffReader riffReader = new RiffReader(file, false)) {
             RiffFileInfo riffFileInfo = riffReader.parse();
             if (riffFileInfo != null) {
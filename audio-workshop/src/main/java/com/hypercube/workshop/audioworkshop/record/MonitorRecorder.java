@@ -9,6 +9,8 @@ import com.hypercube.workshop.audioworkshop.api.format.PCMBufferFormat;
 import com.hypercube.workshop.audioworkshop.api.format.PCMFormat;
 import com.hypercube.workshop.audioworkshop.api.line.AudioInputLine;
 import com.hypercube.workshop.audioworkshop.api.line.AudioOutputLine;
+import com.hypercube.workshop.audioworkshop.api.record.BackPressurePolicy;
+import com.hypercube.workshop.audioworkshop.api.record.RingBufferRecordListener;
 import lombok.extern.slf4j.Slf4j;
 
 import javax.sound.sampled.LineUnavailableException;
@@ -18,6 +20,10 @@ import java.util.concurrent.TimeUnit;
 
 @Slf4j
 public class MonitorRecorder extends WavRecordListener {
+    /**
+     * How many buffers can be pending while the loudness and the WAV are computed, the playback only waits when they are all used
+     */
+    private static final int RING_BUFFER_CAPACITY = 16;
     private final int nbChannels;
     private final double[] loudness;
     private final long startTime = System.currentTimeMillis();
@@ -33,7 +39,10 @@ public class MonitorRecorder extends WavRecordListener {
         try (AudioInputLine line = new AudioInputLine(inputDevice, format)) {
             try (AudioOutputLine outLine = new AudioOutputLine(outputDevice, format)) {
                 outLine.start();
-                line.record(this, outLine);
+                try (RingBufferRecordListener ringBuffer = new RingBufferRecordListener(format, RING_BUFFER_CAPACITY, BackPressurePolicy.BLOCK, this)) {
+                    ringBuffer.start();
+                    line.record(ringBuffer, outLine);
+                }
             }
         } catch (LineUnavailableException | IOException e) {
             throw new AudioError(e);